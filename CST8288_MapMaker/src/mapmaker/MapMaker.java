@@ -1,392 +1,1168 @@
-package mapmaker;
-
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-
-
-
-import javafx.application.Application;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
-import javafx.geometry.Orientation;
-import javafx.geometry.Side;
-import javafx.scene.Cursor;
-import javafx.scene.Scene;
-import javafx.scene.control.Alert;
-import javafx.scene.control.Alert.AlertType;
-import javafx.scene.control.Button;
-import javafx.scene.control.ButtonType;
-
-import javafx.scene.control.Label;
-import javafx.scene.control.Menu;
-import javafx.scene.control.MenuBar;
-import javafx.scene.control.MenuButton;
-import javafx.scene.control.MenuItem;
-import javafx.scene.control.Separator;
-import javafx.scene.control.SeparatorMenuItem;
-import javafx.scene.control.ToolBar;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.BorderPane;
-import javafx.stage.FileChooser;
-import javafx.stage.FileChooser.ExtensionFilter;
-import mapmaker.map.MapArea;
-import mapmaker.map.shapes.PolyShape;
-import mapmaker.map.tools.ToolState;
-import mapmaker.map.tools.Tools;
-
-import javafx.stage.Stage;
-
-
-/**
- * The start of the MapMaker Application, initializes GUI components and</br>
- * creates connections to managing classes.
- * @author Adriano Dramisino
- *
- */
-public class MapMaker extends Application{
-	
-	/**
-	 * <p>
-	 * these static final fields are file and directory paths for this application.</br>
-	 * </p>
-	 */
-	private static final String INFO_PATH      = "/resources/icons/info.txt";
-	private static final String HELP_PATH      = "/resources/icons/help.txt";
-	private static final String CREDITS_PATH   = "/resources/icons/credits.txt";
-	private static final String CSS_PATH       = "/resources/css/style.css";
-	
-	/**
-	 * <p>
-	 * these static final fields represent the number of sides for the given {@link PolyShape}.</br>
-	 * </p>
-	 */
-	private static final int LINE      = 2;
-	private static final int TRIANGLE  = 3;
-	private static final int RECTANGLE = 4;
-	private static final int PENTAGON  = 5;
-	private static final int HEXAGON   = 6;
-	
-	/**
-	 * local {@link MapArea} object.
-	 */
-	private MapArea map;
-
-	
-	/**
-	 * <p>
-	 * if current map has been saved or not. Used to prompt user with a save request</br>
-	 * before creating a new map and losing their work, or before loading a .map and </br>
-	 * losing their work.
-	 * </p>
-	 */
-	private static boolean SAVED;
-	
-	@Override
-	public void start(Stage primaryStage) throws Exception {
-		BorderPane root = new BorderPane();
-		map = new MapArea();
-		ToolBar bottomBar = new ToolBar(new Label("Tool: "), new Separator(), new Label("Options: {}"));
-
-		MenuBar menuBar = new MenuBar(
-				new Menu("File", null, 
-						makeMenuItem("New", e-> newMap(primaryStage)), 
-						makeMenuItem("Open", e-> loadMap(primaryStage)),
-						makeMenuItem("Save", e-> saveMap(primaryStage)),
-						new SeparatorMenuItem(),
-						makeMenuItem("Exit", e-> exit(primaryStage))),
-				new Menu("Help", null, 
-						makeMenuItem("Credit", e-> displayCredit()), 
-						makeMenuItem("Info", e-> displayInfo()),
-						new SeparatorMenuItem(),
-						makeMenuItem("Help", e-> displayHelp()))
-				);
-		
-		ToolBar sideBar =  new ToolBar(
-				makeButton("Select", 
-						e->ToolState.state().setTool(Tools.Select),
-						f->map.setCursor(Cursor.DEFAULT)),
-				makeButton("Move", 
-						e->ToolState.state().setTool(Tools.Move),
-						f->map.setCursor(Cursor.MOVE)),
-					makeMenuButton("Room",
-							makeMenuItem("Line", e-> setRoom(LINE)),
-							makeMenuItem("Triangle", e-> setRoom(TRIANGLE)),
-							makeMenuItem("Rectangle", e-> setRoom(RECTANGLE)),
-							makeMenuItem("Pentagon", e-> setRoom(PENTAGON)),
-							makeMenuItem("Hexagon", e-> setRoom(HEXAGON))),
-				makeButton("Path", 
-						e->ToolState.state().setTool(Tools.Path),
-						f->map.setCursor(Cursor.DEFAULT)),
-				makeButton("Erase", 
-						e->ToolState.state().setTool(Tools.Erase),
-						f->map.setCursor(Cursor.HAND)),
-				makeButton("Door", 
-						e->ToolState.state().setTool(Tools.Door),
-						f->map.setCursor(Cursor.DEFAULT))
-				);
-		
-		root.setCenter(map);
-		root.setTop(menuBar);
-		root.setLeft(sideBar);
-		root.setBottom(bottomBar);
-		
-		sideBar.setOrientation(Orientation.VERTICAL);
-		sideBar.setId("ToolBar");
-		bottomBar.setPrefWidth(root.getWidth());
-		
-		Scene scene = new Scene(root,1000,600);
-		scene.getStylesheets().add(MapMaker.class.getResource(CSS_PATH).toString());
-		primaryStage.setScene(scene);
-		primaryStage.setTitle("Map Maker");
-		primaryStage.show();
-	}
-	
-
-	
-	/**
-	 * 
-	 * @param name - name to be displayed on {@link MenuItem} and used as {@link MenuItem#setId(String)} for CSS.
-	 * @param items - {@link MenuItem}'s that belong to the Room {@link Button}
-	 * @return {@link MenuButton}
-	 */
-	private MenuButton makeMenuButton(String name, MenuItem ... items) {
-		MenuButton m = new MenuButton("",null, items);
-		m.setId(name);
-		m.setOnMouseClicked(e -> map.setCursor(Cursor.CROSSHAIR));
-		m.setPopupSide(Side.RIGHT);
-		return m;
-	}
-	
-	/**
-	 * <p>
-	 * create a {@link MenuItem}.</br>
-	 * </p>
-	 * @param name - name to be displayed on {@link MenuItem} and used as {@link MenuItem#setId(String)} for CSS.
-	 * @param handler - {@link EventHandler} object be called when {@link MenuItem} is clicked.
-	 * @return created {@link MenuItem}.
-	 */
-	private MenuItem makeMenuItem( String name, EventHandler<ActionEvent> handler) {
-		Label icon = new Label();
-		icon.setId( name + "-icon");
-		MenuItem item = new MenuItem(name, icon);
-		item.setId(name);
-		item.setOnAction(handler);
-		return item;
-	}
-	
-	/**
-	 * <p>
-	 * create a {@link Button}.</br>
-	 * </p>
-	 * @param id - used as {@link Button#setId(String)} for CSS.
-	 * @param handler - {@link EventHandler} object be called when {@link Button} is clicked.
-	 * @param cursor - sets {@link EventHandler<MouseEvent} 
-	 * @return created {@link Button}.
-	 */
-	private Button makeButton(String id, EventHandler<ActionEvent> handler, EventHandler<MouseEvent> cursor) {
-		Button b = new Button();
-		b.setId(id);
-		b.setOnAction(handler);
-		b.setOnMouseClicked(cursor);
-		return b;
-	}
-	
-	/**
-	 * <p>
-	 * sets {@link Tool} to Room and sets number of sides on {@link PolyShape}.  
-	 * </p>
-	 * 
-	 * @param shape - number of sides on {@link PolyShape} to be drawn.
-	 */
-	private void setRoom(int shape) {
-		ToolState.state().setTool(Tools.Room);
-		ToolState.state().setOption(shape);
-	}
-
-	/**
-	 * <p>
-	 * display an {@link Alert} to show {@link AlertType#INFORMATION}.</br>
-	 * </p>
-	 * @param title - string to be displayed as title of {@link Alert}
-	 * @param message - string content to be displayed in {@link Alert}
-	 */
-	private void displayAlert( String title, String context) {
-		Alert alert = new Alert(AlertType.INFORMATION);
-		alert.setTitle(title);
-		alert.setContentText(loadFile(context));
-		alert.show();
-	}
-	
-	/**
-	 * <p>
-	 * read a file and convert it to one string separated with provided separator.</br>
-	 * </p>
-	 * @param path - {@link String} object containing the path to desired file.
-	 * @param separator - {@link String} object containing the separator
-	 */
-	private String loadFile(String path) {
-		String str = "";
-		try {
-			str = Files.lines(Paths.get(path)).reduce(str,(a, b)-> a + System.lineSeparator() + b);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return str;
-	}
-	
-	/**
-	 * <p>
-	 * ask the user where they need to save then get the content to write from 
-	 * {@link MapAreaSkeleton#convertToString()}.</br>
-	 * </p>
-	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
-	 */
-	private void saveMap( Stage primary){
-		//get the file object to save to
-		File file = getFileChooser( primary, true);
-		if (file==null) {
-			SAVED = false;
-			return;
-		}
-			
-		try{
-			if( !file.exists())
-				file.createNewFile();
-			Files.write( file.toPath(), map.convertToString().getBytes());
-			SAVED = true;
-		}catch( IOException e){
-			e.printStackTrace();
-		}
-	}
-	
-	/**
-	 * <p>
-	 * ask the user what file they need to open then pass the content to 
-	 * {@link MapAreaSkeleton#convertFromString(java.util.Map)}.</br>
-	 * </p>
-	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
-	 */
-	private void loadMap( Stage primary){
-		//get the file object to load from
-		File file = getFileChooser( primary, false);
-		if (file==null || !file.exists()) {
-			return; 
-		}
-		try{
-			//no parallel (threading) here but this is safer
-			AtomicInteger index = new AtomicInteger(0);  
-			//index.getAndIncrement()/5 means every 5 elements increases by 1
-			//allowing for every 5 element placed in the same key
-			//for each line in file group every 5 and pass to map area
-			if(!SAVED) 
-				newMap(primary);
-			
-			map.clearMap();
-			map.convertFromString( Files.lines( file.toPath()).collect( Collectors.groupingBy( l->index.getAndIncrement()/5)));
-			
-		}catch( IOException e){
-			e.printStackTrace();
-		}
-	}
-	
-	/**
-	 * <p>
-	 * using the {@link FileChooser} open a new window only showing .map extension;
-	 * in starting path of {@link MapMaker#MAPS_DIRECTORY}.</br>
-	 * this function can be used to save or open file depending on the boolean argument.</br>
-	 * </p>
-	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
-	 * @param save - if true show {@link FileChooser#showSaveDialog(javafx.stage.Window)} 
-	 * 					else {@link FileChooser#showOpenDialog(javafx.stage.Window)}
-	 * @return a {@link File} representing the save or load file object
-	 */
-	private File getFileChooser( Stage primary, boolean save){
-		FileChooser fileChooser = new FileChooser();
-		fileChooser.getExtensionFilters().add( new ExtensionFilter( "Maps", "*.map"));
-	//	fileChooser.setInitialDirectory( Paths.get( MAPS_DIRECTORY).toFile());
-		return save?fileChooser.showSaveDialog( primary):fileChooser.showOpenDialog( primary);
-	}
-	
-	//https://stackoverflow.com/questions/31899275/difference-between-optionalbuttontype-get-and-alert-getresult
-	/**
-	 * <p>
-	 * asks user if they want to save their current map {@link File} before clearing</br>
-	 * {@link MapArea} 
-	 * </p>
-	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
-	 */
-	private void newMap(Stage primary) {
-		Optional<ButtonType> result = createSaveAlert().showAndWait();
-		if(result.isPresent()) {
-			if (result.get() == ButtonType.YES) { 
-				saveMap(primary);
-				if(SAVED) {
-					map.clearMap(); 
-					SAVED = false;
-				}
-			}
-			else if(result.get() == ButtonType.NO) 
-				map.clearMap();
-		}
-	}
-	
-	/**
-	 * <p>
-	 * private helper function to create {@link Alert} dialogue shown before user clears {@link MapArea}.
-	 * </p>
-	 * @return an {@link Alert} with appropriate values set.
-	 */
-	private Alert createSaveAlert() {
-		Alert alert = new Alert(AlertType.CONFIRMATION);
-		alert.getButtonTypes().set(0, ButtonType.YES);
-		alert.getButtonTypes().set(1, ButtonType.NO);
-		alert.setTitle("New");
-		alert.setHeaderText("Save Map");
-		alert.setContentText("Would you like to save your current work?");
-		return alert;
-	}
-	
-	/**
-	 * <p>
-	 * safely handles user clicking on Exit button. will close Application</br>
-	 * immediately if {@link MapMaker#SAVED} is true, and will prompt user to </br>
-	 * save their work otherwise.
-	 * </p>
-	 * @param primary - {@link Stage} object that will own the {@link FileChooser}. 
-	 */
-	private void exit(Stage primary) {
-		if(!SAVED) {
-			newMap(primary);
-			primary.close();
-		}
-		else if(SAVED) {
-			primary.close();
-		}
-	}
-	
-	/**
-	 * <p>
-	 * these private helper functions display dialogue of the {@link MenuItem}'s which</br>
-	 * belong to the Help {@link Menu}.
-	 * </p>
-	 */
-	private void displayCredit() {displayAlert("Credit", CREDITS_PATH);}
-	private void displayHelp() {displayAlert("Help", HELP_PATH);}
-	private void displayInfo() {displayAlert("Info", INFO_PATH);}
-	public static void main(String[] args) {launch(args);}
-	@Override
-	public void init() throws Exception {super.init();}
-	
-	/**
-	 * <p>
-	 * called when JavaFX application is closed or hidden.</br>
-	 * </p>
-	 */
-	@Override
-	public void stop() throws Exception {super.stop();}
+package mapmaker;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+
+
+import javafx.application.Application;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Orientation;
+import javafx.geometry.Side;
+import javafx.scene.Cursor;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.ColorPicker;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Separator;
+import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.control.ToolBar;
+import javafx.scene.control.cell.CheckBoxListCell;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
+import javafx.stage.FileChooser.ExtensionFilter;
+import mapmaker.map.MapArea;
+import mapmaker.map.diff.MapDiff;
+import mapmaker.map.diff.MapDocument;
+import mapmaker.map.diff.MapMerge;
+import mapmaker.map.geometry.Clipper;
+import mapmaker.map.io.GeoJsonExporter;
+import mapmaker.map.io.GeoJsonImporter;
+import mapmaker.map.io.MapExporter;
+import mapmaker.map.io.MapImporter;
+import mapmaker.map.io.PngExporter;
+import mapmaker.map.io.SvgExporter;
+import mapmaker.map.io.SvgImporter;
+import mapmaker.map.layers.Layer;
+import mapmaker.map.layers.LayerFile;
+import mapmaker.map.navigation.DistanceMatrix;
+import mapmaker.map.navigation.Route;
+import mapmaker.map.overview.Overview;
+import mapmaker.map.region.RegionFile;
+import mapmaker.map.region.RegionLoader;
+import mapmaker.map.query.ShapeQuery;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+import mapmaker.map.snapshot.ModelSnapshot;
+import mapmaker.map.sync.SyncClient;
+import mapmaker.map.sync.SyncServer;
+import mapmaker.map.tools.ToolState;
+import mapmaker.map.tools.Tools;
+import mapmaker.map.validation.IntersectionValidator;
+import mapmaker.map.validation.OverlapValidator;
+
+import javafx.stage.Stage;
+
+
+/**
+ * The start of the MapMaker Application, initializes GUI components and</br>
+ * creates connections to managing classes.
+ * @author Adriano Dramisino
+ *
+ */
+public class MapMaker extends Application{
+	
+	/**
+	 * <p>
+	 * these static final fields are file and directory paths for this application.</br>
+	 * </p>
+	 */
+	private static final String INFO_PATH      = "/resources/icons/info.txt";
+	private static final String HELP_PATH      = "/resources/icons/help.txt";
+	private static final String CREDITS_PATH   = "/resources/icons/credits.txt";
+	private static final String CSS_PATH       = "/resources/css/style.css";
+	
+	/**
+	 * <p>
+	 * these static final fields represent the number of sides for the given {@link PolyShape}.</br>
+	 * </p>
+	 */
+	private static final int LINE      = 2;
+	private static final int TRIANGLE  = 3;
+	private static final int RECTANGLE = 4;
+	private static final int PENTAGON  = 5;
+	private static final int HEXAGON   = 6;
+	
+	/**
+	 * local {@link MapArea} object.
+	 */
+	private MapArea map;
+	
+	/**
+	 * <p>
+	 * site of this map in a shared session and the server if this application hosts the session.
+	 * </p>
+	 */
+	private SyncClient sync;
+	private SyncServer server;
+	
+	/**
+	 * <p>
+	 * part of a region file open in the map, null while the whole map is open.
+	 * </p>
+	 */
+	private RegionLoader region;
+	private ScrollPane viewport;
+
+	
+	/**
+	 * <p>
+	 * if current map has been saved or not. Used to prompt user with a save request</br>
+	 * before creating a new map and losing their work, or before loading a .map and </br>
+	 * losing their work.
+	 * </p>
+	 */
+	private static boolean SAVED;
+	
+	@Override
+	public void start(Stage primaryStage) throws Exception {
+		BorderPane root = new BorderPane();
+		map = new MapArea();
+		sync = new SyncClient(map);
+		Label statistics = new Label();
+		statistics.textProperty().bind(map.getStatistics().summaryBinding());
+		ToolBar bottomBar = new ToolBar(new Label("Tool: "), new Separator(), new Label("Options: {}"), new Separator(), statistics);
+
+		MenuBar menuBar = new MenuBar(
+				new Menu("File", null, 
+						makeMenuItem("New", e-> newMap(primaryStage)), 
+						makeMenuItem("Open", e-> loadMap(primaryStage)),
+						makeMenuItem("Save", e-> saveMap(primaryStage)),
+						makeMenuItem("Save Compressed", e-> saveMap(primaryStage, true)),
+						makeMenuItem("Open Region", e-> openRegion(primaryStage)),
+						makeMenuItem("Save Partitioned", e-> savePartitioned(primaryStage)),
+						new SeparatorMenuItem(),
+						makeMenuItem("Import SVG", e-> importMap(primaryStage, new SvgImporter(), "SVG", "*.svg")),
+						makeMenuItem("Import GeoJSON", e-> importMap(primaryStage, new GeoJsonImporter(), "GeoJSON", "*.geojson", "*.json")),
+						makeMenuItem("Export SVG", e-> exportMap(primaryStage, new SvgExporter(), "SVG", "*.svg")),
+						makeMenuItem("Export GeoJSON", e-> exportMap(primaryStage, new GeoJsonExporter(), "GeoJSON", "*.geojson")),
+						makeMenuItem("Export PNG", e-> exportImage(primaryStage)),
+						new SeparatorMenuItem(),
+						makeMenuItem("Compare Maps", e-> compareMaps(primaryStage)),
+						makeMenuItem("Merge Maps", e-> mergeMaps(primaryStage)),
+						new SeparatorMenuItem(),
+						makeMenuItem("Exit", e-> exit(primaryStage))),
+				new Menu("Edit", null,
+						makeMenuItem("Find", e-> showFindDialog()),
+						makeMenuItem("Delete Selected", e-> map.eraseSelected()),
+						new SeparatorMenuItem(),
+						makeMenuItem("Union", e-> combineSelected(Clipper.Operation.UNION)),
+						makeMenuItem("Intersection", e-> combineSelected(Clipper.Operation.INTERSECTION)),
+						makeMenuItem("Difference", e-> combineSelected(Clipper.Operation.DIFFERENCE)),
+						makeMenuItem("Auto Layout", e-> layoutRooms()),
+						new SeparatorMenuItem(),
+						makeCheckMenuItem("Snap to Shapes", ToolState.state().isSnapToShapes(),
+								e-> ToolState.state().setSnapToShapes(((CheckMenuItem) e.getSource()).isSelected())),
+						makeCheckMenuItem("Snap to Grid", ToolState.state().isSnapToGrid(),
+								e-> ToolState.state().setSnapToGrid(((CheckMenuItem) e.getSource()).isSelected()))),
+				new Menu("Analyze", null,
+						makeMenuItem("Shortest Route", e-> showRoute()),
+						makeMenuItem("Distance Matrix", e-> saveDistanceMatrix(primaryStage)),
+						new SeparatorMenuItem(),
+						makeMenuItem("Check Overlaps", e-> checkOverlaps()),
+						makeCheckMenuItem("Live Overlap Check", false,
+								e-> map.getOverlapValidator().setLive(((CheckMenuItem) e.getSource()).isSelected())),
+						makeMenuItem("Check Self Intersections", e-> checkIntersections()),
+						new SeparatorMenuItem(),
+						makeMenuItem("Dehydrate Hidden Layers", e-> map.getLayerMemory().dehydrateHidden(map.getLayers())),
+						makeMenuItem("Memory Report", e-> displayMessage("Memory Report", map.getLayerMemory().report(map.getLayers()))),
+						makeMenuItem("Region Status", e-> displayMessage("Region Status",
+								region == null ? "The whole map is open." : region.status()))),
+				new Menu("Session", null,
+						makeMenuItem("Host Session", e-> hostSession()),
+						makeMenuItem("Join Session", e-> joinSession()),
+						makeMenuItem("Leave Session", e-> leaveSession()),
+						new SeparatorMenuItem(),
+						makeMenuItem("Session Status", e-> displayMessage("Session Status", sync.status()))),
+				new Menu("Help", null, 
+						makeMenuItem("Credit", e-> displayCredit()), 
+						makeMenuItem("Info", e-> displayInfo()),
+						new SeparatorMenuItem(),
+						makeMenuItem("Help", e-> displayHelp()))
+				);
+		
+		ToolBar sideBar =  new ToolBar(
+				makeButton("Select", 
+						e->ToolState.state().setTool(Tools.Select),
+						f->map.setCursor(Cursor.DEFAULT)),
+				makeButton("Move", 
+						e->ToolState.state().setTool(Tools.Move),
+						f->map.setCursor(Cursor.MOVE)),
+					makeMenuButton("Room",
+							makeMenuItem("Freeform", e-> setRoom(PolyShape.FREEFORM)),
+							makeMenuItem("Line", e-> setRoom(LINE)),
+							makeMenuItem("Triangle", e-> setRoom(TRIANGLE)),
+							makeMenuItem("Rectangle", e-> setRoom(RECTANGLE)),
+							makeMenuItem("Pentagon", e-> setRoom(PENTAGON)),
+							makeMenuItem("Hexagon", e-> setRoom(HEXAGON))),
+				makeButton("Path", 
+						e->ToolState.state().setTool(Tools.Path),
+						f->map.setCursor(Cursor.DEFAULT)),
+				makeButton("Erase", 
+						e->ToolState.state().setTool(Tools.Erase),
+						f->map.setCursor(Cursor.HAND)),
+				makeButton("Door", 
+						e->ToolState.state().setTool(Tools.Door),
+						f->map.setCursor(Cursor.DEFAULT))
+				);
+		
+		//map grows to fit its shapes and is never smaller than the visible area
+		viewport = new ScrollPane(map);
+		viewport.viewportBoundsProperty().addListener((o, old, bounds) -> map.setMinSize(bounds.getWidth(), bounds.getHeight()));
+		Overview overview = new Overview(map, viewport);
+		Button addLayer = new Button("Add Layer");
+		addLayer.setOnAction(e-> addLayer());
+		VBox rightBar = new VBox(overview, new Label("Layers"), createLayerList(), addLayer);
+		
+		root.setCenter(viewport);
+		root.setTop(menuBar);
+		root.setLeft(sideBar);
+		root.setRight(rightBar);
+		root.setBottom(bottomBar);
+		
+		sideBar.setOrientation(Orientation.VERTICAL);
+		sideBar.setId("ToolBar");
+		bottomBar.setPrefWidth(root.getWidth());
+		
+		Scene scene = new Scene(root,1000,600);
+		scene.getStylesheets().add(MapMaker.class.getResource(CSS_PATH).toString());
+		primaryStage.setScene(scene);
+		primaryStage.setTitle("Map Maker");
+		primaryStage.show();
+	}
+	
+
+	
+	/**
+	 * 
+	 * @param name - name to be displayed on {@link MenuItem} and used as {@link MenuItem#setId(String)} for CSS.
+	 * @param items - {@link MenuItem}'s that belong to the Room {@link Button}
+	 * @return {@link MenuButton}
+	 */
+	private MenuButton makeMenuButton(String name, MenuItem ... items) {
+		MenuButton m = new MenuButton("",null, items);
+		m.setId(name);
+		m.setOnMouseClicked(e -> map.setCursor(Cursor.CROSSHAIR));
+		m.setPopupSide(Side.RIGHT);
+		return m;
+	}
+	
+	/**
+	 * <p>
+	 * create a {@link MenuItem}.</br>
+	 * </p>
+	 * @param name - name to be displayed on {@link MenuItem} and used as {@link MenuItem#setId(String)} for CSS.
+	 * @param handler - {@link EventHandler} object be called when {@link MenuItem} is clicked.
+	 * @return created {@link MenuItem}.
+	 */
+	private MenuItem makeMenuItem( String name, EventHandler<ActionEvent> handler) {
+		Label icon = new Label();
+		icon.setId( name + "-icon");
+		MenuItem item = new MenuItem(name, icon);
+		item.setId(name);
+		item.setOnAction(handler);
+		return item;
+	}
+	
+	/**
+	 * <p>
+	 * create a {@link CheckMenuItem}.</br>
+	 * </p>
+	 * @param name - name to be displayed on {@link CheckMenuItem} and used as {@link CheckMenuItem#setId(String)} for CSS.
+	 * @param selected - starting state of {@link CheckMenuItem}.
+	 * @param handler - {@link EventHandler} object be called when {@link CheckMenuItem} is clicked.
+	 * @return created {@link CheckMenuItem}.
+	 */
+	private CheckMenuItem makeCheckMenuItem( String name, boolean selected, EventHandler<ActionEvent> handler) {
+		CheckMenuItem item = new CheckMenuItem(name);
+		item.setId(name);
+		item.setSelected(selected);
+		item.setOnAction(handler);
+		return item;
+	}
+	
+	/**
+	 * <p>
+	 * create a {@link Button}.</br>
+	 * </p>
+	 * @param id - used as {@link Button#setId(String)} for CSS.
+	 * @param handler - {@link EventHandler} object be called when {@link Button} is clicked.
+	 * @param cursor - sets {@link EventHandler<MouseEvent} 
+	 * @return created {@link Button}.
+	 */
+	private Button makeButton(String id, EventHandler<ActionEvent> handler, EventHandler<MouseEvent> cursor) {
+		Button b = new Button();
+		b.setId(id);
+		b.setOnAction(handler);
+		b.setOnMouseClicked(cursor);
+		return b;
+	}
+	
+	/**
+	 * <p>
+	 * sets {@link Tool} to Room and sets number of sides on {@link PolyShape}.  
+	 * </p>
+	 * 
+	 * @param shape - number of sides on {@link PolyShape} to be drawn.
+	 */
+	private void setRoom(int shape) {
+		ToolState.state().setTool(Tools.Room, shape);
+	}
+
+	/**
+	 * <p>
+	 * display an {@link Alert} to show {@link AlertType#INFORMATION}.</br>
+	 * </p>
+	 * @param title - string to be displayed as title of {@link Alert}
+	 * @param message - string content to be displayed in {@link Alert}
+	 */
+	private void displayAlert( String title, String context) {
+		Alert alert = new Alert(AlertType.INFORMATION);
+		alert.setTitle(title);
+		alert.setContentText(loadFile(context));
+		alert.show();
+	}
+	
+	/**
+	 * <p>
+	 * display an {@link Alert} to show {@link AlertType#INFORMATION} with given message.</br>
+	 * </p>
+	 * @param title - string to be displayed as title of {@link Alert}
+	 * @param message - string content to be displayed in {@link Alert}
+	 */
+	private void displayMessage( String title, String message) {
+		Alert alert = new Alert(AlertType.INFORMATION);
+		alert.setTitle(title);
+		alert.setHeaderText(null);
+		alert.setContentText(message);
+		alert.show();
+	}
+	
+	/**
+	 * <p>
+	 * run a {@link Task} on a daemon background thread so the UI is not blocked.</br>
+	 * failures are shown in an {@link Alert}.
+	 * </p>
+	 * @param task - {@link Task} to run
+	 */
+	private void runInBackground( Task<?> task) {
+		task.setOnFailed( e-> displayMessage( "Error", String.valueOf( task.getException())));
+		Thread thread = new Thread( task);
+		thread.setDaemon( true);
+		thread.start();
+	}
+	
+	/**
+	 * <p>
+	 * ask for conditions of a {@link ShapeQuery} then select all matching rooms. empty fields are not used.</br>
+	 * </p>
+	 */
+	private void showFindDialog() {
+		TextField sides = new TextField(), minArea = new TextField(), maxArea = new TextField();
+		TextField x1 = new TextField(), y1 = new TextField(), x2 = new TextField(), y2 = new TextField();
+		CheckBox useFill = new CheckBox( "Fill"), useStroke = new CheckBox( "Stroke");
+		ColorPicker fill = new ColorPicker( Color.LIGHTGREEN), stroke = new ColorPicker( Color.GREY);
+		GridPane grid = new GridPane();
+		grid.setHgap( 5);
+		grid.setVgap( 5);
+		grid.addRow( 0, new Label( "Sides"), sides);
+		grid.addRow( 1, useFill, fill);
+		grid.addRow( 2, useStroke, stroke);
+		grid.addRow( 3, new Label( "Area from"), minArea, new Label( "to"), maxArea);
+		grid.addRow( 4, new Label( "Inside X1"), x1, new Label( "Y1"), y1);
+		grid.addRow( 5, new Label( "X2"), x2, new Label( "Y2"), y2);
+		Dialog<ShapeQuery> dialog = new Dialog<>();
+		dialog.setTitle( "Find");
+		dialog.getDialogPane().setContent( grid);
+		dialog.getDialogPane().getButtonTypes().addAll( ButtonType.OK, ButtonType.CANCEL);
+		dialog.setResultConverter( button -> {
+			if( button != ButtonType.OK)
+				return null;
+			ShapeQuery query = new ShapeQuery();
+			try {
+				if( !sides.getText().trim().isEmpty())
+					query.sides( Integer.parseInt( sides.getText().trim()));
+				if( useFill.isSelected())
+					query.fill( fill.getValue());
+				if( useStroke.isSelected())
+					query.stroke( stroke.getValue());
+				if( !minArea.getText().trim().isEmpty())
+					query.minArea( Double.parseDouble( minArea.getText().trim()));
+				if( !maxArea.getText().trim().isEmpty())
+					query.maxArea( Double.parseDouble( maxArea.getText().trim()));
+				if( !x1.getText().trim().isEmpty())
+					query.inside( Double.parseDouble( x1.getText().trim()), Double.parseDouble( y1.getText().trim()),
+							Double.parseDouble( x2.getText().trim()), Double.parseDouble( y2.getText().trim()));
+			} catch( NumberFormatException e) {
+				displayMessage( "Find", "Sides, area and corners must be numbers.");
+				return null;
+			}
+			return query;
+		});
+		dialog.showAndWait().ifPresent( query -> {
+			int found = map.findAndSelect( query).size();
+			displayMessage( "Find", found + " rooms found.");
+		});
+	}
+	
+	/**
+	 * <p>
+	 * apply a boolean operation to the selected rooms on a background thread.</br>
+	 * </p>
+	 * @param op - {@link Clipper.Operation} to apply
+	 */
+	private void combineSelected( Clipper.Operation op) {
+		Task<?> task = map.combineSelected( op);
+		if( task == null)
+			displayMessage( "Edit", "Select points of at least 2 rooms.");
+		else
+			runInBackground( task);
+	}
+	
+	/**
+	 * <p>
+	 * place selected rooms, or all rooms if fewer than 2 are selected, by the paths between them on a background thread.</br>
+	 * </p>
+	 */
+	private void layoutRooms() {
+		Task<?> task = map.layoutRooms();
+		if( task == null)
+			displayMessage( "Edit", "Map needs at least 2 rooms.");
+		else
+			runInBackground( task);
+	}
+	
+	/**
+	 * <p>
+	 * highlight the shortest route between 2 selected rooms and show its length.</br>
+	 * </p>
+	 */
+	private void showRoute() {
+		Route route = map.routeSelected();
+		if( route == null)
+			displayMessage( "Shortest Route", "Select points of exactly 2 rooms which are connected by paths.");
+		else
+			displayMessage( "Shortest Route", String.format( "%d rooms, %d paths, length %.1f",
+					route.getRooms().size(), route.getPaths().size(), route.getLength()));
+	}
+	
+	/**
+	 * <p>
+	 * compute distances between all rooms on a background thread then save them as a CSV file.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void saveDistanceMatrix( Stage primary) {
+		File file = getFileChooser( primary, true, "CSV", "*.csv");
+		if( file == null)
+			return;
+		DistanceMatrix matrix = map.getNavigation().distanceMatrix();
+		runInBackground( new Task<Void>() {
+			@Override
+			protected Void call() throws Exception {
+				matrix.compute();
+				try( Writer writer = Files.newBufferedWriter( file.toPath())) {
+					matrix.writeCSV( writer);
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * <p>
+	 * take a snapshot of all shapes then write them with given {@link MapExporter} on a background thread.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 * @param exporter - format to write
+	 * @param description - name of the file type
+	 * @param extension - extension filter like <code>*.svg</code>
+	 */
+	private void exportMap( Stage primary, MapExporter exporter, String description, String extension) {
+		File file = getFileChooser( primary, true, description, extension);
+		if( file == null)
+			return;
+		ModelSnapshot snapshot = map.snapshot();
+		runInBackground( new Task<Void>() {
+			@Override
+			protected Void call() throws Exception {
+				try( Writer writer = Files.newBufferedWriter( file.toPath())) {
+					exporter.write( snapshot.records(), writer);
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * <p>
+	 * ask for the scale of the image then draw it with {@link PngExporter} on background threads.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void exportImage( Stage primary) {
+		TextInputDialog dialog = new TextInputDialog( "4");
+		dialog.setTitle( "Export PNG");
+		dialog.setHeaderText( null);
+		dialog.setContentText( "Pixels per map unit:");
+		Optional<String> input = dialog.showAndWait();
+		if( !input.isPresent())
+			return;
+		PngExporter exporter;
+		try {
+			exporter = new PngExporter( Double.parseDouble( input.get().trim()));
+		} catch( IllegalArgumentException e) {
+			displayMessage( "Export PNG", "Scale must be a positive number.");
+			return;
+		}
+		File file = getFileChooser( primary, true, "PNG", "*.png");
+		if( file == null)
+			return;
+		ModelSnapshot snapshot = map.snapshot();
+		runInBackground( new Task<Void>() {
+			@Override
+			protected Void call() throws Exception {
+				try( OutputStream stream = new BufferedOutputStream( Files.newOutputStream( file.toPath()))) {
+					exporter.write( snapshot.records(), stream);
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * <p>
+	 * read and decode shapes of a file with given {@link MapImporter} on a background thread
+	 * then add them to the map.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 * @param importer - format to read
+	 * @param description - name of the file type
+	 * @param extensions - extension filters like <code>*.svg</code>
+	 */
+	private void importMap( Stage primary, MapImporter importer, String description, String... extensions) {
+		File file = getFileChooser( primary, false, description, extensions);
+		if( file == null)
+			return;
+		Task<List<ShapeRecord>> task = new Task<List<ShapeRecord>>() {
+			@Override
+			protected List<ShapeRecord> call() throws Exception {
+				try( Reader reader = Files.newBufferedReader( file.toPath())) {
+					return importer.read( reader);
+				}
+			}
+		};
+		task.setOnSucceeded( e-> {
+			List<ShapeRecord> shapes = task.getValue();
+			map.addRecords( shapes, ()-> displayMessage( "Import", shapes.size() + " shapes imported."));
+		});
+		runInBackground( task);
+	}
+	
+	/**
+	 * <p>
+	 * read two map files and list how shapes of the second differ from the first, on a background thread.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void compareMaps( Stage primary) {
+		File before = getFileChooser( primary, false, "Compare: Map Before");
+		if( before == null)
+			return;
+		File after = getFileChooser( primary, false, "Compare: Map After");
+		if( after == null)
+			return;
+		Task<String> task = new Task<String>() {
+			@Override
+			protected String call() throws Exception {
+				List<ShapeRecord> base = MapDocument.read( before.toPath()).getShapes();
+				List<ShapeRecord> other = MapDocument.read( after.toPath()).getShapes();
+				return MapDiff.summary( MapDiff.diff( base, other), 20);
+			}
+		};
+		task.setOnSucceeded( e-> displayMessage( "Compare Maps", task.getValue()));
+		runInBackground( task);
+	}
+	
+	/**
+	 * <p>
+	 * three way merge of two map files changed from the same base, written to a new file on a background thread.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void mergeMaps( Stage primary) {
+		File base = getFileChooser( primary, false, "Merge: Base Map");
+		if( base == null)
+			return;
+		File ours = getFileChooser( primary, false, "Merge: Our Map");
+		if( ours == null)
+			return;
+		File theirs = getFileChooser( primary, false, "Merge: Their Map");
+		if( theirs == null)
+			return;
+		File output = getFileChooser( primary, true, "Merge: Save Merged Map");
+		if( output == null)
+			return;
+		Task<MapMerge.Result> task = new Task<MapMerge.Result>() {
+			@Override
+			protected MapMerge.Result call() throws Exception {
+				MapMerge.Result result = MapMerge.merge( MapDocument.read( base.toPath()), MapDocument.read( ours.toPath()),
+						MapDocument.read( theirs.toPath()));
+				result.getMerged().write( output.toPath());
+				return result;
+			}
+		};
+		task.setOnSucceeded( e-> {
+			List<String> conflicts = task.getValue().getConflicts();
+			StringBuilder message = new StringBuilder( task.getValue().getMerged().getShapes().size() + " shapes merged, "
+					+ conflicts.size() + " conflicts.");
+			conflicts.stream().limit( 20).forEach( c-> message.append( System.lineSeparator()).append( c));
+			displayMessage( "Merge Maps", message.toString());
+		});
+		runInBackground( task);
+	}
+	
+	/**
+	 * <p>
+	 * find all overlapping rooms on a background thread then highlight them.</br>
+	 * </p>
+	 */
+	private void checkOverlaps() {
+		OverlapValidator validator = map.getOverlapValidator();
+		Callable<List<PolyShape[]>> scan = validator.scan( map.getRegistry().shapes());
+		Task<List<PolyShape[]>> task = new Task<List<PolyShape[]>>() {
+			@Override
+			protected List<PolyShape[]> call() throws Exception {
+				return scan.call();
+			}
+		};
+		task.setOnSucceeded( e-> {
+			Set<PolyShape> offenders = validator.apply( task.getValue());
+			map.showWarnings();
+			displayMessage( "Check Overlaps", offenders.size() + " rooms overlap other rooms.");
+		});
+		runInBackground( task);
+	}
+	
+	/**
+	 * <p>
+	 * find all rooms crossing themselves on a background thread then highlight them.</br>
+	 * </p>
+	 */
+	private void checkIntersections() {
+		IntersectionValidator validator = map.getIntersectionValidator();
+		List<PolyShape> shapes = map.getRegistry().shapes();
+		Callable<List<PolyShape>> scan = validator.scan( shapes);
+		Task<List<PolyShape>> task = new Task<List<PolyShape>>() {
+			@Override
+			protected List<PolyShape> call() throws Exception {
+				return scan.call();
+			}
+		};
+		task.setOnSucceeded( e-> {
+			Set<PolyShape> invalid = validator.apply( shapes, task.getValue());
+			map.showWarnings();
+			displayMessage( "Check Self Intersections", invalid.size() + " rooms cross themselves.");
+		});
+		runInBackground( task);
+	}
+	
+	/**
+	 * <p>
+	 * create the list of layers of {@link MapMaker#map}. the check box of each layer shows or hides it
+	 * and the selected layer is the one new shapes are added to.</br>
+	 * </p>
+	 * @return new {@link ListView}
+	 */
+	private ListView<Layer> createLayerList() {
+		ListView<Layer> list = new ListView<>(map.getLayers());
+		list.setCellFactory(CheckBoxListCell.forListView(Layer::visibleProperty));
+		list.getSelectionModel().select(map.getActiveLayer());
+		list.getSelectionModel().selectedItemProperty().addListener((o, old, layer) -> {
+			if(layer != null)
+				map.setActiveLayer(layer);
+		});
+		map.activeLayerProperty().addListener((o, old, layer) -> list.getSelectionModel().select(layer));
+		return list;
+	}
+	
+	/**
+	 * <p>
+	 * ask the user for a name and add a new empty layer on top of the others.</br>
+	 * </p>
+	 */
+	private void addLayer() {
+		TextInputDialog dialog = new TextInputDialog("Layer " + (map.getLayers().size() + 1));
+		dialog.setTitle("Add Layer");
+		dialog.setHeaderText(null);
+		dialog.setContentText("Name:");
+		Optional<String> name = dialog.showAndWait();
+		if(name.isPresent() && !name.get().trim().isEmpty())
+			map.addLayer(name.get().trim());
+	}
+	
+	/**
+	 * <p>
+	 * start a {@link SyncServer} on localhost and join its session, the current map becomes the map of the session.</br>
+	 * </p>
+	 */
+	private void hostSession() {
+		if(sync.isConnected()) {
+			displayMessage("Host Session", "Leave the current session first.");
+			return;
+		}
+		Optional<Integer> port = askPort("Host Session");
+		if(!port.isPresent())
+			return;
+		try {
+			server = new SyncServer(port.get());
+			server.start();
+			sync.connect(server.getPort());
+		} catch(IOException e) {
+			e.printStackTrace();
+			leaveSession();
+			displayMessage("Host Session", "Cannot host on port " + port.get() + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * <p>
+	 * join a session hosted on localhost, shapes it already has are replaced by their version in the session.</br>
+	 * </p>
+	 */
+	private void joinSession() {
+		if(sync.isConnected()) {
+			displayMessage("Join Session", "Leave the current session first.");
+			return;
+		}
+		Optional<Integer> port = askPort("Join Session");
+		if(!port.isPresent())
+			return;
+		try {
+			sync.connect(port.get());
+		} catch(IOException e) {
+			e.printStackTrace();
+			displayMessage("Join Session", "Cannot join port " + port.get() + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * <p>
+	 * leave the session and stop its server if this application hosts it. the map keeps its shapes.</br>
+	 * </p>
+	 */
+	private void leaveSession() {
+		sync.close();
+		if(server != null) {
+			server.close();
+			server = null;
+		}
+	}
+	
+	/**
+	 * @param title - title of dialog
+	 * @return port given by the user, empty if cancelled or not a port
+	 */
+	private Optional<Integer> askPort(String title) {
+		TextInputDialog dialog = new TextInputDialog(String.valueOf(SyncServer.DEFAULT_PORT));
+		dialog.setTitle(title);
+		dialog.setHeaderText(null);
+		dialog.setContentText("Port on localhost:");
+		Optional<String> input = dialog.showAndWait();
+		if(!input.isPresent())
+			return Optional.empty();
+		try {
+			int port = Integer.parseInt(input.get().trim());
+			if(port > 0 && port < 65536)
+				return Optional.of(port);
+		} catch(NumberFormatException e) {
+			//shown below
+		}
+		displayMessage(title, "Port must be a number from 1 to 65535.");
+		return Optional.empty();
+	}
+	
+	/**
+	 * <p>
+	 * read a file and convert it to one string separated with provided separator.</br>
+	 * </p>
+	 * @param path - {@link String} object containing the path to desired file.
+	 * @param separator - {@link String} object containing the separator
+	 */
+	private String loadFile(String path) {
+		String str = "";
+		try {
+			str = Files.lines(Paths.get(path)).reduce(str,(a, b)-> a + System.lineSeparator() + b);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return str;
+	}
+	
+	/**
+	 * <p>
+	 * ask the user where they need to save then write every layer with {@link LayerFile},
+	 * getting the content of each loaded layer from {@link MapArea#convertToString(Layer)}.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void saveMap( Stage primary){
+		saveMap( primary, false);
+	}
+	
+	/**
+	 * <p>
+	 * ask the user where they need to save then write every layer with {@link LayerFile},
+	 * compressed or not. a compressed file is opened like any other.
+	 * while part of a region file is open the map is saved as a region file instead, see {@link RegionLoader#save(java.nio.file.Path)},
+	 * which is never compressed.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 * @param compress - true to compress the text of every layer
+	 */
+	private void saveMap( Stage primary, boolean compress){
+		if( compress && region != null){
+			displayMessage( "Save Compressed", "Part of a region file is open, it is saved cell by cell and cannot be compressed. Use Save instead.");
+			return;
+		}
+		//get the file object to save to
+		File file = getFileChooser( primary, true);
+		if (file==null) {
+			SAVED = false;
+			return;
+		}
+			
+		try{
+			if( region != null)
+				region.save( file.toPath());
+			else
+				LayerFile.save( file.toPath(), map.getLayers(), map::convertToString, compress);
+			SAVED = true;
+		}catch( IOException e){
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * <p>
+	 * ask the user what file they need to open then read its header with {@link LayerFile}.
+	 * only visible layers are read now, the others when they are first shown.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void loadMap( Stage primary){
+		//get the file object to load from
+		File file = getFileChooser( primary, false);
+		if (file==null || !file.exists()) {
+			return; 
+		}
+		try{
+			if(!SAVED) 
+				newMap(primary);
+			
+			//a session would take replacing the map as erasing every shape of it
+			leaveSession();
+			if( RegionFile.isRegionFile( file.toPath())) {
+				openRegion( file, null);
+				return;
+			}
+			closeRegion();
+			//shapes are split by their ID line and paths reconnected inside of map area
+			map.setLayers( LayerFile.open( file.toPath()));
+			
+		}catch( IOException e){
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * <p>
+	 * ask the user for a region file and the part of it to open, only cells in that part are read now.
+	 * the others are read as they scroll into view.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void openRegion( Stage primary){
+		File file = getFileChooser( primary, false);
+		if( file == null)
+			return;
+		try{
+			if( !RegionFile.isRegionFile( file.toPath())){
+				displayMessage( "Open Region", "Only maps saved with Save Partitioned can be opened in part.");
+				return;
+			}
+			Bounds extent = RegionFile.open( file.toPath()).getExtent();
+			TextInputDialog dialog = new TextInputDialog( extent == null ? "0 0 1000 1000" : String.format( "%.0f %.0f %.0f %.0f",
+					extent.getMinX(), extent.getMinY(), extent.getWidth(), extent.getHeight()));
+			dialog.setTitle( "Open Region");
+			dialog.setHeaderText( null);
+			dialog.setContentText( "Region as x y width height:");
+			Optional<String> input = dialog.showAndWait();
+			if( !input.isPresent())
+				return;
+			String[] tokens = input.get().trim().split( "\\s+");
+			Bounds bounds;
+			try{
+				if( tokens.length != 4)
+					throw new NumberFormatException();
+				bounds = new BoundingBox( Double.parseDouble( tokens[0]), Double.parseDouble( tokens[1]),
+						Double.parseDouble( tokens[2]), Double.parseDouble( tokens[3]));
+			}catch( NumberFormatException e){
+				displayMessage( "Open Region", "Region must be 4 numbers.");
+				return;
+			}
+			if( !SAVED)
+				newMap( primary);
+			leaveSession();
+			openRegion( file, bounds);
+		}catch( IOException e){
+			e.printStackTrace();
+			displayMessage( "Open Region", String.valueOf( e));
+		}
+	}
+	
+	/**
+	 * <p>
+	 * replace the map with the cells of a region file in given bounds and follow the viewport to read more.</br>
+	 * </p>
+	 * @param file - region file
+	 * @param bounds - part of map to read now, null for the part in view at the top left corner
+	 * @throws IOException if the file or a cell cannot be read
+	 */
+	private void openRegion( File file, Bounds bounds) throws IOException{
+		closeRegion();
+		if( bounds == null){
+			Bounds visible = viewport.getViewportBounds();
+			bounds = new BoundingBox( 0, 0, visible.getWidth(), visible.getHeight());
+		}
+		region = new RegionLoader( map, RegionFile.open( file.toPath()), this::runInBackground,
+				message -> displayMessage( "Open Region", message));
+		region.open( bounds);
+		region.watch( viewport);
+		region.scrollTo( bounds);
+	}
+	
+	/**
+	 * <p>
+	 * stop following the viewport of an open region, the map keeps the shapes read.</br>
+	 * </p>
+	 */
+	private void closeRegion(){
+		if( region != null){
+			region.close();
+			region = null;
+		}
+	}
+	
+	/**
+	 * <p>
+	 * ask the user for the size of cells and a file then write the whole map cut in cells of that size,
+	 * the map then reads the file back in part. while part of a region file is open it is saved as it was cut.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void savePartitioned( Stage primary){
+		if( region != null){
+			saveMap( primary);
+			return;
+		}
+		TextInputDialog dialog = new TextInputDialog( String.valueOf( (int) RegionFile.DEFAULT_CELL_SIZE));
+		dialog.setTitle( "Save Partitioned");
+		dialog.setHeaderText( null);
+		dialog.setContentText( "Side of cells in map units:");
+		Optional<String> input = dialog.showAndWait();
+		if( !input.isPresent())
+			return;
+		double size;
+		try{
+			size = Double.parseDouble( input.get().trim());
+			if( !( size > 0))
+				throw new NumberFormatException();
+		}catch( NumberFormatException e){
+			displayMessage( "Save Partitioned", "Side of cells must be a positive number.");
+			return;
+		}
+		File file = getFileChooser( primary, true);
+		if( file == null)
+			return;
+		try{
+			Bounds visible = viewport.getViewportBounds();
+			double x = viewport.getHvalue() * Math.max( 0, map.getWidth() - visible.getWidth());
+			double y = viewport.getVvalue() * Math.max( 0, map.getHeight() - visible.getHeight());
+			RegionFile.save( file.toPath(), map.getLayers(), map::convertToString, size);
+			SAVED = true;
+			//layers not loaded may have been read from the file just replaced
+			leaveSession();
+			openRegion( file, new BoundingBox( x, y, visible.getWidth(), visible.getHeight()));
+		}catch( IOException e){
+			e.printStackTrace();
+			displayMessage( "Save Partitioned", String.valueOf( e));
+		}
+	}
+	
+	/**
+	 * <p>
+	 * using the {@link FileChooser} open a new window only showing .map extension;
+	 * in starting path of {@link MapMaker#MAPS_DIRECTORY}.</br>
+	 * this function can be used to save or open file depending on the boolean argument.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 * @param save - if true show {@link FileChooser#showSaveDialog(javafx.stage.Window)} 
+	 * 					else {@link FileChooser#showOpenDialog(javafx.stage.Window)}
+	 * @return a {@link File} representing the save or load file object
+	 */
+	private File getFileChooser( Stage primary, boolean save){
+		return getFileChooser( primary, save, "Maps", "*.map");
+	}
+	
+	/**
+	 * <p>
+	 * open a map file chooser with a title, to tell apart dialogs asking for many files in a row.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 * @param save - if true show save dialog else open dialog
+	 * @param title - title of the dialog
+	 * @return a {@link File} representing the save or load file object
+	 */
+	private File getFileChooser( Stage primary, boolean save, String title){
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle( title);
+		fileChooser.getExtensionFilters().add( new ExtensionFilter( "Maps", "*.map"));
+		return save?fileChooser.showSaveDialog( primary):fileChooser.showOpenDialog( primary);
+	}
+	
+	/**
+	 * <p>
+	 * using the {@link FileChooser} open a new window only showing given extensions.</br>
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 * @param save - if true show save dialog else open dialog
+	 * @param description - name of the file type
+	 * @param extensions - extension filters like <code>*.map</code>
+	 * @return a {@link File} representing the save or load file object
+	 */
+	private File getFileChooser( Stage primary, boolean save, String description, String... extensions){
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.getExtensionFilters().add( new ExtensionFilter( description, extensions));
+	//	fileChooser.setInitialDirectory( Paths.get( MAPS_DIRECTORY).toFile());
+		return save?fileChooser.showSaveDialog( primary):fileChooser.showOpenDialog( primary);
+	}
+	
+	//https://stackoverflow.com/questions/31899275/difference-between-optionalbuttontype-get-and-alert-getresult
+	/**
+	 * <p>
+	 * asks user if they want to save their current map {@link File} before clearing</br>
+	 * {@link MapArea} 
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}.
+	 */
+	private void newMap(Stage primary) {
+		Optional<ButtonType> result = createSaveAlert().showAndWait();
+		if(result.isPresent()) {
+			if (result.get() == ButtonType.YES) { 
+				saveMap(primary);
+				if(SAVED) {
+					leaveSession();
+					closeRegion();
+					map.clearMap(); 
+					SAVED = false;
+				}
+			}
+			else if(result.get() == ButtonType.NO) {
+				leaveSession();
+				closeRegion();
+				map.clearMap();
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 * private helper function to create {@link Alert} dialogue shown before user clears {@link MapArea}.
+	 * </p>
+	 * @return an {@link Alert} with appropriate values set.
+	 */
+	private Alert createSaveAlert() {
+		Alert alert = new Alert(AlertType.CONFIRMATION);
+		alert.getButtonTypes().set(0, ButtonType.YES);
+		alert.getButtonTypes().set(1, ButtonType.NO);
+		alert.setTitle("New");
+		alert.setHeaderText("Save Map");
+		alert.setContentText("Would you like to save your current work?");
+		return alert;
+	}
+	
+	/**
+	 * <p>
+	 * safely handles user clicking on Exit button. will close Application</br>
+	 * immediately if {@link MapMaker#SAVED} is true, and will prompt user to </br>
+	 * save their work otherwise.
+	 * </p>
+	 * @param primary - {@link Stage} object that will own the {@link FileChooser}. 
+	 */
+	private void exit(Stage primary) {
+		if(!SAVED) {
+			newMap(primary);
+			primary.close();
+		}
+		else if(SAVED) {
+			primary.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 * these private helper functions display dialogue of the {@link MenuItem}'s which</br>
+	 * belong to the Help {@link Menu}.
+	 * </p>
+	 */
+	private void displayCredit() {displayAlert("Credit", CREDITS_PATH);}
+	private void displayHelp() {displayAlert("Help", HELP_PATH);}
+	private void displayInfo() {displayAlert("Info", INFO_PATH);}
+	public static void main(String[] args) {launch(args);}
+	@Override
+	public void init() throws Exception {super.init();}
+	
+	/**
+	 * <p>
+	 * called when JavaFX application is closed or hidden.</br>
+	 * </p>
+	 */
+	@Override
+	public void stop() throws Exception {
+		leaveSession();
+		super.stop();
+	}
 }
\ No newline at end of file
@@ -1,395 +1,1557 @@
-package mapmaker.map;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.event.EventTarget;
-import javafx.scene.Node;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
-import mapmaker.map.features.Movable;
-import mapmaker.map.shapes.PolyShape;
-import mapmaker.map.shapes.controls.ControlPoint;
-import mapmaker.map.shapes.controls.Path;
-import mapmaker.map.tools.SelectionArea;
-import mapmaker.map.tools.ToolState;
-import mapmaker.map.tools.Tools;
-
-/**
- * <p>
- * create this class once. this class will hold all control behavior related to shapes.</br>
- * </p>
- * @author Shahriar (Shawn) Emami
- * @version Oct 8, 2018
- */
-public class MapArea extends Pane{
-
-	/**
-	 * <p>
-	 * instead of calling getChildren every time you can call directly the reference of it which is initialized in constructor.</br>
-	 * </p>
-	 */
-	private ObservableList<Node> children;
-	
-	/**
-	 * <p>
-	 * {@link List} of selected points using object of {@link SelectionArea} 
-	 * </p>
-	 */
-	private ObservableList<ControlPoint> selectedPoints;
-	
-	/**
-	 * <p>
-	 * active shape that is currently being manipulated.</br>
-	 * </p>
-	 */
-	private PolyShape activeShape;
-	
-	/**
-	 * <p>
-	 * last location of the mouse.</br>
-	 * </p>
-	 */
-	private double startX, startY;
-	
-	/**
-	 * <p>
-	 * Reference to ToolSate so you don't have to call ToolSate.getState() every time.</br>
-	 * </p>
-	 */
-	private ToolState tool;
-	
-	/**
-	 * <p>
-	 * object used to select {@link ControlPoint}'s to be used.
-	 * </p>
-	 */
-	private SelectionArea select;
-	
-	/**
-	 * <p>
-	 * if true, {@link Tools#MOVE} will use {@link MapArea#moveSelected(EventTarget, MouseEvent)},</br> 
-	 * to move selected nodes only.
-	 * </p>
-	 */
-	private boolean SELECTED;
-	
-	/**
-	 * <p>
-	 * local instance of {@link Path} class
-	 * </p>
-	 */
-	private Path path;
-	
-	
-	/**
-	 * <p>
-	 * create a new object and register mouse events.</br>
-	 * </p>
-	 */
-	public MapArea() {
-		super();
-		tool = ToolState.state();
-		children = getChildren();
-		registerMouseEvents();
-		selectedPoints = FXCollections.observableArrayList();
-	}
-	
-	/**
-	 * <p>
-	 * helper function to register all helper functions for mouse events.</br>
-	 * </p>
-	 */
-	public void registerMouseEvents() {
-		addEventHandler(MouseEvent.MOUSE_PRESSED, this::pressClick);
-		addEventHandler(MouseEvent.MOUSE_DRAGGED, this::dragClick);
-		addEventHandler(MouseEvent.MOUSE_RELEASED, this::releaseClick);
-	}
-	
-	/**
-	 * <p>
-	 * this method is called by the JavaFX event system. should not be called manually.</br>
-	 * this function will be called when {@link MouseEvent#MOUSE_PRESSED} is triggered.</br>
-	 * </p>
-	 * @param e - {@link MouseEvent} object
-	 */
-	public void pressClick(MouseEvent e) {
-		e.consume();
-		startX = e.getX();
-		startY = e.getY();
-		switch(activeTool())
-		{
-			case Door:   break; 
-			case Move:   break;
-			case Path:  
-				path = new Path();
-				children.add(path);
-				break;
-			case Select: 
-			
-				select = new SelectionArea();
-				select.start(startX, startY);
-				children.add(select);
-				deselectPoints();
-				break;
-			case Erase:
-				erase(e);
-				break;
-			case Room: 			
-				activeShape = new PolyShape(tool.getOption());
-				children.add(activeShape);
-				break;
-			default:
-				throw new UnsupportedOperationException( "Cursor for Tool \"" + activeTool().name() + "\" is not implemneted");
-		}
-	}
-
-	/**
-	 * <p>
-	 * this method is called by the JavaFX event system. should not be called manually.</br>
-	 * this function will be called when {@link MouseEvent#MOUSE_DRAGGED} is triggered.</br>
-	 * </p>
-	 * @param e - {@link MouseEvent} object
-	 */
-	public void dragClick(MouseEvent e) {
-		e.consume();
-		switch(tool.getTool()) 
-		{
-		case Door:   break;
-		case Erase:  break;
-		
-		case Path:   
-			path.reDraw(startX, startY, e.getX(), e.getY(), true);
-			break;
-		case Select: 
-			select.end(e.getX(), e.getY());
-			break;
-		case Move:
-			move(e, e.getTarget());
-			break;
-		case Room: 
-			activeShape.reDraw(startX, startY, e.getX(), e.getY(), true);	
-			break;
-		default:
-			throw new UnsupportedOperationException( "Cursor for Tool \"" + activeTool().name() + "\" is not implemneted");		
-		}
-	}
-	
-	
-	/**
-	 * <p>
-	 * this method is called by the JavaFX event system. should not be called manually.</br>
-	 * this function will be called when {@link MouseEvent#MOUSE_RELEASED} is triggered.</br>
-	 * </p>
-	 * @param e - {@link MouseEvent} object
-	 */
-	public void releaseClick(MouseEvent e) {
-		e.consume();
-		switch(tool.getTool()) {
-		case Door:   break;
-		case Move:   break;
-		case Path:  
-			setPath(e, e.getTarget());
-			break;
-		case Select: 
-			selectPoints();
-			break;
-		case Erase:  break;
-		case Room: 
-			activeShape.registerControlPoints();
-            children.addAll(activeShape.getControlPoints());
-			break;
-		default:
-			throw new UnsupportedOperationException( "Release for Tool \"" + activeTool().name() + "\" is not implemneted");
-	}
-	activeShape = null;
-		
-	}
-	
-	
-	
-	/**
-	 * <p>
-	 * helper function that returns the current {@link Tools}.</br>
-	 * </p>
-	 * @return current active {@link Tools}
-	 */
-	private Tools activeTool() {
-		return tool.getTool();
-	}
-	
-	/**
-	 * <p>
-	 * removes selected {@link PolyShape}, does nothing if {@link ControlPoint} is clicked.
-	 * </p>
-	 * @param e - {@link MouseEvent}.
-	 */
-	private void erase(MouseEvent e) {
-		if(e.getTarget() instanceof PolyShape) {
-		children.removeAll(((PolyShape) e.getTarget()).getControlPoints());
-		children.remove(e.getTarget());
-		}
-	}
-	
-	/**
-	 * <p>
-	 * Moves {@link Movbable} nodes/
-	 * </p>
-	 * @param e - {@link MouseEvent} click
-	 * @param t - @link {@link MouseEvent#getTarget()}
-	 */
-	private void move(MouseEvent e, EventTarget t) {
-		double dx = e.getX() - startX;
-		double dy = e.getY() - startY;
-		if(SELECTED) moveSelected(t, e);
-		else if(t instanceof Movable) {
-			((Movable)e.getTarget()).translate(dx, dy);
-		}
-		startX = e.getX();
-		startY = e.getY();	
-	}
-	
-	
-	/**
-	 * <p>
-	 * called when {@link Tools#MOVE} is the {@link MapArea#activeTool()},</br>
-	 * and {@link MapArea#selected} is true
-	 * </p>
-	 * @param t - returns {@link EventTarget} of object clicked.
-	 * @param e - {@link MouseEvent}
-	 */
-	private void moveSelected(EventTarget t, MouseEvent e) {
-		if(t instanceof Movable) {
-			for(int i = 0; i < selectedPoints.size(); i ++) {
-				selectedPoints.get(i).translate(e.getX()-startX, e.getY()-startY);
-			}
-		}
-	}
-	
-	/**
-	 * <p>
-	 * adds {@link ControlPoint}'s contained within {@link MapArea#select} to</br> 
-	 * {@link MapArea#selectedPoints} {@link ArrayList} and sets {@link MapArea#selected}</br>
-	 * to true.
-	 * </p>
-	 */
-	private void selectPoints() {
-		for(int i = 0; i < children.size(); i++) {
-			if (select.contains(children.get(i))) {
-				((ControlPoint) children.get(i)).setFill(Color.BLACK);
-				selectedPoints.add((ControlPoint)children.get(i));
-				SELECTED = true;
-			}
-		}
-		select.clear();
-	}
-	
-	/**
-	 * <p>
-	 * removes {@link ControlPoint}'s from {@link MapArea#selectedPoints} and sets</br>
-	 * {@link MapArea#selectedPoints} to false.
-	 * </p>
-	 */
-	private void deselectPoints() {
-		if(SELECTED) {
-			for(int i = 0; i < selectedPoints.size(); i++) 
-				selectedPoints.get(i).setFill(Color.GREY);
-			}
-			SELECTED = false;
-			selectedPoints.clear();
-	}
-	
-	/**
-	 * <p>
-	 * establishes {@link Path}, adds {@link ControlPoint}'s  of path to @{link PolyShape#locks},</br>
-	 * adds Control Points of any {@link PolyShape} that is connected to path.
-	 * </p>
-	 * @param e - MouseEvent release click
-	 * @param t - {@link MouseEvent#getTarget()} of e
-	 */
-	private void setPath(MouseEvent e, EventTarget t) {
-		path.registerControlPoints();
-		children.addAll(path.getControlPoints());
-		if(t instanceof Movable) {
-			path.addLock((Movable)t);
-			path.addLock(getFirstContain(e.getX(), e.getY()));
-			((PolyShape)t).addLock((Movable)path.getControlPoints()[1]);
-			getFirstContain(e.getX(), e.getY()).addLock((Movable)path.getControlPoints()[0]);
-		}
-	
-	}
-
-	
-	/**
-	 * <p>
-	 * if first {@link ControlPoint} of {@link Path} is contained within a {@link PolyShape} </br>
-	 * this method will return said {@link PolyShape}.
-	 * </p>
-	 * @param x - {@link MouseEvent#getX()}
-	 * @param y - {@link MouseEvent#getY()}
-	 * @return
-	 */
-	private PolyShape getFirstContain(double x, double y) {
-		for(Node n : children) 
-		{
-			if (n instanceof PolyShape) 
-				if (n.getBoundsInLocal().contains(x,  y))
-					return (PolyShape)n;
-		}
-			
-		return null;
-	}
-	/**
-	 * <p>
-	 * create a new string that adds all shapes to one string separated by {@link System#lineSeparator()}.</br>
-	 * </p>
-	 * @return string containing all shapes.
-	 */
-	public String convertToString(){
-		//for each node in children
-		return children.stream()
-				//filter out any node that is not PolyShape
-				.filter( PolyShape.class::isInstance)
-				//cast filtered nodes to PolyShapes
-				.map( PolyShape.class::cast)
-				//convert each shape to a string format
-				.map( PolyShape::convertToString)
-				//join all string formats together using new line
-				.collect( Collectors.joining( System.lineSeparator()));
-	}
-	
-	/**
-	 * <p>
-	 * create all shapes that are stored in given map. each key contains one list representing on PolyShape.</br>
-	 * </p>
-	 * @param map - a data set which contains all shapes in this object.
-	 */
-	public void convertFromString( Map< Object, List< String>> map){
-		//for each key inside of map
-		map.keySet().stream()
-		//create a new PolyShape with given list in map
-		.map( k->new PolyShape( map.get( k)))
-		//for each created PolyShape
-		.forEach( s->{
-			children.add( s);
-			children.addAll( s.getControlPoints());
-		});;
-	}
-	
-	/**
-	 * <p>
-	 * call this function to clear all shapes in {@link MapAreaSkeleton}.</br>
-	 * </p>
-	 */
-	public void clearMap(){
-		children.clear();
-	}
-	
-
-
+package mapmaker.map;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.event.EventTarget;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.effect.BlurType;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import mapmaker.map.edit.EditQueue;
+import mapmaker.map.features.Movable;
+import mapmaker.map.geometry.Clipper;
+import mapmaker.map.geometry.Polygons;
+import mapmaker.map.geometry.ShapePicker;
+import mapmaker.map.layers.Layer;
+import mapmaker.map.layers.LayerMemory;
+import mapmaker.map.layout.ForceLayout;
+import mapmaker.map.layout.LayoutAnimator;
+import mapmaker.map.navigation.NavigationGraph;
+import mapmaker.map.navigation.Route;
+import mapmaker.map.query.ShapeIndex;
+import mapmaker.map.query.ShapeQuery;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+import mapmaker.map.statistics.MapStatistics;
+import mapmaker.map.shapes.ShapeRegistry;
+import mapmaker.map.snapshot.ModelSnapshot;
+import mapmaker.map.snapshot.SnapshotTracker;
+import mapmaker.map.shapes.controls.ControlPoint;
+import mapmaker.map.shapes.controls.Path;
+import mapmaker.map.tools.SelectionArea;
+import mapmaker.map.tools.Snapper;
+import mapmaker.map.tools.ToolState;
+import mapmaker.map.tools.Tools;
+import mapmaker.map.tools.Trace;
+import mapmaker.map.validation.IntersectionValidator;
+import mapmaker.map.validation.OverlapValidator;
+
+/**
+ * <p>
+ * create this class once. this class will hold all control behavior related to shapes.</br>
+ * </p>
+ * @author Shahriar (Shawn) Emami
+ * @version Oct 8, 2018
+ */
+public class MapArea extends Pane{
+
+	/**
+	 * <p>
+	 * instead of calling getChildren every time you can call directly the reference of it which is initialized in constructor.</br>
+	 * </p>
+	 */
+	private ObservableList<Node> children;
+	
+	/**
+	 * <p>
+	 * {@link List} of selected points using object of {@link SelectionArea} 
+	 * </p>
+	 */
+	private ObservableList<ControlPoint> selectedPoints;
+	
+	/**
+	 * <p>
+	 * active shape that is currently being manipulated.</br>
+	 * </p>
+	 */
+	private PolyShape activeShape;
+	
+	/**
+	 * <p>
+	 * last location of the mouse.</br>
+	 * </p>
+	 */
+	private double startX, startY;
+	
+	/**
+	 * <p>
+	 * Reference to ToolSate so you don't have to call ToolSate.getState() every time.</br>
+	 * </p>
+	 */
+	private ToolState tool;
+	
+	/**
+	 * <p>
+	 * tool and option read once when a mouse gesture starts, used until its release
+	 * so a tool changed half way through does not mix two tools in one gesture. null between gestures.</br>
+	 * </p>
+	 */
+	private ToolState.Active gesture;
+	
+	/**
+	 * <p>
+	 * object used to select {@link ControlPoint}'s to be used.
+	 * </p>
+	 */
+	private SelectionArea select;
+	
+	/**
+	 * <p>
+	 * area drawn by {@link Tools#Erase} when pressed outside of any shape.</br>
+	 * every {@link PolyShape} inside of it is erased on release. null when not in use.
+	 * </p>
+	 */
+	private SelectionArea eraseArea;
+	
+	/**
+	 * <p>
+	 * pointer trace of a freeform room being drawn by {@link Tools#Room}. null when not in use.
+	 * </p>
+	 */
+	private Trace trace;
+	
+	/**
+	 * <p>
+	 * if true, {@link Tools#MOVE} will use {@link MapArea#moveSelected(EventTarget, MouseEvent)},</br> 
+	 * to move selected nodes only.
+	 * </p>
+	 */
+	private boolean SELECTED;
+	
+	/**
+	 * <p>
+	 * local instance of {@link Path} class
+	 * </p>
+	 */
+	private Path path;
+	
+	/**
+	 * <p>
+	 * rooms at the start of current {@link Path} and under the mouse while it is dragged.</br>
+	 * </p>
+	 */
+	private PolyShape pathStart, pathEnd;
+	
+	/**
+	 * <p>
+	 * finds the topmost room under a point, used to connect {@link Path}'s.
+	 * </p>
+	 */
+	private ShapePicker picker;
+	
+	/**
+	 * <p>
+	 * snaps new and dragged points to nearby vertices, edges or grid.
+	 * </p>
+	 */
+	private Snapper snapper;
+	
+	/**
+	 * <p>
+	 * graph of rooms and paths kept up to date for route queries.
+	 * </p>
+	 */
+	private NavigationGraph navigation;
+	
+	/**
+	 * <p>
+	 * finds overlapping rooms, in live mode rooms changed by the last mouse action are rechecked on release.
+	 * </p>
+	 */
+	private OverlapValidator overlapValidator;
+	
+	/**
+	 * <p>
+	 * finds rooms crossing themselves, rooms changed by the last mouse action are rechecked on release.
+	 * </p>
+	 */
+	private IntersectionValidator intersectionValidator;
+	
+	/**
+	 * <p>
+	 * totals of the map updated on every change.
+	 * </p>
+	 */
+	private MapStatistics statistics;
+	
+	/**
+	 * <p>
+	 * indexes of rooms by sides, style, area and bounds used by {@link MapArea#findAndSelect(ShapeQuery)}.
+	 * </p>
+	 */
+	private ShapeIndex shapeIndex;
+	
+	/**
+	 * <p>
+	 * persistent copy of all shapes used by {@link MapArea#snapshot()}.
+	 * </p>
+	 */
+	private SnapshotTracker snapshots;
+	
+	/**
+	 * <p>
+	 * edits submitted from any thread, applied on the FX thread once per pulse.
+	 * </p>
+	 */
+	private EditQueue edits;
+	
+	/**
+	 * <p>
+	 * shapes currently marked by {@link MapArea#highlight(Collection, Color)}.
+	 * </p>
+	 */
+	private Set<PolyShape> highlighted = new HashSet<>();
+	
+	/**
+	 * <p>
+	 * index of every {@link PolyShape} in {@link MapArea#children} by ID.</br>
+	 * kept in sync by {@link MapArea#childrenChanged(javafx.collections.ListChangeListener.Change)}.
+	 * </p>
+	 */
+	private ShapeRegistry registry;
+	
+	/**
+	 * <p>
+	 * floors of the map. only nodes of visible layers are in {@link MapArea#children},
+	 * nodes of hidden layers are kept detached by their {@link Layer} and layers opened from file
+	 * are read the first time they are shown. nodes added to children without a layer join the active one.
+	 * </p>
+	 */
+	private ObservableList<Layer> layers;
+	private ObjectProperty<Layer> activeLayer;
+	
+	/**
+	 * <p>
+	 * attaches or detaches nodes of a layer when it is shown or hidden, shared by all layers.
+	 * </p>
+	 */
+	private ChangeListener<Boolean> layerVisibility;
+	
+	/**
+	 * <p>
+	 * dehydrates layers which stay hidden, see {@link Layer#dehydrate()}.
+	 * </p>
+	 */
+	private LayerMemory layerMemory;
+	
+	/**
+	 * <p>
+	 * moves rooms placed by the last {@link MapArea#layoutRooms()}, null if they are not moving.
+	 * </p>
+	 */
+	private LayoutAnimator layoutAnimator;
+	
+	/**
+	 * <p>
+	 * ends of paths whose rooms are in a layer which is not loaded or hidden, by ID of path,
+	 * and IDs of paths waiting for each room. only ends not connected yet are kept, the others are {@link ShapeRecord#NONE}.
+	 * a path is connected to its room once the room is added to the map, until then it is saved with the ID of its room.
+	 * </p>
+	 */
+	private Map<Integer, int[]> unresolvedEnds = new HashMap<>();
+	private Map<Integer, List<Integer>> waitingPaths = new HashMap<>();
+	
+	/**
+	 * <p>
+	 * number of times the map was replaced by {@link MapArea#setLayers(List)}.
+	 * batches of an import started before the map was replaced see it changed and stop.
+	 * </p>
+	 */
+	private int generation;
+	
+	/**
+	 * <p>
+	 * header of the section in map files which lists connections of each {@link Path} by shape ID.</br>
+	 * SHAPE_START is the first property of every shape, see {@link PolyShape#convertToString()}.
+	 * </p>
+	 */
+	public static final String ADJACENCY = "adjacency";
+	public static final String SHAPE_START = "ID ";
+	
+	/**
+	 * <p>
+	 * if more than 1/BULK_ERASE_RATIO of children are erased {@link MapArea#eraseShapes(Collection, Node...)}
+	 * rebuilds the list instead of removing nodes one by one.
+	 * </p>
+	 */
+	private static final int BULK_ERASE_RATIO = 4;
+	
+	/**
+	 * <p>
+	 * number of shapes {@link MapArea#addRecords(List, Runnable)} adds per command of {@link MapArea#edits},
+	 * so a large import is spread over many pulses and does not freeze the window.
+	 * </p>
+	 */
+	private static final int IMPORT_BATCH = 250;
+	
+	/**
+	 * <p>
+	 * space {@link MapArea#layoutRooms()} leaves between two rooms connected by a path,
+	 * number of steps it takes and time in milliseconds rooms take to move to their new places.
+	 * </p>
+	 */
+	private static final double LAYOUT_GAP = 40;
+	private static final int LAYOUT_STEPS = 300;
+	private static final long LAYOUT_MILLIS = 600;
+	
+	
+	/**
+	 * <p>
+	 * create a new object and register mouse events.</br>
+	 * </p>
+	 */
+	public MapArea() {
+		super();
+		tool = ToolState.state();
+		children = getChildren();
+		registry = new ShapeRegistry();
+		picker = new ShapePicker(children);
+		snapper = new Snapper();
+		registry.addListener(snapper);
+		navigation = new NavigationGraph();
+		registry.addListener(navigation);
+		overlapValidator = new OverlapValidator();
+		registry.addListener(overlapValidator);
+		intersectionValidator = new IntersectionValidator();
+		registry.addListener(intersectionValidator);
+		statistics = new MapStatistics();
+		registry.addListener(statistics);
+		shapeIndex = new ShapeIndex();
+		registry.addListener(shapeIndex);
+		snapshots = new SnapshotTracker();
+		registry.addListener(snapshots);
+		edits = new EditQueue(this);
+		children.addListener( this::childrenChanged);
+		registerMouseEvents();
+		selectedPoints = FXCollections.observableArrayList();
+		layers = FXCollections.observableArrayList();
+		activeLayer = new SimpleObjectProperty<>(this, "activeLayer");
+		layerVisibility = (o, was, visible) -> layerVisibilityChanged((Layer) ((ReadOnlyProperty<?>) o).getBean(), visible);
+		layerMemory = new LayerMemory();
+		setLayers(Collections.singletonList(new Layer(Layer.DEFAULT_NAME)));
+	}
+	
+	/**
+	 * <p>
+	 * helper function to register all helper functions for mouse events.</br>
+	 * </p>
+	 */
+	public void registerMouseEvents() {
+		addEventHandler(MouseEvent.MOUSE_PRESSED, this::pressClick);
+		addEventHandler(MouseEvent.MOUSE_DRAGGED, this::dragClick);
+		addEventHandler(MouseEvent.MOUSE_RELEASED, this::releaseClick);
+	}
+	
+	/**
+	 * <p>
+	 * this method is called by the JavaFX event system. should not be called manually.</br>
+	 * this function will be called when {@link MouseEvent#MOUSE_PRESSED} is triggered.</br>
+	 * </p>
+	 * @param e - {@link MouseEvent} object
+	 */
+	public void pressClick(MouseEvent e) {
+		e.consume();
+		gesture = tool.getActive();
+		//queued edits wait for the release so they cannot land half way through this gesture
+		edits.hold();
+		startX = e.getX();
+		startY = e.getY();
+		switch(activeTool())
+		{
+			case Door:   break; 
+			case Move:   break;
+			case Path:  
+				snapStart();
+				pathStart = getFirstContain(startX, startY);
+				pathEnd = pathStart;
+				path = new Path();
+				children.add(path);
+				break;
+			case Select: 
+			
+				select = new SelectionArea();
+				select.start(startX, startY);
+				children.add(select);
+				deselectPoints();
+				break;
+			case Erase:
+				erase(e);
+				break;
+			case Room: 			
+				snapStart();
+				activeShape = new PolyShape(gesture.getOption());
+				if(gesture.getOption() == PolyShape.FREEFORM)
+					trace = new Trace(startX, startY);
+				children.add(activeShape);
+				break;
+			default:
+				throw new UnsupportedOperationException( "Cursor for Tool \"" + activeTool().name() + "\" is not implemneted");
+		}
+	}
+
+	/**
+	 * <p>
+	 * this method is called by the JavaFX event system. should not be called manually.</br>
+	 * this function will be called when {@link MouseEvent#MOUSE_DRAGGED} is triggered.</br>
+	 * </p>
+	 * @param e - {@link MouseEvent} object
+	 */
+	public void dragClick(MouseEvent e) {
+		e.consume();
+		switch(activeTool()) 
+		{
+		case Door:   break;
+		case Erase:
+			if(eraseArea != null)
+				eraseArea.end(e.getX(), e.getY());
+			break;
+		
+		case Path:   
+			Point2D end = snapper.snap(e.getX(), e.getY(), path);
+			path.reDraw(startX, startY, end.getX(), end.getY(), true);
+			pathEnd = getFirstContain(end.getX(), end.getY());
+			break;
+		case Select: 
+			select.end(e.getX(), e.getY());
+			break;
+		case Move:
+			move(e, e.getTarget());
+			break;
+		case Room: 
+			if(trace != null) {
+				//trace is not snapped, only its start is
+				if(trace.add(e.getX(), e.getY()))
+					activeShape.getPoints().setAll(trace.preview());
+				break;
+			}
+			Point2D corner = snapper.snap(e.getX(), e.getY(), activeShape);
+			activeShape.reDraw(startX, startY, corner.getX(), corner.getY(), true);	
+			break;
+		default:
+			throw new UnsupportedOperationException( "Cursor for Tool \"" + activeTool().name() + "\" is not implemneted");		
+		}
+	}
+	
+	
+	/**
+	 * <p>
+	 * this method is called by the JavaFX event system. should not be called manually.</br>
+	 * this function will be called when {@link MouseEvent#MOUSE_RELEASED} is triggered.</br>
+	 * </p>
+	 * @param e - {@link MouseEvent} object
+	 */
+	public void releaseClick(MouseEvent e) {
+		e.consume();
+		try {
+			switch(activeTool()) {
+				case Door:   break;
+				case Move:   break;
+				case Path:  
+					setPath(e, e.getTarget());
+					break;
+				case Select: 
+					selectPoints();
+					break;
+				case Erase:
+					eraseArea();
+					break;
+				case Room: 
+					if(trace != null) {
+						activeShape.setVertices(trace.finish());
+						trace = null;
+						//a click or a short scribble does not make a room
+						if(activeShape.getPoints().size() < 6) {
+							children.remove(activeShape);
+							break;
+						}
+					}
+					activeShape.registerControlPoints();
+		            children.addAll(activeShape.getControlPoints());
+					break;
+				default:
+					throw new UnsupportedOperationException( "Release for Tool \"" + activeTool().name() + "\" is not implemneted");
+			}
+			activeShape = null;
+			recheckWarnings();
+		} finally {
+			gesture = null;
+			edits.release();
+		}
+	}
+	
+	
+	
+	/**
+	 * <p>
+	 * keep {@link MapArea#registry} in sync with {@link MapArea#children}.</br>
+	 * any {@link PolyShape} added or removed is registered or unregistered by its ID.</br>
+	 * </p>
+	 * @param c - {@link ListChangeListener.Change} of children
+	 */
+	private void childrenChanged( ListChangeListener.Change< ? extends Node> c) {
+		while( c.next()) {
+			if( c.wasPermutated())
+				continue;
+			for( Node n : c.getRemoved())
+				if( n instanceof PolyShape)
+					registry.unregister( (PolyShape) n);
+			for( Node n : c.getAddedSubList()) {
+				if( Layer.of( n) == null)
+					activeLayer.get().claim( n);
+				if( n instanceof PolyShape)
+					registry.register( (PolyShape) n);
+			}
+			//rooms and their paths may come in any order, so ends are resolved once all are registered
+			if( !unresolvedEnds.isEmpty())
+				for( Node n : c.getAddedSubList())
+					if( n instanceof PolyShape)
+						resolveEnds( (PolyShape) n);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * connect paths waiting for a shape just added, or a path just added, to rooms which are in the map now.
+	 * </p>
+	 * @param shape - shape added to the map
+	 */
+	private void resolveEnds( PolyShape shape) {
+		List<Integer> paths = waitingPaths.get( shape.getID());
+		if( paths != null) {
+			paths.removeIf( id -> resolveEnds( id, shape.getID()));
+			if( paths.isEmpty())
+				waitingPaths.remove( shape.getID());
+		}
+		if( shape instanceof Path)
+			resolveEnds( shape.getID(), ShapeRecord.NONE);
+	}
+	
+	/**
+	 * <p>
+	 * connect ends of a registered path to their rooms if they are registered and the end is still free.
+	 * </p>
+	 * @param id - ID of path
+	 * @param room - ID of a room the path is waiting for or {@link ShapeRecord#NONE}
+	 * @return true if path no longer waits for room
+	 */
+	private boolean resolveEnds( int id, int room) {
+		int[] ends = unresolvedEnds.get( id);
+		if( ends == null)
+			return true;
+		PolyShape shape = registry.get( id);
+		if( !( shape instanceof Path))
+			return false;
+		Path path = (Path) shape;
+		PolyShape first = path.getFirst(), second = path.getSecond();
+		for( int i = 0; i < ends.length; i++) {
+			PolyShape end = ends[i] == ShapeRecord.NONE ? null : registry.get( ends[i]);
+			if( end == null || end instanceof Path)
+				continue;
+			//an end connected since is left as it is
+			if( i == 0 && first == null)
+				first = end;
+			else if( i == 1 && second == null)
+				second = end;
+			ends[i] = ShapeRecord.NONE;
+		}
+		path.reconnect( first, second);
+		if( ends[0] == ShapeRecord.NONE && ends[1] == ShapeRecord.NONE)
+			unresolvedEnds.remove( id);
+		return room == ShapeRecord.NONE || ( ends[0] != room && ends[1] != room);
+	}
+	
+	/**
+	 * @return ID of the room at given end of a path, connected or waiting to be
+	 */
+	private int endOf( int path, PolyShape connected, int end, int index) {
+		if( connected != null)
+			return connected.getID();
+		if( end != ShapeRecord.NONE)
+			return end;
+		int[] ends = unresolvedEnds.get( path);
+		return ends == null ? ShapeRecord.NONE : ends[index];
+	}
+	
+	/**
+	 * @return layers of this map in order, to be changed only through this map
+	 */
+	public ObservableList<Layer> getLayers() {
+		return FXCollections.unmodifiableObservableList(layers);
+	}
+	
+	/**
+	 * @return property of the layer new shapes are added to
+	 */
+	public ReadOnlyObjectProperty<Layer> activeLayerProperty() {
+		return activeLayer;
+	}
+	
+	public Layer getActiveLayer() {
+		return activeLayer.get();
+	}
+	
+	/**
+	 * <p>
+	 * make given layer the one new shapes are added to and show it.
+	 * </p>
+	 * @param layer - one of {@link MapArea#getLayers()}
+	 */
+	public void setActiveLayer(Layer layer) {
+		activeLayer.set(layer);
+		layer.setVisible(true);
+	}
+	
+	/**
+	 * <p>
+	 * add a new empty layer on top of the others and make it active.
+	 * </p>
+	 * @param name - name of layer
+	 * @return new layer
+	 */
+	public Layer addLayer(String name) {
+		Layer layer = new Layer(name);
+		layer.visibleProperty().addListener(layerVisibility);
+		layers.add(layer);
+		setActiveLayer(layer);
+		return layer;
+	}
+	
+	/**
+	 * <p>
+	 * drop every shape and layer of this map and use given layers instead.
+	 * only visible layers are attached, reading them from disk if they are not loaded.
+	 * the first visible layer becomes active, or the first layer if none is visible.
+	 * </p>
+	 * @param list - new layers, at least one
+	 */
+	public void setLayers(List<Layer> list) {
+		layers.forEach(l -> {
+			l.visibleProperty().removeListener(layerVisibility);
+			layerMemory.cancel(l);
+		});
+		generation++;
+		deselectPoints();
+		clearHighlight();
+		children.clear();
+		unresolvedEnds.clear();
+		waitingPaths.clear();
+		layers.setAll(list);
+		activeLayer.set(list.stream().filter(Layer::isVisible).findFirst().orElse(list.get(0)));
+		for(Layer layer : list) {
+			layer.visibleProperty().addListener(layerVisibility);
+			if(layer.isVisible())
+				attach(layer);
+		}
+		activeLayer.get().setVisible(true);
+	}
+	
+	/**
+	 * <p>
+	 * attach or detach the nodes of a layer whose visibility changed.
+	 * </p>
+	 */
+	private void layerVisibilityChanged(Layer layer, boolean visible) {
+		deselectPoints();
+		clearHighlight();
+		if(visible) {
+			layerMemory.cancel(layer);
+			attach(layer);
+			return;
+		}
+		Set<Node> removal = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<Node> nodes = new ArrayList<>();
+		for(Node n : children) {
+			if(Layer.of(n) == layer) {
+				removal.add(n);
+				nodes.add(n);
+			}
+		}
+		removeChildren(removal);
+		//shapes of a hidden layer may be dehydrated and come back as new instances, nothing here may keep them
+		if(removal.contains(pathStart))
+			pathStart = null;
+		if(removal.contains(pathEnd))
+			pathEnd = null;
+		layer.detach(nodes);
+		layerMemory.schedule(layer);
+	}
+	
+	/**
+	 * @return {@link LayerMemory} of this map, to dehydrate hidden layers now or report their memory
+	 */
+	public LayerMemory getLayerMemory() {
+		return layerMemory;
+	}
+	
+	/**
+	 * <p>
+	 * add nodes of a layer to the map, a layer which is not loaded is read from disk first.
+	 * if it cannot be read or parsed it is hidden again and stays not loaded, so saving copies its text as it is.
+	 * </p>
+	 */
+	private void attach(Layer layer) {
+		if(layer.isLoaded()) {
+			children.addAll(layer.attach());
+			return;
+		}
+		try {
+			layer.load(lines -> convertFromString(lines, layer));
+		} catch(IOException | RuntimeException e) {
+			e.printStackTrace();
+			layer.setVisible(false);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * add shapes of given lines to a loaded and visible layer, for layers read in parts.
+	 * paths are connected to the rooms of the map with the IDs in the lines, the others stay free.
+	 * </p>
+	 * @param lines - lines in the format of {@link MapArea#convertToString(Layer)}
+	 * @param layer - one of {@link MapArea#getLayers()}
+	 */
+	public void addLines(List<String> lines, Layer layer) {
+		convertFromString(lines, layer);
+	}
+	
+	/**
+	 * <p>
+	 * returns the {@link ShapeRegistry} of this map which can find any {@link PolyShape} by its ID.
+	 * </p>
+	 * @return registry of all shapes in this map
+	 */
+	public ShapeRegistry getRegistry() {
+		return registry;
+	}
+	
+	/**
+	 * <p>
+	 * returns the {@link EditQueue} other threads must use to change this map.
+	 * </p>
+	 * @return queue of edits of this map
+	 */
+	public EditQueue getEditQueue() {
+		return edits;
+	}
+	
+	/**
+	 * <p>
+	 * snap {@link MapArea#startX} and {@link MapArea#startY} to nearby geometry or grid.</br>
+	 * </p>
+	 */
+	private void snapStart() {
+		Point2D p = snapper.snap(startX, startY, null);
+		startX = p.getX();
+		startY = p.getY();
+	}
+	
+	/**
+	 * <p>
+	 * helper function that returns the {@link Tools} of the gesture under way, or the current one between gestures.</br>
+	 * </p>
+	 * @return current active {@link Tools}
+	 */
+	private Tools activeTool() {
+		return gesture != null ? gesture.getTool() : tool.getTool();
+	}
+	
+	/**
+	 * <p>
+	 * removes clicked {@link PolyShape}, does nothing if {@link ControlPoint} is clicked.</br>
+	 * if nothing is clicked start {@link MapArea#eraseArea} to erase many shapes at once.
+	 * </p>
+	 * @param e - {@link MouseEvent}.
+	 */
+	private void erase(MouseEvent e) {
+		if(e.getTarget() instanceof PolyShape) {
+			eraseShapes(Collections.singleton((PolyShape) e.getTarget()));
+		}
+		else if(!(e.getTarget() instanceof ControlPoint)) {
+			eraseArea = new SelectionArea();
+			eraseArea.start(startX, startY);
+			children.add(eraseArea);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * erase every {@link PolyShape} fully inside of {@link MapArea#eraseArea} then remove the area itself.</br>
+	 * to be called in {@link MouseEvent#MOUSE_RELEASED} stage.
+	 * </p>
+	 */
+	private void eraseArea() {
+		if(eraseArea == null)
+			return;
+		Bounds area = eraseArea.getBoundsInParent();
+		List<PolyShape> inside = new ArrayList<>();
+		registry.forEach(s -> {
+			if(area.contains(s.getBoundsInParent()))
+				inside.add(s);
+		});
+		eraseShapes(inside, eraseArea);
+		eraseArea = null;
+	}
+	
+	/**
+	 * <p>
+	 * erase every {@link PolyShape} which has at least one of its {@link ControlPoint}'s in {@link MapArea#selectedPoints}.
+	 * </p>
+	 */
+	public void eraseSelected() {
+		eraseShapes(getSelectedShapes());
+		deselectPoints();
+	}
+	
+	/**
+	 * <p>
+	 * replace selected rooms with the result of a {@link Clipper.Operation}.
+	 * union merges all selected rooms and intersection keeps the area they all share, both take the style of the lowest room.
+	 * difference cuts the top most selected room out of every other selected room, each keeping its own style.</br>
+	 * vertices are copied here and the clipping runs in the returned {@link Task}, union of many rooms runs in parallel.
+	 * when the task succeeds the selected rooms, their paths and the cutting room are erased and the results added
+	 * in one change of {@link MapArea#children}.
+	 * </p>
+	 * @param op - {@link Clipper.Operation} to apply
+	 * @return {@link Task} to run on a background thread, null if less than 2 rooms are selected
+	 */
+	public Task<List<List<double[]>>> combineSelected(Clipper.Operation op) {
+		List<PolyShape> rooms = getSelectedShapes();
+		rooms.removeIf(Path.class::isInstance);
+		if(rooms.size() < 2)
+			return null;
+		//sort by drawing order, last one is on top
+		Map<Node, Integer> order = new IdentityHashMap<>();
+		for(int i = 0; i < children.size(); i++)
+			order.put(children.get(i), i);
+		rooms.sort((a, b) -> order.get(a) - order.get(b));
+		List<List<double[]>> polygons = new ArrayList<>(rooms.size());
+		for(PolyShape room : rooms)
+			polygons.add(Clipper.polygon(Polygons.toArray(room.getPoints())));
+		//style of result i is taken from sources.get(i)
+		List<PolyShape> sources = op == Clipper.Operation.DIFFERENCE ? rooms.subList(0, rooms.size() - 1) : rooms.subList(0, 1);
+		Task<List<List<double[]>>> task = new Task<List<List<double[]>>>() {
+			@Override
+			protected List<List<double[]>> call() throws Exception {
+				List<List<double[]>> results = new ArrayList<>();
+				switch(op) {
+				case UNION:
+					results.add(Clipper.unionAll(polygons));
+					break;
+				case INTERSECTION:
+					List<double[]> common = polygons.get(0);
+					for(int i = 1; i < polygons.size(); i++)
+						common = Clipper.clip(common, polygons.get(i), op);
+					results.add(common);
+					break;
+				case DIFFERENCE:
+					List<double[]> cutter = polygons.get(polygons.size() - 1);
+					for(int i = 0; i < sources.size(); i++)
+						results.add(Clipper.clip(polygons.get(i), cutter, op));
+					break;
+				}
+				for(int i = 0; i < results.size(); i++)
+					results.set(i, Clipper.toSimple(results.get(i)));
+				return results;
+			}
+		};
+		task.setOnSucceeded(e -> replaceShapes(rooms, sources, task.getValue()));
+		return task;
+	}
+	
+	/**
+	 * <p>
+	 * erase old shapes and add new rooms created from given vertices.
+	 * </p>
+	 * @param old - shapes to erase
+	 * @param sources - shapes whose style is given to new rooms
+	 * @param results - for each source, vertices of its new rooms
+	 */
+	private void replaceShapes(List<PolyShape> old, List<PolyShape> sources, List<List<double[]>> results) {
+		List<Node> added = new ArrayList<>();
+		for(int i = 0; i < sources.size(); i++) {
+			PolyShape source = sources.get(i);
+			for(double[] points : results.get(i)) {
+				PolyShape room = new PolyShape(PolyShape.FREEFORM);
+				room.setVertices(points);
+				room.setFill(source.getFill());
+				room.setStroke(source.getStroke());
+				room.setStrokeWidth(source.getStrokeWidth());
+				room.registerControlPoints();
+				added.add(room);
+				added.addAll(Arrays.asList(room.getControlPoints()));
+			}
+		}
+		deselectPoints();
+		eraseShapes(old);
+		children.addAll(added);
+	}
+	
+	/**
+	 * <p>
+	 * place rooms so those connected by a {@link Path} are close and the others are apart,
+	 * with a {@link ForceLayout} on a background thread. rooms are then moved to their places by a {@link LayoutAnimator}
+	 * and their paths follow them.</br>
+	 * selected rooms are placed if there are at least 2 of them, otherwise all rooms of visible layers.
+	 * </p>
+	 * @return {@link Task} to run in background or null if there are fewer than 2 rooms
+	 */
+	public Task<double[]> layoutRooms() {
+		//rooms start from the end of a layout still moving, not from where it left them this frame
+		if(layoutAnimator != null) {
+			layoutAnimator.finish();
+			layoutAnimator = null;
+		}
+		List<PolyShape> rooms = getSelectedShapes();
+		rooms.removeIf(Path.class::isInstance);
+		if(rooms.size() < 2) {
+			rooms.clear();
+			registry.forEach(s -> {
+				if(!(s instanceof Path))
+					rooms.add(s);
+			});
+		}
+		if(rooms.size() < 2)
+			return null;
+		int n = rooms.size();
+		Map<PolyShape, Integer> index = new IdentityHashMap<>(n * 2);
+		double[] x = new double[n], y = new double[n], radius = new double[n];
+		for(int i = 0; i < n; i++) {
+			PolyShape room = rooms.get(i);
+			index.put(room, i);
+			double[] center = Polygons.centroid(room.getPoints());
+			Bounds bounds = room.getBoundsInLocal();
+			x[i] = center[0];
+			y[i] = center[1];
+			radius[i] = Math.hypot(bounds.getWidth(), bounds.getHeight()) / 2;
+		}
+		List<int[]> links = new ArrayList<>();
+		registry.forEach(s -> {
+			if(s instanceof Path) {
+				Integer a = index.get(((Path) s).getFirst()), b = index.get(((Path) s).getSecond());
+				if(a != null && b != null && !a.equals(b))
+					links.add(new int[] { a, b });
+			}
+		});
+		int[] a = new int[links.size()], b = new int[links.size()];
+		for(int i = 0; i < a.length; i++) {
+			a[i] = links.get(i)[0];
+			b[i] = links.get(i)[1];
+		}
+		Task<double[]> task = new Task<double[]>() {
+			@Override
+			protected double[] call() throws Exception {
+				return new ForceLayout(x, y, radius, a, b, LAYOUT_GAP).run(LAYOUT_STEPS);
+			}
+		};
+		task.setOnSucceeded(e -> {
+			if(layoutAnimator != null)
+				layoutAnimator.finish();
+			//places are absolute, rooms erased or moved while the layout ran keep where they are now
+			double[] places = task.getValue();
+			List<PolyShape> moved = new ArrayList<>(n);
+			double[] moves = new double[2 * n];
+			for(int i = 0; i < n; i++) {
+				PolyShape room = rooms.get(i);
+				if(registry.get(room.getID()) != room)
+					continue;
+				double[] center = Polygons.centroid(room.getPoints());
+				if(center[0] != x[i] || center[1] != y[i])
+					continue;
+				moves[2 * moved.size()] = places[2 * i] - center[0];
+				moves[2 * moved.size() + 1] = places[2 * i + 1] - center[1];
+				moved.add(room);
+			}
+			if(moved.isEmpty())
+				return;
+			layoutAnimator = new LayoutAnimator(moved, moves, LAYOUT_MILLIS, room -> registry.get(room.getID()) == room, () -> {
+				layoutAnimator = null;
+				recheckWarnings();
+			});
+			layoutAnimator.start();
+		});
+		return task;
+	}
+	
+	/**
+	 * <p>
+	 * replace current selection with all {@link ControlPoint}'s of rooms matching a query.
+	 * </p>
+	 * @param query - {@link ShapeQuery} to run
+	 * @return matching rooms
+	 */
+	public List<PolyShape> findAndSelect(ShapeQuery query) {
+		List<PolyShape> found = shapeIndex.find(query);
+		deselectPoints();
+		for(PolyShape s : found) {
+			//room still being drawn has no control points yet
+			if(s.getControlPoints() == null)
+				continue;
+			for(Node n : s.getControlPoints()) {
+				((ControlPoint) n).setFill(Color.BLACK);
+				selectedPoints.add((ControlPoint) n);
+			}
+		}
+		SELECTED = !selectedPoints.isEmpty();
+		return found;
+	}
+	
+	/**
+	 * <p>
+	 * find every {@link PolyShape} which has at least one of its {@link ControlPoint}'s in {@link MapArea#selectedPoints}.
+	 * </p>
+	 * @return list of selected shapes
+	 */
+	public List<PolyShape> getSelectedShapes() {
+		Set<Node> selected = new HashSet<>(selectedPoints);
+		List<PolyShape> owners = new ArrayList<>();
+		registry.forEach(s -> {
+			for(Node n : controlPointsOf(s)) {
+				if(selected.contains(n)) {
+					owners.add(s);
+					break;
+				}
+			}
+		});
+		return owners;
+	}
+	
+	/**
+	 * <p>
+	 * find the shortest route between the 2 selected rooms and highlight it.
+	 * </p>
+	 * @return {@link Route} between selected rooms or null if exactly 2 rooms are not selected or they are not connected
+	 */
+	public Route routeSelected() {
+		List<PolyShape> rooms = getSelectedShapes();
+		rooms.removeIf(Path.class::isInstance);
+		clearHighlight();
+		if(rooms.size() != 2)
+			return null;
+		Route route = navigation.route(rooms.get(0), rooms.get(1));
+		if(route != null) {
+			highlight(route.getRooms(), Color.DODGERBLUE);
+			highlight(route.getPaths(), Color.DODGERBLUE);
+		}
+		return route;
+	}
+	
+	/**
+	 * <p>
+	 * mark given shapes with a glow of given {@link Color}. the glow is not saved with the shape.
+	 * </p>
+	 * @param shapes - shapes to mark
+	 * @param color - {@link Color} of the glow
+	 */
+	public void highlight(Collection<? extends PolyShape> shapes, Color color) {
+		for(PolyShape s : shapes) {
+			s.setEffect(new DropShadow(BlurType.GAUSSIAN, color, 15, .6, 0, 0));
+			highlighted.add(s);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * remove glow of every shape marked by {@link MapArea#highlight(Collection, Color)}.
+	 * </p>
+	 */
+	public void clearHighlight() {
+		for(PolyShape s : highlighted)
+			s.setEffect(null);
+		highlighted.clear();
+	}
+	
+	/**
+	 * <p>
+	 * replace current highlights with a red glow on rooms overlapping other rooms
+	 * and an orange glow on rooms crossing themselves.
+	 * </p>
+	 */
+	public void showWarnings() {
+		clearHighlight();
+		highlight(overlapValidator.getOffenders(), Color.RED);
+		highlight(intersectionValidator.getInvalid(), Color.ORANGE);
+	}
+	
+	/**
+	 * <p>
+	 * recheck rooms changed since the last check and show warnings if something changed.
+	 * highlights are only replaced if something changed so a shown route stays visible.
+	 * if most rooms changed, like after {@link MapArea#layoutRooms()}, overlaps are found by a full scan
+	 * on a background thread and shown once it is done, instead of comparing rooms on the FX thread.
+	 * </p>
+	 */
+	private void recheckWarnings() {
+		boolean changed = intersectionValidator.recheck();
+		if(overlapValidator.isLive()) {
+			if(overlapValidator.needsScan()) {
+				Callable<List<PolyShape[]>> scan = overlapValidator.scan(registry.shapes());
+				Task<List<PolyShape[]>> task = new Task<List<PolyShape[]>>() {
+					@Override
+					protected List<PolyShape[]> call() throws Exception {
+						return scan.call();
+					}
+				};
+				task.setOnSucceeded(e -> {
+					overlapValidator.apply(task.getValue());
+					showWarnings();
+				});
+				task.setOnFailed(e -> task.getException().printStackTrace());
+				Thread thread = new Thread(task, "overlap scan");
+				thread.setDaemon(true);
+				thread.start();
+			} else {
+				overlapValidator.recheck();
+				changed = true;
+			}
+		}
+		if(changed)
+			showWarnings();
+	}
+	
+	/**
+	 * @return {@link OverlapValidator} of this map
+	 */
+	public OverlapValidator getOverlapValidator() {
+		return overlapValidator;
+	}
+	
+	/**
+	 * @return {@link ShapeIndex} of this map
+	 */
+	public ShapeIndex getShapeIndex() {
+		return shapeIndex;
+	}
+	
+	/**
+	 * @return {@link MapStatistics} of this map
+	 */
+	public MapStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * @return {@link IntersectionValidator} of this map
+	 */
+	public IntersectionValidator getIntersectionValidator() {
+		return intersectionValidator;
+	}
+	
+	/**
+	 * <p>
+	 * returns the {@link NavigationGraph} of this map which can find routes between rooms.
+	 * </p>
+	 * @return navigation graph of this map
+	 */
+	public NavigationGraph getNavigation() {
+		return navigation;
+	}
+	
+	/**
+	 * <p>
+	 * erase all given shapes and their {@link ControlPoint}'s with a single change to {@link MapArea#children}.</br>
+	 * any {@link Path} connected to an erased shape is erased as well and its {@link ControlPoint}'s
+	 * are removed from locks of the shape at its other end, so no dangling locks are left.</br>
+	 * all removals are collected in a {@link HashSet} first so the final removal is one linear pass.
+	 * </p>
+	 * @param shapes - {@link PolyShape}'s to erase
+	 * @param extra - any other nodes to remove in the same change, like {@link MapArea#eraseArea}
+	 */
+	public void eraseShapes(Collection<PolyShape> shapes, Node... extra) {
+		Set<PolyShape> erased = new HashSet<>(shapes);
+		//one pass over all paths to find the ones left without an end
+		registry.forEach(s -> {
+			if(s instanceof Path) {
+				Path p = (Path) s;
+				if(erased.contains(p.getFirst()) || erased.contains(p.getSecond()))
+					erased.add(p);
+			}
+		});
+		Set<Node> removal = new HashSet<>(erased);
+		for(PolyShape s : erased) {
+			List<Node> points = controlPointsOf(s);
+			removal.addAll(points);
+			if(s instanceof Path) {
+				Path p = (Path) s;
+				if(p.getFirst() != null && !erased.contains(p.getFirst()))
+					p.getFirst().getLocks().removeAll(points);
+				if(p.getSecond() != null && !erased.contains(p.getSecond()))
+					p.getSecond().getLocks().removeAll(points);
+			}
+		}
+		removal.addAll(Arrays.asList(extra));
+		//erased paths wait for no room
+		for(PolyShape s : erased)
+			if(s instanceof Path)
+				unresolvedEnds.remove(s.getID());
+		selectedPoints.removeIf(removal::contains);
+		removeChildren(removal);
+	}
+	
+	/**
+	 * <p>
+	 * remove given nodes from {@link MapArea#children} in one change.
+	 * </p>
+	 * @param removal - nodes to remove, a set so each lookup is O(1)
+	 */
+	private void removeChildren(Set<Node> removal) {
+		//removeAll shifts the backing list once per removed node, when erasing a large
+		//part of the map it is cheaper to replace children with the survivors in one change
+		if(removal.size() * BULK_ERASE_RATIO < children.size()) {
+			children.removeAll(removal);
+		}
+		else {
+			List<Node> survivors = new ArrayList<>(children.size());
+			for(Node n : children)
+				if(!removal.contains(n))
+					survivors.add(n);
+			children.setAll(survivors);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * {@link PolyShape#getControlPoints()} as a list, empty if shape is still being drawn.
+	 * </p>
+	 * @param s - {@link PolyShape}
+	 * @return list of control points
+	 */
+	private List<Node> controlPointsOf(PolyShape s) {
+		Node[] points = s.getControlPoints();
+		return points == null ? Collections.emptyList() : Arrays.asList(points);
+	}
+	
+	/**
+	 * <p>
+	 * Moves {@link Movbable} nodes/
+	 * </p>
+	 * @param e - {@link MouseEvent} click
+	 * @param t - @link {@link MouseEvent#getTarget()}
+	 */
+	private void move(MouseEvent e, EventTarget t) {
+		double dx = e.getX() - startX;
+		double dy = e.getY() - startY;
+		if(SELECTED) moveSelected(t, e);
+		else if(t instanceof ControlPoint) {
+			ControlPoint point = (ControlPoint) t;
+			Point2D p = snapper.snap(point, e.getX(), e.getY());
+			point.translate(p.getX() - point.getCenterX(), p.getY() - point.getCenterY());
+		}
+		else if(t instanceof Movable) {
+			((Movable)e.getTarget()).translate(dx, dy);
+		}
+		startX = e.getX();
+		startY = e.getY();	
+	}
+	
+	
+	/**
+	 * <p>
+	 * called when {@link Tools#MOVE} is the {@link MapArea#activeTool()},</br>
+	 * and {@link MapArea#selected} is true
+	 * </p>
+	 * @param t - returns {@link EventTarget} of object clicked.
+	 * @param e - {@link MouseEvent}
+	 */
+	private void moveSelected(EventTarget t, MouseEvent e) {
+		if(t instanceof Movable) {
+			for(int i = 0; i < selectedPoints.size(); i ++) {
+				selectedPoints.get(i).translate(e.getX()-startX, e.getY()-startY);
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 * adds {@link ControlPoint}'s contained within {@link MapArea#select} to</br> 
+	 * {@link MapArea#selectedPoints} {@link ArrayList} and sets {@link MapArea#selected}</br>
+	 * to true.
+	 * </p>
+	 */
+	private void selectPoints() {
+		for(int i = 0; i < children.size(); i++) {
+			if (select.contains(children.get(i))) {
+				((ControlPoint) children.get(i)).setFill(Color.BLACK);
+				selectedPoints.add((ControlPoint)children.get(i));
+				SELECTED = true;
+			}
+		}
+		select.clear();
+	}
+	
+	/**
+	 * <p>
+	 * removes {@link ControlPoint}'s from {@link MapArea#selectedPoints} and sets</br>
+	 * {@link MapArea#selectedPoints} to false.
+	 * </p>
+	 */
+	private void deselectPoints() {
+		if(SELECTED) {
+			for(int i = 0; i < selectedPoints.size(); i++) 
+				selectedPoints.get(i).setFill(Color.GREY);
+			}
+			SELECTED = false;
+			selectedPoints.clear();
+	}
+	
+	/**
+	 * <p>
+	 * establishes {@link Path}, adds {@link ControlPoint}'s  of path to @{link PolyShape#locks},</br>
+	 * adds Control Points of any {@link PolyShape} that is connected to path.
+	 * </p>
+	 * @param e - MouseEvent release click
+	 * @param t - {@link MouseEvent#getTarget()} of e
+	 */
+	private void setPath(MouseEvent e, EventTarget t) {
+		//a click without drag has no points to connect
+		if(path.getPoints().isEmpty()) {
+			children.remove(path);
+			pathStart = pathEnd = null;
+			return;
+		}
+		path.registerControlPoints();
+		children.addAll(path.getControlPoints());
+		//control point 0 is where the drag ended and 1 is where it started
+		path.connect(pathEnd, pathStart);
+		pathStart = pathEnd = null;
+	}
+
+	
+	/**
+	 * <p>
+	 * if given point is contained within a {@link PolyShape} this method will return said {@link PolyShape}.</br>
+	 * the point must be inside of the polygon, not just its bounds, and the topmost room wins.
+	 * other {@link Path}'s are ignored. see {@link ShapePicker}.
+	 * </p>
+	 * @param x - {@link MouseEvent#getX()}
+	 * @param y - {@link MouseEvent#getY()}
+	 * @return topmost {@link PolyShape} containing the point or null
+	 */
+	private PolyShape getFirstContain(double x, double y) {
+		return picker.pick(x, y);
+	}
+	/**
+	 * <p>
+	 * create a new string that adds all shapes of a loaded layer to one string separated by {@link System#lineSeparator()}.</br>
+	 * shapes are followed by an {@link MapArea#ADJACENCY} section with one line per {@link Path}:</br>
+	 * <code>path pathID firstID secondID</code>, where -1 means that end is not connected.</br>
+	 * </p>
+	 * @param layer - one of {@link MapArea#getLayers()}, visible or hidden
+	 * @return string containing all shapes of layer.
+	 */
+	public String convertToString( Layer layer){
+		String newLine = System.lineSeparator();
+		StringBuilder builder = new StringBuilder();
+		//shapes left in the map while their layer is hidden are saved with it too
+		List< Node> nodes = new ArrayList<>( layer.getDetached());
+		children.stream().filter( n -> Layer.of( n) == layer).forEach( nodes::add);
+		List< ShapeRecord> records = layer.getDehydrated();
+		//dehydrated shapes first, they are restored before the nodes kept with them
+		records.forEach( r -> builder.append( PolyShape.convertToString( r)).append( newLine));
+		//for each node in layer
+		builder.append( nodes.stream()
+				//filter out any node that is not PolyShape
+				.filter( PolyShape.class::isInstance)
+				//cast filtered nodes to PolyShapes
+				.map( PolyShape.class::cast)
+				//convert each shape to a string format
+				.map( PolyShape::convertToString)
+				//join all string formats together using new line
+				.collect( Collectors.joining( newLine)));
+		builder.append( newLine).append( ADJACENCY);
+		//ends waiting for rooms of layers not in the map are saved as the rooms they wait for
+		records.stream()
+				.filter( ShapeRecord::isPath)
+				.forEach( r -> builder.append( newLine).append( PolyShape.PATH_TYPE)
+						.append( " ").append( r.getID())
+						.append( " ").append( endOf( r.getID(), null, r.getFirst(), 0))
+						.append( " ").append( endOf( r.getID(), null, r.getSecond(), 1)));
+		nodes.stream()
+				.filter( Path.class::isInstance)
+				.map( Path.class::cast)
+				.forEach( p -> builder.append( newLine).append( PolyShape.PATH_TYPE)
+						.append( " ").append( p.getID())
+						.append( " ").append( endOf( p.getID(), p.getFirst(), ShapeRecord.NONE, 0))
+						.append( " ").append( endOf( p.getID(), p.getSecond(), ShapeRecord.NONE, 1)));
+		return builder.toString();
+	}
+	
+	/**
+	 * <p>
+	 * immutable view of every shape of visible layers so it can be read on a background thread.
+	 * only shapes edited since the last snapshot are copied, see {@link SnapshotTracker}.</br>
+	 * </p>
+	 * @return snapshot of all shapes, {@link ModelSnapshot#records()} lists them in drawing order.
+	 */
+	public ModelSnapshot snapshot(){
+		return snapshots.snapshot();
+	}
+	
+	/**
+	 * <p>
+	 * create all shapes that are stored in given lines, created by {@link MapArea#convertToString(Layer)}.</br>
+	 * every shape starts with its ID line. once all shapes are added, {@link Path} connections
+	 * in {@link MapArea#ADJACENCY} section are restored in one pass using {@link MapArea#registry}.
+	 * a path whose room is not in the map waits for it, see {@link MapArea#unresolvedEnds}.
+	 * all lines are parsed before anything is added, so broken lines add nothing.</br>
+	 * </p>
+	 * @param lines - all lines of one layer.
+	 * @param layer - layer the shapes belong to
+	 */
+	private void convertFromString( List< String> lines, Layer layer){
+		List< PolyShape> shapes = new ArrayList<>();
+		List< String> block = new ArrayList<>();
+		int adjacency = lines.size();
+		for( int i = 0; i < lines.size(); i++){
+			String line = lines.get( i);
+			if( line.isEmpty())
+				continue;
+			if( line.equals( ADJACENCY)){
+				adjacency = i + 1;
+				break;
+			}
+			//a new ID line means the previous shape is complete
+			if( line.startsWith( SHAPE_START) && !block.isEmpty()){
+				shapes.add( createShape( block));
+				block = new ArrayList<>();
+			}
+			block.add( line);
+		}
+		if( !block.isEmpty())
+			shapes.add( createShape( block));
+		List< int[]> links = new ArrayList<>();
+		for( int i = adjacency; i < lines.size(); i++){
+			String[] tokens = lines.get( i).split( " ");
+			if( PolyShape.PATH_TYPE.equals( tokens[0]))
+				links.add( new int[] { Integer.parseInt( tokens[1]), Integer.parseInt( tokens[2]), Integer.parseInt( tokens[3]) });
+		}
+		
+		List< Node> nodes = new ArrayList<>();
+		for( PolyShape s : shapes){
+			nodes.add( s);
+			nodes.addAll( Arrays.asList( s.getControlPoints()));
+		}
+		nodes.forEach( layer::claim);
+		children.addAll( nodes);
+		
+		for( int[] link : links){
+			PolyShape p = registry.get( link[0]);
+			if( !( p instanceof Path))
+				continue;
+			PolyShape first = registry.get( link[1]), second = registry.get( link[2]);
+			((Path) p).connect( first, second);
+			int[] ends = { first == null ? link[1] : ShapeRecord.NONE, second == null ? link[2] : ShapeRecord.NONE };
+			if( ends[0] == ShapeRecord.NONE && ends[1] == ShapeRecord.NONE)
+				continue;
+			unresolvedEnds.put( link[0], ends);
+			for( int end : ends)
+				if( end != ShapeRecord.NONE)
+					waitingPaths.computeIfAbsent( end, k -> new ArrayList<>( 1)).add( link[0]);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * add imported shapes on top of the map through {@link MapArea#getEditQueue()}, {@link MapArea#IMPORT_BATCH}
+	 * shapes per command. can be called from any thread.
+	 * shapes get new IDs, IDs of records are only used to connect paths once every shape is added.
+	 * if the map is opened or cleared before the last batch, the rest of the import is dropped.</br>
+	 * </p>
+	 * @param records - shapes to add, see {@link mapmaker.map.io.MapImporter}
+	 * @param done - called on the FX thread after the last shape is added, can be null. not called if the import is dropped
+	 */
+	public void addRecords(List<ShapeRecord> records, Runnable done){
+		edits.submit(map -> addRecords(records, 0, new HashMap<>(), new IdentityHashMap<>(), done, generation));
+	}
+	
+	/**
+	 * <p>
+	 * add one batch of records starting at start then submit the next one.
+	 * </p>
+	 * @param byID - created shapes by ID of their record
+	 * @param paths - record of each created path
+	 * @param started - {@link MapArea#generation} when the import was submitted
+	 */
+	private void addRecords(List<ShapeRecord> records, int start, Map<Integer, PolyShape> byID,
+			Map<Path, ShapeRecord> paths, Runnable done, int started){
+		if(started != generation)
+			return;
+		int end = Math.min(records.size(), start + IMPORT_BATCH);
+		List<Node> nodes = new ArrayList<>();
+		for(int i = start; i < end; i++){
+			ShapeRecord record = records.get(i);
+			PolyShape shape = record.isPath() ? new Path() : new PolyShape(PolyShape.FREEFORM);
+			shape.setVertices(record.getPoints());
+			shape.setFill(record.getFill());
+			shape.setStroke(record.getStroke());
+			shape.setStrokeWidth(record.getStrokeWidth());
+			shape.registerControlPoints();
+			if(record.getID() != ShapeRecord.NONE)
+				byID.put(record.getID(), shape);
+			if(record.isPath())
+				paths.put((Path) shape, record);
+			nodes.add(shape);
+			nodes.addAll(Arrays.asList(shape.getControlPoints()));
+		}
+		children.addAll(nodes);
+		if(end < records.size()){
+			edits.submit(map -> addRecords(records, end, byID, paths, done, started));
+			return;
+		}
+		//shapes erased while the import ran are not connected
+		byID.values().removeIf(shape -> registry.get(shape.getID()) != shape);
+		paths.forEach((path, record) -> {
+			if(registry.get(path.getID()) == path)
+				path.connect(byID.get(record.getFirst()), byID.get(record.getSecond()));
+		});
+		if(done != null)
+			done.run();
+	}
+	
+	/**
+	 * <p>
+	 * create a {@link PolyShape} or {@link Path} depending on {@link PolyShape#typeOf(List)}.</br>
+	 * </p>
+	 * @param block - lines of one shape
+	 * @return new shape
+	 */
+	private PolyShape createShape( List< String> block){
+		return PolyShape.PATH_TYPE.equals( PolyShape.typeOf( block)) ? new Path( block) : new PolyShape( block);
+	}
+	
+	/**
+	 * <p>
+	 * call this function to clear all shapes and layers in {@link MapAreaSkeleton}, leaving one empty layer.</br>
+	 * </p>
+	 */
+	public void clearMap(){
+		setLayers(Collections.singletonList(new Layer(Layer.DEFAULT_NAME)));
+	}
+	
+
+
 }
\ No newline at end of file
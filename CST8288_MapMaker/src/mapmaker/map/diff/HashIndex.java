@@ -0,0 +1,103 @@
+package mapmaker.map.diff;
+
+/**
+ * <p>
+ * map from long keys to indexes of a list, many indexes can share a key and are kept in the order added.
+ * keys are in an open addressing table with linear probing, indexes with the same key are chained
+ * through one int array, so a million entries cost a few primitive arrays and no boxing.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+final class HashIndex {
+
+	private final long[] keys;
+	private final int[] heads, tails;
+	private final boolean[] used;
+
+	/**
+	 * <p>
+	 * next index with same key, by index.</br>
+	 * </p>
+	 */
+	private final int[] next;
+
+	/**
+	 * @param size - indexes are from 0 to size - 1
+	 */
+	HashIndex( int size) {
+		int capacity = Integer.highestOneBit( Math.max( 2, size) * 2 - 1) * 2;
+		keys = new long[capacity];
+		heads = new int[capacity];
+		tails = new int[capacity];
+		used = new boolean[capacity];
+		next = new int[Math.max( 1, size)];
+	}
+
+	/**
+	 * @param key - key of index
+	 * @param index - index to add after those already added with same key, can be one taken before
+	 */
+	void add( long key, int index) {
+		int slot = slot( key);
+		next[index] = -1;
+		if( !used[slot]) {
+			used[slot] = true;
+			keys[slot] = key;
+			heads[slot] = index;
+		} else if( heads[slot] == -1)
+			heads[slot] = index;
+		else
+			next[tails[slot]] = index;
+		tails[slot] = index;
+	}
+
+	/**
+	 * @param key - key to find
+	 * @return first index added with key which was not taken, or -1
+	 */
+	int get( long key) {
+		int slot = slot( key);
+		return used[slot] ? heads[slot] : -1;
+	}
+
+	/**
+	 * <p>
+	 * remove and return first index added with key.</br>
+	 * </p>
+	 * @param key - key to find
+	 * @return index or -1 if none is left
+	 */
+	int take( long key) {
+		int slot = slot( key);
+		if( !used[slot] || heads[slot] == -1)
+			return -1;
+		int index = heads[slot];
+		heads[slot] = next[index];
+		return index;
+	}
+
+	/**
+	 * @return slot holding key or the empty slot where it goes
+	 */
+	private int slot( long key) {
+		int mask = keys.length - 1;
+		int i = (int) mix( key) & mask;
+		while( used[i] && keys[i] != key)
+			i = ( i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * <p>
+	 * finalizer of MurmurHash3, spreads every bit of key over the result.</br>
+	 * </p>
+	 */
+	static long mix( long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,313 @@
+package mapmaker.map.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * structural difference of two lists of shapes. shapes are matched by ID first, then shapes left over
+ * by identical geometry, then by identical outline anywhere on the map, so a shape which was copied
+ * to a new ID or moved and given a new ID is still seen as the same shape.</br>
+ * every lookup is into a {@link HashIndex} and hashes are computed in parallel, so matching is linear
+ * in the number of shapes and points.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class MapDiff {
+
+	/**
+	 * <p>
+	 * how a shape differs.</br>
+	 * </p>
+	 */
+	public enum Kind {
+		/** shape is only in other */
+		ADDED,
+		/** shape is only in base */
+		REMOVED,
+		/** every point of shape was translated by the same amount */
+		MOVED,
+		/** points of shape changed in any other way */
+		RESHAPED,
+		/** fill, stroke or stroke width changed */
+		RESTYLED,
+		/** a path now ends at other rooms */
+		RECONNECTED
+	}
+
+	/**
+	 * <p>
+	 * one difference of one shape.</br>
+	 * </p>
+	 */
+	public static final class Change {
+
+		private final Kind kind;
+		private final ShapeRecord before, after;
+
+		Change( Kind kind, ShapeRecord before, ShapeRecord after) {
+			this.kind = kind;
+			this.before = before;
+			this.after = after;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return shape in base or null if {@link Kind#ADDED}
+		 */
+		public ShapeRecord getBefore() {
+			return before;
+		}
+
+		/**
+		 * @return shape in other or null if {@link Kind#REMOVED}
+		 */
+		public ShapeRecord getAfter() {
+			return after;
+		}
+
+		@Override
+		public String toString() {
+			ShapeRecord r = after != null ? after : before;
+			String name = r.getType() + " " + r.getID();
+			if( before != null && after != null && before.getID() != after.getID())
+				name += " (was " + before.getID() + ")";
+			return kind.name().toLowerCase() + " " + name;
+		}
+	}
+
+	/**
+	 * <p>
+	 * coordinates closer than this are equal, points of map files are written with many more digits
+	 * than a mouse can place.</br>
+	 * </p>
+	 */
+	private static final double QUANTUM = 1e-6;
+
+	private MapDiff() {
+	}
+
+	/**
+	 * @param base - shapes before
+	 * @param other - shapes after
+	 * @return removed shapes in base order, then added and changed shapes in other order
+	 */
+	public static List< Change> diff( List< ShapeRecord> base, List< ShapeRecord> other) {
+		int[] match = match( base, other);
+		boolean[] matched = new boolean[base.size()];
+		for( int b : match)
+			if( b != -1)
+				matched[b] = true;
+		List< Change> changes = new ArrayList<>();
+		for( int i = 0; i < base.size(); i++)
+			if( !matched[i])
+				changes.add( new Change( Kind.REMOVED, base.get( i), null));
+		int[] otherToBaseID = baseIDs( base, other, match);
+		HashIndex otherIDs = indexByID( other);
+		changes.addAll( IntStream.range( 0, other.size()).parallel().mapToObj( i -> {
+			ShapeRecord after = other.get( i);
+			if( match[i] == -1)
+				return Collections.singletonList( new Change( Kind.ADDED, null, after));
+			ShapeRecord before = base.get( match[i]);
+			List< Change> list = new ArrayList<>( 1);
+			if( !sameGeometry( before, after))
+				list.add( new Change( isTranslation( before, after) ? Kind.MOVED : Kind.RESHAPED, before, after));
+			if( !sameStyle( before, after))
+				list.add( new Change( Kind.RESTYLED, before, after));
+			if( before.isPath() && ( before.getFirst() != toBase( after.getFirst(), otherIDs, otherToBaseID)
+					|| before.getSecond() != toBase( after.getSecond(), otherIDs, otherToBaseID)))
+				list.add( new Change( Kind.RECONNECTED, before, after));
+			return list;
+		}).flatMap( List::stream).collect( Collectors.toList()));
+		return changes;
+	}
+
+	/**
+	 * <p>
+	 * match every shape of other to a shape of base, each shape of base is matched at most once.
+	 * shapes of the same type and ID are matched first, shapes left are then matched by identical points
+	 * and last by identical points relative to the first point, in list order when many are alike.</br>
+	 * </p>
+	 * @param base - shapes before
+	 * @param other - shapes after
+	 * @return for each index of other the index of base or -1 if shape was added
+	 */
+	public static int[] match( List< ShapeRecord> base, List< ShapeRecord> other) {
+		int[] match = new int[other.size()];
+		boolean[] taken = new boolean[base.size()];
+		HashIndex ids = indexByID( base);
+		for( int i = 0; i < other.size(); i++) {
+			int b = ids.get( other.get( i).getID());
+			if( b != -1 && base.get( b).getType().equals( other.get( i).getType())) {
+				match[i] = b;
+				taken[b] = true;
+			} else
+				match[i] = -1;
+		}
+		matchBy( base, other, match, taken, false);
+		matchBy( base, other, match, taken, true);
+		return match;
+	}
+
+	/**
+	 * <p>
+	 * match shapes of identical geometry only, each shape of base at most once.</br>
+	 * </p>
+	 * @return for each index of other the index of base or -1
+	 */
+	static int[] matchGeometry( List< ShapeRecord> base, List< ShapeRecord> other) {
+		int[] match = new int[other.size()];
+		java.util.Arrays.fill( match, -1);
+		matchBy( base, other, match, new boolean[base.size()], false);
+		return match;
+	}
+
+	/**
+	 * <p>
+	 * match shapes of other and base not matched yet by hash of their points.</br>
+	 * </p>
+	 * @param relative - hash points relative to first point instead of where they are
+	 */
+	private static void matchBy( List< ShapeRecord> base, List< ShapeRecord> other, int[] match, boolean[] taken, boolean relative) {
+		long[] baseHashes = hashes( base, taken, relative);
+		HashIndex index = new HashIndex( base.size());
+		for( int i = 0; i < base.size(); i++)
+			if( !taken[i])
+				index.add( baseHashes[i], i);
+		boolean[] done = new boolean[other.size()];
+		for( int i = 0; i < match.length; i++)
+			done[i] = match[i] != -1;
+		long[] otherHashes = hashes( other, done, relative);
+		for( int i = 0; i < match.length; i++) {
+			if( done[i])
+				continue;
+			ShapeRecord r = other.get( i);
+			int b = index.take( otherHashes[i]);
+			// a different shape with the same hash stays in the index for the next one, chains are nearly always 1 long
+			if( b != -1 && !( relative ? sameOutline( base.get( b), r) : sameGeometry( base.get( b), r))) {
+				index.add( otherHashes[i], b);
+				b = -1;
+			}
+			if( b != -1) {
+				match[i] = b;
+				taken[b] = true;
+			}
+		}
+	}
+
+	/**
+	 * @param skip - shapes not to hash
+	 * @return hash of type and points of each shape, 0 for skipped shapes
+	 */
+	private static long[] hashes( List< ShapeRecord> records, boolean[] skip, boolean relative) {
+		long[] hashes = new long[records.size()];
+		IntStream.range( 0, hashes.length).parallel().filter( i -> !skip[i]).forEach( i -> {
+			ShapeRecord r = records.get( i);
+			long h = r.isPath() ? 0x9e3779b97f4a7c15L : 0x632be59bd9b4e019L;
+			long x = relative && r.size() > 0 ? quantize( r.get( 0)) : 0, y = relative && r.size() > 1 ? quantize( r.get( 1)) : 0;
+			for( int j = 0; j < r.size(); j++)
+				h = HashIndex.mix( h + quantize( r.get( j)) - ( j % 2 == 0 ? x : y));
+			hashes[i] = h;
+		});
+		return hashes;
+	}
+
+	private static long quantize( double v) {
+		return Math.round( v / QUANTUM);
+	}
+
+	/**
+	 * @return true if both are of same type and every point is equal
+	 */
+	static boolean sameGeometry( ShapeRecord a, ShapeRecord b) {
+		if( !a.getType().equals( b.getType()) || a.size() != b.size())
+			return false;
+		for( int i = 0; i < a.size(); i++)
+			if( quantize( a.get( i)) != quantize( b.get( i)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return true if both are of same type and every point is equal relative to the first point
+	 */
+	private static boolean sameOutline( ShapeRecord a, ShapeRecord b) {
+		return a.getType().equals( b.getType()) && a.size() == b.size() && isTranslation( a, b);
+	}
+
+	/**
+	 * @return true if every point of b is the point of a moved by the same amount
+	 */
+	private static boolean isTranslation( ShapeRecord a, ShapeRecord b) {
+		if( a.size() != b.size() || a.size() < 2)
+			return false;
+		long dx = quantize( b.get( 0)) - quantize( a.get( 0)), dy = quantize( b.get( 1)) - quantize( a.get( 1));
+		for( int i = 2; i < a.size(); i++)
+			if( quantize( b.get( i)) - quantize( a.get( i)) != ( i % 2 == 0 ? dx : dy))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return true if fill, stroke and stroke width are equal
+	 */
+	static boolean sameStyle( ShapeRecord a, ShapeRecord b) {
+		return a.getFill().equals( b.getFill()) && a.getStroke().equals( b.getStroke()) && a.getStrokeWidth() == b.getStrokeWidth();
+	}
+
+	/**
+	 * @return index of each shape by its ID
+	 */
+	static HashIndex indexByID( List< ShapeRecord> records) {
+		HashIndex index = new HashIndex( records.size());
+		for( int i = 0; i < records.size(); i++)
+			index.add( records.get( i).getID(), i);
+		return index;
+	}
+
+	/**
+	 * @return for each index of other the ID of its match in base, or a negative ID no shape has
+	 */
+	private static int[] baseIDs( List< ShapeRecord> base, List< ShapeRecord> other, int[] match) {
+		int[] ids = new int[other.size()];
+		for( int i = 0; i < ids.length; i++)
+			ids[i] = match[i] == -1 ? -2 - i : base.get( match[i]).getID();
+		return ids;
+	}
+
+	/**
+	 * @param id - ID of a shape of other or {@link ShapeRecord#NONE}
+	 * @return ID of same shape in base
+	 */
+	private static int toBase( int id, HashIndex otherIDs, int[] otherToBaseID) {
+		if( id == ShapeRecord.NONE)
+			return id;
+		int i = otherIDs.get( id);
+		return i == -1 ? -2 - otherToBaseID.length : otherToBaseID[i];
+	}
+
+	/**
+	 * @param changes - changes of {@link #diff(List, List)}
+	 * @param limit - most changes to list
+	 * @return count of each kind then first changes, one per line
+	 */
+	public static String summary( List< Change> changes, int limit) {
+		int[] counts = new int[Kind.values().length];
+		changes.forEach( c -> counts[c.getKind().ordinal()]++);
+		StringBuilder builder = new StringBuilder();
+		for( Kind kind : Kind.values())
+			builder.append( kind.name().toLowerCase()).append( ": ").append( counts[kind.ordinal()]).append( System.lineSeparator());
+		changes.stream().limit( limit).forEach( c -> builder.append( System.lineSeparator()).append( c));
+		if( changes.size() > limit)
+			builder.append( System.lineSeparator()).append( "and ").append( changes.size() - limit).append( " more");
+		return builder.toString();
+	}
+}
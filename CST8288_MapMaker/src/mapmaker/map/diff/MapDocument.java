@@ -0,0 +1,118 @@
+package mapmaker.map.diff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mapmaker.map.layers.Layer;
+import mapmaker.map.layers.LayerFile;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * every shape of a map file as records with the layer each belongs to, read without creating any node
+ * so files far larger than what the map can show can be compared and merged.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class MapDocument {
+
+	private final List< String> layers;
+	private final List< Boolean> visible;
+	private final List< ShapeRecord> shapes;
+	private final int[] layerOf;
+
+	/**
+	 * @param layers - names of layers in order
+	 * @param visible - visibility of each layer
+	 * @param shapes - every shape in order
+	 * @param layerOf - index in layers of each shape
+	 */
+	public MapDocument( List< String> layers, List< Boolean> visible, List< ShapeRecord> shapes, int[] layerOf) {
+		this.layers = layers;
+		this.visible = visible;
+		this.shapes = shapes;
+		this.layerOf = layerOf;
+	}
+
+	/**
+	 * <p>
+	 * read every layer of a map file.</br>
+	 * </p>
+	 * @param file - map file
+	 * @return document of file
+	 * @throws IOException if file cannot be read
+	 */
+	public static MapDocument read( java.nio.file.Path file) throws IOException {
+		List< String> names = new ArrayList<>();
+		List< Boolean> visible = new ArrayList<>();
+		List< ShapeRecord> shapes = new ArrayList<>();
+		List< Integer> layerOf = new ArrayList<>();
+		for( Layer layer : LayerFile.open( file)) {
+			List< ShapeRecord> records = MapText.parse( layer.load());
+			shapes.addAll( records);
+			layerOf.addAll( Collections.nCopies( records.size(), names.size()));
+			names.add( layer.getName());
+			visible.add( layer.isVisible());
+		}
+		return new MapDocument( names, visible, shapes, layerOf.stream().mapToInt( Integer::intValue).toArray());
+	}
+
+	/**
+	 * <p>
+	 * write document as a map file with its layers.</br>
+	 * </p>
+	 * @param file - map file to write
+	 * @throws IOException if file cannot be written
+	 */
+	public void write( java.nio.file.Path file) throws IOException {
+		List< Layer> list = new ArrayList<>( layers.size());
+		Map< Layer, List< ShapeRecord>> content = new IdentityHashMap<>();
+		for( int i = 0; i < layers.size(); i++) {
+			Layer layer = new Layer( layers.get( i));
+			layer.setVisible( visible.get( i));
+			list.add( layer);
+			content.put( layer, new ArrayList<>());
+		}
+		int lastID = 0;
+		for( int i = 0; i < shapes.size(); i++) {
+			content.get( list.get( layerOf[i])).add( shapes.get( i));
+			lastID = Math.max( lastID, shapes.get( i).getID());
+		}
+		//IDs of this document, not of the open map, are reserved when it is opened
+		LayerFile.save( file, list, layer -> MapText.write( content.get( layer)), false, lastID);
+	}
+
+	/**
+	 * @return every shape in order, not to be changed
+	 */
+	public List< ShapeRecord> getShapes() {
+		return shapes;
+	}
+
+	/**
+	 * @return names of layers in order, not to be changed
+	 */
+	public List< String> getLayers() {
+		return layers;
+	}
+
+	/**
+	 * @param layer - index of layer
+	 * @return true if layer is shown when file is opened
+	 */
+	public boolean isVisible( int layer) {
+		return visible.get( layer);
+	}
+
+	/**
+	 * @param shape - index of shape
+	 * @return index of layer of shape
+	 */
+	public int layerOf( int shape) {
+		return layerOf[shape];
+	}
+}
@@ -0,0 +1,311 @@
+package mapmaker.map.diff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * three way merge of two maps changed from the same base. shapes are matched to base with
+ * {@link MapDiff#match(List, List)}, then points, style and ends of each shape are merged apart,
+ * a part changed in one map only is taken from that map. a part changed differently in both keeps ours
+ * and is reported as a conflict, as is a shape erased in one map and changed in the other, which is kept.</br>
+ * shapes added in both maps are all kept, those of theirs which collide with an ID of ours get a new ID
+ * and the paths connected to them are updated.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class MapMerge {
+
+	/**
+	 * <p>
+	 * merged map and what could not be merged on its own.</br>
+	 * </p>
+	 */
+	public static final class Result {
+
+		private final MapDocument merged;
+		private final List< String> conflicts;
+
+		Result( MapDocument merged, List< String> conflicts) {
+			this.merged = merged;
+			this.conflicts = conflicts;
+		}
+
+		public MapDocument getMerged() {
+			return merged;
+		}
+
+		/**
+		 * @return one line for each conflict, resolved as written in it
+		 */
+		public List< String> getConflicts() {
+			return conflicts;
+		}
+	}
+
+	/**
+	 * <p>
+	 * shape of merged map with where it comes from, ends are resolved once every ID is known.</br>
+	 * </p>
+	 */
+	private static final class Merged {
+		private final int id;
+		private final ShapeRecord base, ours, theirs, geometry, style;
+		private final String layer;
+
+		private Merged( int id, ShapeRecord base, ShapeRecord ours, ShapeRecord theirs, ShapeRecord geometry, ShapeRecord style, String layer) {
+			this.id = id;
+			this.base = base;
+			this.ours = ours;
+			this.theirs = theirs;
+			this.geometry = geometry;
+			this.style = style;
+			this.layer = layer;
+		}
+	}
+
+	private final MapDocument base, ours, theirs;
+	private final List< String> conflicts = new ArrayList<>();
+	private final List< Merged> merged = new ArrayList<>();
+	private final Set< Integer> used = new HashSet<>();
+
+	/**
+	 * <p>
+	 * ID in merged map of each shape of ours and theirs by its own ID.</br>
+	 * </p>
+	 */
+	private final Map< Integer, Integer> oursIDs = new HashMap<>(), theirsIDs = new HashMap<>();
+	private int nextID;
+
+	private MapMerge( MapDocument base, MapDocument ours, MapDocument theirs) {
+		this.base = base;
+		this.ours = ours;
+		this.theirs = theirs;
+	}
+
+	/**
+	 * @param base - map both were changed from
+	 * @param ours - map whose changes win a conflict
+	 * @param theirs - other changed map
+	 * @return merged map and its conflicts
+	 */
+	public static Result merge( MapDocument base, MapDocument ours, MapDocument theirs) {
+		return new MapMerge( base, ours, theirs).merge();
+	}
+
+	private Result merge() {
+		List< ShapeRecord> baseShapes = base.getShapes(), oursShapes = ours.getShapes(), theirsShapes = theirs.getShapes();
+		int[] oursMatch = MapDiff.match( baseShapes, oursShapes), theirsMatch = MapDiff.match( baseShapes, theirsShapes);
+		int[] baseToOurs = invert( oursMatch, baseShapes.size()), baseToTheirs = invert( theirsMatch, baseShapes.size());
+		nextID = Math.max( maxID( baseShapes), Math.max( maxID( oursShapes), maxID( theirsShapes))) + 1;
+		Map< Integer, Integer> oursToBase = baseIDs( oursMatch, oursShapes, baseShapes), theirsToBase = baseIDs( theirsMatch, theirsShapes, baseShapes);
+
+		for( int i = 0; i < baseShapes.size(); i++) {
+			ShapeRecord b = baseShapes.get( i);
+			ShapeRecord o = baseToOurs[i] == -1 ? null : oursShapes.get( baseToOurs[i]);
+			ShapeRecord t = baseToTheirs[i] == -1 ? null : theirsShapes.get( baseToTheirs[i]);
+			if( o == null && t == null)
+				continue;
+			String layer = o != null ? ours.getLayers().get( ours.layerOf( baseToOurs[i])) : theirs.getLayers().get( theirs.layerOf( baseToTheirs[i]));
+			if( o == null || t == null) {
+				ShapeRecord kept = o != null ? o : t;
+				//a path whose only change is its ends was changed too
+				if( MapDiff.sameGeometry( b, kept) && MapDiff.sameStyle( b, kept)
+						&& ( !b.isPath() || sameEnds( b, kept, o != null ? oursToBase : theirsToBase)))
+					continue;
+				conflicts.add( describe( b) + " was erased in " + ( o == null ? "ours" : "theirs") + " and changed in "
+						+ ( o == null ? "theirs" : "ours") + ", kept it");
+				add( b.getID(), b, o, t, kept, kept, layer);
+				continue;
+			}
+			ShapeRecord geometry = pick( b, o, t, MapDiff::sameGeometry, "points");
+			ShapeRecord style = pick( b, o, t, MapDiff::sameStyle, "style");
+			add( b.getID(), b, o, t, geometry, style, layer);
+		}
+
+		List< ShapeRecord> oursAdded = new ArrayList<>(), theirsAdded = new ArrayList<>();
+		List< Integer> oursAddedLayers = new ArrayList<>(), theirsAddedLayers = new ArrayList<>();
+		for( int i = 0; i < oursShapes.size(); i++)
+			if( oursMatch[i] == -1) {
+				oursAdded.add( oursShapes.get( i));
+				oursAddedLayers.add( ours.layerOf( i));
+			}
+		for( int i = 0; i < theirsShapes.size(); i++)
+			if( theirsMatch[i] == -1) {
+				theirsAdded.add( theirsShapes.get( i));
+				theirsAddedLayers.add( theirs.layerOf( i));
+			}
+		int[] twins = MapDiff.matchGeometry( oursAdded, theirsAdded);
+		for( int i = 0; i < oursAdded.size(); i++) {
+			ShapeRecord o = oursAdded.get( i);
+			add( used.contains( o.getID()) ? nextID++ : o.getID(), null, o, null, o, o, ours.getLayers().get( oursAddedLayers.get( i)));
+		}
+		for( int i = 0; i < theirsAdded.size(); i++) {
+			ShapeRecord t = theirsAdded.get( i);
+			if( twins[i] != -1 && MapDiff.sameStyle( oursAdded.get( twins[i]), t)) {
+				// same shape added to both maps
+				theirsIDs.put( t.getID(), oursIDs.get( oursAdded.get( twins[i]).getID()));
+				continue;
+			}
+			add( used.contains( t.getID()) ? nextID++ : t.getID(), null, null, t, t, t, theirs.getLayers().get( theirsAddedLayers.get( i)));
+		}
+		return new Result( document(), conflicts);
+	}
+
+	/**
+	 * <p>
+	 * add a shape to merged map and remember its ID.</br>
+	 * </p>
+	 */
+	private void add( int id, ShapeRecord b, ShapeRecord o, ShapeRecord t, ShapeRecord geometry, ShapeRecord style, String layer) {
+		used.add( id);
+		if( o != null)
+			oursIDs.put( o.getID(), id);
+		if( t != null)
+			theirsIDs.put( t.getID(), id);
+		merged.add( new Merged( id, b, o, t, geometry, style, layer));
+	}
+
+	/**
+	 * @param same - true if a part of two shapes is equal
+	 * @param part - name of part for conflicts
+	 * @return shape to take part from
+	 */
+	private ShapeRecord pick( ShapeRecord b, ShapeRecord o, ShapeRecord t, BiPredicate< ShapeRecord, ShapeRecord> same, String part) {
+		if( same.test( b, t) || same.test( o, t))
+			return o;
+		if( same.test( b, o))
+			return t;
+		conflicts.add( part + " of " + describe( b) + " changed in both, kept ours");
+		return o;
+	}
+
+	/**
+	 * @return ends of shape in IDs of merged map
+	 */
+	private int[] ends( ShapeRecord r, Map< Integer, Integer> ids) {
+		return new int[] { endID( r.getFirst(), ids), endID( r.getSecond(), ids) };
+	}
+
+	private int endID( int id, Map< Integer, Integer> ids) {
+		if( id == ShapeRecord.NONE)
+			return id;
+		if( ids == null)
+			return used.contains( id) ? id : ShapeRecord.NONE;
+		Integer merged = ids.get( id);
+		return merged == null ? ShapeRecord.NONE : merged;
+	}
+
+	/**
+	 * @return merged map with ends of every path resolved
+	 */
+	private MapDocument document() {
+		List< String> layers = new ArrayList<>( ours.getLayers());
+		List< Boolean> visible = new ArrayList<>();
+		for( int i = 0; i < layers.size(); i++)
+			visible.add( ours.isVisible( i));
+		for( int i = 0; i < theirs.getLayers().size(); i++)
+			if( !layers.contains( theirs.getLayers().get( i))) {
+				layers.add( theirs.getLayers().get( i));
+				visible.add( theirs.isVisible( i));
+			}
+		if( layers.isEmpty()) {
+			layers.addAll( base.getLayers());
+			for( int i = 0; i < layers.size(); i++)
+				visible.add( base.isVisible( i));
+		}
+		Map< String, Integer> layerIndex = new HashMap<>();
+		for( int i = 0; i < layers.size(); i++)
+			layerIndex.putIfAbsent( layers.get( i), i);
+
+		List< ShapeRecord> shapes = new ArrayList<>( merged.size());
+		int[] layerOf = new int[merged.size()];
+		for( int i = 0; i < merged.size(); i++) {
+			Merged m = merged.get( i);
+			ShapeRecord g = m.geometry, s = m.style;
+			int[] ends = { ShapeRecord.NONE, ShapeRecord.NONE };
+			if( g.isPath())
+				ends = mergeEnds( m);
+			shapes.add( new ShapeRecord( m.id, g.getType(), g.getSides(), s.getFill(), s.getStroke(), s.getStrokeWidth(), g.getPoints(), ends[0], ends[1]));
+			layerOf[i] = layerIndex.get( m.layer);
+		}
+		return new MapDocument( layers, visible, shapes, layerOf);
+	}
+
+	/**
+	 * @return ends of a merged path, from the map which changed them
+	 */
+	private int[] mergeEnds( Merged m) {
+		int[] o = m.ours == null ? null : ends( m.ours, oursIDs);
+		int[] t = m.theirs == null ? null : ends( m.theirs, theirsIDs);
+		if( m.base == null || o == null || t == null)
+			return o != null ? o : t;
+		int[] b = ends( m.base, null);
+		if( same( b, t) || same( o, t))
+			return o;
+		if( same( b, o))
+			return t;
+		conflicts.add( "ends of " + describe( m.base) + " changed in both, kept ours");
+		return o;
+	}
+
+	/**
+	 * @param toBase - ID in base of each shape of the map of other which matches one
+	 * @return true if both ends of other are the rooms of base at the same ends
+	 */
+	private static boolean sameEnds( ShapeRecord b, ShapeRecord other, Map< Integer, Integer> toBase) {
+		return b.getFirst() == baseEnd( other.getFirst(), toBase) && b.getSecond() == baseEnd( other.getSecond(), toBase);
+	}
+
+	/**
+	 * @return ID in base of a room of other, {@link Integer#MIN_VALUE} for a room base does not have
+	 */
+	private static int baseEnd( int id, Map< Integer, Integer> toBase) {
+		return id == ShapeRecord.NONE ? id : toBase.getOrDefault( id, Integer.MIN_VALUE);
+	}
+
+	/**
+	 * @return ID in base by ID in other of every shape of other matched to base
+	 */
+	private static Map< Integer, Integer> baseIDs( int[] match, List< ShapeRecord> other, List< ShapeRecord> base) {
+		Map< Integer, Integer> ids = new HashMap<>();
+		for( int i = 0; i < match.length; i++)
+			if( match[i] != -1)
+				ids.put( other.get( i).getID(), base.get( match[i]).getID());
+		return ids;
+	}
+
+	private static boolean same( int[] a, int[] b) {
+		return a[0] == b[0] && a[1] == b[1];
+	}
+
+	/**
+	 * @return index of base matched by each index of other, or -1
+	 */
+	private static int[] invert( int[] match, int size) {
+		int[] inverse = new int[size];
+		java.util.Arrays.fill( inverse, -1);
+		for( int i = 0; i < match.length; i++)
+			if( match[i] != -1)
+				inverse[match[i]] = i;
+		return inverse;
+	}
+
+	private static int maxID( List< ShapeRecord> records) {
+		int max = ShapeRecord.NONE;
+		for( ShapeRecord r : records)
+			max = Math.max( max, r.getID());
+		return max;
+	}
+
+	private static String describe( ShapeRecord r) {
+		return r.getType() + " " + r.getID();
+	}
+}
@@ -0,0 +1,93 @@
+package mapmaker.map.diff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import mapmaker.map.MapArea;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * reads and writes the text of one layer, in the format of {@link MapArea#convertToString(mapmaker.map.layers.Layer)},
+ * as records without creating any node. shapes are found with one pass over the lines and then parsed in parallel.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class MapText {
+
+	private MapText() {
+	}
+
+	/**
+	 * @param lines - lines of a layer
+	 * @return records of the layer in order, paths with their ends
+	 */
+	public static List< ShapeRecord> parse( List< String> lines) {
+		List< Integer> starts = new ArrayList<>();
+		int adjacency = lines.size(), end = lines.size();
+		for( int i = 0; i < lines.size(); i++) {
+			String line = lines.get( i);
+			if( line.equals( MapArea.ADJACENCY)) {
+				adjacency = i + 1;
+				end = i;
+				break;
+			}
+			if( line.startsWith( MapArea.SHAPE_START))
+				starts.add( i);
+		}
+		int last = end;
+		ShapeRecord[] records = IntStream.range( 0, starts.size()).parallel()
+				.mapToObj( i -> PolyShape.recordOf( nonEmpty( lines.subList( starts.get( i), i + 1 < starts.size() ? starts.get( i + 1) : last))))
+				.toArray( ShapeRecord[]::new);
+		Map< Integer, Integer> byID = new HashMap<>( records.length * 2);
+		for( int i = 0; i < records.length; i++)
+			byID.put( records[i].getID(), i);
+		for( int i = adjacency; i < lines.size(); i++) {
+			String[] tokens = lines.get( i).split( " ");
+			if( !PolyShape.PATH_TYPE.equals( tokens[0]))
+				continue;
+			Integer index = byID.get( Integer.parseInt( tokens[1]));
+			if( index != null)
+				records[index] = records[index].with( records[index].getID(), Integer.parseInt( tokens[2]), Integer.parseInt( tokens[3]));
+		}
+		List< ShapeRecord> list = new ArrayList<>( records.length);
+		for( ShapeRecord r : records)
+			list.add( r);
+		return list;
+	}
+
+	/**
+	 * @param records - records of a layer
+	 * @return text of layer as {@link MapArea#convertToString(mapmaker.map.layers.Layer)} writes it
+	 */
+	public static String write( List< ShapeRecord> records) {
+		String newLine = System.lineSeparator();
+		StringBuilder builder = new StringBuilder();
+		for( int i = 0; i < records.size(); i++) {
+			if( i > 0)
+				builder.append( newLine);
+			builder.append( PolyShape.convertToString( records.get( i)));
+		}
+		builder.append( newLine).append( MapArea.ADJACENCY);
+		for( ShapeRecord r : records)
+			if( r.isPath())
+				builder.append( newLine).append( PolyShape.PATH_TYPE).append( " ").append( r.getID())
+						.append( " ").append( r.getFirst()).append( " ").append( r.getSecond());
+		return builder.toString();
+	}
+
+	/**
+	 * @return given lines without empty ones
+	 */
+	private static List< String> nonEmpty( List< String> lines) {
+		List< String> list = new ArrayList<>( lines.size());
+		for( String line : lines)
+			if( !line.isEmpty())
+				list.add( line);
+		return list;
+	}
+}
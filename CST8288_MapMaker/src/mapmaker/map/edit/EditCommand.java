@@ -0,0 +1,22 @@
+package mapmaker.map.edit;
+
+import mapmaker.map.MapArea;
+
+/**
+ * <p>
+ * one edit of a map submitted to an {@link EditQueue}. it is applied on the FX thread,
+ * so it can change shapes and children of the map directly.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+@FunctionalInterface
+public interface EditCommand {
+
+	/**
+	 * <p>
+	 * apply this edit.
+	 * </p>
+	 * @param map - map to edit
+	 */
+	public void apply( MapArea map);
+}
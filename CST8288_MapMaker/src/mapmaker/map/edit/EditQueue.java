@@ -0,0 +1,123 @@
+package mapmaker.map.edit;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.application.Platform;
+import mapmaker.map.MapArea;
+
+/**
+ * <p>
+ * single writer queue of {@link EditCommand}'s for one map. any thread, like a script, an importer or
+ * a sync connection, can submit edits at any rate, the FX thread is the only one applying them.</br>
+ * commands are applied in order in batches, once per pulse, for at most {@link EditQueue#BUDGET}
+ * so a flood of edits does not freeze the window. what is left waits for the next pulse.</br>
+ * mouse handlers of {@link MapArea} are exempt, they already run on the FX thread and edit the map directly,
+ * which keeps the FX thread the single writer. a gesture holds the queue from press to release
+ * so queued commands are applied before or after it, never between its drag steps.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class EditQueue {
+
+	/**
+	 * <p>
+	 * time spent applying commands per pulse.</br>
+	 * </p>
+	 */
+	private static final long BUDGET = TimeUnit.MILLISECONDS.toNanos( 8);
+
+	private final MapArea map;
+	private final ConcurrentLinkedQueue< EditCommand> commands = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * <p>
+	 * true while a drain is waiting to run on the FX thread.</br>
+	 * </p>
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/**
+	 * <p>
+	 * true while a mouse gesture is under way, only used on the FX thread.</br>
+	 * </p>
+	 */
+	private boolean held;
+
+	/**
+	 * @param map - map edited by commands of this queue
+	 */
+	public EditQueue( MapArea map) {
+		this.map = map;
+	}
+
+	/**
+	 * <p>
+	 * add a command to be applied on the FX thread after every command submitted before it.
+	 * safe to be called from any thread.</br>
+	 * </p>
+	 * @param command - edit to apply
+	 */
+	public void submit( EditCommand command) {
+		commands.add( Objects.requireNonNull( command));
+		if( scheduled.compareAndSet( false, true))
+			Platform.runLater( this::drain);
+	}
+
+	/**
+	 * <p>
+	 * stop applying commands until {@link EditQueue#release()}, submitted commands keep waiting in order.
+	 * called on the FX thread.</br>
+	 * </p>
+	 */
+	public void hold() {
+		held = true;
+	}
+
+	/**
+	 * <p>
+	 * apply commands again, starting with those which waited while held. called on the FX thread.</br>
+	 * </p>
+	 */
+	public void release() {
+		held = false;
+		if( !commands.isEmpty() && scheduled.compareAndSet( false, true))
+			Platform.runLater( this::drain);
+	}
+
+	/**
+	 * @return number of commands waiting to be applied
+	 */
+	public int pending() {
+		return commands.size();
+	}
+
+	/**
+	 * <p>
+	 * apply waiting commands until queue is empty or budget of this pulse is spent.
+	 * a command which fails is reported and skipped.</br>
+	 * </p>
+	 */
+	private void drain() {
+		if( held) {
+			//release schedules the next drain
+			scheduled.set( false);
+			return;
+		}
+		long end = System.nanoTime() + BUDGET;
+		EditCommand command;
+		while( System.nanoTime() < end && ( command = commands.poll()) != null) {
+			try {
+				command.apply( map);
+			} catch( RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+		scheduled.set( false);
+		//a command may have been submitted after the last poll but before scheduled was cleared
+		if( !commands.isEmpty() && scheduled.compareAndSet( false, true))
+			Platform.runLater( this::drain);
+	}
+}
@@ -0,0 +1,650 @@
+package mapmaker.map.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * boolean operations on polygons stored as flat arrays of coordinates.</br>
+ * a polygon is a list of rings, outer rings have positive {@link Polygons#signedArea(double[])} and holes negative,
+ * so a point is inside if the sum of {@link Polygons#winding(double[], double, double)} over all rings is not zero.</br>
+ * every operation follows the same steps, which unlike Greiner-Hormann also handle rooms sharing edges or corners.
+ * <ol>
+ * 	<li>split edges of both polygons wherever they cross or touch an edge of the other polygon.</li>
+ * 	<li>classify each piece as inside, outside or on top of an edge of the other polygon, in the same or opposite direction.</li>
+ * 	<li>keep the pieces the operation needs, pieces of the second polygon are reversed for difference.</li>
+ * 	<li>join kept pieces end to end into rings, turning as far left as possible where more than 2 pieces meet.</li>
+ * </ol>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class Clipper {
+
+	/**
+	 * <p>
+	 * supported operations. difference removes the second polygon from the first.</br>
+	 * </p>
+	 */
+	public enum Operation {
+		UNION, INTERSECTION, DIFFERENCE
+	}
+
+	/**
+	 * <p>
+	 * distance in pixels under which points are treated as on a line.</br>
+	 * </p>
+	 */
+	private static final double EPSILON = 1e-6;
+
+	/**
+	 * <p>
+	 * end points of pieces are merged if they round to the same multiple of 1 / GRID pixels.</br>
+	 * </p>
+	 */
+	private static final double GRID = 1e4;
+
+	/**
+	 * <p>
+	 * below this many polygons a task of {@link Clipper#unionAll(List)} merges them itself instead of splitting.</br>
+	 * </p>
+	 */
+	private static final int THRESHOLD = 8;
+
+	/**
+	 * <p>
+	 * classification of a piece of edge against the other polygon.</br>
+	 * </p>
+	 */
+	private static final int OUTSIDE = 0, INSIDE = 1, SAME = 2, OPPOSITE = 3;
+
+	/**
+	 * <p>
+	 * one edge of one of the 2 polygons and the positions along it where it must be split.</br>
+	 * </p>
+	 */
+	private static class Edge {
+		private final double x1, y1, x2, y2, length;
+		private final int owner;
+		private double[] cuts = new double[2];
+		private int cutCount;
+
+		private Edge( double x1, double y1, double x2, double y2, int owner) {
+			this.x1 = x1;
+			this.y1 = y1;
+			this.x2 = x2;
+			this.y2 = y2;
+			this.owner = owner;
+			length = Math.hypot( x2 - x1, y2 - y1);
+		}
+
+		/**
+		 * <p>
+		 * remember to split at t, a fraction of the length. cuts too close to an end are ignored.</br>
+		 * </p>
+		 */
+		private void cut( double t) {
+			if( t * length <= EPSILON || ( 1 - t) * length <= EPSILON)
+				return;
+			if( cutCount == cuts.length)
+				cuts = Arrays.copyOf( cuts, cutCount * 2);
+			cuts[cutCount++] = t;
+		}
+
+		/**
+		 * <p>
+		 * split at the closest point of this edge to (x, y).</br>
+		 * </p>
+		 */
+		private void cutAt( double x, double y) {
+			double dx = x2 - x1, dy = y2 - y1;
+			cut( ( ( x - x1) * dx + ( y - y1) * dy) / ( length * length));
+		}
+
+		/**
+		 * @return distance from (x, y) to the infinite line of this edge
+		 */
+		private double distanceToLine( double x, double y) {
+			return Math.abs( Polygons.cross( x1, y1, x2, y2, x, y)) / length;
+		}
+	}
+
+	/**
+	 * <p>
+	 * end point of pieces, shared by all pieces which start or end at the same place.</br>
+	 * </p>
+	 */
+	private static class Node {
+		private final double x, y;
+		private final int id;
+		private final List< Piece> out = new ArrayList<>( 2);
+
+		private Node( double x, double y, int id) {
+			this.x = x;
+			this.y = y;
+			this.id = id;
+		}
+	}
+
+	/**
+	 * <p>
+	 * position rounded to {@link Clipper#GRID}, used to find the {@link Node} at a position.</br>
+	 * </p>
+	 */
+	private static class Key {
+		private final long x, y;
+
+		private Key( long x, long y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode( x * 31 + y);
+		}
+
+		@Override
+		public boolean equals( Object o) {
+			return o instanceof Key && ( ( Key) o).x == x && ( ( Key) o).y == y;
+		}
+	}
+
+	/**
+	 * <p>
+	 * part of an edge between 2 cuts.</br>
+	 * </p>
+	 */
+	private static class Piece {
+		private final Node from, to;
+		private final int owner;
+		private boolean used;
+
+		private Piece( Node from, Node to, int owner) {
+			this.from = from;
+			this.to = to;
+			this.owner = owner;
+		}
+	}
+
+	/**
+	 * <p>
+	 * private default constructor to prevent creation of this object.</br>
+	 * </p>
+	 */
+	private Clipper() {}
+
+	/**
+	 * <p>
+	 * create a polygon from the vertices of a single shape, reversing them if needed so the ring is an outer ring.</br>
+	 * </p>
+	 * @param points - flat array of coordinates
+	 * @return polygon with one ring, or no rings if points have no area
+	 */
+	public static List< double[]> polygon( double[] points) {
+		double area = Polygons.signedArea( points);
+		if( Math.abs( area) <= EPSILON)
+			return new ArrayList<>();
+		List< double[]> rings = new ArrayList<>( 1);
+		rings.add( area > 0 ? points.clone() : reverse( points));
+		return rings;
+	}
+
+	/**
+	 * <p>
+	 * apply an operation to 2 polygons.</br>
+	 * </p>
+	 * @param a - rings of first polygon
+	 * @param b - rings of second polygon
+	 * @param op - {@link Operation} to apply
+	 * @return rings of result, may be empty
+	 */
+	public static List< double[]> clip( List< double[]> a, List< double[]> b, Operation op) {
+		double[] boundsA = bounds( a), boundsB = bounds( b);
+		if( boundsA == null || boundsB == null || boundsA[0] > boundsB[2] + EPSILON || boundsB[0] > boundsA[2] + EPSILON
+				|| boundsA[1] > boundsB[3] + EPSILON || boundsB[1] > boundsA[3] + EPSILON) {
+			//polygons are apart, nothing to split
+			List< double[]> result = new ArrayList<>();
+			if( op != Operation.INTERSECTION)
+				result.addAll( a);
+			if( op == Operation.UNION)
+				result.addAll( b);
+			return result;
+		}
+		List< Edge> edges = new ArrayList<>();
+		addEdges( a, 0, edges);
+		addEdges( b, 1, edges);
+		splitEdges( edges);
+		Map< Key, Node> nodes = new HashMap<>();
+		//pieces of first and second polygon by their end nodes
+		List< Map< Long, Piece>> pieces = Arrays.asList( new HashMap<>(), new HashMap<>());
+		List< Piece> order = new ArrayList<>();
+		for( Edge e : edges) {
+			Arrays.sort( e.cuts, 0, e.cutCount);
+			Node from = node( nodes, e.x1, e.y1);
+			for( int i = 0; i <= e.cutCount; i++) {
+				Node to = i == e.cutCount ? node( nodes, e.x2, e.y2)
+						: node( nodes, e.x1 + ( e.x2 - e.x1) * e.cuts[i], e.y1 + ( e.y2 - e.y1) * e.cuts[i]);
+				if( from != to) {
+					Piece piece = new Piece( from, to, e.owner);
+					pieces.get( e.owner).put( pieceKey( from, to), piece);
+					order.add( piece);
+				}
+				from = to;
+			}
+		}
+		List< Piece> kept = new ArrayList<>();
+		for( Piece piece : order) {
+			int type = classify( piece, piece.owner == 0 ? b : a, pieces.get( 1 - piece.owner));
+			boolean first = piece.owner == 0;
+			switch( op) {
+				case UNION:
+					if( type == OUTSIDE || ( first && type == SAME))
+						kept.add( piece);
+					break;
+				case INTERSECTION:
+					if( type == INSIDE || ( first && type == SAME))
+						kept.add( piece);
+					break;
+				case DIFFERENCE:
+					if( first && ( type == OUTSIDE || type == OPPOSITE))
+						kept.add( piece);
+					else if( !first && type == INSIDE)
+						kept.add( new Piece( piece.to, piece.from, 1));
+					break;
+			}
+		}
+		return assemble( kept);
+	}
+
+	/**
+	 * <p>
+	 * union of many polygons at once, for example thousands of floor tiles.</br>
+	 * polygons are sorted left to right so each half covers a compact part of the map,
+	 * then halves are merged in parallel with fork join and joined pairwise.</br>
+	 * </p>
+	 * @param polygons - polygons to merge, each a list of rings
+	 * @return rings of the union
+	 */
+	public static List< double[]> unionAll( List< List< double[]>> polygons) {
+		List< List< double[]>> sorted = new ArrayList<>( polygons);
+		sorted.removeIf( List::isEmpty);
+		if( sorted.isEmpty())
+			return new ArrayList<>();
+		sorted.sort( Comparator.comparingDouble( p -> {
+			double[] b = bounds( p);
+			return b[0] + b[2];
+		}));
+		return ForkJoinPool.commonPool().invoke( new Union( sorted, 0, sorted.size()));
+	}
+
+	/**
+	 * <p>
+	 * fork join task merging polygons from start to end.</br>
+	 * </p>
+	 */
+	private static class Union extends RecursiveTask< List< double[]>> {
+
+		private static final long serialVersionUID = 1L;
+		private final List< List< double[]>> polygons;
+		private final int start, end;
+
+		private Union( List< List< double[]>> polygons, int start, int end) {
+			this.polygons = polygons;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected List< double[]> compute() {
+			if( end - start <= THRESHOLD) {
+				List< double[]> result = polygons.get( start);
+				for( int i = start + 1; i < end; i++)
+					result = clip( result, polygons.get( i), Operation.UNION);
+				return result;
+			}
+			int middle = ( start + end) >>> 1;
+			Union left = new Union( polygons, start, middle);
+			left.fork();
+			List< double[]> right = new Union( polygons, middle, end).compute();
+			return clip( left.join(), right, Operation.UNION);
+		}
+	}
+
+	/**
+	 * <p>
+	 * turn rings of a polygon into simple polygons a {@link javafx.scene.shape.Polygon} can draw.
+	 * each hole is joined to the outer ring around it by a thin cut from its rightmost vertex to the closest visible vertex
+	 * of that ring, so the hole is walked as part of the outline. the cut shows as 2 vertices at the same place.</br>
+	 * </p>
+	 * @param rings - rings of a polygon
+	 * @return one flat array of coordinates per outer ring
+	 */
+	public static List< double[]> toSimple( List< double[]> rings) {
+		List< double[]> outers = new ArrayList<>();
+		List< double[]> holes = new ArrayList<>();
+		for( double[] ring : rings)
+			( Polygons.signedArea( ring) > 0 ? outers : holes).add( ring);
+		if( holes.isEmpty())
+			return outers;
+		//each hole goes to the smallest outer ring containing it
+		List< List< double[]>> holesOf = new ArrayList<>();
+		for( int i = 0; i < outers.size(); i++)
+			holesOf.add( new ArrayList<>());
+		for( double[] hole : holes) {
+			int best = -1;
+			double bestArea = Double.MAX_VALUE;
+			for( int i = 0; i < outers.size(); i++) {
+				double area = Polygons.signedArea( outers.get( i));
+				if( area < bestArea && Polygons.contains( outers.get( i), hole[0], hole[1])) {
+					best = i;
+					bestArea = area;
+				}
+			}
+			if( best >= 0)
+				holesOf.get( best).add( hole);
+		}
+		List< double[]> result = new ArrayList<>( outers.size());
+		for( int i = 0; i < outers.size(); i++) {
+			double[] outer = outers.get( i);
+			List< double[]> own = holesOf.get( i);
+			//rightmost holes first so later cuts can go around earlier ones
+			own.sort( Comparator.comparingDouble( h -> -Polygons.bounds( h)[2]));
+			for( int h = 0; h < own.size(); h++)
+				outer = bridge( outer, own.get( h), own.subList( h + 1, own.size()));
+			result.add( outer);
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * join a hole to its outer ring.</br>
+	 * </p>
+	 * @param outer - outer ring, may already include earlier holes
+	 * @param hole - hole to join
+	 * @param others - holes not joined yet, the cut must not cross them
+	 * @return new outer ring walking around the hole
+	 */
+	private static double[] bridge( double[] outer, double[] hole, List< double[]> others) {
+		int h = 0;
+		for( int i = 2; i < hole.length; i += 2)
+			if( hole[i] > hole[h])
+				h = i;
+		double hx = hole[h], hy = hole[h + 1];
+		int best = -1, fallback = 0;
+		double bestDistance = Double.MAX_VALUE, fallbackDistance = Double.MAX_VALUE;
+		for( int o = 0; o < outer.length; o += 2) {
+			double d = Math.hypot( outer[o] - hx, outer[o + 1] - hy);
+			if( d < fallbackDistance) {
+				fallbackDistance = d;
+				fallback = o;
+			}
+			if( d < bestDistance && !crossesAny( hx, hy, outer[o], outer[o + 1], outer, hole, others)) {
+				bestDistance = d;
+				best = o;
+			}
+		}
+		int o = best >= 0 ? best : fallback;
+		//outer up to o, hole from h all the way around back to h, then o again and rest of outer
+		double[] joined = new double[outer.length + hole.length + 4];
+		int at = 0;
+		System.arraycopy( outer, 0, joined, at, o + 2);
+		at += o + 2;
+		System.arraycopy( hole, h, joined, at, hole.length - h);
+		at += hole.length - h;
+		System.arraycopy( hole, 0, joined, at, h + 2);
+		at += h + 2;
+		System.arraycopy( outer, o, joined, at, outer.length - o);
+		return joined;
+	}
+
+	/**
+	 * @return true if segment (x1, y1) to (x2, y2) properly crosses an edge of any given ring
+	 */
+	private static boolean crossesAny( double x1, double y1, double x2, double y2, double[] outer, double[] hole, List< double[]> others) {
+		if( crosses( x1, y1, x2, y2, outer) || crosses( x1, y1, x2, y2, hole))
+			return true;
+		for( double[] other : others)
+			if( crosses( x1, y1, x2, y2, other))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return true if segment (x1, y1) to (x2, y2) properly crosses an edge of ring
+	 */
+	private static boolean crosses( double x1, double y1, double x2, double y2, double[] ring) {
+		int n = ring.length;
+		for( int i = 0; i < n; i += 2)
+			if( Polygons.segmentsCross( x1, y1, x2, y2, ring[i], ring[i + 1], ring[( i + 2) % n], ring[( i + 3) % n], EPSILON))
+				return true;
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * add every edge of given rings to list of edges.</br>
+	 * </p>
+	 */
+	private static void addEdges( List< double[]> rings, int owner, List< Edge> edges) {
+		for( double[] ring : rings) {
+			int n = ring.length;
+			for( int i = 0; i < n; i += 2) {
+				Edge e = new Edge( ring[i], ring[i + 1], ring[( i + 2) % n], ring[( i + 3) % n], owner);
+				if( e.length > EPSILON)
+					edges.add( e);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * find every place where an edge of one polygon crosses or touches an edge of the other.
+	 * edges are sorted by left end and only edges whose x ranges overlap are compared.</br>
+	 * </p>
+	 */
+	private static void splitEdges( List< Edge> edges) {
+		edges.sort( Comparator.comparingDouble( e -> Math.min( e.x1, e.x2)));
+		for( int i = 0; i < edges.size(); i++) {
+			Edge e = edges.get( i);
+			double maxX = Math.max( e.x1, e.x2) + EPSILON;
+			double minY = Math.min( e.y1, e.y2) - EPSILON, maxY = Math.max( e.y1, e.y2) + EPSILON;
+			for( int j = i + 1; j < edges.size(); j++) {
+				Edge f = edges.get( j);
+				if( Math.min( f.x1, f.x2) > maxX)
+					break;
+				if( f.owner != e.owner && Math.max( f.y1, f.y2) >= minY && Math.min( f.y1, f.y2) <= maxY)
+					split( e, f);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * add cuts to 2 edges of different polygons. collinear edges are cut at the ends of each other,
+	 * others at their crossing point, which also covers an end of one lying on the other.</br>
+	 * </p>
+	 */
+	private static void split( Edge e, Edge f) {
+		if( f.distanceToLine( e.x1, e.y1) <= EPSILON && f.distanceToLine( e.x2, e.y2) <= EPSILON
+				|| e.distanceToLine( f.x1, f.y1) <= EPSILON && e.distanceToLine( f.x2, f.y2) <= EPSILON) {
+			e.cutAt( f.x1, f.y1);
+			e.cutAt( f.x2, f.y2);
+			f.cutAt( e.x1, e.y1);
+			f.cutAt( e.x2, e.y2);
+			return;
+		}
+		double ex = e.x2 - e.x1, ey = e.y2 - e.y1, fx = f.x2 - f.x1, fy = f.y2 - f.y1;
+		double denominator = ex * fy - ey * fx;
+		if( denominator == 0)
+			return;
+		double t = ( ( f.x1 - e.x1) * fy - ( f.y1 - e.y1) * fx) / denominator;
+		double u = ( ( f.x1 - e.x1) * ey - ( f.y1 - e.y1) * ex) / denominator;
+		double marginT = EPSILON / e.length, marginU = EPSILON / f.length;
+		if( t < -marginT || t > 1 + marginT || u < -marginU || u > 1 + marginU)
+			return;
+		e.cut( t);
+		f.cut( u);
+	}
+
+	/**
+	 * <p>
+	 * classify a piece against the rings of the other polygon.</br>
+	 * </p>
+	 */
+	private static int classify( Piece piece, List< double[]> other, Map< Long, Piece> otherPieces) {
+		if( otherPieces.containsKey( pieceKey( piece.from, piece.to)))
+			return SAME;
+		if( otherPieces.containsKey( pieceKey( piece.to, piece.from)))
+			return OPPOSITE;
+		double x = ( piece.from.x + piece.to.x) / 2, y = ( piece.from.y + piece.to.y) / 2;
+		int winding = 0;
+		for( double[] ring : other)
+			winding += Polygons.winding( ring, x, y);
+		return winding != 0 ? INSIDE : OUTSIDE;
+	}
+
+	/**
+	 * <p>
+	 * join kept pieces into rings. where more than one unused piece leaves a node, the one turning
+	 * furthest left is taken, which keeps the walk along the area on its left and separates rings that only touch.</br>
+	 * </p>
+	 */
+	private static List< double[]> assemble( List< Piece> kept) {
+		for( Piece piece : kept)
+			piece.from.out.add( piece);
+		List< double[]> rings = new ArrayList<>();
+		for( Piece first : kept) {
+			if( first.used)
+				continue;
+			List< Node> ring = new ArrayList<>();
+			Piece piece = first;
+			boolean closed = false;
+			while( piece != null) {
+				piece.used = true;
+				ring.add( piece.from);
+				if( piece.to == first.from) {
+					closed = true;
+					break;
+				}
+				piece = next( piece);
+			}
+			if( closed) {
+				double[] cleaned = clean( ring);
+				if( cleaned != null)
+					rings.add( cleaned);
+			}
+		}
+		for( Piece piece : kept)
+			piece.from.out.clear();
+		return rings;
+	}
+
+	/**
+	 * @return unused piece leaving end of given piece with the largest left turn, null if none
+	 */
+	private static Piece next( Piece in) {
+		double ix = in.to.x - in.from.x, iy = in.to.y - in.from.y;
+		Piece best = null;
+		double bestTurn = -Double.MAX_VALUE;
+		for( Piece out : in.to.out) {
+			if( out.used)
+				continue;
+			double ox = out.to.x - out.from.x, oy = out.to.y - out.from.y;
+			//going straight back is only taken if there is nothing else
+			double turn = out.to == in.from ? -Math.PI * 2 : Math.atan2( ix * oy - iy * ox, ix * ox + iy * oy);
+			if( turn > bestTurn) {
+				bestTurn = turn;
+				best = out;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * <p>
+	 * convert nodes of a ring to coordinates, dropping vertices in the middle of a straight line.</br>
+	 * </p>
+	 * @return flat array of coordinates, null if ring has no area
+	 */
+	private static double[] clean( List< Node> ring) {
+		List< Node> kept = new ArrayList<>( ring);
+		boolean removed = true;
+		while( removed && kept.size() >= 3) {
+			removed = false;
+			for( int i = 0; i < kept.size() && kept.size() >= 3; i++) {
+				Node a = kept.get( ( i + kept.size() - 1) % kept.size()), b = kept.get( i), c = kept.get( ( i + 1) % kept.size());
+				double length = Math.hypot( c.x - a.x, c.y - a.y);
+				if( length <= EPSILON || Math.abs( Polygons.cross( a.x, a.y, c.x, c.y, b.x, b.y)) / length <= EPSILON) {
+					kept.remove( i--);
+					removed = true;
+				}
+			}
+		}
+		if( kept.size() < 3)
+			return null;
+		double[] points = new double[kept.size() * 2];
+		for( int i = 0; i < kept.size(); i++) {
+			points[i * 2] = kept.get( i).x;
+			points[i * 2 + 1] = kept.get( i).y;
+		}
+		return Math.abs( Polygons.signedArea( points)) <= EPSILON ? null : points;
+	}
+
+	/**
+	 * @return node at given position, created if missing
+	 */
+	private static Node node( Map< Key, Node> nodes, double x, double y) {
+		Key key = new Key( Math.round( x * GRID), Math.round( y * GRID));
+		Node node = nodes.get( key);
+		if( node == null) {
+			node = new Node( x, y, nodes.size());
+			nodes.put( key, node);
+		}
+		return node;
+	}
+
+	/**
+	 * @return key of a piece from its end nodes
+	 */
+	private static long pieceKey( Node from, Node to) {
+		return ( long) from.id << 32 | to.id;
+	}
+
+	/**
+	 * @return bounds of all rings, null if there are none
+	 */
+	private static double[] bounds( List< double[]> rings) {
+		double[] result = null;
+		for( double[] ring : rings) {
+			double[] b = Polygons.bounds( ring);
+			if( result == null)
+				result = b;
+			else {
+				result[0] = Math.min( result[0], b[0]);
+				result[1] = Math.min( result[1], b[1]);
+				result[2] = Math.max( result[2], b[2]);
+				result[3] = Math.max( result[3], b[3]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return copy of a ring in opposite direction
+	 */
+	private static double[] reverse( double[] points) {
+		double[] reversed = new double[points.length];
+		for( int i = 0; i < points.length; i += 2) {
+			reversed[points.length - 2 - i] = points[i];
+			reversed[points.length - 1 - i] = points[i + 1];
+		}
+		return reversed;
+	}
+}
@@ -0,0 +1,158 @@
+package mapmaker.map.geometry;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * exact overlap tests between 2 polygons stored as flat arrays of coordinates.</br>
+ * convex polygons are tested with the separating axis theorem, anything else with edge crossings and
+ * points just inside of their edges.
+ * polygons that only touch, like rooms snapped to each other, do not overlap.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class Collisions {
+
+	/**
+	 * <p>
+	 * polygons have to go this many pixels into each other to be counted as overlapping.</br>
+	 * </p>
+	 */
+	public static final double EPSILON = 1e-6;
+
+	/**
+	 * <p>
+	 * distance from an edge of a concave polygon to the point tested just inside of it.</br>
+	 * </p>
+	 */
+	private static final double OFFSET = 1e-3;
+
+	/**
+	 * <p>
+	 * private default constructor to prevent creation of this object.</br>
+	 * </p>
+	 */
+	private Collisions() {}
+
+	/**
+	 * <p>
+	 * check if 2 polygons overlap, choosing the fastest exact test.</br>
+	 * </p>
+	 * @param a - flat array of first polygon
+	 * @param convexA - true if first polygon is convex
+	 * @param b - flat array of second polygon
+	 * @param convexB - true if second polygon is convex
+	 * @return true if polygons share some area
+	 */
+	public static boolean overlap( double[] a, boolean convexA, double[] b, boolean convexB) {
+		if( a.length < 6 || b.length < 6)
+			return false;
+		if( convexA && convexB)
+			return !hasSeparatingAxis( a, b) && !hasSeparatingAxis( b, a);
+		return overlapGeneral( a, b);
+	}
+
+	/**
+	 * <p>
+	 * separating axis test using normals of edges of first polygon.
+	 * if projections of both polygons on any normal do not overlap the polygons are separated.</br>
+	 * </p>
+	 * @see <a href="https://www.metanetsoftware.com/technique/tutorialA.html">Separating Axis Theorem</a>
+	 * @param a - polygon whose edges give the axes
+	 * @param b - other polygon
+	 * @return true if a separating axis exists
+	 */
+	private static boolean hasSeparatingAxis( double[] a, double[] b) {
+		int n = a.length;
+		for( int i = 0; i < n; i += 2) {
+			double ex = a[( i + 2) % n] - a[i], ey = a[( i + 3) % n] - a[i + 1];
+			double length = Math.hypot( ex, ey);
+			if( length == 0)
+				continue;
+			//unit normal of edge
+			double nx = -ey / length, ny = ex / length;
+			double minA = Double.MAX_VALUE, maxA = -Double.MAX_VALUE;
+			for( int j = 0; j < n; j += 2) {
+				double p = a[j] * nx + a[j + 1] * ny;
+				minA = Math.min( minA, p);
+				maxA = Math.max( maxA, p);
+			}
+			double minB = Double.MAX_VALUE, maxB = -Double.MAX_VALUE;
+			for( int j = 0; j < b.length; j += 2) {
+				double p = b[j] * nx + b[j + 1] * ny;
+				minB = Math.min( minB, p);
+				maxB = Math.max( maxB, p);
+			}
+			if( maxA <= minB + EPSILON || maxB <= minA + EPSILON)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * overlap test for concave polygons. they overlap if any 2 edges cross or if the area just inside
+	 * an edge of one is inside of the other.</br>
+	 * </p>
+	 * @param a - flat array of first polygon
+	 * @param b - flat array of second polygon
+	 * @return true if polygons share some area
+	 */
+	private static boolean overlapGeneral( double[] a, double[] b) {
+		int n = a.length, m = b.length;
+		for( int i = 0; i < n; i += 2) {
+			double ax1 = a[i], ay1 = a[i + 1], ax2 = a[( i + 2) % n], ay2 = a[( i + 3) % n];
+			for( int j = 0; j < m; j += 2) {
+				if( Polygons.segmentsCross( ax1, ay1, ax2, ay2, b[j], b[j + 1], b[( j + 2) % m], b[( j + 3) % m], EPSILON))
+					return true;
+			}
+		}
+		return reaches( a, b) || reaches( b, a);
+	}
+
+	/**
+	 * <p>
+	 * check if the inside of polygon a reaches into polygon b, given that their edges do not cross.
+	 * edges of a are cut at vertices of b lying on them, so along each piece a is either on the outline of b,
+	 * inside of it or outside of it. a point just inside of a next to the middle of each piece is tested,
+	 * if the polygons share area its border has a piece of a or of b whose point is inside of the other.
+	 * the first vertex or the center of a would not do, the vertex of a concave room sharing an edge with
+	 * another can be outside of it while the rooms share area,
+	 * like (0,0) (10,0) (10,10) (0,10) (2,5) and (5,0) (15,0) (15,10) (5,10).</br>
+	 * </p>
+	 */
+	private static boolean reaches( double[] a, double[] b) {
+		double area = Polygons.signedArea( a);
+		if( area == 0)
+			return false;
+		//inside is left of edges of a counter clockwise polygon
+		double side = Math.signum( area);
+		int n = a.length, m = b.length;
+		double[] cuts = new double[m / 2 + 2];
+		for( int i = 0; i < n; i += 2) {
+			double ax = a[i], ay = a[i + 1], dx = a[( i + 2) % n] - ax, dy = a[( i + 3) % n] - ay;
+			double length = Math.hypot( dx, dy);
+			if( length == 0)
+				continue;
+			int count = 0;
+			cuts[count++] = 0;
+			for( int j = 0; j < m; j += 2) {
+				double t = ( ( b[j] - ax) * dx + ( b[j + 1] - ay) * dy) / ( length * length);
+				if( t > 0 && t < 1 && Math.abs( Polygons.cross( ax, ay, ax + dx, ay + dy, b[j], b[j + 1])) / length <= EPSILON)
+					cuts[count++] = t;
+			}
+			cuts[count++] = 1;
+			Arrays.sort( cuts, 0, count);
+			for( int k = 1; k < count; k++) {
+				double piece = ( cuts[k] - cuts[k - 1]) * length;
+				if( piece <= EPSILON)
+					continue;
+				double t = ( cuts[k - 1] + cuts[k]) / 2, offset = Math.min( OFFSET, piece / 4) * side / length;
+				double x = ax + t * dx - dy * offset, y = ay + t * dy + dx * offset;
+				if( Polygons.contains( b, x, y) && Polygons.distanceToOutline( b, x, y) > EPSILON)
+					return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,349 @@
+package mapmaker.map.geometry;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * static helper functions for polygons stored as flat lists of coordinates,
+ * same layout as {@link javafx.scene.shape.Polygon#getPoints()}: x0, y0, x1, y1, ...</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class Polygons {
+
+	/**
+	 * <p>
+	 * polygons with up to this many edges are checked for self intersection by testing every pair of edges,
+	 * bigger ones sort their edges first. below this size sorting costs more than it saves.</br>
+	 * </p>
+	 */
+	private static final int PAIRWISE_LIMIT = 32;
+
+	/**
+	 * <p>
+	 * private default constructor to prevent creation of this object.</br>
+	 * </p>
+	 */
+	private Polygons() {}
+
+	/**
+	 * <p>
+	 * check if a point is inside of a polygon using the winding number test.
+	 * unlike a bounding box test this is exact for concave polygons.</br>
+	 * no objects are created so it is cheap enough to be called on every mouse event.</br>
+	 * </p>
+	 * @see <a href="http://geomalgorithms.com/a03-_inclusion.html">Inclusion of a Point in a Polygon</a>
+	 * @param points - flat list of polygon coordinates
+	 * @param x - x of point to test
+	 * @param y - y of point to test
+	 * @return true if winding number of polygon around the point is not zero
+	 */
+	public static boolean contains( List< Double> points, double x, double y) {
+		int n = points.size();
+		if( n < 6)
+			return false;
+		int winding = 0;
+		double x1 = points.get( n - 2), y1 = points.get( n - 1);
+		for( int i = 0; i < n; i += 2) {
+			double x2 = points.get( i), y2 = points.get( i + 1);
+			if( y1 <= y) {
+				//upward crossing with point on the left of edge
+				if( y2 > y && cross( x1, y1, x2, y2, x, y) > 0)
+					winding++;
+			}
+			//downward crossing with point on the right of edge
+			else if( y2 <= y && cross( x1, y1, x2, y2, x, y) < 0) {
+				winding--;
+			}
+			x1 = x2;
+			y1 = y2;
+		}
+		return winding != 0;
+	}
+
+	/**
+	 * <p>
+	 * same as {@link Polygons#contains(List, double, double)} for a primitive array of coordinates.</br>
+	 * </p>
+	 * @param points - flat array of polygon coordinates
+	 * @param x - x of point to test
+	 * @param y - y of point to test
+	 * @return true if winding number of polygon around the point is not zero
+	 */
+	public static boolean contains( double[] points, double x, double y) {
+		return winding( points, x, y) != 0;
+	}
+
+	/**
+	 * <p>
+	 * winding number of a polygon around a point, positive for counter clockwise turns in y up coordinates.
+	 * summing it over several rings tells if a point is inside of a polygon with holes,
+	 * as long as holes wind the other way.</br>
+	 * </p>
+	 * @param points - flat array of polygon coordinates
+	 * @param x - x of point to test
+	 * @param y - y of point to test
+	 * @return winding number, zero if outside
+	 */
+	public static int winding( double[] points, double x, double y) {
+		int n = points.length;
+		if( n < 6)
+			return 0;
+		int winding = 0;
+		double x1 = points[n - 2], y1 = points[n - 1];
+		for( int i = 0; i < n; i += 2) {
+			double x2 = points[i], y2 = points[i + 1];
+			if( y1 <= y) {
+				if( y2 > y && cross( x1, y1, x2, y2, x, y) > 0)
+					winding++;
+			}
+			else if( y2 <= y && cross( x1, y1, x2, y2, x, y) < 0) {
+				winding--;
+			}
+			x1 = x2;
+			y1 = y2;
+		}
+		return winding;
+	}
+
+	/**
+	 * <p>
+	 * copy a flat list of coordinates to a primitive array, to be used off the FX thread.</br>
+	 * </p>
+	 * @param points - flat list of polygon coordinates
+	 * @return new array with same values
+	 */
+	public static double[] toArray( List< Double> points) {
+		double[] array = new double[points.size()];
+		for( int i = 0; i < array.length; i++)
+			array[i] = points.get( i);
+		return array;
+	}
+
+	/**
+	 * <p>
+	 * bounding box of a polygon.</br>
+	 * </p>
+	 * @param points - flat array of polygon coordinates
+	 * @return array of minX, minY, maxX, maxY
+	 */
+	public static double[] bounds( double[] points) {
+		double[] b = { Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for( int i = 0; i < points.length; i += 2) {
+			b[0] = Math.min( b[0], points[i]);
+			b[1] = Math.min( b[1], points[i + 1]);
+			b[2] = Math.max( b[2], points[i]);
+			b[3] = Math.max( b[3], points[i + 1]);
+		}
+		return b;
+	}
+
+	/**
+	 * <p>
+	 * check if a polygon is convex, all turns are in the same direction. collinear vertices are ignored.</br>
+	 * </p>
+	 * @param points - flat array of polygon coordinates
+	 * @return true if convex
+	 */
+	public static boolean isConvex( double[] points) {
+		int n = points.length / 2;
+		int sign = 0;
+		for( int i = 0; i < n; i++) {
+			int j = ( i + 1) % n, k = ( i + 2) % n;
+			double c = cross( points[i * 2], points[i * 2 + 1], points[j * 2], points[j * 2 + 1], points[k * 2], points[k * 2 + 1]);
+			if( c == 0)
+				continue;
+			int s = c > 0 ? 1 : -1;
+			if( sign == 0)
+				sign = s;
+			else if( s != sign)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * check if segment a1-a2 and segment b1-b2 cross each other at a single point inside both of them.
+	 * touching at an end or lying on top of each other does not count, so snapped rooms sharing
+	 * an edge or a corner are not reported.</br>
+	 * </p>
+	 * @param epsilon - tolerance for treating a point as on a line, scaled by segment length
+	 * @return true if segments properly intersect
+	 */
+	public static boolean segmentsCross( double a1x, double a1y, double a2x, double a2y,
+			double b1x, double b1y, double b2x, double b2y, double epsilon) {
+		double lengthA = Math.hypot( a2x - a1x, a2y - a1y), lengthB = Math.hypot( b2x - b1x, b2y - b1y);
+		double d1 = cross( a1x, a1y, a2x, a2y, b1x, b1y) / lengthA;
+		double d2 = cross( a1x, a1y, a2x, a2y, b2x, b2y) / lengthA;
+		double d3 = cross( b1x, b1y, b2x, b2y, a1x, a1y) / lengthB;
+		double d4 = cross( b1x, b1y, b2x, b2y, a2x, a2y) / lengthB;
+		return ( ( d1 > epsilon && d2 < -epsilon) || ( d1 < -epsilon && d2 > epsilon))
+				&& ( ( d3 > epsilon && d4 < -epsilon) || ( d3 < -epsilon && d4 > epsilon));
+	}
+
+	/**
+	 * <p>
+	 * check if any 2 edges of a polygon which are not next to each other cross, like a bow-tie.
+	 * area, centroid and containment results of such polygons are meaningless.</br>
+	 * small polygons test every pair of edges. bigger ones sort edges by left end and only compare
+	 * edges whose x ranges overlap, which is close to linear for rooms drawn by hand.</br>
+	 * </p>
+	 * @param points - flat array of polygon coordinates
+	 * @param epsilon - tolerance passed to {@link Polygons#segmentsCross}
+	 * @return true if polygon crosses itself
+	 */
+	public static boolean selfIntersects( double[] points, double epsilon) {
+		int n = points.length / 2;
+		if( n < 4)
+			return false;
+		if( n <= PAIRWISE_LIMIT) {
+			for( int i = 0; i < n; i++)
+				for( int j = i + 2; j < n; j++)
+					if( edgesCross( points, n, i, j, epsilon))
+						return true;
+			return false;
+		}
+		Integer[] edges = new Integer[n];
+		double[] minX = new double[n], maxX = new double[n];
+		for( int i = 0; i < n; i++) {
+			int j = ( i + 1) % n;
+			minX[i] = Math.min( points[i * 2], points[j * 2]);
+			maxX[i] = Math.max( points[i * 2], points[j * 2]);
+			edges[i] = i;
+		}
+		Arrays.sort( edges, Comparator.comparingDouble( i -> minX[i]));
+		for( int a = 0; a < n; a++) {
+			int i = edges[a];
+			for( int b = a + 1; b < n && minX[edges[b]] <= maxX[i]; b++)
+				if( edgesCross( points, n, i, edges[b], epsilon))
+					return true;
+		}
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * check if edge i and edge j of a polygon with n vertices cross. edges sharing a vertex never count.</br>
+	 * </p>
+	 */
+	private static boolean edgesCross( double[] points, int n, int i, int j, double epsilon) {
+		int diff = Math.abs( i - j);
+		if( diff <= 1 || diff == n - 1)
+			return false;
+		int i2 = ( i + 1) % n, j2 = ( j + 1) % n;
+		return segmentsCross( points[i * 2], points[i * 2 + 1], points[i2 * 2], points[i2 * 2 + 1],
+				points[j * 2], points[j * 2 + 1], points[j2 * 2], points[j2 * 2 + 1], epsilon);
+	}
+
+	/**
+	 * <p>
+	 * shortest distance from a point to the outline of a polygon.</br>
+	 * </p>
+	 * @param points - flat array of polygon coordinates
+	 * @param x - x of point
+	 * @param y - y of point
+	 * @return distance to closest edge
+	 */
+	public static double distanceToOutline( double[] points, double x, double y) {
+		int n = points.length;
+		double best = Double.MAX_VALUE;
+		for( int i = 0; i < n; i += 2) {
+			double ax = points[i], ay = points[i + 1];
+			double bx = points[( i + 2) % n], by = points[( i + 3) % n];
+			double dx = bx - ax, dy = by - ay;
+			double length = dx * dx + dy * dy;
+			double t = length == 0 ? 0 : Math.max( 0, Math.min( 1, ( ( x - ax) * dx + ( y - ay) * dy) / length));
+			best = Math.min( best, Math.hypot( x - ax - t * dx, y - ay - t * dy));
+		}
+		return best;
+	}
+
+	/**
+	 * <p>
+	 * signed area of a polygon using the shoelace formula.
+	 * positive if vertices are counter clockwise in a y-up system, which is clockwise on screen.</br>
+	 * </p>
+	 * @param points - flat list of polygon coordinates
+	 * @return signed area
+	 */
+	public static double signedArea( List< Double> points) {
+		int n = points.size();
+		if( n < 6)
+			return 0;
+		double sum = 0;
+		double x1 = points.get( n - 2), y1 = points.get( n - 1);
+		for( int i = 0; i < n; i += 2) {
+			double x2 = points.get( i), y2 = points.get( i + 1);
+			sum += x1 * y2 - x2 * y1;
+			x1 = x2;
+			y1 = y2;
+		}
+		return sum / 2;
+	}
+
+	/**
+	 * <p>
+	 * same as {@link Polygons#signedArea(List)} for a primitive array of coordinates.</br>
+	 * </p>
+	 * @param points - flat array of polygon coordinates
+	 * @return signed area, positive if counter clockwise in y up coordinates
+	 */
+	public static double signedArea( double[] points) {
+		int n = points.length;
+		if( n < 6)
+			return 0;
+		double sum = 0;
+		double x1 = points[n - 2], y1 = points[n - 1];
+		for( int i = 0; i < n; i += 2) {
+			sum += x1 * points[i + 1] - points[i] * y1;
+			x1 = points[i];
+			y1 = points[i + 1];
+		}
+		return sum / 2;
+	}
+
+	/**
+	 * <p>
+	 * center of mass of a polygon. if polygon has no area, like a line, average of its vertices is returned.</br>
+	 * </p>
+	 * @see <a href="https://en.wikipedia.org/wiki/Centroid#Of_a_polygon">Centroid of a polygon</a>
+	 * @param points - flat list of polygon coordinates
+	 * @return array of x and y
+	 */
+	public static double[] centroid( List< Double> points) {
+		int n = points.size();
+		double area = signedArea( points);
+		double cx = 0, cy = 0;
+		if( area == 0) {
+			for( int i = 0; i < n; i += 2) {
+				cx += points.get( i);
+				cy += points.get( i + 1);
+			}
+			return n == 0 ? new double[] { 0, 0 } : new double[] { cx / ( n / 2), cy / ( n / 2) };
+		}
+		double x1 = points.get( n - 2), y1 = points.get( n - 1);
+		for( int i = 0; i < n; i += 2) {
+			double x2 = points.get( i), y2 = points.get( i + 1);
+			double cross = x1 * y2 - x2 * y1;
+			cx += ( x1 + x2) * cross;
+			cy += ( y1 + y2) * cross;
+			x1 = x2;
+			y1 = y2;
+		}
+		return new double[] { cx / ( 6 * area), cy / ( 6 * area) };
+	}
+
+	/**
+	 * <p>
+	 * z component of cross product of (b - a) and (c - a).</br>
+	 * positive if c is on the left of line a to b, negative if on the right and zero if on the line.</br>
+	 * </p>
+	 * @return cross product
+	 */
+	public static double cross( double ax, double ay, double bx, double by, double cx, double cy) {
+		return ( bx - ax) * ( cy - ay) - ( cx - ax) * ( by - ay);
+	}
+}
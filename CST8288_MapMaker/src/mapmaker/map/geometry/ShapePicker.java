@@ -0,0 +1,63 @@
+package mapmaker.map.geometry;
+
+import java.util.List;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * find the room under a point. this is done in 2 phases.
+ * <ol>
+ * 	<li>broad phase: skip any {@link Node} that is not a room or whose bounding box does not contain the point.</li>
+ * 	<li>narrow phase: exact winding number test of {@link Polygons#contains(List, double, double)} on vertices of the room.</li>
+ * </ol>
+ * nodes are checked from last to first so the topmost room, the one drawn last, is returned.</br>
+ * {@link Path}'s are not rooms and are never picked.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class ShapePicker {
+
+	/**
+	 * <p>
+	 * nodes to pick from, in rendering order. usually children of map area.</br>
+	 * </p>
+	 */
+	private final List< Node> nodes;
+
+	/**
+	 * <p>
+	 * create a picker over given nodes. the list is not copied so later changes are seen.</br>
+	 * </p>
+	 * @param nodes - nodes in rendering order
+	 */
+	public ShapePicker( List< Node> nodes) {
+		this.nodes = nodes;
+	}
+
+	/**
+	 * <p>
+	 * find the topmost room which truly contains the given point.</br>
+	 * </p>
+	 * @param x - x position, shapes in map area have no transforms so local coordinates are used
+	 * @param y - y position
+	 * @return topmost {@link PolyShape} under the point or null
+	 */
+	public PolyShape pick( double x, double y) {
+		for( int i = nodes.size() - 1; i >= 0; i--) {
+			Node n = nodes.get( i);
+			if( !( n instanceof PolyShape) || n instanceof Path)
+				continue;
+			Bounds b = n.getBoundsInLocal();
+			if( !b.contains( x, y))
+				continue;
+			PolyShape s = (PolyShape) n;
+			if( Polygons.contains( s.getPoints(), x, y))
+				return s;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,134 @@
+package mapmaker.map.geometry;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * reduce the number of vertices of a traced outline while keeping its shape, using Douglas-Peucker.</br>
+ * the first and last point of a run are kept, then the point farthest from the line between them is kept
+ * if it is farther than the tolerance and both halves are handled the same way.
+ * an explicit stack is used instead of recursion so long traces cannot overflow.</br>
+ * </p>
+ * @see <a href="https://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm">Ramer-Douglas-Peucker algorithm</a>
+ * @author Adriano Dramisino
+ */
+public final class Simplifier {
+
+	/**
+	 * <p>
+	 * private default constructor to prevent creation of this object.</br>
+	 * </p>
+	 */
+	private Simplifier() {}
+
+	/**
+	 * <p>
+	 * simplify a closed outline. the outline is treated as an open line from the first point back to itself,
+	 * so the start of the trace is always kept as a vertex.</br>
+	 * </p>
+	 * @param points - flat array of traced coordinates, only first count values are used
+	 * @param count - number of values used in points, 2 per point
+	 * @param tolerance - largest distance in pixels a dropped point may be from the simplified outline
+	 * @return flat array of kept coordinates
+	 */
+	public static double[] simplifyClosed( double[] points, int count, double tolerance) {
+		int n = count / 2;
+		if( n < 3)
+			return Arrays.copyOf( points, count);
+		//repeat first point at the end to close the outline, it is dropped again from result
+		double[] closed = Arrays.copyOf( points, count + 2);
+		closed[count] = points[0];
+		closed[count + 1] = points[1];
+		boolean[] keep = mark( closed, n + 1, tolerance);
+		keep[n] = false;
+		return collect( closed, keep);
+	}
+
+	/**
+	 * <p>
+	 * simplify an open line, both ends are kept.</br>
+	 * </p>
+	 * @param points - flat array of coordinates, only first count values are used
+	 * @param count - number of values used in points, 2 per point
+	 * @param tolerance - largest distance in pixels a dropped point may be from the simplified line
+	 * @return flat array of kept coordinates
+	 */
+	public static double[] simplify( double[] points, int count, double tolerance) {
+		if( count < 6)
+			return Arrays.copyOf( points, count);
+		return collect( points, mark( points, count / 2, tolerance));
+	}
+
+	/**
+	 * <p>
+	 * distance from point p to segment a-b.</br>
+	 * </p>
+	 * @return distance in pixels
+	 */
+	public static double distanceToSegment( double px, double py, double ax, double ay, double bx, double by) {
+		double dx = bx - ax, dy = by - ay;
+		double lengthSq = dx * dx + dy * dy;
+		double t = lengthSq == 0 ? 0 : Math.max( 0, Math.min( 1, ( ( px - ax) * dx + ( py - ay) * dy) / lengthSq));
+		return Math.hypot( px - ( ax + t * dx), py - ( ay + t * dy));
+	}
+
+	/**
+	 * <p>
+	 * mark points to keep with Douglas-Peucker.</br>
+	 * </p>
+	 * @param points - flat array of coordinates
+	 * @param n - number of points
+	 * @param tolerance - largest allowed distance of a dropped point
+	 * @return true for every point to keep
+	 */
+	private static boolean[] mark( double[] points, int n, double tolerance) {
+		boolean[] keep = new boolean[n];
+		keep[0] = keep[n - 1] = true;
+		//pairs of first and last index of runs still to be checked
+		int[] stack = new int[2 * n];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = n - 1;
+		while( top > 0) {
+			int last = stack[--top], first = stack[--top];
+			double ax = points[first * 2], ay = points[first * 2 + 1];
+			double bx = points[last * 2], by = points[last * 2 + 1];
+			double farthest = -1;
+			int index = -1;
+			for( int i = first + 1; i < last; i++) {
+				double d = distanceToSegment( points[i * 2], points[i * 2 + 1], ax, ay, bx, by);
+				if( d > farthest) {
+					farthest = d;
+					index = i;
+				}
+			}
+			if( farthest > tolerance) {
+				keep[index] = true;
+				stack[top++] = first;
+				stack[top++] = index;
+				stack[top++] = index;
+				stack[top++] = last;
+			}
+		}
+		return keep;
+	}
+
+	/**
+	 * @return flat array of points marked to keep
+	 */
+	private static double[] collect( double[] points, boolean[] keep) {
+		int size = 0;
+		for( boolean k : keep)
+			if( k)
+				size += 2;
+		double[] result = new double[size];
+		int at = 0;
+		for( int i = 0; i < keep.length; i++) {
+			if( keep[i]) {
+				result[at++] = points[i * 2];
+				result[at++] = points[i * 2 + 1];
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,274 @@
+package mapmaker.map.geometry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * uniform grid of square cells stored in a hash map so only cells with items use memory.</br>
+ * points are stored in one cell, segments in every cell they cross and boxes in every cell they overlap.
+ * finding items near a point only visits the few cells around it, so it costs the same
+ * no matter how many items are stored.</br>
+ * each item can be stored once, storing it again moves it.</br>
+ * </p>
+ * @author Adriano Dramisino
+ * @param <T> - type of stored items, compared by identity
+ */
+public class SpatialHash< T> {
+
+	/**
+	 * <p>
+	 * width and height of each cell.</br>
+	 * </p>
+	 */
+	private final double cellSize;
+
+	/**
+	 * <p>
+	 * items in each non empty cell keyed by {@link SpatialHash#key(int, int)}.</br>
+	 * </p>
+	 */
+	private final Map< Long, List< T>> cells = new HashMap<>();
+
+	/**
+	 * <p>
+	 * keys of cells holding each item, used to remove the item without searching.</br>
+	 * </p>
+	 */
+	private final Map< T, long[]> items = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * create an empty hash. cell size should be close to the usual query radius.</br>
+	 * </p>
+	 * @param cellSize - width and height of each cell
+	 */
+	public SpatialHash( double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * <p>
+	 * store an item at a point.</br>
+	 * </p>
+	 * @param item - item to store
+	 * @param x - x of the point
+	 * @param y - y of the point
+	 */
+	public void put( T item, double x, double y) {
+		remove( item);
+		long key = key( cell( x), cell( y));
+		add( key, item);
+		items.put( item, new long[] { key });
+	}
+
+	/**
+	 * <p>
+	 * store an item in every cell crossed by a segment, walking the grid from one end to the other.</br>
+	 * </p>
+	 * @see <a href="http://www.cse.yorku.ca/~amana/research/grid.pdf">A Fast Voxel Traversal Algorithm</a>
+	 * @param item - item to store
+	 * @param x1 - x of first end
+	 * @param y1 - y of first end
+	 * @param x2 - x of second end
+	 * @param y2 - y of second end
+	 */
+	public void put( T item, double x1, double y1, double x2, double y2) {
+		remove( item);
+		int cx = cell( x1), cy = cell( y1);
+		int endX = cell( x2), endY = cell( y2);
+		int steps = Math.abs( endX - cx) + Math.abs( endY - cy);
+		long[] keys = new long[steps + 1];
+		int stepX = Integer.signum( endX - cx), stepY = Integer.signum( endY - cy);
+		double dx = x2 - x1, dy = y2 - y1;
+		//distance along the segment, as fraction of its length, to cross one cell and to reach next cell border
+		double deltaX = dx == 0 ? Double.MAX_VALUE : Math.abs( cellSize / dx);
+		double deltaY = dy == 0 ? Double.MAX_VALUE : Math.abs( cellSize / dy);
+		double maxX = dx == 0 ? Double.MAX_VALUE : ( ( stepX > 0 ? ( cx + 1) * cellSize : cx * cellSize) - x1) / dx;
+		double maxY = dy == 0 ? Double.MAX_VALUE : ( ( stepY > 0 ? ( cy + 1) * cellSize : cy * cellSize) - y1) / dy;
+		for( int i = 0; i <= steps; i++) {
+			keys[i] = key( cx, cy);
+			add( keys[i], item);
+			if( cx == endX && cy == endY)
+				break;
+			if( cy == endY || ( cx != endX && maxX < maxY)) {
+				maxX += deltaX;
+				cx += stepX;
+			} else {
+				maxY += deltaY;
+				cy += stepY;
+			}
+		}
+		items.put( item, keys);
+	}
+
+	/**
+	 * <p>
+	 * store an item in every cell overlapped by a box, for example bounds of a shape.</br>
+	 * </p>
+	 * @param item - item to store
+	 * @param minX - left of box
+	 * @param minY - top of box
+	 * @param maxX - right of box
+	 * @param maxY - bottom of box
+	 */
+	public void putBox( T item, double minX, double minY, double maxX, double maxY) {
+		remove( item);
+		int x1 = cell( minX), x2 = cell( maxX), y1 = cell( minY), y2 = cell( maxY);
+		long[] keys = new long[( x2 - x1 + 1) * ( y2 - y1 + 1)];
+		int i = 0;
+		for( int cx = x1; cx <= x2; cx++) {
+			for( int cy = y1; cy <= y2; cy++) {
+				keys[i] = key( cx, cy);
+				add( keys[i++], item);
+			}
+		}
+		items.put( item, keys);
+	}
+
+	/**
+	 * @return number of cells a box would be stored in by {@link SpatialHash#putBox(Object, double, double, double, double)}
+	 */
+	public long cellsOf( double minX, double minY, double maxX, double maxY) {
+		return ( cell( maxX) - ( long) cell( minX) + 1) * ( cell( maxY) - ( long) cell( minY) + 1);
+	}
+
+	/**
+	 * <p>
+	 * count items {@link SpatialHash#queryBox(double, double, double, double, Consumer)} would visit, stopping at limit.
+	 * every cell costs a visit even if empty, so a box with more cells than limit returns limit right away.</br>
+	 * </p>
+	 * @param limit - largest count of interest
+	 * @return number of visits, at most limit
+	 */
+	public long countBox( double minX, double minY, double maxX, double maxY, long limit) {
+		if( cellsOf( minX, minY, maxX, maxY) >= limit)
+			return limit;
+		int x1 = cell( minX), x2 = cell( maxX), y1 = cell( minY), y2 = cell( maxY);
+		long count = 0;
+		for( int cx = x1; cx <= x2; cx++) {
+			for( int cy = y1; cy <= y2; cy++) {
+				List< T> list = cells.get( key( cx, cy));
+				count += list == null ? 1 : list.size();
+				if( count >= limit)
+					return limit;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * <p>
+	 * remove an item from all of its cells. nothing happens if it is not stored.</br>
+	 * </p>
+	 * @param item - item to remove
+	 */
+	public void remove( T item) {
+		long[] keys = items.remove( item);
+		if( keys == null)
+			return;
+		for( long key : keys) {
+			List< T> list = cells.get( key);
+			//identity search, list of one cell is short
+			for( int i = list.size() - 1; i >= 0; i--) {
+				if( list.get( i) == item) {
+					list.set( i, list.get( list.size() - 1));
+					list.remove( list.size() - 1);
+					break;
+				}
+			}
+			if( list.isEmpty())
+				cells.remove( key);
+		}
+	}
+
+	/**
+	 * <p>
+	 * call the consumer on every item stored in cells touching the square of given radius around a point.
+	 * items may be farther than radius and segments may be visited more than once,
+	 * the caller is expected to measure the exact distance.</br>
+	 * </p>
+	 * @param x - x of the point
+	 * @param y - y of the point
+	 * @param radius - search radius
+	 * @param action - {@link Consumer} called on each candidate item
+	 */
+	public void query( double x, double y, double radius, Consumer< T> action) {
+		int minX = cell( x - radius), maxX = cell( x + radius);
+		int minY = cell( y - radius), maxY = cell( y + radius);
+		for( int cx = minX; cx <= maxX; cx++) {
+			for( int cy = minY; cy <= maxY; cy++) {
+				List< T> list = cells.get( key( cx, cy));
+				if( list != null)
+					list.forEach( action);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * call the consumer on every item stored in cells touching a box.
+	 * items stored in more than one of those cells are visited once per cell.</br>
+	 * </p>
+	 * @param minX - left of box
+	 * @param minY - top of box
+	 * @param maxX - right of box
+	 * @param maxY - bottom of box
+	 * @param action - {@link Consumer} called on each candidate item
+	 */
+	public void queryBox( double minX, double minY, double maxX, double maxY, Consumer< T> action) {
+		int x1 = cell( minX), x2 = cell( maxX), y1 = cell( minY), y2 = cell( maxY);
+		for( int cx = x1; cx <= x2; cx++) {
+			for( int cy = y1; cy <= y2; cy++) {
+				List< T> list = cells.get( key( cx, cy));
+				if( list != null)
+					list.forEach( action);
+			}
+		}
+	}
+
+	/**
+	 * @return number of stored items
+	 */
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * <p>
+	 * remove all items.</br>
+	 * </p>
+	 */
+	public void clear() {
+		cells.clear();
+		items.clear();
+	}
+
+	/**
+	 * @param v - x or y position
+	 * @return index of cell containing the position
+	 */
+	private int cell( double v) {
+		return (int) Math.floor( v / cellSize);
+	}
+
+	/**
+	 * @return unique key of a cell combining both indices
+	 */
+	private long key( int cx, int cy) {
+		return ( (long) cx << 32) | ( cy & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * <p>
+	 * add item to cell with given key, creating the cell if needed.</br>
+	 * </p>
+	 */
+	private void add( long key, T item) {
+		cells.computeIfAbsent( key, k -> new ArrayList<>( 4)).add( item);
+	}
+}
@@ -0,0 +1,38 @@
+package mapmaker.map.io;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * growing array of doubles, used to collect coordinates without boxing each one.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class DoubleList {
+
+	private double[] values = new double[16];
+	private int size;
+
+	/**
+	 * @param value - value to add at the end
+	 */
+	void add( double value) {
+		if( size == values.length)
+			values = Arrays.copyOf( values, size * 2);
+		values[size++] = value;
+	}
+
+	/**
+	 * @return number of values
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return copy of values
+	 */
+	double[] toArray() {
+		return Arrays.copyOf( values, size);
+	}
+}
@@ -0,0 +1,104 @@
+package mapmaker.map.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * export a map as a GeoJSON <code>FeatureCollection</code>. rooms are written as <code>Polygon</code>
+ * with a closed ring and paths as <code>LineString</code> features.</br>
+ * coordinates are the map coordinates, so y grows downward. the properties of every feature hold
+ * ID, type, sides, fill, stroke and stroke width, colors as hex with a separate opacity,
+ * and a path holds the IDs of the rooms it connects in <code>first</code> and <code>second</code>,
+ * -1 for an end not connected.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class GeoJsonExporter implements MapExporter {
+
+	/**
+	 * overridden function from {@link MapExporter}
+	 */
+	@Override
+	public void write( List< ShapeRecord> shapes, Writer writer) throws IOException {
+		String newLine = System.lineSeparator();
+		writer.write( "{\"type\":\"FeatureCollection\",\"features\":[");
+		boolean first = true;
+		for( ShapeRecord shape : shapes) {
+			if( !first)
+				writer.write( ',');
+			first = false;
+			writer.write( newLine);
+			writeFeature( shape, writer);
+		}
+		writer.write( newLine);
+		writer.write( "]}");
+		writer.write( newLine);
+	}
+
+	/**
+	 * <p>
+	 * write one feature.</br>
+	 * </p>
+	 */
+	private void writeFeature( ShapeRecord shape, Writer writer) throws IOException {
+		boolean path = shape.isPath();
+		writer.write( "{\"type\":\"Feature\",\"id\":");
+		writer.write( Integer.toString( shape.getID()));
+		writer.write( ",\"geometry\":{\"type\":\"");
+		writer.write( path ? "LineString" : "Polygon");
+		writer.write( "\",\"coordinates\":");
+		if( !path)
+			writer.write( '[');
+		writer.write( '[');
+		for( int i = 0; i < shape.size(); i += 2)
+			position( writer, shape, i, i > 0);
+		//rings of a polygon must end with their first position
+		if( !path && shape.size() > 0)
+			position( writer, shape, 0, true);
+		writer.write( ']');
+		if( !path)
+			writer.write( ']');
+		writer.write( "},\"properties\":{\"id\":");
+		writer.write( Integer.toString( shape.getID()));
+		writer.write( ",\"type\":\"" + shape.getType() + "\"");
+		writer.write( ",\"sides\":" + shape.getSides());
+		color( writer, "fill", shape.getFill());
+		color( writer, "stroke", shape.getStroke());
+		writer.write( ",\"strokeWidth\":" + MapExporter.number( shape.getStrokeWidth()));
+		if( path) {
+			writer.write( ",\"first\":" + shape.getFirst());
+			writer.write( ",\"second\":" + shape.getSecond());
+		}
+		writer.write( "}}");
+	}
+
+	/**
+	 * <p>
+	 * write vertex starting at index i as <code>[x,y]</code>.</br>
+	 * </p>
+	 */
+	private void position( Writer writer, ShapeRecord shape, int i, boolean comma) throws IOException {
+		if( comma)
+			writer.write( ',');
+		writer.write( '[');
+		writer.write( MapExporter.number( shape.get( i)));
+		writer.write( ',');
+		writer.write( MapExporter.number( shape.get( i + 1)));
+		writer.write( ']');
+	}
+
+	/**
+	 * <p>
+	 * write a color property as hex and its opacity as a second property.</br>
+	 * </p>
+	 */
+	private void color( Writer writer, String name, Color color) throws IOException {
+		writer.write( ",\"" + name + "\":\"" + ShapeRecord.hex( color) + "\"");
+		writer.write( ",\"" + name + "Opacity\":" + MapExporter.number( color.getOpacity()));
+	}
+}
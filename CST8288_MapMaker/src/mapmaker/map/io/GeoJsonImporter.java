@@ -0,0 +1,320 @@
+package mapmaker.map.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.io.JsonPullParser.Token;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * import the features of a GeoJSON document with a {@link JsonPullParser}. a <code>FeatureCollection</code>,
+ * a single <code>Feature</code> or a bare geometry can be read.</br>
+ * <code>LineString</code> and <code>MultiLineString</code> are open lines, the outer ring of each
+ * <code>Polygon</code> and <code>MultiPolygon</code> outlines a room, see {@link RecordBuilder}.
+ * holes and other geometries are ignored. coordinates are used as map coordinates.</br>
+ * style is read from <code>fill</code>, <code>stroke</code>, <code>strokeWidth</code>, <code>fillOpacity</code> and
+ * <code>strokeOpacity</code> properties as written by {@link GeoJsonExporter}, or their dashed names like
+ * <code>stroke-width</code>, and paths are connected using <code>first</code> and <code>second</code>.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class GeoJsonImporter implements MapImporter {
+
+	/**
+	 * <p>
+	 * style of features without style properties, same as a room drawn in the map.</br>
+	 * </p>
+	 */
+	private static final Color DEFAULT_FILL = Color.LIGHTGREEN;
+	private static final Color DEFAULT_STROKE = Color.GREY;
+	private static final double DEFAULT_WIDTH = 3;
+
+	/**
+	 * <p>
+	 * one feature as found in the document, coordinates are kept as text.</br>
+	 * </p>
+	 */
+	private static class RawFeature {
+		private String id, geometry, coordinates;
+		private final Map< String, String> properties = new HashMap<>();
+	}
+
+	/**
+	 * overridden function from {@link MapImporter}
+	 */
+	@Override
+	public List< ShapeRecord> read( Reader reader) throws IOException {
+		JsonPullParser parser = new JsonPullParser( reader);
+		List< RawFeature> features = new ArrayList<>();
+		if( parser.next() != Token.START_OBJECT)
+			throw new IOException( "GeoJSON document must be an object");
+		RawFeature top = new RawFeature();
+		object( parser, top, features);
+		if( top.coordinates != null)
+			features.add( top);
+		return MapImporter.decode( features, this::decode);
+	}
+
+	/**
+	 * <p>
+	 * first stage, read members of an object whose start was read. geometry members are stored in given feature,
+	 * features of a collection are added to list.</br>
+	 * </p>
+	 */
+	private void object( JsonPullParser parser, RawFeature feature, List< RawFeature> features) throws IOException {
+		for( Token token = parser.next(); token != Token.END_OBJECT; token = parser.next()) {
+			if( token != Token.NAME)
+				throw new IOException( "expected a name but found " + token);
+			String name = parser.getValue();
+			if( name.equals( "coordinates")) {
+				feature.coordinates = parser.readRaw();
+				continue;
+			}
+			token = parser.next();
+			switch( name) {
+				case "type":
+					String type = parser.getValue();
+					if( token == Token.STRING && !type.equals( "Feature") && !type.equals( "FeatureCollection"))
+						feature.geometry = type;
+					break;
+				case "id":
+					if( token == Token.STRING || token == Token.NUMBER)
+						feature.id = parser.getValue();
+					else
+						parser.skip( token);
+					break;
+				case "geometry":
+					if( token == Token.START_OBJECT)
+						object( parser, feature, features);
+					else
+						parser.skip( token);
+					break;
+				case "properties":
+					if( token == Token.START_OBJECT)
+						properties( parser, feature.properties);
+					else
+						parser.skip( token);
+					break;
+				case "features":
+					if( token != Token.START_ARRAY)
+						throw new IOException( "features must be an array");
+					for( token = parser.next(); token != Token.END_ARRAY; token = parser.next()) {
+						if( token != Token.START_OBJECT) {
+							parser.skip( token);
+							continue;
+						}
+						RawFeature child = new RawFeature();
+						object( parser, child, features);
+						if( child.coordinates != null)
+							features.add( child);
+					}
+					break;
+				default:
+					parser.skip( token);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * read simple values of a properties object whose start was read, nested values are skipped.</br>
+	 * </p>
+	 */
+	private void properties( JsonPullParser parser, Map< String, String> properties) throws IOException {
+		for( Token token = parser.next(); token != Token.END_OBJECT; token = parser.next()) {
+			String name = parser.getValue();
+			token = parser.next();
+			if( token == Token.STRING || token == Token.NUMBER)
+				properties.put( name, parser.getValue());
+			else
+				parser.skip( token);
+		}
+	}
+
+	/**
+	 * <p>
+	 * second stage, turn one feature into records.</br>
+	 * </p>
+	 */
+	@SuppressWarnings( "unchecked")
+	private List< ShapeRecord> decode( RawFeature feature) {
+		if( feature.geometry == null)
+			return Collections.emptyList();
+		Object coordinates;
+		try {
+			coordinates = new Coordinates( feature.coordinates).value();
+		} catch( RuntimeException e) {
+			return Collections.emptyList();
+		}
+		List< double[]> outlines = new ArrayList<>();
+		boolean open = false;
+		try {
+			switch( feature.geometry) {
+				case "LineString":
+					outlines.add( flatten( (List< Object>) coordinates));
+					open = true;
+					break;
+				case "MultiLineString":
+					for( Object line : (List< Object>) coordinates)
+						outlines.add( flatten( (List< Object>) line));
+					open = true;
+					break;
+				case "Polygon":
+					outlines.add( flatten( (List< Object>) ( (List< Object>) coordinates).get( 0)));
+					break;
+				case "MultiPolygon":
+					for( Object polygon : (List< Object>) coordinates)
+						outlines.add( flatten( (List< Object>) ( (List< Object>) polygon).get( 0)));
+					break;
+				default:
+					return Collections.emptyList();
+			}
+		} catch( ClassCastException | IndexOutOfBoundsException e) {
+			//coordinates do not have the nesting of their geometry
+			return Collections.emptyList();
+		}
+		Map< String, String> p = feature.properties;
+		RecordBuilder builder = new RecordBuilder( integer( p.getOrDefault( "id", feature.id)),
+				color( property( p, "fill"), property( p, "fillOpacity", "fill-opacity"), DEFAULT_FILL),
+				color( property( p, "stroke"), property( p, "strokeOpacity", "stroke-opacity"), DEFAULT_STROKE),
+				number( property( p, "strokeWidth", "stroke-width"), DEFAULT_WIDTH),
+				integer( p.get( "first")), integer( p.get( "second")),
+				outlines.size() == 1);
+		List< ShapeRecord> records = new ArrayList<>( outlines.size());
+		for( double[] points : outlines)
+			builder.add( points, open, records);
+		return records;
+	}
+
+	/**
+	 * @return x and y of each position in one flat array, extra values like altitude are dropped
+	 */
+	private double[] flatten( List< Object> positions) {
+		double[] points = new double[positions.size() * 2];
+		for( int i = 0; i < positions.size(); i++) {
+			double[] position = (double[]) positions.get( i);
+			points[i * 2] = position[0];
+			points[i * 2 + 1] = position[1];
+		}
+		return points;
+	}
+
+	/**
+	 * @return value of first of given names which is present, or null
+	 */
+	private String property( Map< String, String> properties, String... names) {
+		for( String name : names)
+			if( properties.containsKey( name))
+				return properties.get( name);
+		return null;
+	}
+
+	/**
+	 * @return color with its opacity, fallback if missing or invalid
+	 */
+	private Color color( String value, String opacity, Color fallback) {
+		Color color = fallback;
+		try {
+			if( value != null)
+				color = Color.web( value);
+		} catch( IllegalArgumentException e) {
+			//keep fallback
+		}
+		double o = number( opacity, 1);
+		if( o < 1)
+			color = Color.color( color.getRed(), color.getGreen(), color.getBlue(), color.getOpacity() * Math.max( 0, o));
+		return color;
+	}
+
+	/**
+	 * @return number in text, fallback if missing or invalid
+	 */
+	private double number( String value, double fallback) {
+		if( value == null)
+			return fallback;
+		try {
+			return Double.parseDouble( value);
+		} catch( NumberFormatException e) {
+			return fallback;
+		}
+	}
+
+	/**
+	 * @return whole number in text, {@link ShapeRecord#NONE} if missing or invalid
+	 */
+	private int integer( String value) {
+		double d = number( value, ShapeRecord.NONE);
+		return d == Math.rint( d) ? (int) d : ShapeRecord.NONE;
+	}
+
+	/**
+	 * <p>
+	 * decoder of the raw text of coordinates. an array of numbers is a position and becomes a double[],
+	 * an array of arrays becomes a list.</br>
+	 * </p>
+	 */
+	private static class Coordinates {
+		private final String text;
+		private int index;
+
+		private Coordinates( String text) {
+			this.text = text;
+		}
+
+		/**
+		 * @return position or list starting at current index
+		 */
+		private Object value() {
+			expect( '[');
+			if( peek() == '[') {
+				List< Object> list = new ArrayList<>();
+				while( peek() == '[') {
+					list.add( value());
+					if( peek() == ',')
+						index++;
+				}
+				expect( ']');
+				return list;
+			}
+			DoubleList position = new DoubleList();
+			while( peek() != ']') {
+				int start = index;
+				while( index < text.length() && !JsonPullParser.isDelimiter( text.charAt( index)))
+					index++;
+				position.add( Double.parseDouble( text.substring( start, index)));
+				if( peek() == ',')
+					index++;
+			}
+			expect( ']');
+			double[] values = position.toArray();
+			if( values.length < 2)
+				throw new IllegalArgumentException( "position needs x and y");
+			return values;
+		}
+
+		/**
+		 * @return next character which is not whitespace, not consumed
+		 */
+		private char peek() {
+			while( index < text.length() && Character.isWhitespace( text.charAt( index)))
+				index++;
+			if( index == text.length())
+				throw new IllegalArgumentException( "unexpected end of coordinates");
+			return text.charAt( index);
+		}
+
+		private void expect( char c) {
+			if( peek() != c)
+				throw new IllegalArgumentException( "expected " + c + " at " + index);
+			index++;
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package mapmaker.map.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>
+ * minimal JSON pull parser. {@link JsonPullParser#next()} reads one token at a time from the reader
+ * so a document is never held in memory, only the value of the current token.</br>
+ * {@link JsonPullParser#readRaw()} copies the text of a whole value without decoding it, which lets
+ * expensive values like coordinates be decoded later on another thread.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class JsonPullParser {
+
+	/**
+	 * <p>
+	 * kinds of tokens. {@link Token#NAME} is a string followed by a colon.</br>
+	 * </p>
+	 */
+	enum Token {
+		START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+	}
+
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private int position, limit;
+
+	/**
+	 * <p>
+	 * text of last {@link Token#NAME}, {@link Token#STRING} or {@link Token#NUMBER}.</br>
+	 * </p>
+	 */
+	private String value;
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * @param reader - source of the document, does not need to be buffered
+	 */
+	JsonPullParser( Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * @return next token, {@link Token#END} at end of input
+	 * @throws IOException if reader fails or document is not valid JSON
+	 */
+	Token next() throws IOException {
+		int c = skipSeparators();
+		switch( c) {
+			case -1:
+				return Token.END;
+			case '{':
+				return Token.START_OBJECT;
+			case '}':
+				return Token.END_OBJECT;
+			case '[':
+				return Token.START_ARRAY;
+			case ']':
+				return Token.END_ARRAY;
+			case '"':
+				value = string();
+				if( skipWhitespace() == ':') {
+					position++;
+					return Token.NAME;
+				}
+				return Token.STRING;
+			case 't':
+				literal( "rue");
+				return Token.TRUE;
+			case 'f':
+				literal( "alse");
+				return Token.FALSE;
+			case 'n':
+				literal( "ull");
+				return Token.NULL;
+			default:
+				if( c == '-' || ( c >= '0' && c <= '9')) {
+					value = number( (char) c);
+					return Token.NUMBER;
+				}
+				throw new IOException( "unexpected character '" + (char) c + "'");
+		}
+	}
+
+	/**
+	 * @return text of last name, string or number
+	 */
+	String getValue() {
+		return value;
+	}
+
+	/**
+	 * <p>
+	 * skip the value which starts with given token, including everything inside of it.</br>
+	 * </p>
+	 * @param token - token already read by {@link JsonPullParser#next()}
+	 */
+	void skip( Token token) throws IOException {
+		int depth = 0;
+		do {
+			if( token == Token.START_OBJECT || token == Token.START_ARRAY)
+				depth++;
+			else if( token == Token.END_OBJECT || token == Token.END_ARRAY)
+				depth--;
+			else if( token == Token.END)
+				throw new IOException( "unexpected end of document");
+			if( depth > 0)
+				token = next();
+		} while( depth > 0);
+	}
+
+	/**
+	 * <p>
+	 * copy the text of next value without decoding it. strings inside are kept with their escapes.</br>
+	 * </p>
+	 * @return text of value
+	 */
+	String readRaw() throws IOException {
+		StringBuilder raw = new StringBuilder();
+		int first = skipSeparators();
+		if( first == -1)
+			return "";
+		raw.append( (char) first);
+		if( first != '[' && first != '{' && first != '"') {
+			//a number or literal ends at the first character which is not part of it
+			for( int c = peek(); c != -1 && !isDelimiter( c); c = peek()) {
+				raw.append( (char) c);
+				position++;
+			}
+			return raw.toString();
+		}
+		int depth = first == '"' ? 0 : 1;
+		boolean quoted = first == '"', escaped = false;
+		//copy whole runs of the buffer instead of one character at a time
+		while( ( quoted || depth > 0) && peek() != -1) {
+			int start = position;
+			while( position < limit && ( quoted || depth > 0)) {
+				char c = buffer[position++];
+				if( escaped) {
+					escaped = false;
+				} else if( quoted) {
+					if( c == '\\')
+						escaped = true;
+					else if( c == '"')
+						quoted = false;
+				} else if( c == '"') {
+					quoted = true;
+				} else if( c == '[' || c == '{') {
+					depth++;
+				} else if( c == ']' || c == '}') {
+					depth--;
+				}
+			}
+			raw.append( buffer, start, position - start);
+		}
+		return raw.toString();
+	}
+
+	/**
+	 * @return true if c ends a number or literal
+	 */
+	static boolean isDelimiter( int c) {
+		return c == ',' || c == ']' || c == '}' || c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	/**
+	 * @return next character which is not whitespace, comma or colon, consumed
+	 */
+	private int skipSeparators() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while( c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == ',' || c == ':');
+		return c;
+	}
+
+	/**
+	 * @return next character which is not whitespace, not consumed
+	 */
+	private int skipWhitespace() throws IOException {
+		int c = peek();
+		while( c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+			position++;
+			c = peek();
+		}
+		return c;
+	}
+
+	/**
+	 * @return content of a string whose opening quote was read, escapes decoded
+	 */
+	private String string() throws IOException {
+		text.setLength( 0);
+		for( int c = read(); c != '"'; c = read()) {
+			if( c == -1)
+				throw new IOException( "unterminated string");
+			if( c == '\\') {
+				c = read();
+				switch( c) {
+					case 'n':
+						c = '\n';
+						break;
+					case 't':
+						c = '\t';
+						break;
+					case 'r':
+						c = '\r';
+						break;
+					case 'b':
+						c = '\b';
+						break;
+					case 'f':
+						c = '\f';
+						break;
+					case 'u':
+						c = Integer.parseInt( new String( new char[] { (char) read(), (char) read(), (char) read(), (char) read() }), 16);
+						break;
+					default:
+						//quote, backslash and slash stand for themselves
+						break;
+				}
+			}
+			text.append( (char) c);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @return text of a number whose first character was read
+	 */
+	private String number( char first) throws IOException {
+		text.setLength( 0);
+		text.append( first);
+		for( int c = peek(); c != -1 && ( ( c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-'); c = peek()) {
+			text.append( (char) c);
+			position++;
+		}
+		return text.toString();
+	}
+
+	/**
+	 * <p>
+	 * consume the rest of true, false or null.</br>
+	 * </p>
+	 */
+	private void literal( String rest) throws IOException {
+		for( int i = 0; i < rest.length(); i++)
+			if( read() != rest.charAt( i))
+				throw new IOException( "unexpected literal");
+	}
+
+	/**
+	 * @return next character, consumed, or -1 at end
+	 */
+	private int read() throws IOException {
+		int c = peek();
+		if( c != -1)
+			position++;
+		return c;
+	}
+
+	/**
+	 * @return next character, not consumed, or -1 at end
+	 */
+	private int peek() throws IOException {
+		if( position == limit) {
+			limit = reader.read( buffer);
+			position = 0;
+			if( limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position];
+	}
+}
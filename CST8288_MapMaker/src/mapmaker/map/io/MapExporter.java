@@ -0,0 +1,42 @@
+package mapmaker.map.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * writer of a map in a format other programs can read.</br>
+ * exporters write each shape to the writer as soon as it is formatted, nothing is built in memory,
+ * so the size of the map only changes how long the export takes. records are immutable
+ * so an export can run on a background thread while the map is being edited.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public interface MapExporter {
+
+	/**
+	 * <p>
+	 * write all shapes, in given order. writer is not closed.</br>
+	 * </p>
+	 * @param shapes - records of shapes, see {@link ShapeRecord#of(mapmaker.map.shapes.PolyShape)}
+	 * @param writer - destination, should be buffered
+	 * @throws IOException if writer fails
+	 */
+	void write( List< ShapeRecord> shapes, Writer writer) throws IOException;
+
+	/**
+	 * <p>
+	 * format a coordinate or width without a trailing <code>.0</code> for whole numbers.</br>
+	 * </p>
+	 * @param d - value to format
+	 * @return shortest string that reads back to the same value
+	 */
+	static String number( double d) {
+		if( d == Math.rint( d) && Math.abs( d) < 1e15)
+			return Long.toString( (long) d);
+		return Double.toString( d);
+	}
+}
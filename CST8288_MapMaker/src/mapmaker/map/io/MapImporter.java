@@ -0,0 +1,56 @@
+package mapmaker.map.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * reader of a map written by another program.</br>
+ * importing is done in 2 stages. the document is first streamed once, keeping only the raw text of
+ * each shape, then the raw shapes are decoded into {@link ShapeRecord}'s, in parallel when there are
+ * many of them. nothing here touches the scene so both stages can run on a background thread,
+ * the records are then added to the map by {@link mapmaker.map.MapArea#addRecords(List, Runnable)}.</br>
+ * IDs of records are the IDs found in the document, or {@link ShapeRecord#NONE}, and are only used
+ * to reconnect paths.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public interface MapImporter {
+
+	/**
+	 * <p>
+	 * below this many raw shapes decoding is done on the calling thread.</br>
+	 * </p>
+	 */
+	int PARALLEL_THRESHOLD = 1024;
+
+	/**
+	 * <p>
+	 * read all shapes in the document. reader is not closed.</br>
+	 * </p>
+	 * @param reader - source of the document
+	 * @return shapes in document order
+	 * @throws IOException if reader fails or document cannot be parsed
+	 */
+	List< ShapeRecord> read( Reader reader) throws IOException;
+
+	/**
+	 * <p>
+	 * decode raw shapes, keeping their order. a raw shape can decode to any number of records,
+	 * none if it is not usable.</br>
+	 * </p>
+	 * @param raw - raw shapes from the first stage
+	 * @param decoder - function turning one raw shape into records
+	 * @return all records
+	 */
+	static < T> List< ShapeRecord> decode( List< T> raw, Function< T, List< ShapeRecord>> decoder) {
+		Stream< T> stream = raw.size() < PARALLEL_THRESHOLD ? raw.stream() : raw.parallelStream();
+		return stream.map( decoder).flatMap( List::stream).collect( Collectors.toList());
+	}
+}
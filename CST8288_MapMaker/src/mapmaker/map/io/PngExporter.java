@@ -0,0 +1,462 @@
+package mapmaker.map.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * export a map as a PNG image of any size without a snapshot of the scene. the image is cut in bands of
+ * full rows, each band is drawn from the {@link ShapeRecord}'s by a {@link Rasterizer} and compressed on its own,
+ * bands are drawn in parallel and written in order as soon as they are ready.</br>
+ * every band is compressed with its own {@link Deflater} ending in a sync flush, so the pieces join into one
+ * zlib stream, and their checksums are combined, the way parallel gzip works. workers and rows per band are chosen
+ * so every buffer and every band waiting to be written fit in {@link PngExporter#MEMORY_BUDGET}, and each worker reuses
+ * the same pixel and row buffers, so memory grows neither with the size of the image nor with the number of cores.</br>
+ * rooms are filled then stroked and paths are stroked, in drawing order, with miter joins and square caps
+ * like the scene. the background is white.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class PngExporter {
+
+	/**
+	 * <p>
+	 * empty space around the shapes and their strokes in map units, same as {@link SvgExporter}.</br>
+	 * </p>
+	 */
+	private static final double MARGIN = 10;
+
+	/**
+	 * <p>
+	 * most rows in a band, and fewest rows in a band before fewer workers are used to stay in budget.</br>
+	 * </p>
+	 */
+	private static final int BAND_ROWS = 256;
+	private static final int MIN_BAND_ROWS = 16;
+
+	/**
+	 * <p>
+	 * bytes all workers and waiting bands may use together.</br>
+	 * </p>
+	 */
+	private static final long MEMORY_BUDGET = 64 << 20;
+
+	/**
+	 * <p>
+	 * bytes per pixel of a band for each worker: its pixels, filtered rows and compressed rows while it is drawn,
+	 * plus 2 compressed bands waiting to be written, at worst as large as the filtered rows.</br>
+	 * </p>
+	 */
+	private static final int BYTES_PER_PIXEL = 4 + 3 + 3 + 2 * 3;
+
+	/**
+	 * <p>
+	 * longest miter as a multiple of half the stroke width, same as the default of JavaFX.</br>
+	 * </p>
+	 */
+	private static final double MITER_LIMIT = 10;
+
+	private static final int BACKGROUND = 0xFFFFFF;
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	/**
+	 * <p>
+	 * empty final deflate block, ends the stream after the last sync flushed band.</br>
+	 * </p>
+	 */
+	private static final byte[] FINAL_BLOCK = { 0x03, 0x00 };
+
+	private final double scale;
+
+	/**
+	 * @param scale - pixels per map unit, 1 gives the size shown on screen
+	 */
+	public PngExporter( double scale) {
+		if( !( scale > 0))
+			throw new IllegalArgumentException( "scale must be positive: " + scale);
+		this.scale = scale;
+	}
+
+	/**
+	 * <p>
+	 * compressed rows of one band and checksum of its uncompressed bytes.</br>
+	 * </p>
+	 */
+	private static class Band {
+		private final byte[] data;
+		private final long adler;
+		private final long length;
+
+		private Band( byte[] data, long adler, long length) {
+			this.data = data;
+			this.adler = adler;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * <p>
+	 * buffers of one worker, taken from a pool by each band and given back after.</br>
+	 * </p>
+	 */
+	private static class Buffers {
+		private final Rasterizer rasterizer;
+		private final byte[] rows;
+		private final byte[] out = new byte[64 << 10];
+		private final Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true);
+		private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+		private Buffers( int width, int rows) {
+			rasterizer = new Rasterizer( width, rows);
+			this.rows = new byte[( width * 3 + 1) * rows];
+		}
+	}
+
+	/**
+	 * <p>
+	 * draw all shapes and write the image. stream is not closed.</br>
+	 * </p>
+	 * @param shapes - records of shapes in drawing order
+	 * @param stream - destination
+	 * @throws IOException if stream fails or image is too large for PNG
+	 */
+	public void write( List< ShapeRecord> shapes, OutputStream stream) throws IOException {
+		double[] box = bounds( shapes);
+		double width = Math.ceil( ( box[2] - box[0]) * scale), height = Math.ceil( ( box[3] - box[1]) * scale);
+		if( width * 3 + 1 > Integer.MAX_VALUE / 2 || height > Integer.MAX_VALUE)
+			throw new IOException( "image of " + width + " x " + height + " pixels is too large");
+		int w = (int) width, h = (int) height;
+		long row = (long) w * BYTES_PER_PIXEL;
+		//fewer workers before bands too thin to compress well
+		int threads = (int) Math.max( 1, Math.min( Runtime.getRuntime().availableProcessors(), MEMORY_BUDGET / ( row * MIN_BAND_ROWS)));
+		int rows = (int) Math.max( 1, Math.min( BAND_ROWS, MEMORY_BUDGET / ( row * threads)));
+		int bands = ( h + rows - 1) / rows;
+		List< List< ShapeRecord>> byBand = split( shapes, box, rows, bands);
+
+		DataOutputStream out = new DataOutputStream( stream);
+		out.write( SIGNATURE);
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream( header);
+		data.writeInt( w);
+		data.writeInt( h);
+		//8 bit RGB, deflate, adaptive filters, not interlaced
+		data.write( new byte[] { 8, 2, 0, 0, 0 });
+		chunk( out, "IHDR", header.toByteArray(), 0, header.size());
+		//zlib header with default compression and no dictionary
+		chunk( out, "IDAT", new byte[] { 0x78, (byte) 0x9C }, 0, 2);
+
+		BlockingQueue< Buffers> pool = new ArrayBlockingQueue<>( threads);
+		for( int i = 0; i < threads; i++)
+			pool.add( new Buffers( w, rows));
+		ExecutorService executor = Executors.newFixedThreadPool( threads, r -> {
+			Thread t = new Thread( r, "png-export");
+			t.setDaemon( true);
+			return t;
+		});
+		long adler = 1;
+		try {
+			Deque< Future< Band>> pending = new ArrayDeque<>();
+			int submitted = 0;
+			for( int written = 0; written < bands; written++) {
+				//keep up to 2 bands per worker waiting so workers never idle while a band is written
+				while( submitted < bands && pending.size() < threads * 2) {
+					int band = submitted++;
+					int top = band * rows, count = Math.min( rows, h - top);
+					List< ShapeRecord> list = byBand.get( band);
+					pending.add( executor.submit( () -> render( list, box, top, count, w, pool)));
+				}
+				Band band = pending.poll().get();
+				adler = combine( adler, band.adler, band.length);
+				chunk( out, "IDAT", band.data, 0, band.data.length);
+			}
+		} catch( InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException( "export interrupted", e);
+		} catch( ExecutionException e) {
+			throw new IOException( e.getCause());
+		} finally {
+			executor.shutdownNow();
+			for( Buffers buffers : pool)
+				buffers.deflater.end();
+		}
+		byte[] end = new byte[6];
+		System.arraycopy( FINAL_BLOCK, 0, end, 0, 2);
+		for( int i = 0; i < 4; i++)
+			end[2 + i] = (byte) ( adler >>> ( 24 - i * 8));
+		chunk( out, "IDAT", end, 0, end.length);
+		chunk( out, "IEND", new byte[0], 0, 0);
+		out.flush();
+	}
+
+	/**
+	 * <p>
+	 * draw and compress one band using buffers from the pool.</br>
+	 * </p>
+	 */
+	private Band render( List< ShapeRecord> shapes, double[] box, int top, int count, int width, BlockingQueue< Buffers> pool)
+			throws InterruptedException {
+		Buffers buffers = pool.take();
+		try {
+			Rasterizer rasterizer = buffers.rasterizer;
+			rasterizer.reset( top, count, BACKGROUND);
+			for( ShapeRecord shape : shapes)
+				draw( rasterizer, shape, box);
+			int[] pixels = rasterizer.getPixels();
+			byte[] rows = buffers.rows;
+			int stride = width * 3 + 1, length = stride * count;
+			for( int y = 0; y < count; y++)
+				filter( pixels, y * width, width, rows, y * stride);
+			Adler32 adler = new Adler32();
+			adler.update( rows, 0, length);
+			Deflater deflater = buffers.deflater;
+			deflater.reset();
+			deflater.setInput( rows, 0, length);
+			buffers.compressed.reset();
+			int n;
+			do {
+				n = deflater.deflate( buffers.out, 0, buffers.out.length, Deflater.SYNC_FLUSH);
+				buffers.compressed.write( buffers.out, 0, n);
+			} while( n == buffers.out.length);
+			return new Band( buffers.compressed.toByteArray(), adler.getValue(), length);
+		} finally {
+			pool.put( buffers);
+		}
+	}
+
+	/**
+	 * <p>
+	 * write one row with the Sub filter, each byte minus the same channel of the pixel to its left.
+	 * flat colors become runs of zeros, which compress well, and no other row is needed.</br>
+	 * </p>
+	 */
+	private void filter( int[] pixels, int offset, int width, byte[] rows, int index) {
+		rows[index++] = 1;
+		int pr = 0, pg = 0, pb = 0;
+		for( int x = 0; x < width; x++) {
+			int p = pixels[offset + x];
+			int r = ( p >> 16) & 0xFF, g = ( p >> 8) & 0xFF, b = p & 0xFF;
+			rows[index++] = (byte) ( r - pr);
+			rows[index++] = (byte) ( g - pg);
+			rows[index++] = (byte) ( b - pb);
+			pr = r;
+			pg = g;
+			pb = b;
+		}
+	}
+
+	/**
+	 * <p>
+	 * draw fill and stroke of one shape.</br>
+	 * </p>
+	 */
+	private void draw( Rasterizer rasterizer, ShapeRecord shape, double[] box) {
+		int n = shape.size();
+		double[] points = new double[n];
+		for( int i = 0; i < n; i += 2) {
+			points[i] = ( shape.get( i) - box[0]) * scale;
+			points[i + 1] = ( shape.get( i + 1) - box[1]) * scale;
+		}
+		boolean open = shape.isPath();
+		if( !open && n >= 6) {
+			rasterizer.ring( points, n);
+			rasterizer.fill( shape.getFill());
+		}
+		double half = shape.getStrokeWidth() * scale / 2;
+		if( half > 0 && n >= 4) {
+			stroke( rasterizer, points, open, half);
+			rasterizer.fill( shape.getStroke());
+		}
+	}
+
+	/**
+	 * <p>
+	 * add the outline of a stroke as rings of one orientation: a rectangle per segment, lengthened by
+	 * half the width at open ends for square caps, and a miter or bevel at every joint.</br>
+	 * </p>
+	 */
+	private void stroke( Rasterizer rasterizer, double[] p, boolean open, double half) {
+		int vertices = p.length / 2, segments = open ? vertices - 1 : vertices;
+		double[] ring = new double[8];
+		for( int s = 0; s < segments; s++) {
+			int i = s * 2, j = ( ( s + 1) % vertices) * 2;
+			double dx = p[j] - p[i], dy = p[j + 1] - p[i + 1], length = Math.hypot( dx, dy);
+			if( length == 0)
+				continue;
+			dx /= length;
+			dy /= length;
+			double capStart = open && s == 0 ? half : 0, capEnd = open && s == segments - 1 ? half : 0;
+			double x1 = p[i] - dx * capStart, y1 = p[i + 1] - dy * capStart;
+			double x2 = p[j] + dx * capEnd, y2 = p[j + 1] + dy * capEnd;
+			double nx = -dy * half, ny = dx * half;
+			ring[0] = x1 + nx;
+			ring[1] = y1 + ny;
+			ring[2] = x2 + nx;
+			ring[3] = y2 + ny;
+			ring[4] = x2 - nx;
+			ring[5] = y2 - ny;
+			ring[6] = x1 - nx;
+			ring[7] = y1 - ny;
+			oriented( rasterizer, ring, 8);
+		}
+		for( int v = open ? 1 : 0; v < ( open ? vertices - 1 : vertices); v++)
+			joint( rasterizer, p, ( v - 1 + vertices) % vertices, v, ( v + 1) % vertices, half, ring);
+	}
+
+	/**
+	 * <p>
+	 * add the wedge filling the outer side of the joint at vertex b between segments a-b and b-c.</br>
+	 * </p>
+	 */
+	private void joint( Rasterizer rasterizer, double[] p, int a, int b, int c, double half, double[] ring) {
+		double x = p[b * 2], y = p[b * 2 + 1];
+		double d1x = x - p[a * 2], d1y = y - p[a * 2 + 1], d2x = p[c * 2] - x, d2y = p[c * 2 + 1] - y;
+		double l1 = Math.hypot( d1x, d1y), l2 = Math.hypot( d2x, d2y);
+		if( l1 == 0 || l2 == 0)
+			return;
+		double n1x = -d1y / l1, n1y = d1x / l1, n2x = -d2y / l2, n2y = d2x / l2;
+		//outer side is away from the turn
+		double side = d1x * d2y - d1y * d2x > 0 ? -1 : 1;
+		double dot = n1x * n2x + n1y * n2y;
+		ring[0] = x;
+		ring[1] = y;
+		ring[2] = x + side * n1x * half;
+		ring[3] = y + side * n1y * half;
+		int length = 6;
+		if( 1 + dot > 2 / ( MITER_LIMIT * MITER_LIMIT)) {
+			double k = side * half / ( 1 + dot);
+			ring[4] = x + ( n1x + n2x) * k;
+			ring[5] = y + ( n1y + n2y) * k;
+			length = 8;
+		}
+		ring[length - 2] = x + side * n2x * half;
+		ring[length - 1] = y + side * n2y * half;
+		oriented( rasterizer, ring, length);
+	}
+
+	/**
+	 * <p>
+	 * add a ring turned to positive orientation, so overlapping pieces add up instead of cancelling.</br>
+	 * </p>
+	 */
+	private void oriented( Rasterizer rasterizer, double[] ring, int length) {
+		double area = 0;
+		for( int i = 0; i < length; i += 2) {
+			int j = ( i + 2) % length;
+			area += ring[i] * ring[j + 1] - ring[j] * ring[i + 1];
+		}
+		if( area < 0) {
+			for( int i = 0, j = length - 2; i < j; i += 2, j -= 2) {
+				double tx = ring[i], ty = ring[i + 1];
+				ring[i] = ring[j];
+				ring[i + 1] = ring[j + 1];
+				ring[j] = tx;
+				ring[j + 1] = ty;
+			}
+		}
+		rasterizer.ring( ring, length);
+	}
+
+	/**
+	 * <p>
+	 * list shapes of each band in drawing order, using bounds grown by the longest possible miter.</br>
+	 * </p>
+	 */
+	private List< List< ShapeRecord>> split( List< ShapeRecord> shapes, double[] box, int rows, int bands) {
+		List< List< ShapeRecord>> byBand = new ArrayList<>( bands);
+		for( int i = 0; i < bands; i++)
+			byBand.add( new ArrayList<>());
+		for( ShapeRecord shape : shapes) {
+			if( shape.size() < 4)
+				continue;
+			double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for( int i = 1; i < shape.size(); i += 2) {
+				minY = Math.min( minY, shape.get( i));
+				maxY = Math.max( maxY, shape.get( i));
+			}
+			double grow = shape.getStrokeWidth() / 2 * MITER_LIMIT;
+			int first = (int) Math.floor( ( minY - grow - box[1]) * scale / rows);
+			int last = (int) Math.floor( ( maxY + grow - box[1]) * scale / rows);
+			for( int b = Math.max( 0, first); b <= Math.min( bands - 1, last); b++)
+				byBand.get( b).add( shape);
+		}
+		return byBand;
+	}
+
+	/**
+	 * @return min x, min y, max x and max y of all shapes grown by half their stroke width, plus {@link PngExporter#MARGIN}
+	 */
+	private double[] bounds( List< ShapeRecord> shapes) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for( ShapeRecord shape : shapes) {
+			double half = Math.max( 0, shape.getStrokeWidth() / 2);
+			for( int i = 0; i < shape.size(); i += 2) {
+				minX = Math.min( minX, shape.get( i) - half);
+				maxX = Math.max( maxX, shape.get( i) + half);
+				minY = Math.min( minY, shape.get( i + 1) - half);
+				maxY = Math.max( maxY, shape.get( i + 1) + half);
+			}
+		}
+		if( minX > maxX)
+			return new double[] { 0, 0, 1, 1 };
+		return new double[] { minX - MARGIN, minY - MARGIN, maxX + MARGIN, maxY + MARGIN };
+	}
+
+	/**
+	 * <p>
+	 * write a chunk: length, type, data and CRC of type and data.</br>
+	 * </p>
+	 */
+	private void chunk( DataOutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+		byte[] name = type.getBytes( StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update( name);
+		crc.update( data, offset, length);
+		out.writeInt( length);
+		out.write( name);
+		out.write( data, offset, length);
+		out.writeInt( (int) crc.getValue());
+	}
+
+	/**
+	 * <p>
+	 * checksum of 2 pieces of data joined, from the checksum of each piece and length of the second,
+	 * same as <code>adler32_combine</code> of zlib.</br>
+	 * </p>
+	 */
+	private static long combine( long adler1, long adler2, long length2) {
+		final long base = 65521;
+		long remainder = length2 % base;
+		long sum1 = adler1 & 0xFFFF;
+		long sum2 = ( remainder * sum1) % base;
+		sum1 += ( adler2 & 0xFFFF) + base - 1;
+		sum2 += ( ( adler1 >> 16) & 0xFFFF) + ( ( adler2 >> 16) & 0xFFFF) + base - remainder;
+		if( sum1 >= base)
+			sum1 -= base;
+		if( sum1 >= base)
+			sum1 -= base;
+		if( sum2 >= base << 1)
+			sum2 -= base << 1;
+		if( sum2 >= base)
+			sum2 -= base;
+		return sum1 | ( sum2 << 16);
+	}
+}
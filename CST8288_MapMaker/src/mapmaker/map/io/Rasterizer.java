@@ -0,0 +1,284 @@
+package mapmaker.map.io;
+
+import java.util.Arrays;
+
+import javafx.scene.paint.Color;
+
+/**
+ * <p>
+ * anti aliased scanline renderer of polygons into a band of RGB pixels, used by {@link PngExporter}.</br>
+ * each pixel row is sampled on {@link Rasterizer#SUBSAMPLES} lines, on each line the spans inside the
+ * polygon by the non zero rule are added to a coverage row with exact fractional ends, then the row is
+ * blended with the color. edges are kept in an active edge list so outlines with many vertices cost
+ * the same per row as simple ones.</br>
+ * a polygon is given as any number of rings added with {@link Rasterizer#ring(double[], int)} followed by one
+ * {@link Rasterizer#fill(Color)}, overlapping rings of same orientation are covered once, which is how
+ * the pieces of a stroke are drawn without darker joins.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class Rasterizer {
+
+	/**
+	 * <p>
+	 * sample lines per pixel row.</br>
+	 * </p>
+	 */
+	private static final int SUBSAMPLES = 4;
+
+	private final int width;
+	private int height;
+
+	/**
+	 * <p>
+	 * band of pixels as 0xRRGGBB, row after row.</br>
+	 * </p>
+	 */
+	private final int[] pixels;
+
+	/**
+	 * <p>
+	 * y of the top of the band in image coordinates.</br>
+	 * </p>
+	 */
+	private double top;
+
+	/**
+	 * <p>
+	 * edges of the current polygon, each one x1, y1, x2, y2 with y1 < y2, and its winding direction.</br>
+	 * </p>
+	 */
+	private double[] edges = new double[64];
+	private int[] winding = new int[16];
+	private int edgeCount;
+	private double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * <p>
+	 * reused work arrays.</br>
+	 * </p>
+	 */
+	private final float[] coverage;
+	//change of coverage of whole pixels from the pixel to the left, so a span costs the same at any length
+	private final float[] delta;
+	private Integer[] order = new Integer[16];
+	private int[] active = new int[16];
+	private double[] crossings = new double[16];
+	private int[] directions = new int[16];
+
+	/**
+	 * @param width - width of the band and of the image
+	 * @param rows - most rows a band can have
+	 */
+	Rasterizer( int width, int rows) {
+		this.width = width;
+		pixels = new int[width * rows];
+		coverage = new float[width + 2];
+		delta = new float[width + 2];
+	}
+
+	/**
+	 * <p>
+	 * start a new band, filled with given background.</br>
+	 * </p>
+	 * @param top - y of first row of band in image
+	 * @param height - rows in band
+	 * @param background - color of empty pixels as 0xRRGGBB
+	 */
+	void reset( int top, int height, int background) {
+		this.top = top;
+		this.height = height;
+		Arrays.fill( pixels, 0, width * height, background);
+	}
+
+	/**
+	 * @return pixels of the band as 0xRRGGBB, only the first width * height are used
+	 */
+	int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * <p>
+	 * add a closed ring to the current polygon.</br>
+	 * </p>
+	 * @param points - flat array of image coordinates
+	 * @param length - number of values of points to use
+	 */
+	void ring( double[] points, int length) {
+		for( int i = 0; i + 1 < length; i += 2) {
+			int j = i + 2 == length ? 0 : i + 2;
+			edge( points[i], points[i + 1] - top, points[j], points[j + 1] - top);
+		}
+	}
+
+	/**
+	 * <p>
+	 * add one edge, horizontal edges are dropped since they never cross a sample line.</br>
+	 * </p>
+	 */
+	private void edge( double x1, double y1, double x2, double y2) {
+		if( y1 == y2)
+			return;
+		int direction = 1;
+		if( y1 > y2) {
+			double t = x1;
+			x1 = x2;
+			x2 = t;
+			t = y1;
+			y1 = y2;
+			y2 = t;
+			direction = -1;
+		}
+		if( edgeCount == winding.length) {
+			winding = Arrays.copyOf( winding, edgeCount * 2);
+			edges = Arrays.copyOf( edges, edgeCount * 8);
+		}
+		int e = edgeCount * 4;
+		edges[e] = x1;
+		edges[e + 1] = y1;
+		edges[e + 2] = x2;
+		edges[e + 3] = y2;
+		winding[edgeCount++] = direction;
+		minY = Math.min( minY, y1);
+		maxY = Math.max( maxY, y2);
+	}
+
+	/**
+	 * <p>
+	 * blend the current polygon into the band with given color, then clear it.</br>
+	 * </p>
+	 * @param color - color to draw, its opacity is used
+	 */
+	void fill( Color color) {
+		if( edgeCount > 0 && color.getOpacity() > 0)
+			scan( color);
+		edgeCount = 0;
+		minY = Double.POSITIVE_INFINITY;
+		maxY = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * <p>
+	 * walk sample lines of rows covered by the current polygon.</br>
+	 * </p>
+	 */
+	private void scan( Color color) {
+		int firstRow = Math.max( 0, (int) Math.floor( minY)), lastRow = Math.min( height - 1, (int) Math.ceil( maxY) - 1);
+		if( firstRow > lastRow)
+			return;
+		//edges ordered by top so they can join the active list in order
+		if( order.length < edgeCount)
+			order = new Integer[edgeCount];
+		for( int i = 0; i < edgeCount; i++)
+			order[i] = i;
+		Arrays.sort( order, 0, edgeCount, ( a, b) -> Double.compare( edges[a * 4 + 1], edges[b * 4 + 1]));
+		if( active.length < edgeCount) {
+			active = new int[edgeCount];
+			crossings = new double[edgeCount];
+			directions = new int[edgeCount];
+		}
+		int next = 0, activeCount = 0;
+		int r = (int) Math.round( color.getRed() * 255), g = (int) Math.round( color.getGreen() * 255), b = (int) Math.round( color.getBlue() * 255);
+		float opacity = (float) color.getOpacity();
+		for( int row = firstRow; row <= lastRow; row++) {
+			int left = width, right = -1;
+			for( int s = 0; s < SUBSAMPLES; s++) {
+				double y = row + ( s + 0.5) / SUBSAMPLES;
+				//drop edges which ended, add edges which started
+				int kept = 0;
+				for( int i = 0; i < activeCount; i++)
+					if( edges[active[i] * 4 + 3] > y)
+						active[kept++] = active[i];
+				activeCount = kept;
+				while( next < edgeCount && edges[order[next] * 4 + 1] <= y) {
+					int e = order[next++];
+					if( edges[e * 4 + 3] > y)
+						active[activeCount++] = e;
+				}
+				if( activeCount == 0)
+					continue;
+				for( int i = 0; i < activeCount; i++) {
+					int e = active[i] * 4;
+					double t = ( y - edges[e + 1]) / ( edges[e + 3] - edges[e + 1]);
+					double x = edges[e] + t * ( edges[e + 2] - edges[e]);
+					//insertion sort, crossings are almost sorted from the last line
+					int j = i;
+					while( j > 0 && crossings[j - 1] > x) {
+						crossings[j] = crossings[j - 1];
+						directions[j] = directions[j - 1];
+						j--;
+					}
+					crossings[j] = x;
+					directions[j] = winding[active[i]];
+				}
+				int sum = 0;
+				for( int i = 0; i + 1 < activeCount; i++) {
+					sum += directions[i];
+					if( sum != 0) {
+						double x1 = Math.max( 0, crossings[i]), x2 = Math.min( width, crossings[i + 1]);
+						if( x1 < x2) {
+							span( x1, x2);
+							left = Math.min( left, (int) x1);
+							right = Math.max( right, (int) Math.ceil( x2));
+						}
+					}
+				}
+			}
+			if( right >= 0)
+				blend( row, left, Math.min( right, width), r, g, b, opacity);
+		}
+	}
+
+	/**
+	 * <p>
+	 * add one sample line of coverage from x1 to x2, partial pixels at both ends get their fraction.</br>
+	 * </p>
+	 */
+	private void span( double x1, double x2) {
+		float weight = 1f / SUBSAMPLES;
+		int p1 = (int) x1, p2 = (int) x2;
+		if( p1 == p2) {
+			coverage[p1] += ( x2 - x1) * weight;
+			return;
+		}
+		coverage[p1] += ( p1 + 1 - x1) * weight;
+		delta[p1 + 1] += weight;
+		delta[p2] -= weight;
+		if( p2 < width)
+			coverage[p2] += ( x2 - p2) * weight;
+	}
+
+	/**
+	 * <p>
+	 * blend color into one row using its coverage, then clear the coverage.</br>
+	 * </p>
+	 */
+	private void blend( int row, int left, int right, int r, int g, int b, float opacity) {
+		int offset = row * width, color = ( r << 16) | ( g << 8) | b;
+		float whole = 0;
+		for( int x = left; x < right; x++) {
+			whole += delta[x];
+			float cover = coverage[x] + whole;
+			coverage[x] = 0;
+			delta[x] = 0;
+			//alpha out of 256 so blending is done with integers
+			int a = (int) ( Math.min( 1f, cover) * opacity * 256 + 0.5f);
+			if( a <= 0)
+				continue;
+			if( a >= 256) {
+				pixels[offset + x] = color;
+				continue;
+			}
+			int p = pixels[offset + x];
+			int pr = ( p >> 16) & 0xFF, pg = ( p >> 8) & 0xFF, pb = p & 0xFF;
+			pr += ( ( r - pr) * a + 128) >> 8;
+			pg += ( ( g - pg) * a + 128) >> 8;
+			pb += ( ( b - pb) * a + 128) >> 8;
+			pixels[offset + x] = ( pr << 16) | ( pg << 8) | pb;
+		}
+		//a span ending exactly on a pixel border leaves its end in the delta of right
+		delta[right] = 0;
+		coverage[right] = 0;
+	}
+}
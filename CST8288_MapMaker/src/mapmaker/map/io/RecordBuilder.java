@@ -0,0 +1,70 @@
+package mapmaker.map.io;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * turns outlines of one imported element into records, the same way for every format.</br>
+ * an outline of 2 vertices becomes a path, keeping ID and connections. an open line of more
+ * vertices becomes one unconnected path per segment, since a path has only 2 ends.
+ * a closed outline of 3 or more vertices becomes a room, anything else is dropped.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class RecordBuilder {
+
+	private final int id, first, second;
+	private final Color fill, stroke;
+	private final double width;
+	//IDs are only kept if the element has a single outline, otherwise they would repeat
+	private final boolean single;
+
+	/**
+	 * @param id - ID found in the document or {@link ShapeRecord#NONE}
+	 * @param fill - fill of rooms
+	 * @param stroke - stroke of rooms and paths
+	 * @param width - stroke width
+	 * @param first - ID of room at first end of a path or {@link ShapeRecord#NONE}
+	 * @param second - ID of room at second end of a path or {@link ShapeRecord#NONE}
+	 * @param single - true if element has only one outline
+	 */
+	RecordBuilder( int id, Color fill, Color stroke, double width, int first, int second, boolean single) {
+		this.id = id;
+		this.fill = fill;
+		this.stroke = stroke;
+		this.width = width;
+		this.first = first;
+		this.second = second;
+		this.single = single;
+	}
+
+	/**
+	 * <p>
+	 * add records of one outline.</br>
+	 * </p>
+	 * @param points - flat array of coordinates, a closing vertex repeating the first is removed from areas
+	 * @param open - true if outline is a line, not the border of an area
+	 * @param records - list to add records to
+	 */
+	void add( double[] points, boolean open, List< ShapeRecord> records) {
+		int n = points.length;
+		if( !open && n >= 6 && points[0] == points[n - 2] && points[1] == points[n - 1])
+			points = Arrays.copyOf( points, n -= 2);
+		if( n == 4) {
+			records.add( new ShapeRecord( single ? id : ShapeRecord.NONE, PolyShape.PATH_TYPE, 2,
+					Color.TRANSPARENT, stroke, width, points, single ? first : ShapeRecord.NONE, single ? second : ShapeRecord.NONE));
+		} else if( open) {
+			for( int i = 0; i + 3 < n; i += 2)
+				records.add( new ShapeRecord( ShapeRecord.NONE, PolyShape.PATH_TYPE, 2,
+						Color.TRANSPARENT, stroke, width, Arrays.copyOfRange( points, i, i + 4), ShapeRecord.NONE, ShapeRecord.NONE));
+		} else if( n >= 6) {
+			records.add( new ShapeRecord( single ? id : ShapeRecord.NONE, PolyShape.ROOM_TYPE, n / 2,
+					fill, stroke, width, points, ShapeRecord.NONE, ShapeRecord.NONE));
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package mapmaker.map.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * export a map as an SVG document. rooms are written as <code>polygon</code> and paths as <code>polyline</code>
+ * elements, in drawing order, using the same coordinates as the map.</br>
+ * every element keeps ID, type and sides in <code>data-</code> attributes, and a path keeps the IDs of the
+ * rooms it connects in <code>data-first</code> and <code>data-second</code>, -1 for an end not connected.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class SvgExporter implements MapExporter {
+
+	/**
+	 * <p>
+	 * empty space around the shapes in the view box.</br>
+	 * </p>
+	 */
+	private static final double MARGIN = 10;
+
+	/**
+	 * overridden function from {@link MapExporter}
+	 */
+	@Override
+	public void write( List< ShapeRecord> shapes, Writer writer) throws IOException {
+		double[] box = viewBox( shapes);
+		String newLine = System.lineSeparator();
+		writer.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		writer.write( newLine);
+		writer.write( "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"");
+		writer.write( MapExporter.number( box[0]) + " " + MapExporter.number( box[1]) + " "
+				+ MapExporter.number( box[2]) + " " + MapExporter.number( box[3]));
+		writer.write( "\" width=\"" + MapExporter.number( box[2]) + "\" height=\"" + MapExporter.number( box[3]) + "\">");
+		writer.write( newLine);
+		for( ShapeRecord shape : shapes) {
+			writeShape( shape, writer);
+			writer.write( newLine);
+		}
+		writer.write( "</svg>");
+		writer.write( newLine);
+	}
+
+	/**
+	 * <p>
+	 * write one element.</br>
+	 * </p>
+	 */
+	private void writeShape( ShapeRecord shape, Writer writer) throws IOException {
+		boolean path = shape.isPath();
+		writer.write( path ? "<polyline" : "<polygon");
+		attribute( writer, "id", "shape-" + shape.getID());
+		attribute( writer, "data-type", shape.getType());
+		attribute( writer, "data-sides", Integer.toString( shape.getSides()));
+		if( path) {
+			attribute( writer, "data-first", Integer.toString( shape.getFirst()));
+			attribute( writer, "data-second", Integer.toString( shape.getSecond()));
+		}
+		writer.write( " points=\"");
+		for( int i = 0; i < shape.size(); i += 2) {
+			if( i > 0)
+				writer.write( ' ');
+			writer.write( MapExporter.number( shape.get( i)));
+			writer.write( ',');
+			writer.write( MapExporter.number( shape.get( i + 1)));
+		}
+		writer.write( '"');
+		paint( writer, "fill", path ? Color.TRANSPARENT : shape.getFill());
+		paint( writer, "stroke", shape.getStroke());
+		attribute( writer, "stroke-width", MapExporter.number( shape.getStrokeWidth()));
+		writer.write( "/>");
+	}
+
+	/**
+	 * <p>
+	 * write a color as a hex attribute and, if not opaque, an opacity attribute.</br>
+	 * </p>
+	 */
+	private void paint( Writer writer, String name, Color color) throws IOException {
+		if( color.getOpacity() == 0) {
+			attribute( writer, name, "none");
+			return;
+		}
+		attribute( writer, name, ShapeRecord.hex( color));
+		if( color.getOpacity() < 1)
+			attribute( writer, name + "-opacity", MapExporter.number( color.getOpacity()));
+	}
+
+	/**
+	 * <p>
+	 * write <code> name="value"</code>, values written here never contain quotes.</br>
+	 * </p>
+	 */
+	private void attribute( Writer writer, String name, String value) throws IOException {
+		writer.write( ' ');
+		writer.write( name);
+		writer.write( "=\"");
+		writer.write( value);
+		writer.write( '"');
+	}
+
+	/**
+	 * @return x, y, width and height covering all shapes plus {@link SvgExporter#MARGIN}
+	 */
+	private double[] viewBox( List< ShapeRecord> shapes) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for( ShapeRecord shape : shapes) {
+			for( int i = 0; i < shape.size(); i += 2) {
+				minX = Math.min( minX, shape.get( i));
+				maxX = Math.max( maxX, shape.get( i));
+				minY = Math.min( minY, shape.get( i + 1));
+				maxY = Math.max( maxY, shape.get( i + 1));
+			}
+		}
+		if( minX > maxX)
+			return new double[] { 0, 0, 1, 1 };
+		return new double[] { minX - MARGIN, minY - MARGIN, maxX - minX + 2 * MARGIN, maxY - minY + 2 * MARGIN };
+	}
+}
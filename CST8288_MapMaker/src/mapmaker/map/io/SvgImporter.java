@@ -0,0 +1,423 @@
+package mapmaker.map.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * import <code>polygon</code>, <code>polyline</code>, <code>rect</code>, <code>line</code> and <code>path</code>
+ * elements of an SVG document with a StAX reader.</br>
+ * fill, stroke, stroke width and their opacities are read from attributes or the <code>style</code> attribute
+ * and inherited from parent groups. curves of a path are replaced by straight lines to their end points,
+ * and transforms are not applied.</br>
+ * <code>line</code>, <code>polyline</code> and outlines of a <code>path</code> not closed by Z are open lines,
+ * everything else outlines a room, see {@link RecordBuilder}.
+ * paths are connected using <code>data-first</code> and <code>data-second</code> as written by {@link SvgExporter}.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class SvgImporter implements MapImporter {
+
+	/**
+	 * <p>
+	 * prefix of <code>id</code> attributes written by {@link SvgExporter}.</br>
+	 * </p>
+	 */
+	private static final String ID_PREFIX = "shape-";
+
+	/**
+	 * <p>
+	 * style properties which are inherited by child elements.</br>
+	 * </p>
+	 */
+	private static final List< String> STYLES = Arrays.asList( "fill", "stroke", "stroke-width", "fill-opacity", "stroke-opacity");
+
+	/**
+	 * <p>
+	 * one element as found in the document: its name, its own attributes and the style it inherited.</br>
+	 * </p>
+	 */
+	private static class RawShape {
+		private final String element;
+		private final Map< String, String> attributes;
+
+		private RawShape( String element, Map< String, String> attributes) {
+			this.element = element;
+			this.attributes = attributes;
+		}
+	}
+
+	/**
+	 * overridden function from {@link MapImporter}
+	 */
+	@Override
+	public List< ShapeRecord> read( Reader reader) throws IOException {
+		return MapImporter.decode( parse( reader), this::decode);
+	}
+
+	/**
+	 * <p>
+	 * first stage, stream the document keeping only attributes of shape elements.</br>
+	 * </p>
+	 */
+	private List< RawShape> parse( Reader reader) throws IOException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		//a map file has no reason to load anything else
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		List< RawShape> shapes = new ArrayList<>();
+		//style in effect at each open element
+		Deque< Map< String, String>> styles = new ArrayDeque<>();
+		styles.push( Collections.emptyMap());
+		try {
+			XMLStreamReader xml = factory.createXMLStreamReader( reader);
+			while( xml.hasNext()) {
+				int event = xml.next();
+				if( event == XMLStreamConstants.START_ELEMENT) {
+					Map< String, String> attributes = new HashMap<>( styles.peek());
+					for( int i = 0; i < xml.getAttributeCount(); i++)
+						attributes.put( xml.getAttributeLocalName( i), xml.getAttributeValue( i));
+					String style = attributes.remove( "style");
+					if( style != null)
+						parseStyle( style, attributes);
+					styles.push( inherited( attributes));
+					String element = xml.getLocalName();
+					switch( element) {
+						case "polygon":
+						case "polyline":
+						case "rect":
+						case "line":
+						case "path":
+							shapes.add( new RawShape( element, attributes));
+							break;
+						default:
+							break;
+					}
+				} else if( event == XMLStreamConstants.END_ELEMENT) {
+					styles.pop();
+				}
+			}
+			xml.close();
+		} catch( XMLStreamException e) {
+			throw new IOException( e.getMessage(), e);
+		}
+		return shapes;
+	}
+
+	/**
+	 * <p>
+	 * add declarations of a <code>style</code> attribute, like <code>fill:red;stroke-width:2</code>, to attributes.</br>
+	 * </p>
+	 */
+	private void parseStyle( String style, Map< String, String> attributes) {
+		for( String declaration : style.split( ";")) {
+			int colon = declaration.indexOf( ':');
+			if( colon > 0)
+				attributes.put( declaration.substring( 0, colon).trim(), declaration.substring( colon + 1).trim());
+		}
+	}
+
+	/**
+	 * @return only the style properties of attributes
+	 */
+	private Map< String, String> inherited( Map< String, String> attributes) {
+		Map< String, String> style = new HashMap<>();
+		for( String name : STYLES)
+			if( attributes.containsKey( name))
+				style.put( name, attributes.get( name));
+		return style;
+	}
+
+	/**
+	 * <p>
+	 * second stage, turn one element into records. a path element can hold many outlines.</br>
+	 * </p>
+	 */
+	private List< ShapeRecord> decode( RawShape raw) {
+		Map< String, String> a = raw.attributes;
+		List< double[]> outlines = new ArrayList<>();
+		//for path elements, true for each outline closed by Z
+		List< Boolean> closed = new ArrayList<>();
+		try {
+			switch( raw.element) {
+				case "polygon":
+				case "polyline":
+					outlines.add( numbers( a.getOrDefault( "points", "")));
+					break;
+				case "rect":
+					double x = number( a, "x"), y = number( a, "y"), w = number( a, "width"), h = number( a, "height");
+					outlines.add( new double[] { x, y, x + w, y, x + w, y + h, x, y + h });
+					break;
+				case "line":
+					outlines.add( new double[] { number( a, "x1"), number( a, "y1"), number( a, "x2"), number( a, "y2") });
+					break;
+				default:
+					pathData( a.getOrDefault( "d", ""), outlines, closed);
+					break;
+			}
+		} catch( NumberFormatException e) {
+			return Collections.emptyList();
+		}
+		boolean open = raw.element.equals( "polyline") || raw.element.equals( "line");
+		RecordBuilder builder = new RecordBuilder( id( a.get( "id")),
+				color( a.get( "fill"), a.get( "fill-opacity"), Color.BLACK),
+				color( a.get( "stroke"), a.get( "stroke-opacity"), Color.TRANSPARENT),
+				number( a, "stroke-width", 1),
+				(int) number( a, "data-first", ShapeRecord.NONE), (int) number( a, "data-second", ShapeRecord.NONE),
+				outlines.size() == 1);
+		List< ShapeRecord> records = new ArrayList<>( outlines.size());
+		for( int i = 0; i < outlines.size(); i++)
+			builder.add( outlines.get( i), open || ( i < closed.size() && !closed.get( i)), records);
+		return records;
+	}
+
+	/**
+	 * <p>
+	 * outlines of path data. M, L, H, V and Z are followed exactly, C, S, Q, T and A are replaced by
+	 * a line to their end point. each M starts a new outline, so does a line drawn after Z, from the start of the last one.</br>
+	 * </p>
+	 * @param outlines - list to add outlines to
+	 * @param closed - list to add true to for each outline ended by Z, false for each open one
+	 */
+	private void pathData( String d, List< double[]> outlines, List< Boolean> closed) {
+		NumberScanner scanner = new NumberScanner( d);
+		DoubleList current = new DoubleList();
+		double x = 0, y = 0, startX = 0, startY = 0;
+		char command = 'M';
+		//true after Z until the next outline starts
+		boolean ended = false;
+		while( scanner.skipSeparators()) {
+			char c = scanner.peek();
+			if( Character.isLetter( c)) {
+				command = c;
+				scanner.advance();
+				if( command == 'Z' || command == 'z') {
+					x = startX;
+					y = startY;
+					if( current.size() > 0) {
+						outlines.add( current.toArray());
+						closed.add( true);
+						current = new DoubleList();
+					}
+					ended = true;
+				}
+				continue;
+			}
+			boolean relative = Character.isLowerCase( command);
+			double bx = relative ? x : 0, by = relative ? y : 0;
+			switch( Character.toUpperCase( command)) {
+				case 'M':
+					if( current.size() > 0) {
+						outlines.add( current.toArray());
+						closed.add( false);
+					}
+					current = new DoubleList();
+					ended = false;
+					x = startX = bx + scanner.next();
+					y = startY = by + scanner.next();
+					//coordinates after a move are lines
+					command = relative ? 'l' : 'L';
+					break;
+				case 'L':
+				case 'T':
+					x = bx + scanner.next();
+					y = by + scanner.next();
+					break;
+				case 'H':
+					x = bx + scanner.next();
+					break;
+				case 'V':
+					y = by + scanner.next();
+					break;
+				case 'C':
+					scanner.skip( 4);
+					x = bx + scanner.next();
+					y = by + scanner.next();
+					break;
+				case 'S':
+				case 'Q':
+					scanner.skip( 2);
+					x = bx + scanner.next();
+					y = by + scanner.next();
+					break;
+				case 'A':
+					scanner.skip( 5);
+					x = bx + scanner.next();
+					y = by + scanner.next();
+					break;
+				default:
+					throw new NumberFormatException( "unknown path command " + command);
+			}
+			//a line after Z starts where the closed outline started
+			if( ended) {
+				current.add( startX);
+				current.add( startY);
+				ended = false;
+			}
+			current.add( x);
+			current.add( y);
+		}
+		if( current.size() > 0) {
+			outlines.add( current.toArray());
+			closed.add( false);
+		}
+	}
+
+	/**
+	 * @return all numbers in a list separated by commas or whitespace
+	 */
+	private double[] numbers( String list) {
+		NumberScanner scanner = new NumberScanner( list);
+		DoubleList values = new DoubleList();
+		while( scanner.skipSeparators())
+			values.add( scanner.next());
+		//an odd number of values is an error, the last one is ignored
+		return Arrays.copyOf( values.toArray(), values.size() & ~1);
+	}
+
+	/**
+	 * @return number of SVG ID, like <code>shape-12</code>, or {@link ShapeRecord#NONE}
+	 */
+	private int id( String value) {
+		if( value == null || !value.startsWith( ID_PREFIX))
+			return ShapeRecord.NONE;
+		try {
+			return Integer.parseInt( value.substring( ID_PREFIX.length()));
+		} catch( NumberFormatException e) {
+			return ShapeRecord.NONE;
+		}
+	}
+
+	/**
+	 * @return color of a paint attribute with its opacity, fallback if missing or not a plain color
+	 */
+	private Color color( String value, String opacity, Color fallback) {
+		Color color = fallback;
+		if( value != null) {
+			if( value.equals( "none"))
+				return Color.TRANSPARENT;
+			try {
+				color = Color.web( value);
+			} catch( IllegalArgumentException e) {
+				//gradients and currentColor are not supported
+			}
+		}
+		if( opacity != null) {
+			try {
+				double o = Math.max( 0, Math.min( 1, Double.parseDouble( opacity.trim())));
+				color = Color.color( color.getRed(), color.getGreen(), color.getBlue(), color.getOpacity() * o);
+			} catch( NumberFormatException e) {
+				//keep color as is
+			}
+		}
+		return color;
+	}
+
+	/**
+	 * @return number of a required attribute, 0 if missing
+	 */
+	private double number( Map< String, String> attributes, String name) {
+		return number( attributes, name, 0);
+	}
+
+	/**
+	 * @return number of an attribute, unit suffix like <code>px</code> ignored, fallback if missing or invalid
+	 */
+	private double number( Map< String, String> attributes, String name, double fallback) {
+		String value = attributes.get( name);
+		if( value == null)
+			return fallback;
+		NumberScanner scanner = new NumberScanner( value);
+		try {
+			return scanner.skipSeparators() ? scanner.next() : fallback;
+		} catch( NumberFormatException e) {
+			return fallback;
+		}
+	}
+
+	/**
+	 * <p>
+	 * reads numbers of SVG lists, where a sign or a second dot also starts a new number, like <code>1-2.5.5</code>.</br>
+	 * </p>
+	 */
+	private static class NumberScanner {
+		private final String text;
+		private int index;
+
+		private NumberScanner( String text) {
+			this.text = text;
+		}
+
+		/**
+		 * @return true if there is anything left after skipping commas and whitespace
+		 */
+		private boolean skipSeparators() {
+			while( index < text.length() && ( text.charAt( index) == ',' || Character.isWhitespace( text.charAt( index))))
+				index++;
+			return index < text.length();
+		}
+
+		private char peek() {
+			return text.charAt( index);
+		}
+
+		private void advance() {
+			index++;
+		}
+
+		/**
+		 * <p>
+		 * read and ignore given number of numbers.</br>
+		 * </p>
+		 */
+		private void skip( int count) {
+			for( int i = 0; i < count; i++)
+				next();
+		}
+
+		/**
+		 * @return next number
+		 * @throws NumberFormatException if next text is not a number
+		 */
+		private double next() {
+			skipSeparators();
+			int start = index;
+			if( index < text.length() && ( text.charAt( index) == '-' || text.charAt( index) == '+'))
+				index++;
+			boolean dot = false;
+			while( index < text.length()) {
+				char c = text.charAt( index);
+				if( c == '.' && !dot) {
+					dot = true;
+				} else if( ( c == 'e' || c == 'E') && index > start) {
+					index++;
+					if( index < text.length() && ( text.charAt( index) == '-' || text.charAt( index) == '+'))
+						index++;
+					continue;
+				} else if( c < '0' || c > '9') {
+					break;
+				}
+				index++;
+			}
+			if( start == index)
+				throw new NumberFormatException( "expected number at " + start + " in " + text);
+			return Double.parseDouble( text.substring( start, index));
+		}
+	}
+}
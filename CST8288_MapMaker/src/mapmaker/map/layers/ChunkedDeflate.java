@@ -0,0 +1,152 @@
+package mapmaker.map.layers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * compressed text of a layer, cut in chunks which are deflated on their own so all of them are
+ * compressed and decompressed in parallel:</br>
+ * <code>magic chunkSize rawLength chunkCount</code> then compressed length of each chunk then the chunks,
+ * numbers are 4 byte big endian ints and each chunk is a zlib stream with its own checksum.</br>
+ * magic starts with a byte no UTF-8 text starts with, so compressed and plain text are told apart
+ * by their first bytes, see {@link #isCompressed(byte[])}.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+final class ChunkedDeflate {
+
+	private static final byte[] MAGIC = { (byte) 0x89, 'M', 'Z', 1 };
+
+	/**
+	 * <p>
+	 * bytes of text in each chunk, large enough for deflate to find repeats in it
+	 * and small enough for a map of a few megabytes to use every core.</br>
+	 * </p>
+	 */
+	static final int CHUNK_SIZE = 1 << 18;
+
+	private static final int HEADER = MAGIC.length + 12;
+
+	/**
+	 * <p>
+	 * most bytes of text deflate can make of one compressed byte, about 1032 for a long run of one byte.
+	 * a header claiming more text than this allows is broken, its text is never allocated.</br>
+	 * </p>
+	 */
+	private static final int MAX_RATIO = 1032;
+
+	private ChunkedDeflate() {
+	}
+
+	/**
+	 * @param bytes - plain or compressed text
+	 * @return true if bytes were made by {@link #compress(byte[])}
+	 */
+	static boolean isCompressed( byte[] bytes) {
+		if( bytes.length < HEADER)
+			return false;
+		for( int i = 0; i < MAGIC.length; i++)
+			if( bytes[i] != MAGIC[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @param raw - plain text
+	 * @return compressed text
+	 */
+	static byte[] compress( byte[] raw) {
+		int count = ( raw.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		byte[][] chunks = IntStream.range( 0, count).parallel().mapToObj( i -> deflate( raw, i * CHUNK_SIZE,
+				Math.min( CHUNK_SIZE, raw.length - i * CHUNK_SIZE))).toArray( byte[][]::new);
+		int size = HEADER + 4 * count;
+		for( byte[] chunk : chunks)
+			size += chunk.length;
+		ByteBuffer buffer = ByteBuffer.allocate( size);
+		buffer.put( MAGIC).putInt( CHUNK_SIZE).putInt( raw.length).putInt( count);
+		for( byte[] chunk : chunks)
+			buffer.putInt( chunk.length);
+		for( byte[] chunk : chunks)
+			buffer.put( chunk);
+		return buffer.array();
+	}
+
+	/**
+	 * @param bytes - compressed text
+	 * @return plain text
+	 * @throws IOException if bytes are not whole, were not made with {@link #CHUNK_SIZE} or a chunk is broken
+	 */
+	static byte[] decompress( byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap( bytes);
+		buffer.position( MAGIC.length);
+		int chunkSize = buffer.getInt(), rawLength = buffer.getInt(), count = buffer.getInt();
+		//checked before raw is allocated, a broken length must not allocate gigabytes
+		if( chunkSize != CHUNK_SIZE || rawLength < 0 || count != ( rawLength + (long) chunkSize - 1) / chunkSize
+				|| HEADER + 4L * count > bytes.length || rawLength > ( bytes.length - HEADER) * (long) MAX_RATIO)
+			throw new IOException( "broken header of compressed layer");
+		int[] starts = new int[count + 1];
+		starts[0] = HEADER + 4 * count;
+		for( int i = 0; i < count; i++) {
+			int length = buffer.getInt();
+			if( length < 0 || starts[i] + (long) length > bytes.length)
+				throw new IOException( "chunk " + i + " ends after end of layer");
+			starts[i + 1] = starts[i] + length;
+		}
+		byte[] raw = new byte[rawLength];
+		try {
+			IntStream.range( 0, count).parallel().forEach( i -> inflate( bytes, starts[i], starts[i + 1] - starts[i],
+					raw, i * chunkSize, Math.min( chunkSize, rawLength - i * chunkSize), i));
+		} catch( UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return raw;
+	}
+
+	private static byte[] deflate( byte[] raw, int offset, int length) {
+		Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION);
+		try {
+			deflater.setInput( raw, offset, length);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream( length / 4 + 64);
+			byte[] buffer = new byte[1 << 16];
+			while( !deflater.finished())
+				out.write( buffer, 0, deflater.deflate( buffer));
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * <p>
+	 * inflate one chunk into its place in raw.</br>
+	 * </p>
+	 * @throws UncheckedIOException if chunk is broken or not of its expected length
+	 */
+	private static void inflate( byte[] bytes, int offset, int length, byte[] raw, int rawOffset, int rawLength, int chunk) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput( bytes, offset, length);
+			int done = 0;
+			while( done < rawLength) {
+				int n = inflater.inflate( raw, rawOffset + done, rawLength - done);
+				if( n == 0 && ( inflater.needsInput() || inflater.finished() || inflater.needsDictionary()))
+					throw new DataFormatException( "chunk ends early");
+				done += n;
+			}
+			if( !inflater.finished() && ( inflater.inflate( new byte[1]) != 0 || !inflater.finished()))
+				throw new DataFormatException( "chunk is longer than expected");
+		} catch( DataFormatException e) {
+			throw new UncheckedIOException( new IOException( "broken chunk " + chunk + " of compressed layer", e));
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,354 @@
+package mapmaker.map.layers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.scene.Node;
+import mapmaker.map.features.Movable;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * one floor of a map. every node of the map is tagged with the layer it belongs to.</br>
+ * a visible layer has its nodes in the map, a hidden one keeps them detached here so they cost
+ * nothing to the scene graph and to the listeners of the map.
+ * a layer opened from a file by {@link LayerFile} is not loaded, it only knows where its text is
+ * and is read from disk the first time it is shown.</br>
+ * a layer hidden for a while can be dehydrated, its detached shapes are copied into a {@link ShapeStore}
+ * and dropped, then created again when it is shown. see {@link LayerMemory}.
+ * shapes created again are new instances with the same IDs, so nothing may hold a shape of a hidden layer.
+ * every {@link mapmaker.map.shapes.ShapeListener} lets go of them when the layer is hidden, as they are removed from the map,
+ * anything else keeps their IDs and looks them up again once the layer is shown.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class Layer {
+
+	/**
+	 * <p>
+	 * key of the layer in {@link Node#getProperties()}.</br>
+	 * </p>
+	 */
+	private static final String KEY = Layer.class.getName();
+
+	/**
+	 * <p>
+	 * name of the only layer of a new map and of a file written before layers existed.</br>
+	 * </p>
+	 */
+	public static final String DEFAULT_NAME = "Layer 1";
+
+	private final String name;
+	private final BooleanProperty visible;
+
+	/**
+	 * <p>
+	 * nodes taken out of the map while this layer is hidden.</br>
+	 * </p>
+	 */
+	private List< Node> detached = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * compact copy of detached shapes after {@link Layer#dehydrate()}, null if there is none.</br>
+	 * </p>
+	 */
+	private ShapeStore store;
+
+	/**
+	 * <p>
+	 * where the text of this layer is while it is not loaded, file is null once loaded.</br>
+	 * </p>
+	 */
+	private Path file;
+	private long offset;
+	private int length;
+
+	/**
+	 * <p>
+	 * create a new empty visible layer.</br>
+	 * </p>
+	 * @param name - name shown to the user, line breaks are replaced by spaces
+	 */
+	public Layer( String name) {
+		this.name = name.replaceAll( "\\R", " ");
+		visible = new SimpleBooleanProperty( this, "visible", true);
+	}
+
+	/**
+	 * <p>
+	 * create a layer which is not loaded.</br>
+	 * </p>
+	 * @param file - file holding the text of the layer
+	 * @param offset - index of first byte of the text
+	 * @param length - number of bytes of the text
+	 * @param visible - if the layer is to be shown, and so loaded, as soon as it is added to a map
+	 */
+	Layer( String name, Path file, long offset, int length, boolean visible) {
+		this( name);
+		this.visible.set( visible);
+		moveSource( file, offset, length);
+	}
+
+	/**
+	 * @param node - any node
+	 * @return layer node belongs to or null
+	 */
+	public static Layer of( Node node) {
+		return (Layer) node.getProperties().get( KEY);
+	}
+
+	/**
+	 * <p>
+	 * tag a node as belonging to this layer.</br>
+	 * </p>
+	 * @param node - node to tag
+	 */
+	public void claim( Node node) {
+		node.getProperties().put( KEY, this);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BooleanProperty visibleProperty() {
+		return visible;
+	}
+
+	public boolean isVisible() {
+		return visible.get();
+	}
+
+	public void setVisible( boolean visible) {
+		this.visible.set( visible);
+	}
+
+	/**
+	 * @return true if text of this layer was read from disk or it never had any
+	 */
+	public boolean isLoaded() {
+		return file == null;
+	}
+
+	/**
+	 * <p>
+	 * read the text of this layer from disk and mark it as loaded, text compressed by {@link LayerFile} is decompressed.</br>
+	 * </p>
+	 * @return lines of the layer in the format of {@link mapmaker.map.MapArea#convertToString(Layer)}
+	 * @throws IOException if the file cannot be read, the layer stays not loaded
+	 */
+	public List< String> load() throws IOException {
+		List< String> lines = peek();
+		file = null;
+		return lines;
+	}
+
+	/**
+	 * <p>
+	 * read the text of this layer from disk and give it to parser, the layer is marked as loaded only once parser returns.
+	 * if parser throws the layer stays not loaded, so it is not saved empty over its text.</br>
+	 * </p>
+	 * @param parser - creates the shapes of the lines of the layer, see {@link mapmaker.map.MapArea#convertToString(Layer)}
+	 * @throws IOException if the file cannot be read, the layer stays not loaded
+	 */
+	public void load( Consumer< List< String>> parser) throws IOException {
+		parser.accept( peek());
+		file = null;
+	}
+
+	/**
+	 * <p>
+	 * read the text of this layer from disk without marking it as loaded, to copy it elsewhere.</br>
+	 * </p>
+	 * @return lines of the layer, empty if it is loaded
+	 * @throws IOException if the file cannot be read
+	 */
+	public List< String> peek() throws IOException {
+		if( isLoaded())
+			return Collections.emptyList();
+		byte[] bytes = read();
+		String text = new String( ChunkedDeflate.isCompressed( bytes) ? ChunkedDeflate.decompress( bytes) : bytes, StandardCharsets.UTF_8);
+		return text.isEmpty() ? Collections.emptyList() : Arrays.asList( text.split( "\\R"));
+	}
+
+	/**
+	 * <p>
+	 * keep nodes taken out of the map while this layer is hidden.</br>
+	 * </p>
+	 * @param nodes - nodes of this layer in drawing order
+	 */
+	public void detach( List< Node> nodes) {
+		detached.addAll( nodes);
+	}
+
+	/**
+	 * @return nodes kept by {@link Layer#detach(List)}, including dehydrated shapes created again as new instances
+	 * with their IDs, which are no longer kept by this layer
+	 */
+	public List< Node> attach() {
+		List< Node> nodes = detached;
+		detached = new ArrayList<>();
+		if( store != null) {
+			List< Node> hydrated = store.hydrate();
+			hydrated.forEach( this::claim);
+			nodes.addAll( hydrated);
+			store = null;
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return nodes kept while this layer is hidden which are not dehydrated, not to be changed
+	 */
+	public List< Node> getDetached() {
+		return Collections.unmodifiableList( detached);
+	}
+
+	/**
+	 * @return records of dehydrated shapes of this layer in order, empty if there are none
+	 */
+	public List< ShapeRecord> getDehydrated() {
+		if( store == null)
+			return Collections.emptyList();
+		List< ShapeRecord> records = new ArrayList<>( store.size());
+		for( int i = 0; i < store.size(); i++)
+			records.add( store.get( i));
+		return records;
+	}
+
+	/**
+	 * @return true if some shapes of this layer are only kept as records
+	 */
+	public boolean isDehydrated() {
+		return store != null;
+	}
+
+	/**
+	 * <p>
+	 * copy detached shapes into a compact {@link ShapeStore} and drop them with their control points.
+	 * shapes connected, directly or through other shapes, to a shape of another layer are kept as they are,
+	 * since that shape holds a reference to them. nothing happens if layer is visible.</br>
+	 * </p>
+	 */
+	public void dehydrate() {
+		if( isVisible())
+			return;
+		//owner of each control point of a path, rooms lock the control points of their paths
+		Map< Node, PolyShape> owners = new IdentityHashMap<>();
+		Set< PolyShape> stored = Collections.newSetFromMap( new IdentityHashMap<>());
+		for( Node n : detached) {
+			if( n instanceof PolyShape)
+				stored.add( (PolyShape) n);
+			if( n instanceof mapmaker.map.shapes.controls.Path)
+				for( Node point : ( (PolyShape) n).getControlPoints())
+					owners.put( point, (PolyShape) n);
+		}
+		//drop shapes connected to something not stored until nothing changes
+		boolean changed = true;
+		while( changed)
+			changed = stored.removeIf( shape -> !isSelfContained( shape, stored, owners));
+		if( stored.isEmpty())
+			return;
+		Set< Node> dropped = Collections.newSetFromMap( new IdentityHashMap<>());
+		for( PolyShape shape : stored) {
+			dropped.add( shape);
+			dropped.addAll( Arrays.asList( shape.getControlPoints()));
+		}
+		if( store == null)
+			store = new ShapeStore();
+		List< Node> kept = new ArrayList<>();
+		for( Node n : detached) {
+			if( !dropped.contains( n))
+				kept.add( n);
+			else if( n instanceof PolyShape)
+				store.add( (PolyShape) n);
+		}
+		store.trim();
+		detached = kept;
+	}
+
+	/**
+	 * @return true if every shape connected to given shape is stored
+	 */
+	private boolean isSelfContained( PolyShape shape, Set< PolyShape> stored, Map< Node, PolyShape> owners) {
+		if( shape instanceof mapmaker.map.shapes.controls.Path) {
+			mapmaker.map.shapes.controls.Path path = (mapmaker.map.shapes.controls.Path) shape;
+			return ( path.getFirst() == null || stored.contains( path.getFirst()))
+					&& ( path.getSecond() == null || stored.contains( path.getSecond()));
+		}
+		for( Movable m : shape.getLocks())
+			if( !stored.contains( owners.get( m)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return bytes held by dehydrated shapes of this layer, 0 if none
+	 */
+	long getStoreBytes() {
+		return store == null ? 0 : store.retainedBytes();
+	}
+
+	/**
+	 * @return number of dehydrated shapes of this layer
+	 */
+	int getStoreShapes() {
+		return store == null ? 0 : store.size();
+	}
+
+	/**
+	 * @return number of vertices of dehydrated shapes of this layer
+	 */
+	int getStoreVertices() {
+		return store == null ? 0 : store.vertices();
+	}
+
+	/**
+	 * @return text of a layer which is not loaded, exactly as it is in its file so maybe compressed
+	 */
+	byte[] read() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate( length);
+		try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ)) {
+			while( buffer.hasRemaining())
+				if( channel.read( buffer, offset + buffer.position()) < 0)
+					throw new IOException( "layer " + name + " ends after end of file");
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * <p>
+	 * point a layer which is not loaded to a new copy of its text.</br>
+	 * </p>
+	 * @param length - number of bytes of the copy, it changes if the copy was compressed or decompressed
+	 */
+	void moveSource( Path file, long offset, int length) {
+		this.file = file;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * @return name, used by lists showing layers
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+}
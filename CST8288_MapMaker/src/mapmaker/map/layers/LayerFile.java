@@ -0,0 +1,193 @@
+package mapmaker.map.layers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import mapmaker.map.shapes.ShapeRegistry;
+
+/**
+ * <p>
+ * reads and writes map files with layers. a file starts with a header giving the byte length of
+ * the text of each layer, so a layer can be read later on its own without reading the ones before it:</br>
+ * <code>layers count lastID</code></br>
+ * <code>layer length visible name</code> once per layer, visible is 1 or 0</br>
+ * followed by the text of each layer in order, in the format of {@link mapmaker.map.MapArea#convertToString(Layer)}.</br>
+ * a file without header, as written before layers existed, is opened as one visible layer.</br>
+ * the text of a layer can be compressed by {@link ChunkedDeflate}, which is told by its first bytes when it is loaded,
+ * so a reader needs no option to open a compressed file, the header stays plain for layers to be found without inflating any.</br>
+ * a file is written next to itself and then moved over the old one, so a failed write leaves the old file as it was
+ * for layers which are not loaded and still read from it.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class LayerFile {
+
+	private static final String HEADER = "layers";
+	private static final String LAYER = "layer";
+
+	private LayerFile() {
+	}
+
+	/**
+	 * <p>
+	 * read the header of a map file. no layer is loaded, the IDs used by all of them are reserved.</br>
+	 * </p>
+	 * @param file - map file to open
+	 * @return layers of file, none of them loaded
+	 * @throws IOException if file cannot be read, its header is broken or a file without header is over 2 GiB
+	 */
+	public static List< Layer> open( Path file) throws IOException {
+		long size = Files.size( file);
+		try( InputStream in = new BufferedInputStream( Files.newInputStream( file))) {
+			long[] position = { 0 };
+			String[] header = readLine( in, position).split( " ");
+			if( header.length != 3 || !header[0].equals( HEADER)) {
+				//a layer is read into one array, which holds at most 2 GiB
+				if( size > Integer.MAX_VALUE)
+					throw new IOException( "file without layers is larger than " + Integer.MAX_VALUE + " bytes");
+				return Collections.singletonList( new Layer( Layer.DEFAULT_NAME, file, 0, (int) size, true));
+			}
+			try {
+				int count = Integer.parseInt( header[1]);
+				ShapeRegistry.reseed( Integer.parseInt( header[2]));
+				List< String[]> entries = new ArrayList<>( count);
+				for( int i = 0; i < count; i++) {
+					String[] entry = readLine( in, position).split( " ", 4);
+					if( entry.length != 4 || !entry[0].equals( LAYER))
+						throw new IOException( "broken header of layer " + i);
+					entries.add( entry);
+				}
+				List< Layer> layers = new ArrayList<>( count);
+				long offset = position[0];
+				for( String[] entry : entries) {
+					int length = Integer.parseInt( entry[1]);
+					if( length < 0)
+						throw new IOException( "broken length of layer " + entry[3]);
+					if( offset + length > size)
+						throw new IOException( "layer " + entry[3] + " ends after end of file");
+					layers.add( new Layer( entry[3], file, offset, length, entry[2].equals( "1")));
+					offset += length;
+				}
+				return layers;
+			} catch( NumberFormatException e) {
+				throw new IOException( "broken header", e);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * write all layers to a file as plain text. layers which are not loaded are copied from their file,
+	 * decompressed if they were compressed, and then point to their copy, so file can be the file they were opened from.</br>
+	 * </p>
+	 * @param file - map file to write
+	 * @param layers - all layers of the map in order
+	 * @param text - text of a loaded layer, see {@link mapmaker.map.MapArea#convertToString(Layer)}
+	 * @throws IOException if a layer cannot be read or file cannot be written
+	 */
+	public static void save( Path file, List< Layer> layers, Function< Layer, String> text) throws IOException {
+		save( file, layers, text, false);
+	}
+
+	/**
+	 * <p>
+	 * write all layers to a file, compressed or not. layers which are not loaded are copied from their file,
+	 * compressed or decompressed first if they are not stored as asked, and then point to their copy.</br>
+	 * </p>
+	 * @param file - map file to write
+	 * @param layers - all layers of the map in order
+	 * @param text - text of a loaded layer, see {@link mapmaker.map.MapArea#convertToString(Layer)}
+	 * @param compress - true to compress the text of every layer with {@link ChunkedDeflate}
+	 * @throws IOException if a layer cannot be read or file cannot be written
+	 */
+	public static void save( Path file, List< Layer> layers, Function< Layer, String> text, boolean compress) throws IOException {
+		save( file, layers, text, compress, ShapeRegistry.lastID());
+	}
+
+	/**
+	 * <p>
+	 * write all layers of a map which is not the one open, like a merged file, with the highest ID of its shapes.
+	 * the header reserves IDs up to lastID when the file is opened, so lastID must not be below any ID in it.</br>
+	 * </p>
+	 * @param file - map file to write
+	 * @param layers - all layers of the map in order
+	 * @param text - text of a loaded layer, see {@link mapmaker.map.MapArea#convertToString(Layer)}
+	 * @param compress - true to compress the text of every layer with {@link ChunkedDeflate}
+	 * @param lastID - highest ID of a shape in any layer
+	 * @throws IOException if a layer cannot be read or file cannot be written
+	 */
+	public static void save( Path file, List< Layer> layers, Function< Layer, String> text, boolean compress, int lastID) throws IOException {
+		//everything is read before file is replaced, it may be the source of layers not loaded
+		List< byte[]> contents = new ArrayList<>( layers.size());
+		for( Layer layer : layers) {
+			byte[] content = layer.isLoaded() ? text.apply( layer).getBytes( StandardCharsets.UTF_8) : layer.read();
+			if( compress != ChunkedDeflate.isCompressed( content))
+				content = compress ? ChunkedDeflate.compress( content) : ChunkedDeflate.decompress( content);
+			contents.add( content);
+		}
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		writeLine( header, HEADER + " " + layers.size() + " " + lastID);
+		for( int i = 0; i < layers.size(); i++)
+			writeLine( header, LAYER + " " + contents.get( i).length + " " + ( layers.get( i).isVisible() ? 1 : 0) + " " + layers.get( i).getName());
+		Path temp = file.resolveSibling( file.getFileName() + ".tmp");
+		try {
+			try( OutputStream out = Files.newOutputStream( temp)) {
+				header.writeTo( out);
+				for( byte[] content : contents)
+					out.write( content);
+			}
+			try {
+				Files.move( temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch( AtomicMoveNotSupportedException e) {
+				Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch( IOException e) {
+			try {
+				Files.deleteIfExists( temp);
+			} catch( IOException suppressed) {
+				e.addSuppressed( suppressed);
+			}
+			throw e;
+		}
+		//layers point to the new file only once it replaced the old one
+		long offset = header.size();
+		for( int i = 0; i < layers.size(); i++) {
+			if( !layers.get( i).isLoaded())
+				layers.get( i).moveSource( file, offset, contents.get( i).length);
+			offset += contents.get( i).length;
+		}
+	}
+
+	/**
+	 * @param position - bytes read so far, increased by the bytes of this line
+	 * @return one line of the header without its line break
+	 */
+	private static String readLine( InputStream in, long[] position) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		for( int b = in.read(); b != '\n'; b = in.read()) {
+			if( b == -1)
+				break;
+			line.write( b);
+		}
+		position[0] += line.size() + 1;
+		String text = new String( line.toByteArray(), StandardCharsets.UTF_8);
+		return text.endsWith( "\r") ? text.substring( 0, text.length() - 1) : text;
+	}
+
+	private static void writeLine( OutputStream out, String line) throws IOException {
+		out.write( line.getBytes( StandardCharsets.UTF_8));
+		out.write( '\n');
+	}
+}
@@ -0,0 +1,136 @@
+package mapmaker.map.layers;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.animation.PauseTransition;
+import javafx.scene.Node;
+import javafx.util.Duration;
+import mapmaker.map.shapes.PolyShape;
+
+/**
+ * <p>
+ * dehydrates layers which stay hidden for {@link LayerMemory#IDLE}, see {@link Layer#dehydrate()},
+ * and reports the bytes retained per shape before and after.</br>
+ * bytes of shapes which are still nodes are estimated with {@link LayerMemory#SHAPE_BYTES} and
+ * {@link LayerMemory#VERTEX_BYTES}, measured by comparing the used heap after a full collection before and after
+ * creating thousands of detached rooms with their control points, on a 64 bit JVM with compressed references.
+ * bytes of dehydrated shapes are counted exactly from the arrays of their {@link ShapeStore}.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class LayerMemory {
+
+	/**
+	 * <p>
+	 * time a layer must stay hidden before it is dehydrated.</br>
+	 * </p>
+	 */
+	private static final Duration IDLE = Duration.seconds( 30);
+
+	/**
+	 * <p>
+	 * retained bytes of a shape as nodes, without its vertices, and of each vertex with its control point.</br>
+	 * </p>
+	 */
+	private static final long SHAPE_BYTES = 1700, VERTEX_BYTES = 1220;
+
+	/**
+	 * <p>
+	 * timers of hidden layers waiting to be dehydrated.</br>
+	 * </p>
+	 */
+	private final Map< Layer, PauseTransition> pending = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * dehydrate given layer once it was hidden for {@link LayerMemory#IDLE}.</br>
+	 * </p>
+	 * @param layer - layer which was just hidden
+	 */
+	public void schedule( Layer layer) {
+		cancel( layer);
+		PauseTransition timer = new PauseTransition( IDLE);
+		timer.setOnFinished( e -> {
+			pending.remove( layer);
+			layer.dehydrate();
+		});
+		pending.put( layer, timer);
+		timer.play();
+	}
+
+	/**
+	 * <p>
+	 * stop waiting to dehydrate given layer, nothing happens if it is not waiting.</br>
+	 * </p>
+	 * @param layer - layer which was shown or dropped
+	 */
+	public void cancel( Layer layer) {
+		PauseTransition timer = pending.remove( layer);
+		if( timer != null)
+			timer.stop();
+	}
+
+	/**
+	 * <p>
+	 * dehydrate every hidden layer now without waiting.</br>
+	 * </p>
+	 * @param layers - layers of the map
+	 */
+	public void dehydrateHidden( List< Layer> layers) {
+		for( Layer layer : layers) {
+			if( !layer.isVisible()) {
+				cancel( layer);
+				layer.dehydrate();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * one line per hidden layer with its shapes and their bytes per shape as nodes and as they are kept now.</br>
+	 * </p>
+	 * @param layers - layers of the map
+	 * @return text of report
+	 */
+	public String report( List< Layer> layers) {
+		StringBuilder builder = new StringBuilder();
+		long totalNodes = 0, totalNow = 0;
+		for( Layer layer : layers) {
+			builder.append( layer.getName()).append( ": ");
+			if( layer.isVisible()) {
+				builder.append( "visible").append( System.lineSeparator());
+				continue;
+			}
+			if( !layer.isLoaded()) {
+				builder.append( "not loaded").append( System.lineSeparator());
+				continue;
+			}
+			int shapes = layer.getStoreShapes();
+			long detached = 0;
+			for( Node n : layer.getDetached()) {
+				if( n instanceof PolyShape) {
+					detached += estimate( (PolyShape) n);
+					shapes++;
+				}
+			}
+			long asNodes = detached + layer.getStoreShapes() * SHAPE_BYTES + layer.getStoreVertices() * VERTEX_BYTES;
+			long now = detached + layer.getStoreBytes();
+			totalNodes += asNodes;
+			totalNow += now;
+			builder.append( String.format( "%,d shapes, %,d of them dehydrated, %,d bytes per shape before, %,d after",
+					shapes, layer.getStoreShapes(), asNodes / Math.max( 1, shapes), now / Math.max( 1, shapes)));
+			builder.append( System.lineSeparator());
+		}
+		builder.append( String.format( "hidden layers retain %,d bytes instead of %,d", totalNow, totalNodes));
+		return builder.toString();
+	}
+
+	/**
+	 * @return estimated bytes retained by a shape which is a node
+	 */
+	private long estimate( PolyShape shape) {
+		return SHAPE_BYTES + shape.getPoints().size() / 2 * VERTEX_BYTES;
+	}
+}
@@ -0,0 +1,173 @@
+package mapmaker.map.layers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * compact copy of many shapes kept in parallel arrays, one index per shape, with the points of
+ * all shapes in one array. a shape costs a few primitive slots and 16 bytes per vertex instead of
+ * a {@link javafx.scene.shape.Polygon}, boxed points, a {@link mapmaker.map.shapes.controls.ControlPoint}
+ * per vertex and their listeners. loaded shapes each have their own {@link Color} instances, so colors are interned
+ * when added and shapes of the same color share one instance, since most shapes use the same few.</br>
+ * shapes are created again with their IDs by {@link ShapeStore#hydrate()}.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class ShapeStore {
+
+	/**
+	 * <p>
+	 * bytes of an array header and of an object reference on a 64 bit JVM with compressed references.</br>
+	 * </p>
+	 */
+	private static final int ARRAY_HEADER = 16, REFERENCE = 4;
+
+	/**
+	 * <p>
+	 * bytes of a {@link Color}, 4 floats and a reference with its header,
+	 * and of an entry of {@link ShapeStore#colors} with its slot in the table.</br>
+	 * </p>
+	 */
+	private static final int COLOR = 32, MAP_ENTRY = 32 + REFERENCE;
+
+	private int size;
+	private int[] ids = new int[16], sides = new int[16], first = new int[16], second = new int[16];
+	//index after the last point of each shape in points
+	private int[] ends = new int[16];
+	private boolean[] paths = new boolean[16];
+	private Color[] fills = new Color[16], strokes = new Color[16];
+	private double[] widths = new double[16];
+	private double[] points = new double[64];
+	private int pointCount;
+
+	/**
+	 * <p>
+	 * one instance of each color used, kept by {@link ShapeStore#fills} and {@link ShapeStore#strokes}.</br>
+	 * </p>
+	 */
+	private final Map< Color, Color> colors = new HashMap<>();
+
+	/**
+	 * <p>
+	 * copy a shape at the end of the store, must be called on the FX thread.</br>
+	 * </p>
+	 * @param shape - shape to copy
+	 */
+	void add( PolyShape shape) {
+		ShapeRecord record = ShapeRecord.of( shape);
+		if( size == ids.length)
+			grow( Math.max( 16, size * 2));
+		ids[size] = record.getID();
+		sides[size] = record.getSides();
+		first[size] = record.getFirst();
+		second[size] = record.getSecond();
+		paths[size] = record.isPath();
+		fills[size] = intern( record.getFill());
+		strokes[size] = intern( record.getStroke());
+		widths[size] = record.getStrokeWidth();
+		if( pointCount + record.size() > points.length)
+			points = Arrays.copyOf( points, Math.max( points.length * 2, pointCount + record.size()));
+		for( int i = 0; i < record.size(); i++)
+			points[pointCount++] = record.get( i);
+		ends[size++] = pointCount;
+	}
+
+	/**
+	 * @return instance of color kept by this store, null if color is null
+	 */
+	private Color intern( Color color) {
+		return color == null ? null : colors.computeIfAbsent( color, c -> c);
+	}
+
+	/**
+	 * <p>
+	 * drop unused capacity once every shape is added.</br>
+	 * </p>
+	 */
+	void trim() {
+		grow( size);
+		points = Arrays.copyOf( points, pointCount);
+	}
+
+	private void grow( int capacity) {
+		ids = Arrays.copyOf( ids, capacity);
+		sides = Arrays.copyOf( sides, capacity);
+		first = Arrays.copyOf( first, capacity);
+		second = Arrays.copyOf( second, capacity);
+		ends = Arrays.copyOf( ends, capacity);
+		paths = Arrays.copyOf( paths, capacity);
+		fills = Arrays.copyOf( fills, capacity);
+		strokes = Arrays.copyOf( strokes, capacity);
+		widths = Arrays.copyOf( widths, capacity);
+	}
+
+	/**
+	 * @return number of shapes
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of vertices of all shapes
+	 */
+	int vertices() {
+		return pointCount / 2;
+	}
+
+	/**
+	 * @param i - index of shape, in order added
+	 * @return new record of shape
+	 */
+	ShapeRecord get( int i) {
+		int start = i == 0 ? 0 : ends[i - 1];
+		return new ShapeRecord( ids[i], paths[i] ? PolyShape.PATH_TYPE : PolyShape.ROOM_TYPE, sides[i], fills[i], strokes[i],
+				widths[i], Arrays.copyOfRange( points, start, ends[i]), first[i], second[i]);
+	}
+
+	/**
+	 * <p>
+	 * create every shape again with its ID, style and control points, in order added, and connect paths
+	 * to shapes of this store.</br>
+	 * </p>
+	 * @return each shape followed by its control points
+	 */
+	List< Node> hydrate() {
+		List< Node> nodes = new ArrayList<>( size + pointCount / 2);
+		Map< Integer, PolyShape> byID = new HashMap<>( size * 2);
+		PolyShape[] shapes = new PolyShape[size];
+		for( int i = 0; i < size; i++) {
+			ShapeRecord record = get( i);
+			shapes[i] = paths[i] ? new Path( record) : new PolyShape( record);
+			byID.put( ids[i], shapes[i]);
+			nodes.add( shapes[i]);
+			nodes.addAll( Arrays.asList( shapes[i].getControlPoints()));
+		}
+		for( int i = 0; i < size; i++)
+			if( paths[i])
+				( (Path) shapes[i]).connect( byID.get( first[i]), byID.get( second[i]));
+		return nodes;
+	}
+
+	/**
+	 * @return bytes held by the arrays of this store and by its colors, each counted once since it is shared
+	 */
+	long retainedBytes() {
+		long bytes = 10L * ARRAY_HEADER + colors.size() * (long) ( COLOR + MAP_ENTRY);
+		bytes += ( ids.length + sides.length + first.length + second.length + ends.length) * (long) Integer.BYTES;
+		bytes += paths.length;
+		bytes += ( fills.length + strokes.length) * (long) REFERENCE;
+		bytes += ( widths.length + points.length) * (long) Double.BYTES;
+		return bytes;
+	}
+}
@@ -0,0 +1,175 @@
+package mapmaker.map.layout;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * force directed layout of rooms connected by paths, after Fruchterman and Reingold.
+ * every room pushes every other away with k^2 / d, found with a {@link QuadTree} in about log n per room,
+ * and much harder if they overlap,
+ * and every path pulls its two rooms together with d^2 / L where L is the length it rests at,
+ * so a lone pair of rooms settles at L apart. a weak pull to the center keeps rooms which are not connected
+ * from drifting away.</br>
+ * each step computes the forces of all rooms in parallel from positions of the step before,
+ * then moves each room along its force by at most a temperature which cools down to nothing.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class ForceLayout {
+
+	/**
+	 * <p>
+	 * side of a square of the quadtree over its distance below which it is one body, higher is faster and rougher.</br>
+	 * </p>
+	 */
+	private static final double THETA = 0.8;
+
+	/**
+	 * <p>
+	 * pull of the center on a room, in fractions of its distance from it per step.</br>
+	 * </p>
+	 */
+	private static final double GRAVITY = 0.01;
+
+	/**
+	 * <p>
+	 * repulsion of rooms over k^2 / d, lower keeps paths closer to their length,
+	 * overlapping rooms are pushed apart by {@link #OVERLAP} instead.</br>
+	 * </p>
+	 */
+	private static final double REPULSION = 0.3;
+
+	/**
+	 * <p>
+	 * push of two rooms overlapping by 1, in multiples of k.</br>
+	 * </p>
+	 */
+	private static final double OVERLAP = 20;
+
+	private final int n;
+	private final double[] x, y, radius;
+
+	/**
+	 * <p>
+	 * rooms linked to each room and length of each link, in compressed rows:
+	 * links of room i are from offsets[i] to offsets[i + 1].</br>
+	 * </p>
+	 */
+	private final int[] offsets, links;
+	private final double[] lengths;
+	private final double k;
+
+	/**
+	 * @param x - x of center of each room, not changed
+	 * @param y - y of center of each room, not changed
+	 * @param radius - half the diagonal of the bounds of each room
+	 * @param a - first room of each path
+	 * @param b - second room of each path
+	 * @param gap - space to leave between two rooms connected by a path
+	 */
+	public ForceLayout( double[] x, double[] y, double[] radius, int[] a, int[] b, double gap) {
+		n = x.length;
+		this.x = x.clone();
+		this.y = y.clone();
+		this.radius = radius;
+		offsets = new int[n + 1];
+		for( int i = 0; i < a.length; i++) {
+			offsets[a[i] + 1]++;
+			offsets[b[i] + 1]++;
+		}
+		for( int i = 0; i < n; i++)
+			offsets[i + 1] += offsets[i];
+		links = new int[2 * a.length];
+		lengths = new double[2 * a.length];
+		int[] next = offsets.clone();
+		double total = 0;
+		for( int i = 0; i < a.length; i++) {
+			double length = radius[a[i]] + radius[b[i]] + gap;
+			total += length;
+			links[next[a[i]]] = b[i];
+			lengths[next[a[i]]++] = length;
+			links[next[b[i]]] = a[i];
+			lengths[next[b[i]]++] = length;
+		}
+		double sum = 0;
+		for( double r : radius)
+			sum += r;
+		k = a.length > 0 ? total / a.length : 2 * sum / Math.max( 1, n) + gap;
+		//rooms at the same place would push each other nowhere
+		Random random = new Random( n);
+		for( int i = 0; i < n; i++) {
+			this.x[i] += ( random.nextDouble() - 0.5) * 1e-3 * k;
+			this.y[i] += ( random.nextDouble() - 0.5) * 1e-3 * k;
+		}
+	}
+
+	/**
+	 * <p>
+	 * move rooms for given number of steps, then keep their center of mass where it was.</br>
+	 * </p>
+	 * @param steps - number of steps, a few hundred settle thousands of rooms
+	 * @return new center of each room, x and y of room i at 2i and 2i + 1
+	 */
+	public double[] run( int steps) {
+		double cx = 0, cy = 0;
+		for( int i = 0; i < n; i++) {
+			cx += x[i];
+			cy += y[i];
+		}
+		cx /= n;
+		cy /= n;
+		double start = k * Math.sqrt( n) / 4;
+		double[] fx = new double[n], fy = new double[n];
+		for( int step = 0; step < steps && !Thread.currentThread().isInterrupted(); step++) {
+			double temperature = start * Math.pow( 1 - (double) step / steps, 1.5) + k * 0.05;
+			forces( cx, cy, fx, fy);
+			for( int i = 0; i < n; i++) {
+				double length = Math.hypot( fx[i], fy[i]);
+				if( length > 0) {
+					double move = Math.min( length, temperature) / length;
+					x[i] += fx[i] * move;
+					y[i] += fy[i] * move;
+				}
+			}
+		}
+		double mx = 0, my = 0;
+		for( int i = 0; i < n; i++) {
+			mx += x[i];
+			my += y[i];
+		}
+		mx = cx - mx / n;
+		my = cy - my / n;
+		double[] result = new double[2 * n];
+		for( int i = 0; i < n; i++) {
+			result[2 * i] = x[i] + mx;
+			result[2 * i + 1] = y[i] + my;
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * force on every room from positions of this step, rooms are independent so they run in parallel.</br>
+	 * </p>
+	 */
+	private void forces( double cx, double cy, double[] fx, double[] fy) {
+		QuadTree tree = new QuadTree( x, y, radius);
+		double k2 = k * k;
+		IntStream.range( 0, n).parallel().forEach( i -> {
+			double[] force = new double[2];
+			tree.repulsion( i, THETA, REPULSION * k2, OVERLAP * k, force);
+			for( int j = offsets[i]; j < offsets[i + 1]; j++) {
+				int other = links[j];
+				double dx = x[other] - x[i], dy = y[other] - y[i];
+				double d = Math.sqrt( dx * dx + dy * dy);
+				//d^2 / L along a unit vector
+				double f = d / lengths[j];
+				force[0] += f * dx;
+				force[1] += f * dy;
+			}
+			fx[i] = force[0] + GRAVITY * ( cx - x[i]) * Math.sqrt( n);
+			fy[i] = force[1] + GRAVITY * ( cy - y[i]) * Math.sqrt( n);
+		});
+	}
+}
@@ -0,0 +1,125 @@
+package mapmaker.map.layout;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import javafx.animation.AnimationTimer;
+import mapmaker.map.shapes.PolyShape;
+
+/**
+ * <p>
+ * moves rooms to the places found by {@link ForceLayout} over a short time, easing in and out.
+ * each frame moves rooms one after another to where they should be by now until its time is up,
+ * rooms not moved in a frame are first in the next one, so thousands of rooms move without blocking the UI.
+ * moving a room moves its locks, so paths follow their rooms.
+ * a room which is no longer in the map, or which something else moved since the last frame, is left where it is
+ * and not moved again, so the layout never shifts a room dragged or synced in the meantime.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class LayoutAnimator extends AnimationTimer {
+
+	/**
+	 * <p>
+	 * nanoseconds each frame may spend moving rooms.</br>
+	 * </p>
+	 */
+	private static final long FRAME_BUDGET = 8_000_000;
+
+	private final List< PolyShape> rooms;
+	private final double[] dx, dy;
+
+	/**
+	 * <p>
+	 * fraction of its move each room has made.</br>
+	 * </p>
+	 */
+	private final double[] done;
+
+	/**
+	 * <p>
+	 * first vertex of each room where the last move left it, to notice rooms moved by something else.</br>
+	 * </p>
+	 */
+	private final double[] lastX, lastY;
+	private final boolean[] dropped;
+	private final Predicate< PolyShape> inMap;
+	private final long duration;
+	private final Runnable onFinished;
+	private long start = -1;
+	private int next;
+
+	/**
+	 * @param rooms - rooms to move
+	 * @param moves - x and y to move room i by at 2i and 2i + 1
+	 * @param millis - time the move takes
+	 * @param inMap - true if given room is still in the map, rooms are only moved while it is
+	 * @param onFinished - run once every room has made its whole move, can be null
+	 */
+	public LayoutAnimator( List< PolyShape> rooms, double[] moves, long millis, Predicate< PolyShape> inMap, Runnable onFinished) {
+		this.rooms = rooms;
+		this.inMap = inMap;
+		this.onFinished = onFinished;
+		dx = new double[rooms.size()];
+		dy = new double[rooms.size()];
+		lastX = new double[rooms.size()];
+		lastY = new double[rooms.size()];
+		for( int i = 0; i < dx.length; i++) {
+			dx[i] = moves[2 * i];
+			dy[i] = moves[2 * i + 1];
+			lastX[i] = rooms.get( i).getPoints().get( 0);
+			lastY[i] = rooms.get( i).getPoints().get( 1);
+		}
+		done = new double[dx.length];
+		dropped = new boolean[dx.length];
+		duration = millis * 1_000_000;
+	}
+
+	@Override
+	public void handle( long now) {
+		if( start == -1)
+			start = now;
+		double t = Math.min( 1, ( now - start) / (double) Math.max( 1, duration));
+		//smoothstep, slow at both ends
+		double target = t * t * ( 3 - 2 * t);
+		long begin = System.nanoTime();
+		int moved = 0;
+		while( moved < dx.length && System.nanoTime() - begin < FRAME_BUDGET) {
+			move( next, target);
+			next = ( next + 1) % dx.length;
+			moved++;
+		}
+		if( t == 1 && moved == dx.length) {
+			stop();
+			if( onFinished != null)
+				onFinished.run();
+		}
+	}
+
+	/**
+	 * <p>
+	 * move every room to the end of its move now, for a layout replaced before it ended.</br>
+	 * </p>
+	 */
+	public void finish() {
+		stop();
+		for( int i = 0; i < dx.length; i++)
+			move( i, 1);
+	}
+
+	private void move( int i, double fraction) {
+		double step = fraction - done[i];
+		if( step == 0 || dropped[i])
+			return;
+		PolyShape room = rooms.get( i);
+		if( !inMap.test( room) || room.getPoints().size() < 2
+				|| room.getPoints().get( 0) != lastX[i] || room.getPoints().get( 1) != lastY[i]) {
+			dropped[i] = true;
+			return;
+		}
+		room.translate( dx[i] * step, dy[i] * step);
+		done[i] = fraction;
+		lastX[i] = room.getPoints().get( 0);
+		lastY[i] = room.getPoints().get( 1);
+	}
+}
@@ -0,0 +1,181 @@
+package mapmaker.map.layout;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Barnes-Hut quadtree of points with the center of mass of each square, in flat arrays.
+ * a square far enough from a point pushes it as one body at its center of mass,
+ * so the repulsion of n points on one point costs about log n instead of n.</br>
+ * built once per step of {@link ForceLayout} on one thread, then read by many.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+final class QuadTree {
+
+	/**
+	 * <p>
+	 * points closer than a square of this depth share it, they would otherwise split it forever.</br>
+	 * </p>
+	 */
+	private static final int MAX_DEPTH = 48;
+
+	private final double[] x, y, radius;
+	private double[] minX, minY, size, sumX, sumY;
+	private int[] mass, child, point;
+	private int count;
+
+	/**
+	 * @param x - x of each point, not copied
+	 * @param y - y of each point, not copied
+	 * @param radius - size of each point, points closer than their radii push each other apart more
+	 */
+	QuadTree( double[] x, double[] y, double[] radius) {
+		this.x = x;
+		this.y = y;
+		this.radius = radius;
+		int capacity = Math.max( 16, x.length * 4);
+		minX = new double[capacity];
+		minY = new double[capacity];
+		size = new double[capacity];
+		sumX = new double[capacity];
+		sumY = new double[capacity];
+		mass = new int[capacity];
+		child = new int[capacity];
+		point = new int[capacity];
+		double left = Double.POSITIVE_INFINITY, top = left, right = Double.NEGATIVE_INFINITY, bottom = right;
+		for( int i = 0; i < x.length; i++) {
+			left = Math.min( left, x[i]);
+			right = Math.max( right, x[i]);
+			top = Math.min( top, y[i]);
+			bottom = Math.max( bottom, y[i]);
+		}
+		add( left, top, Math.max( 1, Math.max( right - left, bottom - top)) * 1.0001);
+		for( int i = 0; i < x.length; i++)
+			insert( i);
+	}
+
+	/**
+	 * @return index of a new empty square
+	 */
+	private int add( double left, double top, double side) {
+		if( count == mass.length)
+			grow();
+		minX[count] = left;
+		minY[count] = top;
+		size[count] = side;
+		child[count] = -1;
+		point[count] = -1;
+		return count++;
+	}
+
+	private void grow() {
+		int capacity = mass.length * 2;
+		minX = Arrays.copyOf( minX, capacity);
+		minY = Arrays.copyOf( minY, capacity);
+		size = Arrays.copyOf( size, capacity);
+		sumX = Arrays.copyOf( sumX, capacity);
+		sumY = Arrays.copyOf( sumY, capacity);
+		mass = Arrays.copyOf( mass, capacity);
+		child = Arrays.copyOf( child, capacity);
+		point = Arrays.copyOf( point, capacity);
+	}
+
+	private void insert( int p) {
+		int node = 0;
+		for( int depth = 0; ; depth++) {
+			if( mass[node] == 0) {
+				point[node] = p;
+				mass[node] = 1;
+				sumX[node] = x[p];
+				sumY[node] = y[p];
+				return;
+			}
+			if( child[node] == -1) {
+				if( depth >= MAX_DEPTH) {
+					//many points at one place, the square keeps their mass but no single point
+					point[node] = -1;
+					mass[node]++;
+					sumX[node] += x[p];
+					sumY[node] += y[p];
+					return;
+				}
+				int q = point[node];
+				split( node);
+				int c = child[node] + quadrant( node, x[q], y[q]);
+				point[c] = q;
+				mass[c] = 1;
+				sumX[c] = x[q];
+				sumY[c] = y[q];
+				point[node] = -1;
+			}
+			mass[node]++;
+			sumX[node] += x[p];
+			sumY[node] += y[p];
+			node = child[node] + quadrant( node, x[p], y[p]);
+		}
+	}
+
+	/**
+	 * <p>
+	 * add the 4 squares of node, they are consecutive.</br>
+	 * </p>
+	 */
+	private void split( int node) {
+		double half = size[node] / 2, left = minX[node], top = minY[node];
+		int first = add( left, top, half);
+		add( left + half, top, half);
+		add( left, top + half, half);
+		add( left + half, top + half, half);
+		child[node] = first;
+	}
+
+	private int quadrant( int node, double px, double py) {
+		double half = size[node] / 2;
+		return ( px >= minX[node] + half ? 1 : 0) + ( py >= minY[node] + half ? 2 : 0);
+	}
+
+	/**
+	 * <p>
+	 * repulsion of every other point on point i, each point pushes with strength / distance.
+	 * a square is taken as one body if its side over its distance is below theta and i is not in it.
+	 * a single point overlapping i also pushes with overlap times how deep they overlap.</br>
+	 * </p>
+	 * @param i - index of point
+	 * @param theta - accuracy, 0 is exact
+	 * @param strength - repulsion of one point at distance 1
+	 * @param overlap - push of points overlapping by 1
+	 * @param force - x and y of force are added to index 0 and 1
+	 */
+	void repulsion( int i, double theta, double strength, double overlap, double[] force) {
+		double px = x[i], py = y[i], theta2 = theta * theta;
+		int[] stack = new int[4 * MAX_DEPTH + 4];
+		int top = 0;
+		stack[top++] = 0;
+		while( top > 0) {
+			int node = stack[--top];
+			if( mass[node] == 0 || point[node] == i)
+				continue;
+			double cx = sumX[node] / mass[node], cy = sumY[node] / mass[node];
+			double dx = px - cx, dy = py - cy, d2 = dx * dx + dy * dy;
+			boolean inside = px >= minX[node] && px < minX[node] + size[node] && py >= minY[node] && py < minY[node] + size[node];
+			if( child[node] != -1 && ( inside || size[node] * size[node] >= theta2 * d2)) {
+				for( int c = 0; c < 4; c++)
+					stack[top++] = child[node] + c;
+				continue;
+			}
+			//a shared square holding i pushes with the mass of the others, all from the same place
+			int m = child[node] == -1 && point[node] == -1 && inside ? mass[node] - 1 : mass[node];
+			if( d2 < 1e-12)
+				continue;
+			double f = m * strength / d2;
+			if( point[node] != -1) {
+				double d = Math.sqrt( d2), depth = radius[i] + radius[point[node]] - d;
+				if( depth > 0)
+					f += overlap * depth / d;
+			}
+			force[0] += f * dx;
+			force[1] += f * dy;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package mapmaker.map.navigation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mapmaker.map.shapes.PolyShape;
+
+/**
+ * <p>
+ * all pair shortest distances between rooms of a {@link NavigationGraph}.</br>
+ * the graph is copied in compressed sparse row form, links of room i are targets[offsets[i]] to
+ * targets[offsets[i + 1] - 1], so it can be read from many threads without touching the map.
+ * {@link DistanceMatrix#compute()} runs one Dijkstra per room split across cores with fork join.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class DistanceMatrix {
+
+	/**
+	 * <p>
+	 * below this many rooms a fork join task computes its rows itself instead of splitting.</br>
+	 * </p>
+	 */
+	private static final int THRESHOLD = 16;
+
+	/**
+	 * <p>
+	 * rooms in row and column order.</br>
+	 * </p>
+	 */
+	private final List< PolyShape> rooms;
+
+	/**
+	 * <p>
+	 * graph in compressed sparse row form.</br>
+	 * </p>
+	 */
+	private final int[] offsets, targets;
+	private final double[] weights;
+
+	/**
+	 * <p>
+	 * distances[i][j] from room i to room j, {@link Double#POSITIVE_INFINITY} if not connected.
+	 * null until {@link DistanceMatrix#compute()} is called.</br>
+	 * </p>
+	 */
+	private double[][] distances;
+
+	/**
+	 * <p>
+	 * created by {@link NavigationGraph#distanceMatrix()}.</br>
+	 * </p>
+	 */
+	DistanceMatrix( List< PolyShape> rooms, int[] offsets, int[] targets, double[] weights) {
+		this.rooms = Collections.unmodifiableList( rooms);
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+	}
+
+	/**
+	 * <p>
+	 * compute all rows in parallel using {@link ForkJoinPool#commonPool()}. safe to be called off the FX thread.</br>
+	 * </p>
+	 * @return this object
+	 */
+	public DistanceMatrix compute() {
+		distances = new double[rooms.size()][];
+		ForkJoinPool.commonPool().invoke( new Rows( 0, rooms.size()));
+		return this;
+	}
+
+	/**
+	 * @return rooms in row and column order
+	 */
+	public List< PolyShape> getRooms() {
+		return rooms;
+	}
+
+	/**
+	 * @param from - row index
+	 * @param to - column index
+	 * @return distance between rooms, {@link Double#POSITIVE_INFINITY} if not connected
+	 */
+	public double get( int from, int to) {
+		return distances[from][to];
+	}
+
+	/**
+	 * <p>
+	 * write the matrix as comma separated values, first row and column are room IDs and empty cells are unreachable.</br>
+	 * </p>
+	 * @param writer - {@link Writer} to write to
+	 * @throws IOException if writing fails
+	 */
+	public void writeCSV( Writer writer) throws IOException {
+		String newLine = System.lineSeparator();
+		writer.write( "ID");
+		for( PolyShape room : rooms)
+			writer.write( "," + room.getID());
+		writer.write( newLine);
+		for( int i = 0; i < rooms.size(); i++) {
+			writer.write( Integer.toString( rooms.get( i).getID()));
+			for( double d : distances[i])
+				writer.write( Double.isInfinite( d) ? "," : "," + d);
+			writer.write( newLine);
+		}
+	}
+
+	/**
+	 * <p>
+	 * fork join task computing rows from start to end by splitting the range in half until it is small.</br>
+	 * </p>
+	 */
+	private class Rows extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int start, end;
+
+		private Rows( int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if( end - start <= THRESHOLD) {
+				//heap arrays are reused for every row of this task
+				int[] heap = new int[rooms.size()];
+				int[] position = new int[rooms.size()];
+				for( int i = start; i < end; i++)
+					distances[i] = dijkstra( i, heap, position);
+				return;
+			}
+			int middle = ( start + end) >>> 1;
+			invokeAll( new Rows( start, middle), new Rows( middle, end));
+		}
+	}
+
+	/**
+	 * <p>
+	 * single source shortest distances using a binary heap of room indices with decrease key,
+	 * so no objects are created per step.</br>
+	 * </p>
+	 * @param source - index of start room
+	 * @param heap - work array, heap of room indices
+	 * @param position - work array, position of each room in heap or -1
+	 * @return distances to every room
+	 */
+	private double[] dijkstra( int source, int[] heap, int[] position) {
+		double[] dist = new double[rooms.size()];
+		Arrays.fill( dist, Double.POSITIVE_INFINITY);
+		Arrays.fill( position, -1);
+		dist[source] = 0;
+		int size = 0;
+		heap[size] = source;
+		position[source] = size++;
+		while( size > 0) {
+			int room = heap[0];
+			position[room] = -2;
+			size--;
+			if( size > 0) {
+				heap[0] = heap[size];
+				position[heap[0]] = 0;
+				siftDown( heap, position, dist, 0, size);
+			}
+			for( int e = offsets[room]; e < offsets[room + 1]; e++) {
+				int next = targets[e];
+				double d = dist[room] + weights[e];
+				if( position[next] == -2 || d >= dist[next])
+					continue;
+				dist[next] = d;
+				if( position[next] == -1) {
+					heap[size] = next;
+					position[next] = size++;
+				}
+				siftUp( heap, position, dist, position[next]);
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * <p>
+	 * move heap entry at i up until its parent is closer.</br>
+	 * </p>
+	 */
+	private void siftUp( int[] heap, int[] position, double[] dist, int i) {
+		int room = heap[i];
+		while( i > 0) {
+			int parent = ( i - 1) >>> 1;
+			if( dist[heap[parent]] <= dist[room])
+				break;
+			heap[i] = heap[parent];
+			position[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = room;
+		position[room] = i;
+	}
+
+	/**
+	 * <p>
+	 * move heap entry at i down until its children are farther.</br>
+	 * </p>
+	 */
+	private void siftDown( int[] heap, int[] position, double[] dist, int i, int size) {
+		int room = heap[i];
+		while( true) {
+			int child = 2 * i + 1;
+			if( child >= size)
+				break;
+			if( child + 1 < size && dist[heap[child + 1]] < dist[heap[child]])
+				child++;
+			if( dist[room] <= dist[heap[child]])
+				break;
+			heap[i] = heap[child];
+			position[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = room;
+		position[room] = i;
+	}
+}
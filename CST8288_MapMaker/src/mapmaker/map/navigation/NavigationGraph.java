@@ -0,0 +1,388 @@
+package mapmaker.map.navigation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import mapmaker.map.geometry.Polygons;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * graph of rooms connected by {@link Path}'s used for route planning.</br>
+ * every room is a node at its centroid and every path connected at both ends is an edge.
+ * the weight of an edge is the distance walked from center of one room along the path to center of the other.</br>
+ * the graph is kept as a {@link ShapeListener} of the map registry and updated incrementally:
+ * adding, removing or connecting shapes changes only their own entries and moving a shape
+ * only marks its weights dirty, they are recalculated on the next query.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class NavigationGraph implements ShapeListener {
+
+	/**
+	 * <p>
+	 * one room of the graph and the paths leaving it.</br>
+	 * </p>
+	 */
+	private static class Room {
+		private PolyShape shape;
+		private final List< Link> links = new ArrayList<>();
+		private double x, y;
+		private boolean dirty;
+		private ListChangeListener< Double> listener;
+	}
+
+	/**
+	 * <p>
+	 * one path of the graph. a and b are null when that end is not connected.</br>
+	 * </p>
+	 */
+	private static class Link {
+		private Path path;
+		private Room a, b;
+		private double weight;
+		private boolean dirty;
+		private ListChangeListener< Double> listener;
+		private InvalidationListener connect;
+
+		/**
+		 * @return room at other end of this link
+		 */
+		private Room other( Room room) {
+			return room == a ? b : a;
+		}
+	}
+
+	/**
+	 * <p>
+	 * entry of the priority queue used by searches. stale entries are skipped when polled.</br>
+	 * </p>
+	 */
+	private static class Step implements Comparable< Step> {
+		private final Room room;
+		private final double cost, estimate;
+
+		private Step( Room room, double cost, double estimate) {
+			this.room = room;
+			this.cost = cost;
+			this.estimate = estimate;
+		}
+
+		@Override
+		public int compareTo( Step o) {
+			return Double.compare( cost + estimate, o.cost + o.estimate);
+		}
+	}
+
+	/**
+	 * <p>
+	 * nodes and edges of the graph by their shapes.</br>
+	 * </p>
+	 */
+	private final Map< PolyShape, Room> rooms = new IdentityHashMap<>();
+	private final Map< Path, Link> links = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * rooms and links whose position or weight must be recalculated before next query.</br>
+	 * </p>
+	 */
+	private final Deque< Room> dirtyRooms = new ArrayDeque<>();
+	private final Deque< Link> dirtyLinks = new ArrayDeque<>();
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		if( shape instanceof Path) {
+			Path path = (Path) shape;
+			Link link = new Link();
+			link.path = path;
+			link.listener = c -> markDirty( link);
+			link.connect = o -> connect( link);
+			links.put( path, link);
+			path.getPoints().addListener( link.listener);
+			path.firstProperty().addListener( link.connect);
+			path.secondProperty().addListener( link.connect);
+			connect( link);
+		} else {
+			Room room = roomOf( shape);
+			room.listener = c -> markDirty( room);
+			shape.getPoints().addListener( room.listener);
+		}
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		if( shape instanceof Path) {
+			Link link = links.remove( shape);
+			if( link == null)
+				return;
+			Path path = link.path;
+			path.getPoints().removeListener( link.listener);
+			path.firstProperty().removeListener( link.connect);
+			path.secondProperty().removeListener( link.connect);
+			detach( link);
+		} else {
+			Room room = rooms.remove( shape);
+			if( room == null)
+				return;
+			if( room.listener != null)
+				shape.getPoints().removeListener( room.listener);
+			for( Link link : new ArrayList<>( room.links))
+				detach( link);
+		}
+	}
+
+	/**
+	 * <p>
+	 * find the shortest route between 2 rooms using A* with straight line distance between centers as heuristic.
+	 * the heuristic never overestimates since every link weight is at least the straight distance between its rooms.</br>
+	 * </p>
+	 * @param from - start room
+	 * @param to - destination room
+	 * @return shortest {@link Route} or null if rooms are not connected
+	 */
+	public Route route( PolyShape from, PolyShape to) {
+		refresh();
+		Room start = rooms.get( from), goal = rooms.get( to);
+		if( start == null || goal == null)
+			return null;
+		Map< Room, Double> cost = new HashMap<>();
+		Map< Room, Link> cameBy = new HashMap<>();
+		PriorityQueue< Step> queue = new PriorityQueue<>();
+		cost.put( start, 0.0);
+		queue.add( new Step( start, 0, distance( start, goal)));
+		while( !queue.isEmpty()) {
+			Step step = queue.poll();
+			if( step.cost > cost.get( step.room))
+				continue;
+			if( step.room == goal)
+				return buildRoute( start, goal, cameBy, step.cost);
+			for( Link link : step.room.links) {
+				Room next = link.other( step.room);
+				double c = step.cost + link.weight;
+				Double known = cost.get( next);
+				if( known == null || c < known) {
+					cost.put( next, c);
+					cameBy.put( next, link);
+					queue.add( new Step( next, c, distance( next, goal)));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * find distance to every room reachable from given room using Dijkstra.</br>
+	 * </p>
+	 * @param from - start room
+	 * @return map of each reachable room to its distance
+	 */
+	public Map< PolyShape, Double> distances( PolyShape from) {
+		refresh();
+		Map< PolyShape, Double> result = new IdentityHashMap<>();
+		Room start = rooms.get( from);
+		if( start == null)
+			return result;
+		Map< Room, Double> cost = new HashMap<>();
+		PriorityQueue< Step> queue = new PriorityQueue<>();
+		cost.put( start, 0.0);
+		queue.add( new Step( start, 0, 0));
+		while( !queue.isEmpty()) {
+			Step step = queue.poll();
+			if( step.cost > cost.get( step.room))
+				continue;
+			result.put( step.room.shape, step.cost);
+			for( Link link : step.room.links) {
+				Room next = link.other( step.room);
+				double c = step.cost + link.weight;
+				Double known = cost.get( next);
+				if( known == null || c < known) {
+					cost.put( next, c);
+					queue.add( new Step( next, c, 0));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * copy the current graph into a compact {@link DistanceMatrix} which can compute
+	 * all pair distances on other threads while the map keeps changing.</br>
+	 * must be called on the same thread that edits the map.
+	 * </p>
+	 * @return new {@link DistanceMatrix} of all rooms
+	 */
+	public DistanceMatrix distanceMatrix() {
+		refresh();
+		List< PolyShape> shapes = new ArrayList<>( rooms.size());
+		Map< Room, Integer> index = new IdentityHashMap<>();
+		for( Room room : rooms.values()) {
+			index.put( room, shapes.size());
+			shapes.add( room.shape);
+		}
+		int[] offsets = new int[shapes.size() + 1];
+		for( Room room : rooms.values())
+			offsets[index.get( room) + 1] = room.links.size();
+		for( int i = 0; i < shapes.size(); i++)
+			offsets[i + 1] += offsets[i];
+		int[] targets = new int[offsets[shapes.size()]];
+		double[] weights = new double[targets.length];
+		for( Room room : rooms.values()) {
+			int at = offsets[index.get( room)];
+			for( Link link : room.links) {
+				targets[at] = index.get( link.other( room));
+				weights[at++] = link.weight;
+			}
+		}
+		return new DistanceMatrix( shapes, offsets, targets, weights);
+	}
+
+	/**
+	 * <p>
+	 * find the room entry of a shape, creating it if a path was connected before the room was added.</br>
+	 * </p>
+	 */
+	private Room roomOf( PolyShape shape) {
+		Room room = rooms.get( shape);
+		if( room == null) {
+			room = new Room();
+			room.shape = shape;
+			rooms.put( shape, room);
+			markDirty( room);
+		}
+		return room;
+	}
+
+	/**
+	 * <p>
+	 * update ends of a link from its {@link Path}. only links connected at both ends are added to rooms.</br>
+	 * </p>
+	 */
+	private void connect( Link link) {
+		detach( link);
+		PolyShape first = link.path.getFirst(), second = link.path.getSecond();
+		if( first == null || second == null || first == second)
+			return;
+		link.a = roomOf( first);
+		link.b = roomOf( second);
+		link.a.links.add( link);
+		link.b.links.add( link);
+		markDirty( link);
+	}
+
+	/**
+	 * <p>
+	 * remove link from rooms at both of its ends.</br>
+	 * </p>
+	 */
+	private void detach( Link link) {
+		if( link.a != null)
+			link.a.links.remove( link);
+		if( link.b != null)
+			link.b.links.remove( link);
+		link.a = link.b = null;
+	}
+
+	/**
+	 * <p>
+	 * mark center of a room and all of its links to be recalculated.</br>
+	 * </p>
+	 */
+	private void markDirty( Room room) {
+		if( !room.dirty) {
+			room.dirty = true;
+			dirtyRooms.add( room);
+		}
+		for( Link link : room.links)
+			markDirty( link);
+	}
+
+	/**
+	 * <p>
+	 * mark weight of a link to be recalculated.</br>
+	 * </p>
+	 */
+	private void markDirty( Link link) {
+		if( !link.dirty) {
+			link.dirty = true;
+			dirtyLinks.add( link);
+		}
+	}
+
+	/**
+	 * <p>
+	 * recalculate everything marked dirty since last query.</br>
+	 * </p>
+	 */
+	private void refresh() {
+		while( !dirtyRooms.isEmpty()) {
+			Room room = dirtyRooms.poll();
+			double[] center = Polygons.centroid( room.shape.getPoints());
+			room.x = center[0];
+			room.y = center[1];
+			room.dirty = false;
+		}
+		while( !dirtyLinks.isEmpty()) {
+			Link link = dirtyLinks.poll();
+			link.dirty = false;
+			if( link.a == null)
+				continue;
+			List< Double> points = link.path.getPoints();
+			if( points.size() < 4) {
+				link.weight = distance( link.a, link.b);
+				continue;
+			}
+			//point 0 is locked to first room (a) and point 1 to second room (b)
+			double x0 = points.get( 0), y0 = points.get( 1), x1 = points.get( 2), y1 = points.get( 3);
+			link.weight = Math.hypot( link.a.x - x0, link.a.y - y0) + Math.hypot( x1 - x0, y1 - y0)
+					+ Math.hypot( link.b.x - x1, link.b.y - y1);
+		}
+	}
+
+	/**
+	 * @return straight distance between centers of 2 rooms
+	 */
+	private double distance( Room a, Room b) {
+		return Math.hypot( a.x - b.x, a.y - b.y);
+	}
+
+	/**
+	 * <p>
+	 * walk back from goal to start to create the {@link Route}.</br>
+	 * </p>
+	 */
+	private Route buildRoute( Room start, Room goal, Map< Room, Link> cameBy, double length) {
+		List< PolyShape> roomList = new ArrayList<>();
+		List< Path> pathList = new ArrayList<>();
+		Room room = goal;
+		roomList.add( room.shape);
+		while( room != start) {
+			Link link = cameBy.get( room);
+			pathList.add( link.path);
+			room = link.other( room);
+			roomList.add( room.shape);
+		}
+		Collections.reverse( roomList);
+		Collections.reverse( pathList);
+		return new Route( roomList, pathList, length);
+	}
+}
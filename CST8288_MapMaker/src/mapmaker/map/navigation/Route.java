@@ -0,0 +1,64 @@
+package mapmaker.map.navigation;
+
+import java.util.Collections;
+import java.util.List;
+
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * result of a route query of {@link NavigationGraph}.</br>
+ * rooms are in travel order starting with the start room, path i connects room i to room i + 1.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class Route {
+
+	/**
+	 * <p>
+	 * rooms and paths of this route in travel order.</br>
+	 * </p>
+	 */
+	private final List< PolyShape> rooms;
+	private final List< Path> paths;
+
+	/**
+	 * <p>
+	 * total travel distance from center of first room to center of last room.</br>
+	 * </p>
+	 */
+	private final double length;
+
+	/**
+	 * @param rooms - rooms in travel order
+	 * @param paths - paths in travel order
+	 * @param length - total travel distance
+	 */
+	public Route( List< PolyShape> rooms, List< Path> paths, double length) {
+		this.rooms = Collections.unmodifiableList( rooms);
+		this.paths = Collections.unmodifiableList( paths);
+		this.length = length;
+	}
+
+	/**
+	 * @return rooms in travel order
+	 */
+	public List< PolyShape> getRooms() {
+		return rooms;
+	}
+
+	/**
+	 * @return paths in travel order
+	 */
+	public List< Path> getPaths() {
+		return paths;
+	}
+
+	/**
+	 * @return total travel distance
+	 */
+	public double getLength() {
+		return length;
+	}
+}
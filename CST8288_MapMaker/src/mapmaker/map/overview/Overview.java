@@ -0,0 +1,473 @@
+package mapmaker.map.overview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import mapmaker.map.MapArea;
+import mapmaker.map.geometry.Polygons;
+import mapmaker.map.geometry.SpatialHash;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * small downsampled picture of the whole {@link MapArea} with a rectangle showing the part visible
+ * in the {@link ScrollPane} around it. pressing or dragging in the overview centers the map on that point.</br>
+ * the picture is split into cells of {@link Overview#CELL} pixels. an edit only marks the cells under
+ * the old and new bounds of the shape dirty, and once per pulse each row of dirty cells is cleared
+ * and only the shapes touching it are drawn again, in the order of the children of the map so on top of
+ * each other as in the map.
+ * the picture is drawn again completely only when the map changes size.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class Overview extends Pane implements ShapeListener {
+
+	/**
+	 * <p>
+	 * size of the picture in pixels.</br>
+	 * </p>
+	 */
+	private static final double WIDTH = 200, HEIGHT = 150;
+
+	/**
+	 * <p>
+	 * width and height of dirty cells in pixels of the picture.</br>
+	 * </p>
+	 */
+	private static final int CELL = 16;
+
+	/**
+	 * <p>
+	 * width and height of cells of the spatial index, in map coordinates.</br>
+	 * </p>
+	 */
+	private static final double INDEX_CELL = 128;
+
+	/**
+	 * <p>
+	 * shapes whose bounds would cover more index cells than this are kept in {@link Overview#large} instead.</br>
+	 * </p>
+	 */
+	private static final int MAX_CELLS = 64;
+
+	private static final Color BACKGROUND = Color.WHITE;
+
+	/**
+	 * <p>
+	 * drawn values of one shape.</br>
+	 * </p>
+	 */
+	private static class Entry {
+		private final PolyShape shape;
+		//index of shape in children of the map, renumbered when children are inserted or moved
+		private long order;
+		//bounds of last drawing including stroke, null until first drawn
+		private double[] bounds;
+		private boolean changed;
+		//last redraw which collected this entry, so shapes in many index cells are drawn once
+		private int stamp;
+		private ListChangeListener< Double> points;
+		private InvalidationListener style;
+
+		private Entry( PolyShape shape, long order) {
+			this.shape = shape;
+			this.order = order;
+		}
+	}
+
+	private final MapArea map;
+	private final ScrollPane viewport;
+	private final Canvas canvas;
+	private final Rectangle view;
+
+	private final Map< PolyShape, Entry> entries = new IdentityHashMap<>();
+	private final SpatialHash< Entry> index = new SpatialHash<>( INDEX_CELL);
+	private final Set< Entry> large = Collections.newSetFromMap( new IdentityHashMap<>());
+
+	/**
+	 * <p>
+	 * shapes added, edited or restyled since last redraw.</br>
+	 * </p>
+	 */
+	private final List< Entry> changed = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * dirty cells, row after row.</br>
+	 * </p>
+	 */
+	private final int columns, rows;
+	private final boolean[] dirty;
+
+	/**
+	 * <p>
+	 * pixels of picture per unit of map.</br>
+	 * </p>
+	 */
+	private double scale = 1;
+	private long order;
+	private int stamp;
+	private boolean scheduled;
+
+	/**
+	 * <p>
+	 * true if children of the map were inserted or moved, not only added at the end,
+	 * so {@link Entry#order} is renumbered before the next redraw.</br>
+	 * </p>
+	 */
+	private boolean reorder = true;
+
+	/**
+	 * <p>
+	 * create an overview of given map and start listening to its shapes.</br>
+	 * </p>
+	 * @param map - {@link MapArea} to draw
+	 * @param viewport - {@link ScrollPane} whose content is map
+	 */
+	public Overview( MapArea map, ScrollPane viewport) {
+		this.map = map;
+		this.viewport = viewport;
+		columns = (int) Math.ceil( WIDTH / CELL);
+		rows = (int) Math.ceil( HEIGHT / CELL);
+		dirty = new boolean[columns * rows];
+		canvas = new Canvas( WIDTH, HEIGHT);
+		view = new Rectangle();
+		view.setFill( Color.TRANSPARENT);
+		view.setStroke( Color.RED);
+		view.setMouseTransparent( true);
+		getChildren().addAll( canvas, view);
+		setMinSize( WIDTH, HEIGHT);
+		setPrefSize( WIDTH, HEIGHT);
+		setMaxSize( WIDTH, HEIGHT);
+		setId( "Overview");
+
+		InvalidationListener resized = o -> rescale();
+		map.widthProperty().addListener( resized);
+		map.heightProperty().addListener( resized);
+		InvalidationListener scrolled = o -> updateView();
+		viewport.hvalueProperty().addListener( scrolled);
+		viewport.vvalueProperty().addListener( scrolled);
+		viewport.viewportBoundsProperty().addListener( scrolled);
+		canvas.addEventHandler( MouseEvent.MOUSE_PRESSED, this::moveView);
+		canvas.addEventHandler( MouseEvent.MOUSE_DRAGGED, this::moveView);
+
+		map.getChildren().addListener( this::childrenChanged);
+		map.getRegistry().addListener( this);
+		map.getRegistry().forEach( this::shapeAdded);
+		rescale();
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		Entry entry = new Entry( shape, order++);
+		entry.points = c -> markChanged( entry);
+		entry.style = o -> markChanged( entry);
+		shape.getPoints().addListener( entry.points);
+		shape.fillProperty().addListener( entry.style);
+		shape.strokeProperty().addListener( entry.style);
+		shape.strokeWidthProperty().addListener( entry.style);
+		entries.put( shape, entry);
+		markChanged( entry);
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		Entry entry = entries.remove( shape);
+		if( entry == null)
+			return;
+		shape.getPoints().removeListener( entry.points);
+		shape.fillProperty().removeListener( entry.style);
+		shape.strokeProperty().removeListener( entry.style);
+		shape.strokeWidthProperty().removeListener( entry.style);
+		if( entry.bounds != null)
+			markDirty( entry.bounds);
+		unindex( entry);
+		//entry may still be in changed list, it is skipped there since it is no longer in entries
+	}
+
+	/**
+	 * <p>
+	 * shapes added at the end of the children are drawn last as they are numbered,
+	 * any other insert or a move needs the shapes renumbered. a move also changes which shape is on top,
+	 * so everything is drawn again.</br>
+	 * </p>
+	 */
+	private void childrenChanged( ListChangeListener.Change< ? extends Node> c) {
+		while( c.next()) {
+			if( c.wasPermutated()) {
+				reorder = true;
+				markDirty( 0, 0, columns - 1, rows - 1);
+			} else if( c.wasAdded() && c.getTo() != c.getList().size()) {
+				reorder = true;
+				schedule();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * number entries in the order of the children of the map.</br>
+	 * </p>
+	 */
+	private void renumber() {
+		order = 0;
+		for( Node n : map.getChildren()) {
+			Entry entry = entries.get( n);
+			if( entry != null)
+				entry.order = order++;
+		}
+		reorder = false;
+	}
+
+	/**
+	 * <p>
+	 * remember an entry whose drawing is out of date and schedule a redraw.</br>
+	 * </p>
+	 */
+	private void markChanged( Entry entry) {
+		if( !entry.changed) {
+			entry.changed = true;
+			changed.add( entry);
+		}
+		schedule();
+	}
+
+	/**
+	 * <p>
+	 * redraw on next pulse, many edits in one pulse cause one redraw.</br>
+	 * </p>
+	 */
+	private void schedule() {
+		if( scheduled)
+			return;
+		scheduled = true;
+		Platform.runLater( this::redraw);
+	}
+
+	/**
+	 * <p>
+	 * size of the map changed, fit it in the picture again and draw everything.</br>
+	 * </p>
+	 */
+	private void rescale() {
+		double width = Math.max( 1, map.getWidth()), height = Math.max( 1, map.getHeight());
+		scale = Math.min( WIDTH / width, HEIGHT / height);
+		markDirty( 0, 0, columns - 1, rows - 1);
+		updateView();
+	}
+
+	/**
+	 * <p>
+	 * mark cells of the picture under given bounds in map coordinates dirty.</br>
+	 * </p>
+	 */
+	private void markDirty( double[] bounds) {
+		markDirty( (int) Math.floor( bounds[0] * scale / CELL), (int) Math.floor( bounds[1] * scale / CELL),
+				(int) Math.floor( bounds[2] * scale / CELL), (int) Math.floor( bounds[3] * scale / CELL));
+	}
+
+	/**
+	 * <p>
+	 * mark a range of cells dirty, parts outside of the picture are ignored.</br>
+	 * </p>
+	 */
+	private void markDirty( int minColumn, int minRow, int maxColumn, int maxRow) {
+		minColumn = Math.max( 0, minColumn);
+		minRow = Math.max( 0, minRow);
+		maxColumn = Math.min( columns - 1, maxColumn);
+		maxRow = Math.min( rows - 1, maxRow);
+		for( int r = minRow; r <= maxRow; r++)
+			for( int c = minColumn; c <= maxColumn; c++)
+				dirty[r * columns + c] = true;
+		if( minColumn <= maxColumn && minRow <= maxRow)
+			schedule();
+	}
+
+	/**
+	 * <p>
+	 * move changed entries in the index, then draw every run of dirty cells of each row.</br>
+	 * </p>
+	 */
+	private void redraw() {
+		if( reorder)
+			renumber();
+		for( Entry entry : changed) {
+			entry.changed = false;
+			if( entries.get( entry.shape) != entry)
+				continue;
+			if( entry.bounds != null)
+				markDirty( entry.bounds);
+			unindex( entry);
+			entry.bounds = bounds( entry.shape);
+			if( entry.bounds != null) {
+				index( entry);
+				markDirty( entry.bounds);
+			}
+		}
+		changed.clear();
+		//cleared only now so marking cells above does not schedule another redraw
+		scheduled = false;
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		List< Entry> visible = new ArrayList<>();
+		for( int r = 0; r < rows; r++) {
+			for( int c = 0; c < columns; c++) {
+				if( !dirty[r * columns + c])
+					continue;
+				int start = c;
+				while( c < columns && dirty[r * columns + c])
+					dirty[r * columns + c++] = false;
+				drawCells( gc, start * CELL, r * CELL, c * CELL, ( r + 1) * CELL, visible);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * clear a box of the picture and draw all shapes touching it, clipped to the box.</br>
+	 * </p>
+	 */
+	private void drawCells( GraphicsContext gc, double x1, double y1, double x2, double y2, List< Entry> visible) {
+		double minX = x1 / scale, minY = y1 / scale, maxX = x2 / scale, maxY = y2 / scale;
+		int current = ++stamp;
+		visible.clear();
+		index.queryBox( minX, minY, maxX, maxY, e -> {
+			if( e.stamp != current && overlaps( e.bounds, minX, minY, maxX, maxY)) {
+				e.stamp = current;
+				visible.add( e);
+			}
+		});
+		for( Entry e : large)
+			if( overlaps( e.bounds, minX, minY, maxX, maxY))
+				visible.add( e);
+		visible.sort( ( a, b) -> Long.compare( a.order, b.order));
+		gc.save();
+		gc.beginPath();
+		gc.rect( x1, y1, x2 - x1, y2 - y1);
+		gc.clip();
+		gc.setFill( BACKGROUND);
+		gc.fillRect( x1, y1, x2 - x1, y2 - y1);
+		gc.scale( scale, scale);
+		for( Entry e : visible)
+			draw( gc, e.shape);
+		gc.restore();
+	}
+
+	/**
+	 * <p>
+	 * draw one shape in map coordinates, a {@link Path} is an open line.</br>
+	 * </p>
+	 */
+	private void draw( GraphicsContext gc, PolyShape shape) {
+		List< Double> points = shape.getPoints();
+		int n = points.size() / 2;
+		double[] xs = new double[n], ys = new double[n];
+		for( int i = 0; i < n; i++) {
+			xs[i] = points.get( i * 2);
+			ys[i] = points.get( i * 2 + 1);
+		}
+		//a null paint is ignored by the context, so it is skipped here instead of drawing with the last one
+		if( shape.getFill() != null && !( shape instanceof Path)) {
+			gc.setFill( shape.getFill());
+			gc.fillPolygon( xs, ys, n);
+		}
+		if( shape.getStroke() == null)
+			return;
+		gc.setLineWidth( shape.getStrokeWidth());
+		gc.setStroke( shape.getStroke());
+		if( shape instanceof Path)
+			gc.strokePolyline( xs, ys, n);
+		else
+			gc.strokePolygon( xs, ys, n);
+	}
+
+	/**
+	 * @return bounds of shape grown by its stroke as min x, min y, max x, max y, null if it has no points
+	 */
+	private double[] bounds( PolyShape shape) {
+		if( shape.getPoints().size() < 2)
+			return null;
+		double[] bounds = Polygons.bounds( Polygons.toArray( shape.getPoints()));
+		//a full width leaves room for sharp joins, the picture is too small to tell the difference
+		double grow = shape.getStroke() == null ? 0 : shape.getStrokeWidth();
+		bounds[0] -= grow;
+		bounds[1] -= grow;
+		bounds[2] += grow;
+		bounds[3] += grow;
+		return bounds;
+	}
+
+	private boolean overlaps( double[] bounds, double minX, double minY, double maxX, double maxY) {
+		return bounds[0] <= maxX && bounds[2] >= minX && bounds[1] <= maxY && bounds[3] >= minY;
+	}
+
+	private void index( Entry entry) {
+		double[] b = entry.bounds;
+		if( index.cellsOf( b[0], b[1], b[2], b[3]) > MAX_CELLS)
+			large.add( entry);
+		else
+			index.putBox( entry, b[0], b[1], b[2], b[3]);
+	}
+
+	private void unindex( Entry entry) {
+		if( !large.remove( entry))
+			index.remove( entry);
+	}
+
+	/**
+	 * <p>
+	 * move the rectangle to the part of the map visible in the viewport.</br>
+	 * </p>
+	 */
+	private void updateView() {
+		Bounds visible = viewport.getViewportBounds();
+		double x = viewport.getHvalue() * Math.max( 0, map.getWidth() - visible.getWidth());
+		double y = viewport.getVvalue() * Math.max( 0, map.getHeight() - visible.getHeight());
+		view.setX( x * scale);
+		view.setY( y * scale);
+		view.setWidth( Math.min( visible.getWidth(), map.getWidth()) * scale);
+		view.setHeight( Math.min( visible.getHeight(), map.getHeight()) * scale);
+	}
+
+	/**
+	 * <p>
+	 * scroll the viewport so the point under the mouse is in the center of it.</br>
+	 * </p>
+	 */
+	private void moveView( MouseEvent e) {
+		Bounds visible = viewport.getViewportBounds();
+		double extraWidth = map.getWidth() - visible.getWidth(), extraHeight = map.getHeight() - visible.getHeight();
+		if( extraWidth > 0)
+			viewport.setHvalue( clamp( ( e.getX() / scale - visible.getWidth() / 2) / extraWidth));
+		if( extraHeight > 0)
+			viewport.setVvalue( clamp( ( e.getY() / scale - visible.getHeight() / 2) / extraHeight));
+		e.consume();
+	}
+
+	private double clamp( double value) {
+		return Math.max( 0, Math.min( 1, value));
+	}
+}
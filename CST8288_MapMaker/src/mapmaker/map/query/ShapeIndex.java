@@ -0,0 +1,339 @@
+package mapmaker.map.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.scene.paint.Paint;
+import mapmaker.map.geometry.Polygons;
+import mapmaker.map.geometry.SpatialHash;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * secondary indexes over rooms used to answer {@link ShapeQuery}'s without looking at every shape.
+ * rooms are indexed by sides, fill, stroke, area and bounds. {@link Path}'s are not indexed.</br>
+ * edits only mark a room dirty, dirty rooms are indexed again at the start of the next query,
+ * so dragging a room costs nothing until someone searches.</br>
+ * a query counts the candidates of each condition it has, stopping once a count passes the best so far,
+ * then walks only the smallest candidate group and checks the other conditions on each room directly.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class ShapeIndex implements ShapeListener {
+
+	/**
+	 * <p>
+	 * width and height of cells of the spatial index.</br>
+	 * </p>
+	 */
+	private static final double CELL_SIZE = 128;
+
+	/**
+	 * <p>
+	 * rooms whose bounds would cover more cells than this are kept in {@link ShapeIndex#large} instead.</br>
+	 * </p>
+	 */
+	private static final int MAX_CELLS = 64;
+
+	/**
+	 * <p>
+	 * indexed values of one room.</br>
+	 * </p>
+	 */
+	private static class Entry {
+		private final PolyShape shape;
+		private final int id;
+		private int sides;
+		private Paint fill, stroke;
+		private double area;
+		private double[] bounds;
+		private boolean dirty, indexed;
+		//last query which visited this entry, so rooms in many cells are checked once
+		private int stamp;
+		private ListChangeListener< Double> points;
+		private InvalidationListener style;
+
+		private Entry( PolyShape shape) {
+			this.shape = shape;
+			id = shape.getID();
+		}
+
+		/**
+		 * <p>
+		 * entry used only as bound of a range of {@link ShapeIndex#byArea}.</br>
+		 * </p>
+		 */
+		private Entry( double area, int id) {
+			shape = null;
+			this.area = area;
+			this.id = id;
+		}
+	}
+
+	/**
+	 * <p>
+	 * entries ordered by area, ID breaks ties.</br>
+	 * </p>
+	 */
+	private static final Comparator< Entry> BY_AREA = Comparator.< Entry> comparingDouble( e -> e.area).thenComparingInt( e -> e.id);
+
+	private final Map< PolyShape, Entry> entries = new IdentityHashMap<>();
+	private final Map< Integer, Set< Entry>> bySides = new HashMap<>();
+	private final Map< Paint, Set< Entry>> byFill = new HashMap<>();
+	private final Map< Paint, Set< Entry>> byStroke = new HashMap<>();
+	private final NavigableSet< Entry> byArea = new TreeSet<>( BY_AREA);
+	private final SpatialHash< Entry> cells = new SpatialHash<>( CELL_SIZE);
+	private final Set< Entry> large = Collections.newSetFromMap( new IdentityHashMap<>());
+
+	/**
+	 * <p>
+	 * rooms changed since last query.</br>
+	 * </p>
+	 */
+	private final List< Entry> dirty = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * increased on every query and written to visited entries.</br>
+	 * </p>
+	 */
+	private int stamp;
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		if( shape instanceof Path)
+			return;
+		Entry entry = new Entry( shape);
+		entry.points = c -> markDirty( entry);
+		entry.style = o -> markDirty( entry);
+		shape.getPoints().addListener( entry.points);
+		shape.fillProperty().addListener( entry.style);
+		shape.strokeProperty().addListener( entry.style);
+		entries.put( shape, entry);
+		markDirty( entry);
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		Entry entry = entries.remove( shape);
+		if( entry == null)
+			return;
+		shape.getPoints().removeListener( entry.points);
+		shape.fillProperty().removeListener( entry.style);
+		shape.strokeProperty().removeListener( entry.style);
+		unindex( entry);
+		//entry may still be in dirty list, it is skipped there since it is no longer in entries
+	}
+
+	/**
+	 * <p>
+	 * find all rooms matching a query.</br>
+	 * </p>
+	 * @param query - conditions to match
+	 * @return matching rooms in no particular order
+	 */
+	public List< PolyShape> find( ShapeQuery query) {
+		refresh();
+		int current = ++stamp;
+		List< PolyShape> result = new ArrayList<>();
+		Consumer< Entry> check = e -> {
+			if( e.stamp != current) {
+				e.stamp = current;
+				if( matches( e, query))
+					result.add( e.shape);
+			}
+		};
+		//pick the smallest group of candidates
+		long best = entries.size();
+		Collection< Entry> group = null;
+		for( Set< Entry> set : equalityGroups( query)) {
+			if( set.size() < best) {
+				best = set.size();
+				group = set;
+			}
+		}
+		double[] region = query.getRegion();
+		boolean spatial = false;
+		if( region != null) {
+			long count = cells.countBox( region[0], region[1], region[2], region[3], best) + large.size();
+			if( count < best) {
+				best = count;
+				spatial = true;
+			}
+		}
+		if( query.hasArea()) {
+			NavigableSet< Entry> areaRange = areaRange( query);
+			long count = count( areaRange, best);
+			if( count < best) {
+				best = count;
+				group = areaRange;
+				spatial = false;
+			}
+		}
+		if( spatial) {
+			cells.queryBox( region[0], region[1], region[2], region[3], check);
+			large.forEach( check);
+			return result;
+		}
+		( group == null ? entries.values() : group).forEach( check);
+		return result;
+	}
+
+	/**
+	 * @return sets of rooms matching each equality condition of query, empty sets if a value is not used by any room
+	 */
+	private List< Set< Entry>> equalityGroups( ShapeQuery query) {
+		List< Set< Entry>> groups = new ArrayList<>( 3);
+		if( query.getSides() != null)
+			groups.add( bySides.getOrDefault( query.getSides(), Collections.emptySet()));
+		if( query.getFill() != null)
+			groups.add( byFill.getOrDefault( query.getFill(), Collections.emptySet()));
+		if( query.getStroke() != null)
+			groups.add( byStroke.getOrDefault( query.getStroke(), Collections.emptySet()));
+		return groups;
+	}
+
+	/**
+	 * @return entries with area inside of the range of query
+	 */
+	private NavigableSet< Entry> areaRange( ShapeQuery query) {
+		if( query.getMinArea() > query.getMaxArea())
+			return Collections.emptyNavigableSet();
+		Entry low = new Entry( query.getMinArea(), Integer.MIN_VALUE);
+		Entry high = new Entry( query.getMaxArea(), Integer.MAX_VALUE);
+		return byArea.subSet( low, true, high, true);
+	}
+
+	/**
+	 * @return size of set, or limit if set has at least that many entries
+	 */
+	private long count( Set< Entry> set, long limit) {
+		long count = 0;
+		for( @SuppressWarnings( "unused") Entry e : set)
+			if( ++count >= limit)
+				break;
+		return count;
+	}
+
+	/**
+	 * @return true if entry matches every condition of query
+	 */
+	private boolean matches( Entry e, ShapeQuery query) {
+		double[] r = query.getRegion(), b = e.bounds;
+		return ( query.getSides() == null || query.getSides() == e.sides)
+				&& ( query.getFill() == null || query.getFill().equals( e.fill))
+				&& ( query.getStroke() == null || query.getStroke().equals( e.stroke))
+				&& e.area >= query.getMinArea() && e.area <= query.getMaxArea()
+				&& ( r == null || ( b[0] >= r[0] && b[1] >= r[1] && b[2] <= r[2] && b[3] <= r[3]));
+	}
+
+	/**
+	 * <p>
+	 * remember a room to be indexed again before next query.</br>
+	 * </p>
+	 */
+	private void markDirty( Entry entry) {
+		if( !entry.dirty) {
+			entry.dirty = true;
+			dirty.add( entry);
+		}
+	}
+
+	/**
+	 * <p>
+	 * index again every room changed since last query.</br>
+	 * </p>
+	 */
+	private void refresh() {
+		for( Entry entry : dirty) {
+			entry.dirty = false;
+			if( entries.get( entry.shape) != entry)
+				continue;
+			unindex( entry);
+			PolyShape shape = entry.shape;
+			double[] points = Polygons.toArray( shape.getPoints());
+			entry.sides = shape.getSides();
+			entry.fill = shape.getFill();
+			entry.stroke = shape.getStroke();
+			entry.area = Math.abs( Polygons.signedArea( points));
+			entry.bounds = points.length == 0 ? new double[4] : Polygons.bounds( points);
+			index( entry);
+		}
+		dirty.clear();
+	}
+
+	/**
+	 * <p>
+	 * add entry to every index.</br>
+	 * </p>
+	 */
+	private void index( Entry e) {
+		group( bySides, e.sides).add( e);
+		if( e.fill != null)
+			group( byFill, e.fill).add( e);
+		if( e.stroke != null)
+			group( byStroke, e.stroke).add( e);
+		byArea.add( e);
+		double[] b = e.bounds;
+		if( cells.cellsOf( b[0], b[1], b[2], b[3]) > MAX_CELLS)
+			large.add( e);
+		else
+			cells.putBox( e, b[0], b[1], b[2], b[3]);
+		e.indexed = true;
+	}
+
+	/**
+	 * <p>
+	 * remove entry from every index, using values it was indexed with.</br>
+	 * </p>
+	 */
+	private void unindex( Entry e) {
+		if( !e.indexed)
+			return;
+		e.indexed = false;
+		ungroup( bySides, e.sides, e);
+		ungroup( byFill, e.fill, e);
+		ungroup( byStroke, e.stroke, e);
+		byArea.remove( e);
+		cells.remove( e);
+		large.remove( e);
+	}
+
+	/**
+	 * @return set of entries with given value, created if missing
+	 */
+	private < K> Set< Entry> group( Map< K, Set< Entry>> index, K key) {
+		return index.computeIfAbsent( key, k -> Collections.newSetFromMap( new IdentityHashMap<>()));
+	}
+
+	/**
+	 * <p>
+	 * remove entry from set of given value, removing the set once empty.</br>
+	 * </p>
+	 */
+	private < K> void ungroup( Map< K, Set< Entry>> index, K key, Entry e) {
+		Set< Entry> set = index.get( key);
+		if( set != null && set.remove( e) && set.isEmpty())
+			index.remove( key);
+	}
+}
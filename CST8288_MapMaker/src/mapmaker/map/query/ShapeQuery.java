@@ -0,0 +1,111 @@
+package mapmaker.map.query;
+
+import javafx.scene.paint.Paint;
+
+/**
+ * <p>
+ * conditions of a search done by {@link ShapeIndex#find(ShapeQuery)}. every condition that is set must match,
+ * conditions not set match everything. setters return this object so conditions can be chained, for example
+ * <code>new ShapeQuery().sides( 6).fill( Color.RED).minArea( 500).inside( 0, 0, 800, 600)</code>.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class ShapeQuery {
+
+	/**
+	 * <p>
+	 * conditions, null or infinite when not set.</br>
+	 * </p>
+	 */
+	private Integer sides;
+	private Paint fill, stroke;
+	private double minArea = Double.NEGATIVE_INFINITY, maxArea = Double.POSITIVE_INFINITY;
+	private double[] region;
+
+	/**
+	 * @param sides - number of sides of matching rooms
+	 * @return this object
+	 */
+	public ShapeQuery sides( int sides) {
+		this.sides = sides;
+		return this;
+	}
+
+	/**
+	 * @param fill - fill of matching rooms
+	 * @return this object
+	 */
+	public ShapeQuery fill( Paint fill) {
+		this.fill = fill;
+		return this;
+	}
+
+	/**
+	 * @param stroke - stroke of matching rooms
+	 * @return this object
+	 */
+	public ShapeQuery stroke( Paint stroke) {
+		this.stroke = stroke;
+		return this;
+	}
+
+	/**
+	 * @param minArea - smallest area of matching rooms, inclusive
+	 * @return this object
+	 */
+	public ShapeQuery minArea( double minArea) {
+		this.minArea = minArea;
+		return this;
+	}
+
+	/**
+	 * @param maxArea - largest area of matching rooms, inclusive
+	 * @return this object
+	 */
+	public ShapeQuery maxArea( double maxArea) {
+		this.maxArea = maxArea;
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * only match rooms whose bounds are completely inside of given rectangle.</br>
+	 * </p>
+	 * @return this object
+	 */
+	public ShapeQuery inside( double x1, double y1, double x2, double y2) {
+		region = new double[] { Math.min( x1, x2), Math.min( y1, y2), Math.max( x1, x2), Math.max( y1, y2) };
+		return this;
+	}
+
+	Integer getSides() {
+		return sides;
+	}
+
+	Paint getFill() {
+		return fill;
+	}
+
+	Paint getStroke() {
+		return stroke;
+	}
+
+	double getMinArea() {
+		return minArea;
+	}
+
+	double getMaxArea() {
+		return maxArea;
+	}
+
+	double[] getRegion() {
+		return region;
+	}
+
+	/**
+	 * @return true if an area condition is set
+	 */
+	boolean hasArea() {
+		return minArea != Double.NEGATIVE_INFINITY || maxArea != Double.POSITIVE_INFINITY;
+	}
+}
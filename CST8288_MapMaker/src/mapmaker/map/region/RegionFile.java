@@ -0,0 +1,384 @@
+package mapmaker.map.region;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import mapmaker.map.diff.MapText;
+import mapmaker.map.layers.Layer;
+import mapmaker.map.shapes.ShapeRecord;
+import mapmaker.map.shapes.ShapeRegistry;
+
+/**
+ * <p>
+ * map file cut in square cells of a grid so part of a map can be read without reading the rest of it.
+ * every shape belongs to the cell holding the center of its bounds, each layer has its own cells.
+ * the header gives the bounds of what each cell holds, which is larger than the cell when shapes stick out of it,
+ * so the cells to read for a part of the map are found from the header alone:</br>
+ * <code>regions cellSize lastID layerCount cellCount</code></br>
+ * <code>layer visible name</code> once per layer, visible is 1 or 0</br>
+ * <code>cell layer column row minX minY maxX maxY length</code> once per cell</br>
+ * followed by the text of each cell in order, in the format of {@link mapmaker.map.MapArea#convertToString(Layer)}.
+ * a path whose rooms are in other cells keeps their IDs in its cell.
+ * many cells can be at the same place of a layer, saving part of a map writes cells for what was read and copies the others.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class RegionFile {
+
+	/**
+	 * <p>
+	 * part of one layer read at once.</br>
+	 * </p>
+	 */
+	public static final class Cell {
+
+		private final int layer, column, row;
+		private final Bounds bounds;
+		private final long offset;
+		private final int length;
+
+		Cell( int layer, int column, int row, Bounds bounds, long offset, int length) {
+			this.layer = layer;
+			this.column = column;
+			this.row = row;
+			this.bounds = bounds;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * @return index of layer of cell in {@link RegionFile#getLayers()}
+		 */
+		public int getLayer() {
+			return layer;
+		}
+
+		public int getColumn() {
+			return column;
+		}
+
+		public int getRow() {
+			return row;
+		}
+
+		/**
+		 * @return bounds of every shape of cell
+		 */
+		public Bounds getBounds() {
+			return bounds;
+		}
+
+	}
+
+	private static final String HEADER = "regions";
+	private static final String LAYER = "layer";
+	private static final String CELL = "cell";
+
+	/**
+	 * <p>
+	 * side of cells when none is given, a few rooms of a floor plan.</br>
+	 * </p>
+	 */
+	public static final double DEFAULT_CELL_SIZE = 512;
+
+	private final Path file;
+	private final double cellSize;
+	private final List< String> layers;
+	private final List< Boolean> visible;
+	private final List< Cell> cells;
+
+	private RegionFile( Path file, double cellSize, List< String> layers, List< Boolean> visible, List< Cell> cells) {
+		this.file = file;
+		this.cellSize = cellSize;
+		this.layers = layers;
+		this.visible = visible;
+		this.cells = cells;
+	}
+
+	/**
+	 * @param file - any map file
+	 * @return true if file starts with the header of a region file
+	 * @throws IOException if file cannot be read
+	 */
+	public static boolean isRegionFile( Path file) throws IOException {
+		try( InputStream in = new BufferedInputStream( Files.newInputStream( file))) {
+			return readLine( in, new long[1]).startsWith( HEADER + " ");
+		}
+	}
+
+	/**
+	 * <p>
+	 * read the header of a region file. no cell is read, the IDs used by all of them are reserved.</br>
+	 * </p>
+	 * @param file - region file to open
+	 * @return opened file
+	 * @throws IOException if file cannot be read or its header is broken
+	 */
+	public static RegionFile open( Path file) throws IOException {
+		long size = Files.size( file);
+		try( InputStream in = new BufferedInputStream( Files.newInputStream( file))) {
+			long[] position = { 0 };
+			String[] header = readLine( in, position).split( " ");
+			if( header.length != 5 || !header[0].equals( HEADER))
+				throw new IOException( "not a region file");
+			double cellSize = Double.parseDouble( header[1]);
+			ShapeRegistry.reseed( Integer.parseInt( header[2]));
+			int layerCount = Integer.parseInt( header[3]), cellCount = Integer.parseInt( header[4]);
+			List< String> names = new ArrayList<>( layerCount);
+			List< Boolean> visible = new ArrayList<>( layerCount);
+			for( int i = 0; i < layerCount; i++) {
+				String[] entry = readLine( in, position).split( " ", 3);
+				if( entry.length != 3 || !entry[0].equals( LAYER))
+					throw new IOException( "broken header of layer " + i);
+				visible.add( entry[1].equals( "1"));
+				names.add( entry[2]);
+			}
+			List< String[]> entries = new ArrayList<>( cellCount);
+			for( int i = 0; i < cellCount; i++) {
+				String[] entry = readLine( in, position).split( " ");
+				if( entry.length != 9 || !entry[0].equals( CELL))
+					throw new IOException( "broken header of cell " + i);
+				entries.add( entry);
+			}
+			List< Cell> cells = new ArrayList<>( cellCount);
+			long offset = position[0];
+			for( String[] e : entries) {
+				int layer = Integer.parseInt( e[1]), length = Integer.parseInt( e[8]);
+				if( layer < 0 || layer >= layerCount)
+					throw new IOException( "cell of unknown layer " + layer);
+				if( offset + length > size)
+					throw new IOException( "cell ends after end of file");
+				double minX = Double.parseDouble( e[4]), minY = Double.parseDouble( e[5]);
+				cells.add( new Cell( layer, Integer.parseInt( e[2]), Integer.parseInt( e[3]),
+						new BoundingBox( minX, minY, Double.parseDouble( e[6]) - minX, Double.parseDouble( e[7]) - minY), offset, length));
+				offset += length;
+			}
+			return new RegionFile( file, cellSize, names, visible, cells);
+		} catch( NumberFormatException e) {
+			throw new IOException( "broken header", e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * write all layers of a map to a region file, in cells of given size.</br>
+	 * </p>
+	 * @param file - region file to write
+	 * @param layers - all layers of the map in order, loaded or not
+	 * @param text - text of a loaded layer, see {@link mapmaker.map.MapArea#convertToString(Layer)}
+	 * @param cellSize - side of cells
+	 * @throws IOException if a layer cannot be read or file cannot be written
+	 */
+	public static void save( Path file, List< Layer> layers, Function< Layer, String> text, double cellSize) throws IOException {
+		List< List< ShapeRecord>> records = new ArrayList<>( layers.size());
+		for( Layer layer : layers)
+			records.add( MapText.parse( layer.isLoaded() ? Arrays.asList( text.apply( layer).split( "\\R")) : layer.peek()));
+		write( file, cellSize, layers, records, null, Collections.emptyList(), null);
+	}
+
+	/**
+	 * <p>
+	 * write a region file from records of layers and cells copied as they are from another region file.
+	 * file is written beside and then moved over the target, so source can be the same file.</br>
+	 * </p>
+	 * @param records - shapes of each layer to cut in cells, written first
+	 * @param source - file holding copied cells or null
+	 * @param copied - cells of source to copy, written after in this order
+	 * @param copiedLayer - for each layer of source its index in layers
+	 */
+	static void write( Path file, double cellSize, List< Layer> layers, List< List< ShapeRecord>> records,
+			RegionFile source, List< Cell> copied, int[] copiedLayer) throws IOException {
+		if( !( cellSize > 0))
+			throw new IllegalArgumentException( "cell size must be positive");
+		List< Cell> cells = new ArrayList<>();
+		List< byte[]> contents = new ArrayList<>();
+		for( int l = 0; l < records.size(); l++) {
+			Map< Long, List< ShapeRecord>> byCell = records.get( l).stream()
+					.collect( Collectors.groupingBy( r -> (long) column( r, cellSize) << 32 | row( r, cellSize) & 0xffffffffL, LinkedHashMap::new, Collectors.toList()));
+			List< List< ShapeRecord>> groups = new ArrayList<>( byCell.values());
+			byte[][] texts = IntStream.range( 0, groups.size()).parallel()
+					.mapToObj( i -> MapText.write( groups.get( i)).getBytes( StandardCharsets.UTF_8)).toArray( byte[][]::new);
+			for( int i = 0; i < groups.size(); i++) {
+				ShapeRecord first = groups.get( i).get( 0);
+				cells.add( new Cell( l, column( first, cellSize), row( first, cellSize), bounds( groups.get( i)), -1, texts[i].length));
+				contents.add( texts[i]);
+			}
+		}
+		for( Cell c : copied) {
+			cells.add( new Cell( copiedLayer[c.layer], c.column, c.row, c.bounds, c.offset, c.length));
+			contents.add( null);
+		}
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		writeLine( header, HEADER + " " + cellSize + " " + ShapeRegistry.lastID() + " " + layers.size() + " " + cells.size());
+		for( Layer layer : layers)
+			writeLine( header, LAYER + " " + ( layer.isVisible() ? 1 : 0) + " " + layer.getName());
+		for( Cell c : cells) {
+			Bounds b = c.bounds;
+			writeLine( header, CELL + " " + c.layer + " " + c.column + " " + c.row + " " + b.getMinX() + " " + b.getMinY()
+					+ " " + b.getMaxX() + " " + b.getMaxY() + " " + c.length);
+		}
+		Path temp = file.resolveSibling( file.getFileName() + ".tmp");
+		try( FileChannel out = FileChannel.open( temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				FileChannel in = source == null ? null : FileChannel.open( source.file, StandardOpenOption.READ)) {
+			writeFully( out, ByteBuffer.wrap( header.toByteArray()));
+			for( int i = 0; i < cells.size(); i++) {
+				if( contents.get( i) != null) {
+					writeFully( out, ByteBuffer.wrap( contents.get( i)));
+					continue;
+				}
+				Cell c = cells.get( i);
+				for( long done = 0, n; done < c.length; done += n)
+					if( ( n = in.transferTo( c.offset + done, c.length - done, out)) <= 0)
+						throw new IOException( "cell ends after end of file");
+			}
+		}
+		Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @param cell - cell of this file
+	 * @return lines of cell
+	 * @throws IOException if file cannot be read
+	 */
+	List< String> read( Cell cell) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate( cell.length);
+		try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ)) {
+			while( buffer.hasRemaining())
+				if( channel.read( buffer, cell.offset + buffer.position()) < 0)
+					throw new IOException( "cell ends after end of file");
+		}
+		String text = new String( buffer.array(), StandardCharsets.UTF_8);
+		return text.isEmpty() ? Collections.emptyList() : Arrays.asList( text.split( "\\R"));
+	}
+
+	/**
+	 * @return file this was opened from
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * @return names of layers in order, not to be changed
+	 */
+	public List< String> getLayers() {
+		return layers;
+	}
+
+	/**
+	 * @param layer - index of layer
+	 * @return true if layer is shown when file is opened
+	 */
+	public boolean isVisible( int layer) {
+		return visible.get( layer);
+	}
+
+	/**
+	 * @return every cell of every layer, not to be changed
+	 */
+	public List< Cell> getCells() {
+		return cells;
+	}
+
+	/**
+	 * @return bounds of every shape of file or null if it has none
+	 */
+	public Bounds getExtent() {
+		double minX = Double.POSITIVE_INFINITY, minY = minX, maxX = Double.NEGATIVE_INFINITY, maxY = maxX;
+		for( Cell c : cells) {
+			minX = Math.min( minX, c.bounds.getMinX());
+			minY = Math.min( minY, c.bounds.getMinY());
+			maxX = Math.max( maxX, c.bounds.getMaxX());
+			maxY = Math.max( maxY, c.bounds.getMaxY());
+		}
+		return cells.isEmpty() ? null : new BoundingBox( minX, minY, maxX - minX, maxY - minY);
+	}
+
+	private static int column( ShapeRecord r, double cellSize) {
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for( int i = 0; i < r.size(); i += 2) {
+			min = Math.min( min, r.get( i));
+			max = Math.max( max, r.get( i));
+		}
+		return r.size() == 0 ? 0 : (int) Math.floor( ( min + max) / 2 / cellSize);
+	}
+
+	private static int row( ShapeRecord r, double cellSize) {
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for( int i = 1; i < r.size(); i += 2) {
+			min = Math.min( min, r.get( i));
+			max = Math.max( max, r.get( i));
+		}
+		return r.size() == 0 ? 0 : (int) Math.floor( ( min + max) / 2 / cellSize);
+	}
+
+	/**
+	 * @return bounds of all points of records
+	 */
+	private static Bounds bounds( List< ShapeRecord> records) {
+		double minX = Double.POSITIVE_INFINITY, minY = minX, maxX = Double.NEGATIVE_INFINITY, maxY = maxX;
+		for( ShapeRecord r : records)
+			for( int i = 0; i + 1 < r.size(); i += 2) {
+				minX = Math.min( minX, r.get( i));
+				maxX = Math.max( maxX, r.get( i));
+				minY = Math.min( minY, r.get( i + 1));
+				maxY = Math.max( maxY, r.get( i + 1));
+			}
+		if( minX > maxX)
+			return new BoundingBox( 0, 0, 0, 0);
+		return new BoundingBox( minX, minY, maxX - minX, maxY - minY);
+	}
+
+	private static void writeFully( FileChannel out, ByteBuffer buffer) throws IOException {
+		while( buffer.hasRemaining())
+			out.write( buffer);
+	}
+
+	/**
+	 * @param position - bytes read so far, increased by the bytes of this line
+	 * @return one line of the header without its line break
+	 */
+	private static String readLine( InputStream in, long[] position) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		for( int b = in.read(); b != '\n'; b = in.read()) {
+			if( b == -1)
+				break;
+			line.write( b);
+		}
+		position[0] += line.size() + 1;
+		String text = new String( line.toByteArray(), StandardCharsets.UTF_8);
+		return text.endsWith( "\r") ? text.substring( 0, text.length() - 1) : text;
+	}
+
+	private static void writeLine( OutputStream out, String line) throws IOException {
+		out.write( line.getBytes( StandardCharsets.UTF_8));
+		out.write( '\n');
+	}
+}
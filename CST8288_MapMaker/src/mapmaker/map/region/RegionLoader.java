@@ -0,0 +1,389 @@
+package mapmaker.map.region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javafx.beans.InvalidationListener;
+import javafx.concurrent.Task;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.control.ScrollPane;
+import mapmaker.map.MapArea;
+import mapmaker.map.diff.MapText;
+import mapmaker.map.layers.Layer;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * part of a {@link RegionFile} open in a map. only cells in a given region are read when it is opened,
+ * cells of visible layers coming into view, or within one cell of it, are read on a background thread as the viewport scrolls.
+ * a cell once read stays in the map.</br>
+ * a path whose room is in a cell not read yet is left free and connected when that cell is read,
+ * it is saved with the ID of that room.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class RegionLoader {
+
+	private final MapArea map;
+	private final Consumer< Task< ?>> background;
+	private final Consumer< String> failure;
+	private RegionFile file;
+
+	/**
+	 * <p>
+	 * layer of map for each layer of file.</br>
+	 * </p>
+	 */
+	private final List< Layer> layers = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * state of each cell of file by index, cells being read are not read twice
+	 * and cells which could not be read are not read again until file changes.</br>
+	 * </p>
+	 */
+	private boolean[] loaded, loading, failed;
+
+	/**
+	 * <p>
+	 * ends in file of paths which are not connected to all of their rooms yet, by ID of path,
+	 * and IDs of paths waiting for each room which is not read yet.
+	 * only ends whose room is not read yet are kept, the others are {@link ShapeRecord#NONE},
+	 * so a room erased after it was read is not written back as the end of its path.</br>
+	 * </p>
+	 */
+	private final Map< Integer, int[]> pending = new HashMap<>();
+	private final Map< Integer, List< Integer>> waiting = new HashMap<>();
+
+	/**
+	 * <p>
+	 * increased when file changes or this is closed, cells read for an older file are dropped.</br>
+	 * </p>
+	 */
+	private int generation;
+	private ScrollPane viewport;
+	private final InvalidationListener scrolled = o -> refresh();
+	private final InvalidationListener resized = o -> fitExtent();
+
+	/**
+	 * @param map - map to read cells into, its layers are replaced by {@link #open(Bounds)}
+	 * @param file - opened region file
+	 * @param background - runs a task on a background thread
+	 * @param failure - told once on the FX thread when cells of file cannot be read while scrolling
+	 */
+	public RegionLoader( MapArea map, RegionFile file, Consumer< Task< ?>> background, Consumer< String> failure) {
+		this.map = map;
+		this.background = background;
+		this.failure = failure;
+		setFile( file);
+		for( int i = 0; i < file.getLayers().size(); i++) {
+			Layer layer = new Layer( file.getLayers().get( i));
+			layer.setVisible( file.isVisible( i));
+			layers.add( layer);
+		}
+	}
+
+	/**
+	 * <p>
+	 * replace the layers of map with empty layers of file then read every cell of visible layers in region.</br>
+	 * </p>
+	 * @param region - part of map to read now
+	 * @throws IOException if a cell cannot be read
+	 */
+	public void open( Bounds region) throws IOException {
+		map.setLayers( layers);
+		layers.forEach( l -> l.visibleProperty().addListener( scrolled));
+		List< RegionFile.Cell> cells = file.getCells();
+		for( int i = 0; i < cells.size(); i++)
+			if( isWanted( i, region))
+				add( i, file.read( cells.get( i)));
+	}
+
+	/**
+	 * <p>
+	 * read cells coming into view of viewport as it scrolls, map is kept large enough to scroll over
+	 * every cell of file.</br>
+	 * </p>
+	 * @param viewport - {@link ScrollPane} whose content is map
+	 */
+	public void watch( ScrollPane viewport) {
+		this.viewport = viewport;
+		viewport.hvalueProperty().addListener( scrolled);
+		viewport.vvalueProperty().addListener( scrolled);
+		viewport.viewportBoundsProperty().addListener( scrolled);
+		viewport.viewportBoundsProperty().addListener( resized);
+		fitExtent();
+		refresh();
+	}
+
+	/**
+	 * <p>
+	 * scroll viewport so the top left corner of region is in view.</br>
+	 * </p>
+	 */
+	public void scrollTo( Bounds region) {
+		if( viewport == null)
+			return;
+		Bounds visible = viewport.getViewportBounds();
+		double width = Math.max( map.getWidth(), map.getMinWidth()), height = Math.max( map.getHeight(), map.getMinHeight());
+		viewport.setHvalue( width > visible.getWidth() ? clamp( region.getMinX() / ( width - visible.getWidth())) : 0);
+		viewport.setVvalue( height > visible.getHeight() ? clamp( region.getMinY() / ( height - visible.getHeight())) : 0);
+	}
+
+	/**
+	 * <p>
+	 * stop reading cells, shapes read stay in map.</br>
+	 * </p>
+	 */
+	public void close() {
+		generation++;
+		layers.forEach( l -> l.visibleProperty().removeListener( scrolled));
+		if( viewport != null) {
+			viewport.hvalueProperty().removeListener( scrolled);
+			viewport.vvalueProperty().removeListener( scrolled);
+			viewport.viewportBoundsProperty().removeListener( scrolled);
+			viewport.viewportBoundsProperty().removeListener( resized);
+			Bounds visible = viewport.getViewportBounds();
+			map.setMinSize( visible.getWidth(), visible.getHeight());
+			viewport = null;
+		}
+	}
+
+	/**
+	 * <p>
+	 * write every shape of map and every cell not read to a region file, then read further cells from it.
+	 * shapes of map are cut in new cells, cells not read are copied as they are.</br>
+	 * </p>
+	 * @param target - region file to write, can be the file this was opened from
+	 * @throws IOException if file cannot be written or read back
+	 */
+	public void save( java.nio.file.Path target) throws IOException {
+		List< Layer> mapLayers = map.getLayers();
+		List< List< ShapeRecord>> records = new ArrayList<>( mapLayers.size());
+		Set< Integer> written = new HashSet<>();
+		for( Layer layer : mapLayers) {
+			List< ShapeRecord> list = new ArrayList<>( MapText.parse( Arrays.asList( map.convertToString( layer).split( "\\R"))));
+			list.replaceAll( r -> {
+				written.add( r.getID());
+				int[] ends = pending.get( r.getID());
+				if( ends == null || !r.isPath())
+					return r;
+				return r.with( r.getID(), r.getFirst() == ShapeRecord.NONE ? ends[0] : r.getFirst(),
+						r.getSecond() == ShapeRecord.NONE ? ends[1] : r.getSecond());
+			});
+			records.add( list);
+		}
+		//paths erased while waiting for their rooms wait no more
+		pending.keySet().retainAll( written);
+		waiting.values().forEach( l -> l.removeIf( id -> !written.contains( id)));
+		waiting.values().removeIf( List::isEmpty);
+		int[] copiedLayer = new int[layers.size()];
+		for( int i = 0; i < layers.size(); i++)
+			copiedLayer[i] = mapLayers.indexOf( layers.get( i));
+		List< RegionFile.Cell> copied = new ArrayList<>();
+		for( int i = 0; i < loaded.length; i++)
+			if( !loaded[i] && copiedLayer[file.getCells().get( i).getLayer()] != -1)
+				copied.add( file.getCells().get( i));
+		RegionFile.write( target, file.getCellSize(), mapLayers, records, file, copied, copiedLayer);
+
+		RegionFile saved = RegionFile.open( target);
+		setFile( saved);
+		layers.forEach( l -> l.visibleProperty().removeListener( scrolled));
+		layers.clear();
+		layers.addAll( mapLayers);
+		layers.forEach( l -> l.visibleProperty().addListener( scrolled));
+		Arrays.fill( loaded, 0, saved.getCells().size() - copied.size(), true);
+		refresh();
+	}
+
+	/**
+	 * @return file cells are read from
+	 */
+	public RegionFile getFile() {
+		return file;
+	}
+
+	/**
+	 * @return cells read and cells of file, for display
+	 */
+	public String status() {
+		int count = 0, broken = 0;
+		for( int i = 0; i < loaded.length; i++) {
+			if( loaded[i])
+				count++;
+			if( failed[i])
+				broken++;
+		}
+		return String.format( "%s%n%d of %d cells read, %d cells could not be read, %d paths waiting for rooms",
+				file.getFile().getFileName(), count, loaded.length, broken, pending.size());
+	}
+
+	private void setFile( RegionFile file) {
+		this.file = file;
+		loaded = new boolean[file.getCells().size()];
+		loading = new boolean[loaded.length];
+		failed = new boolean[loaded.length];
+		generation++;
+	}
+
+	/**
+	 * @return true if cell is of a visible layer, in region and neither read, being read nor failed to be read
+	 */
+	private boolean isWanted( int cell, Bounds region) {
+		RegionFile.Cell c = file.getCells().get( cell);
+		return !loaded[cell] && !loading[cell] && !failed[cell] && layers.get( c.getLayer()).isVisible() && c.getBounds().intersects( region);
+	}
+
+	/**
+	 * <p>
+	 * read cells of visible layers near the viewport on a background thread, then add them to map.</br>
+	 * </p>
+	 */
+	private void refresh() {
+		if( viewport == null)
+			return;
+		double cell = file.getCellSize();
+		Bounds visible = viewport.getViewportBounds();
+		double x = viewport.getHvalue() * Math.max( 0, map.getWidth() - visible.getWidth());
+		double y = viewport.getVvalue() * Math.max( 0, map.getHeight() - visible.getHeight());
+		Bounds region = new BoundingBox( x - cell, y - cell, visible.getWidth() + 2 * cell, visible.getHeight() + 2 * cell);
+		List< Integer> cells = new ArrayList<>();
+		for( int i = 0; i < loaded.length; i++)
+			if( isWanted( i, region)) {
+				loading[i] = true;
+				cells.add( i);
+			}
+		if( cells.isEmpty())
+			return;
+		RegionFile source = file;
+		int started = generation;
+		//first failure of this read, null if every cell was read
+		IOException[] error = { null };
+		Task< List< List< String>>> task = new Task< List< List< String>>>() {
+			@Override
+			protected List< List< String>> call() throws Exception {
+				List< List< String>> texts = new ArrayList<>( cells.size());
+				for( int i : cells) {
+					try {
+						texts.add( source.read( source.getCells().get( i)));
+					} catch( IOException e) {
+						if( error[0] == null)
+							error[0] = e;
+						texts.add( null);
+					}
+				}
+				return texts;
+			}
+		};
+		task.setOnSucceeded( e -> {
+			if( started != generation)
+				return;
+			boolean first = !any( failed);
+			for( int i = 0; i < cells.size(); i++) {
+				int index = cells.get( i);
+				List< String> lines = task.getValue().get( i);
+				loading[index] = false;
+				if( lines == null)
+					failed[index] = true;
+				//a layer hidden while its cell was read gets it when shown again
+				else if( layers.get( file.getCells().get( index).getLayer()).isVisible())
+					add( index, lines);
+			}
+			if( error[0] != null && first) {
+				error[0].printStackTrace();
+				failure.accept( "Cells of " + file.getFile().getFileName() + " could not be read and are left out: " + error[0].getMessage());
+			}
+			refresh();
+		});
+		background.accept( task);
+	}
+
+	/**
+	 * <p>
+	 * add shapes of a cell to its layer, connect paths waiting for its rooms and remember paths
+	 * of it waiting for rooms of other cells.</br>
+	 * </p>
+	 */
+	private void add( int cell, List< String> lines) {
+		loaded[cell] = true;
+		map.addLines( lines, layers.get( file.getCells().get( cell).getLayer()));
+		boolean adjacency = false;
+		for( String line : lines) {
+			if( line.equals( MapArea.ADJACENCY))
+				adjacency = true;
+			else if( !adjacency && line.startsWith( MapArea.SHAPE_START))
+				connectWaiting( Integer.parseInt( line.substring( MapArea.SHAPE_START.length()).trim()));
+			else if( adjacency && line.startsWith( PolyShape.PATH_TYPE + " ")) {
+				String[] tokens = line.split( " ");
+				int id = Integer.parseInt( tokens[1]);
+				int[] ends = { Integer.parseInt( tokens[2]), Integer.parseInt( tokens[3]) };
+				for( int i = 0; i < ends.length; i++) {
+					if( ends[i] == ShapeRecord.NONE || map.getRegistry().get( ends[i]) != null)
+						ends[i] = ShapeRecord.NONE;
+					else
+						waiting.computeIfAbsent( ends[i], k -> new ArrayList<>( 1)).add( id);
+				}
+				if( ends[0] != ShapeRecord.NONE || ends[1] != ShapeRecord.NONE)
+					pending.put( id, ends);
+			}
+		}
+	}
+
+	/**
+	 * @param room - ID of a shape just added
+	 */
+	private void connectWaiting( int room) {
+		List< Integer> paths = waiting.remove( room);
+		if( paths == null)
+			return;
+		PolyShape arrived = map.getRegistry().get( room);
+		for( int id : paths) {
+			int[] ends = pending.get( id);
+			PolyShape shape = map.getRegistry().get( id);
+			if( ends == null || !( shape instanceof Path))
+				continue;
+			Path path = (Path) shape;
+			//an end which was not waiting keeps what it is connected to now, which may be nothing
+			path.reconnect( ends[0] == room ? arrived : path.getFirst(), ends[1] == room ? arrived : path.getSecond());
+			for( int i = 0; i < ends.length; i++)
+				if( ends[i] == room)
+					ends[i] = ShapeRecord.NONE;
+			if( ends[0] == ShapeRecord.NONE && ends[1] == ShapeRecord.NONE)
+				pending.remove( id);
+		}
+	}
+
+	/**
+	 * <p>
+	 * keep map large enough to scroll over every cell of file.</br>
+	 * </p>
+	 */
+	private void fitExtent() {
+		if( viewport == null)
+			return;
+		Bounds extent = file.getExtent(), visible = viewport.getViewportBounds();
+		double width = extent == null ? 0 : extent.getMaxX(), height = extent == null ? 0 : extent.getMaxY();
+		map.setMinSize( Math.max( width, visible.getWidth()), Math.max( height, visible.getHeight()));
+	}
+
+	private static boolean any( boolean[] values) {
+		for( boolean b : values)
+			if( b)
+				return true;
+		return false;
+	}
+
+	private static double clamp( double value) {
+		return Math.max( 0, Math.min( 1, value));
+	}
+}
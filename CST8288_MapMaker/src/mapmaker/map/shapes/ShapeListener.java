@@ -0,0 +1,28 @@
+package mapmaker.map.shapes;
+
+/**
+ * <p>
+ * classes implementing this interface are told when a {@link PolyShape} is added to or removed from
+ * a {@link ShapeRegistry}. register with {@link ShapeRegistry#addListener(ShapeListener)}.</br>
+ * to follow edits of a shape listen to {@link PolyShape#getPoints()} in {@link ShapeListener#shapeAdded(PolyShape)}.
+ * </p>
+ * @author Adriano Dramisino
+ */
+public interface ShapeListener {
+
+	/**
+	 * <p>
+	 * called after shape is registered.
+	 * </p>
+	 * @param shape - added {@link PolyShape}
+	 */
+	public void shapeAdded(PolyShape shape);
+
+	/**
+	 * <p>
+	 * called after shape is unregistered.
+	 * </p>
+	 * @param shape - removed {@link PolyShape}
+	 */
+	public void shapeRemoved(PolyShape shape);
+}
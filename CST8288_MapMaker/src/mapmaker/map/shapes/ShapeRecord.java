@@ -0,0 +1,164 @@
+package mapmaker.map.shapes;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * immutable copy of everything saved about one {@link PolyShape}.</br>
+ * records are taken on the FX thread and can then be read from any thread, for example
+ * to write a file in the background while the map keeps changing.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class ShapeRecord {
+
+	/**
+	 * <p>
+	 * value of {@link ShapeRecord#getFirst()} and {@link ShapeRecord#getSecond()} for an end which is not connected.</br>
+	 * </p>
+	 */
+	public static final int NONE = -1;
+
+	private final int id, sides, first, second;
+	private final String type;
+	private final Color fill, stroke;
+	private final double strokeWidth;
+	private final double[] points;
+
+	/**
+	 * @param id - ID of shape
+	 * @param type - {@link PolyShape#ROOM_TYPE} or {@link PolyShape#PATH_TYPE}
+	 * @param sides - sides of shape
+	 * @param fill - fill color
+	 * @param stroke - stroke color
+	 * @param strokeWidth - width of stroke
+	 * @param points - flat array of coordinates, not copied
+	 * @param first - ID of room at first end of a path or {@link ShapeRecord#NONE}
+	 * @param second - ID of room at second end of a path or {@link ShapeRecord#NONE}
+	 */
+	public ShapeRecord( int id, String type, int sides, Color fill, Color stroke, double strokeWidth,
+			double[] points, int first, int second) {
+		this.id = id;
+		this.type = type;
+		this.sides = sides;
+		this.fill = fill;
+		this.stroke = stroke;
+		this.strokeWidth = strokeWidth;
+		this.points = points;
+		this.first = first;
+		this.second = second;
+	}
+
+	/**
+	 * @param id - new ID
+	 * @param first - ID of room at first end or {@link ShapeRecord#NONE}
+	 * @param second - ID of room at second end or {@link ShapeRecord#NONE}
+	 * @return copy of this record with given ID and ends, points are shared
+	 */
+	public ShapeRecord with( int id, int first, int second) {
+		return new ShapeRecord( id, type, sides, fill, stroke, strokeWidth, points, first, second);
+	}
+
+	/**
+	 * <p>
+	 * copy a shape. must be called on the thread that edits the shape.</br>
+	 * </p>
+	 * @param shape - {@link PolyShape} to copy
+	 * @return new record
+	 */
+	public static ShapeRecord of( PolyShape shape) {
+		double[] points = new double[shape.getPoints().size()];
+		for( int i = 0; i < points.length; i++)
+			points[i] = shape.getPoints().get( i);
+		int first = NONE, second = NONE;
+		if( shape instanceof Path) {
+			Path path = (Path) shape;
+			first = path.getFirst() == null ? NONE : path.getFirst().getID();
+			second = path.getSecond() == null ? NONE : path.getSecond().getID();
+		}
+		return new ShapeRecord( shape.getID(), shape.getType(), shape.getSides(), color( shape.getFill()),
+				color( shape.getStroke()), shape.getStrokeWidth(), points, first, second);
+	}
+
+	/**
+	 * @return given paint if it is a {@link Color}, otherwise {@link Color#TRANSPARENT}
+	 */
+	private static Color color( Paint paint) {
+		return paint instanceof Color ? (Color) paint : Color.TRANSPARENT;
+	}
+
+	/**
+	 * <p>
+	 * format a color as #RRGGBB, alpha is not included.</br>
+	 * </p>
+	 * @param c - color to format
+	 * @return hex string of color
+	 */
+	public static String hex( Color c) {
+		return String.format( "#%02X%02X%02X", (int) Math.round( c.getRed() * 255),
+				(int) Math.round( c.getGreen() * 255), (int) Math.round( c.getBlue() * 255));
+	}
+
+	public int getID() {
+		return id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return true if record is a {@link Path}
+	 */
+	public boolean isPath() {
+		return PolyShape.PATH_TYPE.equals( type);
+	}
+
+	public int getSides() {
+		return sides;
+	}
+
+	public Color getFill() {
+		return fill;
+	}
+
+	public Color getStroke() {
+		return stroke;
+	}
+
+	public double getStrokeWidth() {
+		return strokeWidth;
+	}
+
+	/**
+	 * @return number of values in points, 2 per vertex
+	 */
+	public int size() {
+		return points.length;
+	}
+
+	/**
+	 * @param i - index of value
+	 * @return x if i is even, y if odd
+	 */
+	public double get( int i) {
+		return points[i];
+	}
+
+	/**
+	 * @return copy of points
+	 */
+	public double[] getPoints() {
+		return points.clone();
+	}
+
+	public int getFirst() {
+		return first;
+	}
+
+	public int getSecond() {
+		return second;
+	}
+}
@@ -0,0 +1,446 @@
+package mapmaker.map.shapes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * map wide registry of every {@link PolyShape} keyed by its ID.</br>
+ * shapes are stored in an open addressing hash table with primitive int keys and linear probing,
+ * so a lookup by ID is O(1) and does not box the key.</br>
+ * this class also owns the thread safe ID allocator used by {@link PolyShape}.
+ * after a load {@link ShapeRegistry#reseed(int)} must be called with the largest loaded ID
+ * so new shapes never collide with loaded ones.
+ * in a sync session IDs come from blocks given by the server, see {@link ShapeRegistry#useBlocks(Object, int, int, Runnable)},
+ * a new block is asked for once half of the current one is used and the allocator never goes past the end of a block.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class ShapeRegistry {
+
+	/**
+	 * <p>
+	 * lock of the ID allocator, held only for a few instructions unless a block of IDs is used up.</br>
+	 * </p>
+	 */
+	private static final Object ID_LOCK = new Object();
+
+	/**
+	 * <p>
+	 * time {@link ShapeRegistry#nextID()} waits for a new block once the current one is used up.</br>
+	 * </p>
+	 */
+	private static final long BLOCK_WAIT = TimeUnit.SECONDS.toMillis( 5);
+
+	/**
+	 * <p>
+	 * next free ID. shared by all registries since IDs are written to file and must be unique per application.</br>
+	 * </p>
+	 */
+	private static int next;
+
+	/**
+	 * <p>
+	 * blocks of IDs of a sync session: end of the current block, exclusive, and start of the next block
+	 * given but not used yet or -1. owner is the connection the blocks came from, null outside of a session.</br>
+	 * </p>
+	 */
+	private static int limit = Integer.MAX_VALUE, spare = -1, blockSize;
+	private static Object owner;
+	private static Runnable refill;
+	private static boolean asked;
+
+	/**
+	 * <p>
+	 * marker for an empty slot in {@link ShapeRegistry#keys}. valid IDs are never negative.</br>
+	 * </p>
+	 */
+	private static final int EMPTY = -1;
+
+	/**
+	 * <p>
+	 * starting capacity of the table, must be a power of 2.</br>
+	 * </p>
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * <p>
+	 * table is grown when it is more than half full to keep probe sequences short.</br>
+	 * </p>
+	 */
+	private static final float LOAD_FACTOR = .5f;
+
+	/**
+	 * <p>
+	 * keys and values of the table. index i of both arrays belong to the same entry.</br>
+	 * </p>
+	 */
+	private int[] keys;
+	private PolyShape[] values;
+
+	/**
+	 * <p>
+	 * number of registered shapes and the limit at which the table grows.</br>
+	 * </p>
+	 */
+	private int size, threshold;
+
+	/**
+	 * <p>
+	 * listeners told about every shape added or removed.</br>
+	 * </p>
+	 */
+	private final List< ShapeListener> listeners = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * create an empty registry.</br>
+	 * </p>
+	 */
+	public ShapeRegistry() {
+		allocate( INITIAL_CAPACITY);
+	}
+
+	/**
+	 * <p>
+	 * get a new unique ID. safe to be called from any thread.
+	 * in a session, when the block of this site is used up it waits for the next one.</br>
+	 * </p>
+	 * @return new unique ID
+	 * @throws IllegalStateException if no new block of IDs came in time, no shape may be made past the end of a block
+	 */
+	public static int nextID() {
+		synchronized( ID_LOCK) {
+			if( next >= limit) {
+				long end = System.currentTimeMillis() + BLOCK_WAIT;
+				while( spare < 0 && owner != null && System.currentTimeMillis() < end) {
+					try {
+						ID_LOCK.wait( Math.max( 1, end - System.currentTimeMillis()));
+					} catch( InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				if( owner != null && spare < 0)
+					throw new IllegalStateException( "IDs of this site are used up and the server gave no new block");
+				if( owner != null) {
+					next = Math.max( next, spare);
+					limit = spare + blockSize;
+					spare = -1;
+					asked = false;
+				}
+			}
+			if( owner != null && !asked && limit - next <= blockSize / 2) {
+				asked = true;
+				refill.run();
+			}
+			return next++;
+		}
+	}
+
+	/**
+	 * <p>
+	 * take IDs only from blocks of a sync session, starting with given block.</br>
+	 * </p>
+	 * @param session - connection the blocks come from, blocks of any other are ignored
+	 * @param base - first ID of the block
+	 * @param size - number of IDs in each block
+	 * @param ask - asks the server for a new block without waiting, the block is given to {@link ShapeRegistry#addBlock(Object, int)}
+	 */
+	public static void useBlocks( Object session, int base, int size, Runnable ask) {
+		synchronized( ID_LOCK) {
+			owner = session;
+			refill = ask;
+			blockSize = size;
+			next = Math.max( next, base);
+			limit = base + size;
+			spare = -1;
+			asked = false;
+		}
+	}
+
+	/**
+	 * <p>
+	 * keep a block of IDs given by the server, used once the current block is used up. safe to be called from any thread.</br>
+	 * </p>
+	 * @param session - connection the block came from
+	 * @param base - first ID of the block
+	 */
+	public static void addBlock( Object session, int base) {
+		synchronized( ID_LOCK) {
+			if( session != owner)
+				return;
+			spare = base;
+			ID_LOCK.notifyAll();
+		}
+	}
+
+	/**
+	 * <p>
+	 * stop using blocks of a session which ended, IDs go on from the last one used.</br>
+	 * </p>
+	 * @param session - connection which ended, nothing happens if it is not the one giving blocks
+	 */
+	public static void endBlocks( Object session) {
+		synchronized( ID_LOCK) {
+			if( session != owner)
+				return;
+			owner = null;
+			refill = null;
+			limit = Integer.MAX_VALUE;
+			spare = -1;
+			ID_LOCK.notifyAll();
+		}
+	}
+
+	/**
+	 * <p>
+	 * make sure the allocator never returns the given ID or anything below it again.</br>
+	 * to be called after shapes with IDs from a file are created.</br>
+	 * </p>
+	 * @param usedID - an ID which is already taken
+	 */
+	public static void reseed( int usedID) {
+		synchronized( ID_LOCK) {
+			next = Math.max( next, usedID + 1);
+		}
+	}
+
+	/**
+	 * <p>
+	 * largest ID handed out or reseeded so far, including shapes which are not registered anywhere
+	 * like shapes of layers which are not loaded.</br>
+	 * </p>
+	 * @return last used ID or -1 if none
+	 */
+	public static int lastID() {
+		synchronized( ID_LOCK) {
+			return next - 1;
+		}
+	}
+
+	/**
+	 * <p>
+	 * add a listener to be told about shapes added to or removed from this registry.</br>
+	 * </p>
+	 * @param listener - {@link ShapeListener} to add
+	 */
+	public void addListener( ShapeListener listener) {
+		listeners.add( listener);
+	}
+
+	/**
+	 * @param listener - {@link ShapeListener} to remove
+	 */
+	public void removeListener( ShapeListener listener) {
+		listeners.remove( listener);
+	}
+
+	/**
+	 * <p>
+	 * add a shape to the registry. if another shape with same ID exists it is replaced.</br>
+	 * </p>
+	 * @param shape - {@link PolyShape} to add
+	 * @return the replaced {@link PolyShape} or null
+	 */
+	public PolyShape register( PolyShape shape) {
+		PolyShape old = put( shape);
+		if( old != shape) {
+			if( old != null)
+				listeners.forEach( l -> l.shapeRemoved( old));
+			listeners.forEach( l -> l.shapeAdded( shape));
+		}
+		return old;
+	}
+
+	/**
+	 * <p>
+	 * insert a shape into the table without telling listeners.</br>
+	 * </p>
+	 * @param shape - {@link PolyShape} to add
+	 * @return the replaced {@link PolyShape} or null
+	 */
+	private PolyShape put( PolyShape shape) {
+		int id = shape.getID();
+		int i = indexOf( id);
+		if( keys[i] == id) {
+			PolyShape old = values[i];
+			values[i] = shape;
+			return old;
+		}
+		keys[i] = id;
+		values[i] = shape;
+		if( ++size > threshold)
+			allocate( keys.length * 2);
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * remove the given shape from registry. nothing happens if a different shape is registered under its ID.</br>
+	 * </p>
+	 * @param shape - {@link PolyShape} to remove
+	 * @return true if shape was removed
+	 */
+	public boolean unregister( PolyShape shape) {
+		int i = indexOf( shape.getID());
+		if( keys[i] == EMPTY || values[i] != shape)
+			return false;
+		delete( i);
+		listeners.forEach( l -> l.shapeRemoved( shape));
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * find a shape by its ID.</br>
+	 * </p>
+	 * @param id - ID of the shape
+	 * @return {@link PolyShape} with given ID or null
+	 */
+	public PolyShape get( int id) {
+		if( id < 0)
+			return null;
+		int i = indexOf( id);
+		return keys[i] == id ? values[i] : null;
+	}
+
+	/**
+	 * @param id - ID of the shape
+	 * @return true if a shape with given ID is registered
+	 */
+	public boolean contains( int id) {
+		return get( id) != null;
+	}
+
+	/**
+	 * @return number of registered shapes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * <p>
+	 * largest registered ID or -1 if empty.</br>
+	 * </p>
+	 * @return largest registered ID
+	 */
+	public int maxID() {
+		int max = EMPTY;
+		for( int key : keys)
+			max = Math.max( max, key);
+		return max;
+	}
+
+	/**
+	 * <p>
+	 * call the consumer on every registered shape. order is not defined.</br>
+	 * </p>
+	 * @param action - {@link Consumer} to be called on each shape
+	 */
+	public void forEach( Consumer< PolyShape> action) {
+		for( int i = 0; i < keys.length; i++)
+			if( keys[i] != EMPTY)
+				action.accept( values[i]);
+	}
+
+	/**
+	 * @return new list of all registered shapes
+	 */
+	public List< PolyShape> shapes() {
+		List< PolyShape> list = new ArrayList<>( size);
+		forEach( list::add);
+		return list;
+	}
+
+	/**
+	 * <p>
+	 * remove all shapes. the ID allocator is not reset.</br>
+	 * </p>
+	 */
+	public void clear() {
+		forEach( s -> listeners.forEach( l -> l.shapeRemoved( s)));
+		keys = null;
+		allocate( INITIAL_CAPACITY);
+	}
+
+	/**
+	 * <p>
+	 * spread sequential IDs over the table using Fibonacci hashing.</br>
+	 * </p>
+	 * @param id - key to hash
+	 * @return starting slot of the key
+	 */
+	private int hash( int id) {
+		return ( id * 0x9E3779B9) >>> Integer.numberOfLeadingZeros( keys.length - 1);
+	}
+
+	/**
+	 * <p>
+	 * find the slot holding the given ID or the empty slot where it would be inserted.</br>
+	 * </p>
+	 * @param id - key to search for
+	 * @return slot index
+	 */
+	private int indexOf( int id) {
+		int mask = keys.length - 1;
+		int i = hash( id);
+		while( keys[i] != EMPTY && keys[i] != id)
+			i = ( i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * <p>
+	 * empty the given slot and shift back any following entries of the same probe sequence,
+	 * so no tombstones are needed.</br>
+	 * </p>
+	 * @param slot - slot to empty
+	 */
+	private void delete( int slot) {
+		int mask = keys.length - 1;
+		int hole = slot;
+		int i = slot;
+		while( true) {
+			i = ( i + 1) & mask;
+			if( keys[i] == EMPTY)
+				break;
+			int home = hash( keys[i]);
+			//move entry back if its home slot is not between the hole and its current slot
+			if( ( i > hole && ( home <= hole || home > i)) || ( i < hole && ( home <= hole && home > i))) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = EMPTY;
+		values[hole] = null;
+		size--;
+	}
+
+	/**
+	 * <p>
+	 * create new arrays with given capacity and move all existing entries into them.</br>
+	 * </p>
+	 * @param capacity - new capacity, power of 2
+	 */
+	private void allocate( int capacity) {
+		int[] oldKeys = keys;
+		PolyShape[] oldValues = values;
+		keys = new int[capacity];
+		values = new PolyShape[capacity];
+		Arrays.fill( keys, EMPTY);
+		threshold = (int) ( capacity * LOAD_FACTOR);
+		size = 0;
+		if( oldKeys == null)
+			return;
+		for( int i = 0; i < oldKeys.length; i++)
+			if( oldKeys[i] != EMPTY)
+				put( oldValues[i]);
+	}
+}
@@ -1,40 +1,163 @@
-package mapmaker.map.shapes.controls;
-
-import mapmaker.map.features.Movable;
-import mapmaker.map.shapes.PolyShape;
-
-/**
- * <p>
- * This class binds two or more {@link PolyShape} objects together.
- * @author Adriano
- * </p>
- *
- */
-public class Path extends PolyShape implements Movable{
-	/**<p>
-	 * number of sides for {@link Path} object.
-	 * </p>
-	 */
-	private static final int PATH = 2;
-	
-	/**
-	 * <p>
-	 * call to {@link PolyShape} constructor, instantiates 2 sided {@link PolyShape}
-	 * </p>
-	 */
-	public Path() {
-		super(PATH);
-	}
-
-	/**<p>
-	 * moves path and everything connected to it.
-	 * </p>
-	 */
-	@Override
-	public void translate(double dx, double dy) {
-		for(Movable m : super.getLocks()) 
-			m.translate(dx, dy);
-	}
-
-	
-}
+package mapmaker.map.shapes.controls;
+
+import java.util.List;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.scene.Node;
+import mapmaker.map.features.Movable;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * This class binds two or more {@link PolyShape} objects together.
+ * @author Adriano
+ * </p>
+ *
+ */
+public class Path extends PolyShape implements Movable{
+	/**<p>
+	 * number of sides for {@link Path} object.
+	 * </p>
+	 */
+	private static final int PATH = 2;
+
+	/**
+	 * <p>
+	 * {@link PolyShape}'s connected to each end of this path, null if end is not connected.</br>
+	 * first is locked to control point 0 and second to control point 1.
+	 * </p>
+	 */
+	private final ReadOnlyObjectWrapper<PolyShape> first = new ReadOnlyObjectWrapper<>();
+	private final ReadOnlyObjectWrapper<PolyShape> second = new ReadOnlyObjectWrapper<>();
+
+	/**
+	 * <p>
+	 * call to {@link PolyShape} constructor, instantiates 2 sided {@link PolyShape}
+	 * </p>
+	 */
+	public Path() {
+		super(PATH);
+	}
+
+	/**
+	 * <p>
+	 * create a {@link Path} from given list of strings, see {@link PolyShape#PolyShape(List)}.</br>
+	 * connections are not part of the list and must be restored with {@link Path#connect(PolyShape, PolyShape)}.
+	 * </p>
+	 * @param list - list of string representing a Path
+	 */
+	public Path(List<String> list) {
+		super(list);
+	}
+
+	/**
+	 * <p>
+	 * create a {@link Path} from a record keeping its ID, see {@link PolyShape#PolyShape(ShapeRecord)}.</br>
+	 * connections are not restored and must be made with {@link Path#connect(PolyShape, PolyShape)}.
+	 * </p>
+	 * @param record - copy of a path
+	 */
+	public Path(ShapeRecord record) {
+		super(record);
+	}
+
+	/**<p>
+	 * moves path and everything connected to it.
+	 * </p>
+	 */
+	@Override
+	public void translate(double dx, double dy) {
+		for(Movable m : super.getLocks())
+			m.translate(dx, dy);
+	}
+
+	/**
+	 * <p>
+	 * connect the ends of this path to given shapes. must be called after
+	 * {@link PolyShape#registerControlPoints()}.</br>
+	 * each shape is added to locks of this path and the control point of its end is added to locks of the shape.</br>
+	 * either shape can be null to leave that end free.
+	 * </p>
+	 * @param first - {@link PolyShape} at control point 0, the end where the path was released.
+	 * @param second - {@link PolyShape} at control point 1, the end where the path was started.
+	 */
+	public void connect(PolyShape first, PolyShape second) {
+		this.first.set(first);
+		this.second.set(second);
+		lock(first, 0);
+		lock(second, 1);
+	}
+
+	/**
+	 * <p>
+	 * connect the ends of this path to other shapes, the shapes it was connected to are unlocked first.
+	 * nothing happens if it is already connected to them.
+	 * </p>
+	 * @param first - {@link PolyShape} at control point 0 or null.
+	 * @param second - {@link PolyShape} at control point 1 or null.
+	 */
+	public void reconnect(PolyShape first, PolyShape second) {
+		if(getFirst() == first && getSecond() == second)
+			return;
+		Node[] ends = getControlPoints();
+		if(getFirst() != null)
+			getFirst().getLocks().remove(ends[0]);
+		if(getSecond() != null)
+			getSecond().getLocks().remove(ends[1]);
+		getLocks().clear();
+		connect(first, second);
+	}
+
+	/**
+	 * <p>
+	 * helper for {@link Path#connect(PolyShape, PolyShape)} to lock one end.
+	 * </p>
+	 * @param shape - {@link PolyShape} to lock, nothing happens if null.
+	 * @param point - index of control point at this end.
+	 */
+	private void lock(PolyShape shape, int point) {
+		if(shape == null)
+			return;
+		addLock(shape);
+		shape.addLock((Movable)getControlPoints()[point]);
+	}
+
+	/**
+	 * @return {@link PolyShape} connected to control point 0 or null.
+	 */
+	public PolyShape getFirst() {
+		return first.get();
+	}
+
+	/**
+	 * @return {@link PolyShape} connected to control point 1 or null.
+	 */
+	public PolyShape getSecond() {
+		return second.get();
+	}
+
+	/**
+	 * @return property of {@link Path#getFirst()}, to be told when path is connected.
+	 */
+	public ReadOnlyObjectProperty<PolyShape> firstProperty() {
+		return first.getReadOnlyProperty();
+	}
+
+	/**
+	 * @return property of {@link Path#getSecond()}, to be told when path is connected.
+	 */
+	public ReadOnlyObjectProperty<PolyShape> secondProperty() {
+		return second.getReadOnlyProperty();
+	}
+
+	/**
+	 * overridden function from {@link PolyShape}
+	 */
+	@Override
+	public String getType(){
+		return PATH_TYPE;
+	}
+
+}
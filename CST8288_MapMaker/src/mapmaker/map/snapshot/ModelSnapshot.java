@@ -0,0 +1,81 @@
+package mapmaker.map.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * immutable view of every shape of a map at one moment, made by {@link SnapshotTracker#snapshot()}.</br>
+ * a snapshot shares its {@link PersistentIntMap} with the ones before and after it, so taking one costs nothing
+ * when the map did not change and only the edited shapes when it did. it can be kept and read from any thread
+ * while the map keeps changing, for example to export or check the map in the background.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class ModelSnapshot {
+
+	/**
+	 * <p>
+	 * record of a shape with the order it was added to the map in, which is its drawing order.</br>
+	 * </p>
+	 */
+	static final class Entry {
+		private final long order;
+		private final ShapeRecord record;
+
+		Entry( long order, ShapeRecord record) {
+			this.order = order;
+			this.record = record;
+		}
+	}
+
+	private final PersistentIntMap< Entry> shapes;
+	private final long version;
+
+	ModelSnapshot( PersistentIntMap< Entry> shapes, long version) {
+		this.shapes = shapes;
+		this.version = version;
+	}
+
+	/**
+	 * @return number of shapes
+	 */
+	public int size() {
+		return shapes.size();
+	}
+
+	/**
+	 * @return version of the map this snapshot shows, increased by every edit folded into a snapshot
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param id - ID of shape
+	 * @return record of shape or null if it was not in the map
+	 */
+	public ShapeRecord get( int id) {
+		Entry entry = shapes.get( id);
+		return entry == null ? null : entry.record;
+	}
+
+	/**
+	 * <p>
+	 * list every shape in drawing order. this walks and sorts the whole snapshot,
+	 * so it should be called on the background thread using it.</br>
+	 * </p>
+	 * @return new list of records of all shapes
+	 */
+	public List< ShapeRecord> records() {
+		List< Entry> entries = new ArrayList<>( shapes.size());
+		shapes.forEach( ( id, entry) -> entries.add( entry));
+		entries.sort( ( a, b) -> Long.compare( a.order, b.order));
+		List< ShapeRecord> records = new ArrayList<>( entries.size());
+		for( Entry entry : entries)
+			records.add( entry.record);
+		return records;
+	}
+}
@@ -0,0 +1,231 @@
+package mapmaker.map.snapshot;
+
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ * immutable map from non negative int keys to values, stored as a hash array mapped trie.
+ * every node has a 32 bit bitmap of used slots and an array holding only those slots, each slot
+ * is either a leaf or a child node for the next 5 bits of the key.</br>
+ * {@link PersistentIntMap#plus(int, Object)} and {@link PersistentIntMap#minus(int)} copy only the
+ * nodes on the path to the key, at most 7, and share everything else with the old map, so old maps
+ * stay valid and can be read from any thread while new ones are made.</br>
+ * keys are ints so two different keys always split before the last level and no collision lists are needed.</br>
+ * </p>
+ * @author Adriano Dramisino
+ * @param <V> - type of values
+ */
+public final class PersistentIntMap< V> {
+
+	private static final int BITS = 5, MASK = ( 1 << BITS) - 1;
+
+	private static final PersistentIntMap< ?> EMPTY = new PersistentIntMap<>( null, 0);
+
+	/**
+	 * <p>
+	 * one key and its value.</br>
+	 * </p>
+	 */
+	private static final class Leaf {
+		private final int key;
+		private final Object value;
+
+		private Leaf( int key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * <p>
+	 * one level of the trie, slots holds a {@link Leaf} or a {@link Node} for each bit set in bitmap.</br>
+	 * </p>
+	 */
+	private static final class Node {
+		private final int bitmap;
+		private final Object[] slots;
+
+		private Node( int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+
+		/**
+		 * @return index in slots of given bit
+		 */
+		private int index( int bit) {
+			return Integer.bitCount( bitmap & ( bit - 1));
+		}
+	}
+
+	private final Node root;
+	private final int size;
+
+	private PersistentIntMap( Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * @return the empty map
+	 */
+	@SuppressWarnings( "unchecked")
+	public static < V> PersistentIntMap< V> empty() {
+		return (PersistentIntMap< V>) EMPTY;
+	}
+
+	/**
+	 * @return number of keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param key - key to find
+	 * @return value of key or null
+	 */
+	@SuppressWarnings( "unchecked")
+	public V get( int key) {
+		Node node = root;
+		for( int shift = 0; node != null; shift += BITS) {
+			int bit = 1 << ( ( key >>> shift) & MASK);
+			if( ( node.bitmap & bit) == 0)
+				return null;
+			Object slot = node.slots[node.index( bit)];
+			if( slot instanceof Leaf) {
+				Leaf leaf = (Leaf) slot;
+				return leaf.key == key ? (V) leaf.value : null;
+			}
+			node = (Node) slot;
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * new map with given key set to value, this map is not changed.</br>
+	 * </p>
+	 * @param key - key, not negative
+	 * @param value - new value, not null
+	 * @return new map
+	 */
+	public PersistentIntMap< V> plus( int key, V value) {
+		boolean[] added = { false };
+		Node node = plus( root, 0, key, value, added);
+		return new PersistentIntMap<>( node, added[0] ? size + 1 : size);
+	}
+
+	private static Node plus( Node node, int shift, int key, Object value, boolean[] added) {
+		int bit = 1 << ( ( key >>> shift) & MASK);
+		if( node == null) {
+			added[0] = true;
+			return new Node( bit, new Object[] { new Leaf( key, value) });
+		}
+		int i = node.index( bit);
+		if( ( node.bitmap & bit) == 0) {
+			added[0] = true;
+			Object[] slots = new Object[node.slots.length + 1];
+			System.arraycopy( node.slots, 0, slots, 0, i);
+			slots[i] = new Leaf( key, value);
+			System.arraycopy( node.slots, i, slots, i + 1, node.slots.length - i);
+			return new Node( node.bitmap | bit, slots);
+		}
+		Object slot = node.slots[i], replacement;
+		if( slot instanceof Node)
+			replacement = plus( (Node) slot, shift + BITS, key, value, added);
+		else if( ( (Leaf) slot).key == key)
+			replacement = new Leaf( key, value);
+		else {
+			//two keys share this slot, push the old leaf one level down then add the new one next to it
+			Leaf old = (Leaf) slot;
+			Node split = new Node( 1 << ( ( old.key >>> ( shift + BITS)) & MASK), new Object[] { old });
+			replacement = plus( split, shift + BITS, key, value, added);
+		}
+		Object[] slots = node.slots.clone();
+		slots[i] = replacement;
+		return new Node( node.bitmap, slots);
+	}
+
+	/**
+	 * <p>
+	 * new map without given key, this map is not changed.</br>
+	 * </p>
+	 * @param key - key to remove
+	 * @return new map or this map if key is missing
+	 */
+	public PersistentIntMap< V> minus( int key) {
+		if( get( key) == null)
+			return this;
+		Object node = minus( root, 0, key);
+		return new PersistentIntMap<>( toNode( node), size - 1);
+	}
+
+	/**
+	 * @return node without key, a {@link Leaf} if only one leaf is left so the trie stays as shallow as possible,
+	 * or null if nothing is left
+	 */
+	private static Object minus( Node node, int shift, int key) {
+		int bit = 1 << ( ( key >>> shift) & MASK);
+		int i = node.index( bit);
+		Object slot = node.slots[i];
+		Object replacement = slot instanceof Leaf ? null : minus( (Node) slot, shift + BITS, key);
+		if( replacement instanceof Leaf && node.slots.length == 1)
+			return replacement;
+		if( replacement != null) {
+			Object[] slots = node.slots.clone();
+			slots[i] = replacement;
+			return new Node( node.bitmap, slots);
+		}
+		if( node.slots.length == 1)
+			return null;
+		if( node.slots.length == 2 && node.slots[1 - i] instanceof Leaf)
+			return node.slots[1 - i];
+		Object[] slots = new Object[node.slots.length - 1];
+		System.arraycopy( node.slots, 0, slots, 0, i);
+		System.arraycopy( node.slots, i + 1, slots, i, slots.length - i);
+		return new Node( node.bitmap & ~bit, slots);
+	}
+
+	/**
+	 * @return root node for what {@link PersistentIntMap#minus(Node, int, int)} returned at the top
+	 */
+	private static Node toNode( Object node) {
+		if( node instanceof Leaf) {
+			Leaf leaf = (Leaf) node;
+			return new Node( 1 << ( leaf.key & MASK), new Object[] { leaf });
+		}
+		return (Node) node;
+	}
+
+	/**
+	 * <p>
+	 * call action on every key and value. order is by key bits, not by key.</br>
+	 * </p>
+	 * @param action - called with each key and value
+	 */
+	public void forEach( BiConsumer< Integer, ? super V> action) {
+		if( root != null)
+			forEach( root, action);
+	}
+
+	@SuppressWarnings( "unchecked")
+	private static < V> void forEach( Node node, BiConsumer< Integer, ? super V> action) {
+		for( Object slot : node.slots) {
+			if( slot instanceof Leaf)
+				action.accept( ( (Leaf) slot).key, (V) ( (Leaf) slot).value);
+			else
+				forEach( (Node) slot, action);
+		}
+	}
+
+	/**
+	 * @return keys and values for debugging
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder( "{");
+		forEach( ( k, v) -> builder.append( builder.length() > 1 ? ", " : "").append( k).append( "=").append( v));
+		return builder.append( "}").toString();
+	}
+}
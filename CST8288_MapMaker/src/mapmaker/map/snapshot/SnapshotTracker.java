@@ -0,0 +1,132 @@
+package mapmaker.map.snapshot;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.ShapeRecord;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * keeps a {@link PersistentIntMap} of records of every registered shape so {@link SnapshotTracker#snapshot()}
+ * can hand out an immutable {@link ModelSnapshot} without copying the map.</br>
+ * like {@link mapmaker.map.query.ShapeIndex} an edit only marks a shape dirty. a snapshot copies only dirty shapes
+ * into new records and puts them in a new version of the map, sharing everything else with the last snapshot.
+ * if nothing changed the last snapshot is returned as it is.</br>
+ * all methods must be called on the FX thread, snapshots can then be read from any thread.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class SnapshotTracker implements ShapeListener {
+
+	/**
+	 * <p>
+	 * listeners of one shape and the order it was added in.</br>
+	 * </p>
+	 */
+	private static class Tracked {
+		private final PolyShape shape;
+		private final long order;
+		private boolean dirty;
+		private ListChangeListener< Double> points;
+		private InvalidationListener style;
+
+		private Tracked( PolyShape shape, long order) {
+			this.shape = shape;
+			this.order = order;
+		}
+	}
+
+	private final Map< PolyShape, Tracked> tracked = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * shapes changed since last snapshot.</br>
+	 * </p>
+	 */
+	private final List< Tracked> dirty = new ArrayList<>();
+
+	private PersistentIntMap< ModelSnapshot.Entry> shapes = PersistentIntMap.empty();
+
+	/**
+	 * <p>
+	 * last snapshot handed out, null once a shape is removed so the next call makes a new one.</br>
+	 * </p>
+	 */
+	private ModelSnapshot last;
+	private long version, order;
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		Tracked entry = new Tracked( shape, order++);
+		entry.points = c -> markDirty( entry);
+		entry.style = o -> markDirty( entry);
+		shape.getPoints().addListener( entry.points);
+		shape.fillProperty().addListener( entry.style);
+		shape.strokeProperty().addListener( entry.style);
+		shape.strokeWidthProperty().addListener( entry.style);
+		if( shape instanceof Path) {
+			( (Path) shape).firstProperty().addListener( entry.style);
+			( (Path) shape).secondProperty().addListener( entry.style);
+		}
+		tracked.put( shape, entry);
+		markDirty( entry);
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		Tracked entry = tracked.remove( shape);
+		if( entry == null)
+			return;
+		shape.getPoints().removeListener( entry.points);
+		shape.fillProperty().removeListener( entry.style);
+		shape.strokeProperty().removeListener( entry.style);
+		shape.strokeWidthProperty().removeListener( entry.style);
+		if( shape instanceof Path) {
+			( (Path) shape).firstProperty().removeListener( entry.style);
+			( (Path) shape).secondProperty().removeListener( entry.style);
+		}
+		//entry may still be in dirty list, it is skipped there since it is no longer tracked
+		shapes = shapes.minus( shape.getID());
+		last = null;
+	}
+
+	private void markDirty( Tracked entry) {
+		if( !entry.dirty) {
+			entry.dirty = true;
+			dirty.add( entry);
+		}
+	}
+
+	/**
+	 * <p>
+	 * immutable view of all registered shapes. costs O(1) if nothing changed since the last call,
+	 * otherwise one copy per edited shape and a path of the trie for each.</br>
+	 * </p>
+	 * @return snapshot which can be read from any thread
+	 */
+	public ModelSnapshot snapshot() {
+		if( last != null && dirty.isEmpty())
+			return last;
+		for( Tracked entry : dirty) {
+			entry.dirty = false;
+			if( tracked.get( entry.shape) == entry)
+				shapes = shapes.plus( entry.shape.getID(), new ModelSnapshot.Entry( entry.order, ShapeRecord.of( entry.shape)));
+		}
+		dirty.clear();
+		last = new ModelSnapshot( shapes, ++version);
+		return last;
+	}
+}
@@ -0,0 +1,299 @@
+package mapmaker.map.statistics;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.StringBinding;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.collections.ListChangeListener;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * totals of the map kept up to date as shapes change: number of rooms and paths, floor area and perimeter of rooms,
+ * length of paths and number of rooms by sides.</br>
+ * the totals are never rescanned. adding or removing a shape adds or subtracts its own values, and moving one
+ * coordinate, which is what a {@link mapmaker.map.shapes.controls.ControlPoint} drag or a translate does,
+ * only recalculates the 2 edges next to it, so the area changes by the difference of its shoelace terms.
+ * any other change of points recalculates only that shape.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class MapStatistics implements ShapeListener {
+
+	/**
+	 * <p>
+	 * values of one shape which are part of the totals.</br>
+	 * </p>
+	 */
+	private static class Entry {
+		private final PolyShape shape;
+		private final boolean open;
+		private ListChangeListener< Double> listener;
+		//twice the signed area, the shoelace sum before halving
+		private double doubleArea;
+		private double perimeter;
+		private int sides;
+		//true while values of this entry are part of totals
+		private boolean counted;
+
+		private Entry( PolyShape shape) {
+			this.shape = shape;
+			open = shape instanceof Path;
+		}
+	}
+
+	/**
+	 * <p>
+	 * entry of every shape in the map.</br>
+	 * </p>
+	 */
+	private final Map< PolyShape, Entry> entries = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * number of rooms by sides, sides with no rooms are removed.</br>
+	 * </p>
+	 */
+	private final Map< Integer, Integer> bySides = new TreeMap<>();
+
+	/**
+	 * <p>
+	 * running totals.</br>
+	 * </p>
+	 */
+	private int rooms, paths;
+	private double area, perimeter, pathLength;
+
+	/**
+	 * <p>
+	 * increased on every change so {@link MapStatistics#summary} is recomputed at most once per read,
+	 * not once per change.</br>
+	 * </p>
+	 */
+	private final ReadOnlyLongWrapper revision = new ReadOnlyLongWrapper();
+
+	/**
+	 * <p>
+	 * one line description of the totals, to be bound to a label.</br>
+	 * </p>
+	 */
+	private final StringBinding summary = Bindings.createStringBinding( this::format, revision);
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		Entry entry = new Entry( shape);
+		entries.put( shape, entry);
+		if( entry.open)
+			paths++;
+		else
+			rooms++;
+		recalculate( entry);
+		entry.listener = c -> pointsChanged( entry, c);
+		shape.getPoints().addListener( entry.listener);
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		Entry entry = entries.remove( shape);
+		if( entry == null)
+			return;
+		shape.getPoints().removeListener( entry.listener);
+		subtract( entry);
+		if( entry.open)
+			paths--;
+		else
+			rooms--;
+		//drop rounding errors of many small changes once the map is empty
+		if( entries.isEmpty())
+			area = perimeter = pathLength = 0;
+		revision.set( revision.get() + 1);
+	}
+
+	/**
+	 * <p>
+	 * update totals after points of a shape changed.
+	 * a single replaced coordinate is handled in constant time, anything else recalculates the shape.</br>
+	 * </p>
+	 */
+	private void pointsChanged( Entry entry, ListChangeListener.Change< ? extends Double> c) {
+		c.next();
+		boolean single = c.wasReplaced() && c.getTo() - c.getFrom() == 1 && c.getRemovedSize() == 1;
+		int index = c.getFrom();
+		double old = single ? c.getRemoved().get( 0) : 0;
+		if( single && !c.next())
+			moveCoordinate( entry, index, old);
+		else
+			recalculate( entry);
+	}
+
+	/**
+	 * <p>
+	 * apply the change of one coordinate of a vertex using only its neighbors.</br>
+	 * </p>
+	 * @param entry - changed shape
+	 * @param index - index of changed value in points
+	 * @param old - value before the change
+	 */
+	private void moveCoordinate( Entry entry, int index, double old) {
+		List< Double> points = entry.shape.getPoints();
+		int n = points.size() / 2;
+		if( n < 3 && !entry.open) {
+			recalculate( entry);
+			return;
+		}
+		int vertex = index / 2;
+		double x = points.get( vertex * 2), y = points.get( vertex * 2 + 1);
+		double oldX = index % 2 == 0 ? old : x, oldY = index % 2 == 0 ? y : old;
+		subtract( entry);
+		int previous = vertex - 1, next = vertex + 1;
+		if( !entry.open) {
+			previous = ( previous + n) % n;
+			next %= n;
+			double px = points.get( previous * 2), py = points.get( previous * 2 + 1);
+			double nx = points.get( next * 2), ny = points.get( next * 2 + 1);
+			//only the shoelace terms of the 2 edges touching this vertex change
+			entry.doubleArea += ( px * y - x * py + x * ny - nx * y) - ( px * oldY - oldX * py + oldX * ny - nx * oldY);
+		}
+		if( previous >= 0) {
+			double px = points.get( previous * 2), py = points.get( previous * 2 + 1);
+			entry.perimeter += Math.hypot( x - px, y - py) - Math.hypot( oldX - px, oldY - py);
+		}
+		if( next < n) {
+			double nx = points.get( next * 2), ny = points.get( next * 2 + 1);
+			entry.perimeter += Math.hypot( x - nx, y - ny) - Math.hypot( oldX - nx, oldY - ny);
+		}
+		add( entry);
+	}
+
+	/**
+	 * <p>
+	 * calculate values of one shape from scratch.</br>
+	 * </p>
+	 */
+	private void recalculate( Entry entry) {
+		subtract( entry);
+		List< Double> points = entry.shape.getPoints();
+		int n = points.size() / 2;
+		double sum = 0, length = 0;
+		for( int i = 0; i < n; i++) {
+			int j = i + 1;
+			if( j == n) {
+				if( entry.open)
+					break;
+				j = 0;
+			}
+			double x1 = points.get( i * 2), y1 = points.get( i * 2 + 1), x2 = points.get( j * 2), y2 = points.get( j * 2 + 1);
+			sum += x1 * y2 - x2 * y1;
+			length += Math.hypot( x2 - x1, y2 - y1);
+		}
+		entry.doubleArea = entry.open ? 0 : sum;
+		entry.perimeter = length;
+		entry.sides = entry.shape.getSides();
+		add( entry);
+	}
+
+	/**
+	 * <p>
+	 * remove values of a shape from totals.</br>
+	 * </p>
+	 */
+	private void subtract( Entry entry) {
+		if( !entry.counted)
+			return;
+		entry.counted = false;
+		if( entry.open) {
+			pathLength -= entry.perimeter;
+			return;
+		}
+		area -= Math.abs( entry.doubleArea) / 2;
+		perimeter -= entry.perimeter;
+		bySides.computeIfPresent( entry.sides, ( k, v) -> v == 1 ? null : v - 1);
+	}
+
+	/**
+	 * <p>
+	 * add values of a shape to totals.</br>
+	 * </p>
+	 */
+	private void add( Entry entry) {
+		revision.set( revision.get() + 1);
+		entry.counted = true;
+		if( entry.open) {
+			pathLength += entry.perimeter;
+			return;
+		}
+		area += Math.abs( entry.doubleArea) / 2;
+		perimeter += entry.perimeter;
+		bySides.merge( entry.sides, 1, Integer::sum);
+	}
+
+	/**
+	 * @return number of rooms
+	 */
+	public int getRooms() {
+		return rooms;
+	}
+
+	/**
+	 * @return number of paths
+	 */
+	public int getPaths() {
+		return paths;
+	}
+
+	/**
+	 * @return total floor area of rooms in square pixels
+	 */
+	public double getArea() {
+		return area;
+	}
+
+	/**
+	 * @return total perimeter of rooms in pixels
+	 */
+	public double getPerimeter() {
+		return perimeter;
+	}
+
+	/**
+	 * @return total length of paths in pixels
+	 */
+	public double getPathLength() {
+		return pathLength;
+	}
+
+	/**
+	 * @return number of rooms by sides, in order of sides
+	 */
+	public Map< Integer, Integer> getRoomsBySides() {
+		return Collections.unmodifiableMap( bySides);
+	}
+
+	/**
+	 * @return binding of one line description of the totals
+	 */
+	public StringBinding summaryBinding() {
+		return summary;
+	}
+
+	/**
+	 * @return one line description of the totals
+	 */
+	private String format() {
+		return String.format( "Rooms: %d %s, Area: %.0f, Perimeter: %.0f, Paths: %d, Length: %.0f",
+				rooms, bySides, area, perimeter, paths, pathLength);
+	}
+}
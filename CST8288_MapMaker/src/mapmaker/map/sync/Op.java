@@ -0,0 +1,167 @@
+package mapmaker.map.sync;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * one edit of one shape exchanged between sites of a session, keyed by shape ID.</br>
+ * every op carries the full new value of what it changes, never a difference, so applying it twice
+ * or late changes nothing, see {@link Replica}. translations are only made small on the wire by {@link OpCodec}.</br>
+ * stamp orders ops of all sites, it is a Lamport clock in the high bits and the site in the low 16 bits,
+ * see {@link Op#stamp(long, int)}.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public final class Op {
+
+	/**
+	 * <p>
+	 * what an op changes.</br>
+	 * </p>
+	 */
+	public enum Kind {
+		/** new shape with everything about it */
+		CREATE,
+		/** new vertices, a translation or a moved vertex */
+		POINTS,
+		/** new fill, stroke and stroke width */
+		STYLE,
+		/** new rooms at the ends of a path */
+		ENDS,
+		/** shape was erased, final */
+		ERASE
+	}
+
+	/**
+	 * <p>
+	 * bits of a stamp used by the site.</br>
+	 * </p>
+	 */
+	static final int SITE_BITS = 16;
+
+	private final Kind kind;
+	private final int id;
+	private final long stamp;
+	private final ShapeRecord record;
+	private final double[] points;
+	private final Color fill, stroke;
+	private final double strokeWidth;
+	private final int first, second;
+
+	private Op( Kind kind, int id, long stamp, ShapeRecord record, double[] points, Color fill, Color stroke,
+			double strokeWidth, int first, int second) {
+		this.kind = kind;
+		this.id = id;
+		this.stamp = stamp;
+		this.record = record;
+		this.points = points;
+		this.fill = fill;
+		this.stroke = stroke;
+		this.strokeWidth = strokeWidth;
+		this.first = first;
+		this.second = second;
+	}
+
+	/**
+	 * @param clock - value of Lamport clock
+	 * @param site - site making the op
+	 * @return stamp ordering ops first by clock then by site
+	 */
+	public static long stamp( long clock, int site) {
+		return clock << SITE_BITS | site;
+	}
+
+	/**
+	 * @param stamp - stamp of an op
+	 * @return Lamport clock of stamp
+	 */
+	public static long clockOf( long stamp) {
+		return stamp >>> SITE_BITS;
+	}
+
+	/**
+	 * @param record - shape to create, ends of a path are IDs of rooms
+	 */
+	public static Op create( long stamp, ShapeRecord record) {
+		return new Op( Kind.CREATE, record.getID(), stamp, record, record.getPoints(), record.getFill(), record.getStroke(),
+				record.getStrokeWidth(), record.getFirst(), record.getSecond());
+	}
+
+	/**
+	 * @param points - flat array of all new coordinates, not copied
+	 */
+	public static Op points( long stamp, int id, double[] points) {
+		return new Op( Kind.POINTS, id, stamp, null, points, null, null, 0, ShapeRecord.NONE, ShapeRecord.NONE);
+	}
+
+	public static Op style( long stamp, int id, Color fill, Color stroke, double strokeWidth) {
+		return new Op( Kind.STYLE, id, stamp, null, null, fill, stroke, strokeWidth, ShapeRecord.NONE, ShapeRecord.NONE);
+	}
+
+	/**
+	 * @param first - ID of room at first end or {@link ShapeRecord#NONE}
+	 * @param second - ID of room at second end or {@link ShapeRecord#NONE}
+	 */
+	public static Op ends( long stamp, int id, int first, int second) {
+		return new Op( Kind.ENDS, id, stamp, null, null, null, null, 0, first, second);
+	}
+
+	public static Op erase( long stamp, int id) {
+		return new Op( Kind.ERASE, id, stamp, null, null, null, null, 0, ShapeRecord.NONE, ShapeRecord.NONE);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public int getID() {
+		return id;
+	}
+
+	public long getStamp() {
+		return stamp;
+	}
+
+	/**
+	 * @return shape of a {@link Kind#CREATE} or null
+	 */
+	public ShapeRecord getRecord() {
+		return record;
+	}
+
+	/**
+	 * @return coordinates of a {@link Kind#CREATE} or {@link Kind#POINTS}, not to be changed
+	 */
+	public double[] getPoints() {
+		return points;
+	}
+
+	public Color getFill() {
+		return fill;
+	}
+
+	public Color getStroke() {
+		return stroke;
+	}
+
+	public double getStrokeWidth() {
+		return strokeWidth;
+	}
+
+	public int getFirst() {
+		return first;
+	}
+
+	public int getSecond() {
+		return second;
+	}
+
+	/**
+	 * @return kind, ID and stamp for debugging
+	 */
+	@Override
+	public String toString() {
+		return kind + " " + id + " @" + clockOf( stamp) + "." + ( stamp & ( ( 1 << SITE_BITS) - 1));
+	}
+}
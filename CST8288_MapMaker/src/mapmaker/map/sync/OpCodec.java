@@ -0,0 +1,314 @@
+package mapmaker.map.sync;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * binary format of ops sent over one connection. a frame is a batch of ops:</br>
+ * <code>type [site idBase] count op*</code></br>
+ * type is {@link OpCodec#HELLO}, {@link OpCodec#WELCOME}, {@link OpCodec#BLOCK} or {@link OpCodec#OPS}, all but ops have site and idBase.
+ * a hello is the first frame of a client and gives the highest ID it already uses in idBase,
+ * so the server gives it a block of IDs above them. a client asks for another block with a block frame
+ * once half of its block is used, and the server answers with a block frame giving its first ID in idBase.
+ * integers are variable length, IDs and stamps are written as differences from the op before them in the frame,
+ * so a batch of edits of nearby shapes made at the same time costs a few bytes per op before its value.</br>
+ * points are delta compressed against the last points sent for the same shape on the same connection,
+ * which both ends remember since the connection is ordered. a translation is written as dx and dy and
+ * a moved vertex as its index and position, only when that rebuilds the exact same values.
+ * anything else is written in full.</br>
+ * an {@link OpCodec} is for one direction of one connection and one thread.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class OpCodec {
+
+	/**
+	 * <p>
+	 * types of frames.</br>
+	 * </p>
+	 */
+	static final int WELCOME = 1, OPS = 2, HELLO = 3, BLOCK = 4;
+
+	/**
+	 * <p>
+	 * how points of an op are written, kept in the high bits of the tag of an op.</br>
+	 * </p>
+	 */
+	private static final int FULL = 0, TRANSLATE = 1, VERTEX = 2;
+
+	/**
+	 * <p>
+	 * one frame read from a connection.</br>
+	 * </p>
+	 */
+	static final class Frame {
+		final int type, site, idBase;
+		final List< Op> ops;
+
+		Frame( int type, int site, int idBase, List< Op> ops) {
+			this.type = type;
+			this.site = site;
+			this.idBase = idBase;
+			this.ops = ops;
+		}
+	}
+
+	private static final Op.Kind[] KINDS = Op.Kind.values();
+
+	/**
+	 * <p>
+	 * last points sent or received for each shape on this connection.</br>
+	 * </p>
+	 */
+	private final Map< Integer, double[]> last = new HashMap<>();
+
+	/**
+	 * <p>
+	 * write one frame and flush it.</br>
+	 * </p>
+	 * @param type - {@link OpCodec#HELLO}, {@link OpCodec#WELCOME}, {@link OpCodec#BLOCK} or {@link OpCodec#OPS}
+	 * @param site - site given to the other end, only for a welcome
+	 * @param idBase - first ID the other end may use for a welcome or a block given, highest ID used by this end for a hello
+	 * @param ops - ops of frame
+	 */
+	void write( DataOutputStream out, int type, int site, int idBase, List< Op> ops) throws IOException {
+		out.writeByte( type);
+		if( type != OPS) {
+			writeVarLong( out, site);
+			writeVarLong( out, idBase);
+		}
+		writeVarLong( out, ops.size());
+		int id = 0;
+		long stamp = 0;
+		for( Op op : ops) {
+			double[] previous = last.get( op.getID());
+			int encoding = op.getPoints() == null || op.getKind() == Op.Kind.CREATE ? FULL : encoding( previous, op.getPoints());
+			out.writeByte( op.getKind().ordinal() | encoding << 4);
+			writeVarLong( out, zigzag( op.getID() - id));
+			writeVarLong( out, zigzag( op.getStamp() - stamp));
+			id = op.getID();
+			stamp = op.getStamp();
+			switch( op.getKind()) {
+				case CREATE:
+					out.writeBoolean( op.getRecord().isPath());
+					writeVarLong( out, op.getRecord().getSides());
+					writeStyle( out, op);
+					writeEnds( out, op);
+					writePoints( out, FULL, previous, op.getPoints());
+					last.put( id, op.getPoints());
+					break;
+				case POINTS:
+					writePoints( out, encoding, previous, op.getPoints());
+					last.put( id, op.getPoints());
+					break;
+				case STYLE:
+					writeStyle( out, op);
+					break;
+				case ENDS:
+					writeEnds( out, op);
+					break;
+				case ERASE:
+					last.remove( id);
+					break;
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * <p>
+	 * read one frame, blocks until it is complete.</br>
+	 * </p>
+	 * @return frame read
+	 * @throws IOException if connection is closed or frame is broken
+	 */
+	Frame read( DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		if( type != WELCOME && type != OPS && type != HELLO && type != BLOCK)
+			throw new IOException( "unknown frame " + type);
+		boolean header = type != OPS;
+		int site = header ? (int) readVarLong( in) : 0;
+		int idBase = header ? (int) readVarLong( in) : 0;
+		int count = (int) readVarLong( in);
+		List< Op> ops = new ArrayList<>( count);
+		int id = 0;
+		long stamp = 0;
+		for( int i = 0; i < count; i++) {
+			int tag = in.readUnsignedByte();
+			if( ( tag & 15) >= KINDS.length)
+				throw new IOException( "unknown op " + tag);
+			id += (int) unzigzag( readVarLong( in));
+			stamp += unzigzag( readVarLong( in));
+			switch( KINDS[tag & 15]) {
+				case CREATE:
+					boolean path = in.readBoolean();
+					int sides = (int) readVarLong( in);
+					Color fill = readColor( in), stroke = readColor( in);
+					double width = in.readDouble();
+					int first = (int) readVarLong( in) - 1, second = (int) readVarLong( in) - 1;
+					double[] points = readPoints( in, FULL, null);
+					last.put( id, points);
+					ops.add( Op.create( stamp, new ShapeRecord( id, path ? PolyShape.PATH_TYPE : PolyShape.ROOM_TYPE, sides,
+							fill, stroke, width, points, first, second)));
+					break;
+				case POINTS:
+					points = readPoints( in, tag >>> 4, last.get( id));
+					last.put( id, points);
+					ops.add( Op.points( stamp, id, points));
+					break;
+				case STYLE:
+					fill = readColor( in);
+					stroke = readColor( in);
+					ops.add( Op.style( stamp, id, fill, stroke, in.readDouble()));
+					break;
+				case ENDS:
+					first = (int) readVarLong( in) - 1;
+					second = (int) readVarLong( in) - 1;
+					ops.add( Op.ends( stamp, id, first, second));
+					break;
+				case ERASE:
+					last.remove( id);
+					ops.add( Op.erase( stamp, id));
+					break;
+			}
+		}
+		return new Frame( type, site, idBase, Collections.unmodifiableList( ops));
+	}
+
+	/**
+	 * @return smallest encoding which rebuilds points exactly from previous
+	 */
+	private static int encoding( double[] previous, double[] points) {
+		if( previous == null || previous.length != points.length || points.length < 2)
+			return FULL;
+		double dx = points[0] - previous[0], dy = points[1] - previous[1];
+		boolean translated = true;
+		int moved = -1;
+		for( int i = 0; i < points.length; i += 2) {
+			translated &= previous[i] + dx == points[i] && previous[i + 1] + dy == points[i + 1];
+			if( previous[i] != points[i] || previous[i + 1] != points[i + 1])
+				moved = moved == -1 ? i : -2;
+		}
+		if( translated)
+			return TRANSLATE;
+		return moved >= 0 ? VERTEX : FULL;
+	}
+
+	private static void writePoints( DataOutputStream out, int encoding, double[] previous, double[] points) throws IOException {
+		switch( encoding) {
+			case TRANSLATE:
+				out.writeDouble( points[0] - previous[0]);
+				out.writeDouble( points[1] - previous[1]);
+				break;
+			case VERTEX:
+				int i = 0;
+				while( previous[i] == points[i] && previous[i + 1] == points[i + 1])
+					i += 2;
+				writeVarLong( out, i / 2);
+				out.writeDouble( points[i]);
+				out.writeDouble( points[i + 1]);
+				break;
+			default:
+				writeVarLong( out, points.length);
+				for( double d : points)
+					out.writeDouble( d);
+		}
+	}
+
+	private static double[] readPoints( DataInputStream in, int encoding, double[] previous) throws IOException {
+		if( encoding != FULL && previous == null)
+			throw new IOException( "delta of unknown points");
+		switch( encoding) {
+			case TRANSLATE:
+				double dx = in.readDouble(), dy = in.readDouble();
+				double[] points = new double[previous.length];
+				for( int i = 0; i < points.length; i += 2) {
+					points[i] = previous[i] + dx;
+					points[i + 1] = previous[i + 1] + dy;
+				}
+				return points;
+			case VERTEX:
+				int i = (int) readVarLong( in) * 2;
+				if( i + 1 >= previous.length)
+					throw new IOException( "vertex out of range");
+				points = previous.clone();
+				points[i] = in.readDouble();
+				points[i + 1] = in.readDouble();
+				return points;
+			case FULL:
+				points = new double[(int) readVarLong( in)];
+				for( int j = 0; j < points.length; j++)
+					points[j] = in.readDouble();
+				return points;
+			default:
+				throw new IOException( "unknown points encoding " + encoding);
+		}
+	}
+
+	private static void writeStyle( DataOutputStream out, Op op) throws IOException {
+		writeColor( out, op.getFill());
+		writeColor( out, op.getStroke());
+		out.writeDouble( op.getStrokeWidth());
+	}
+
+	private static void writeEnds( DataOutputStream out, Op op) throws IOException {
+		//NONE is -1, shifted so it fits an unsigned variable length integer
+		writeVarLong( out, op.getFirst() + 1);
+		writeVarLong( out, op.getSecond() + 1);
+	}
+
+	/**
+	 * <p>
+	 * colors are written as 8 bit channels like in map files, see {@link ShapeRecord#hex(Color)}.</br>
+	 * </p>
+	 */
+	private static void writeColor( DataOutputStream out, Color c) throws IOException {
+		out.writeByte( (int) Math.round( c.getRed() * 255));
+		out.writeByte( (int) Math.round( c.getGreen() * 255));
+		out.writeByte( (int) Math.round( c.getBlue() * 255));
+		out.writeByte( (int) Math.round( c.getOpacity() * 255));
+	}
+
+	private static Color readColor( DataInputStream in) throws IOException {
+		int r = in.readUnsignedByte(), g = in.readUnsignedByte(), b = in.readUnsignedByte();
+		return Color.rgb( r, g, b, in.readUnsignedByte() / 255.0);
+	}
+
+	private static void writeVarLong( DataOutputStream out, long value) throws IOException {
+		while( ( value & ~0x7FL) != 0) {
+			out.writeByte( (int) ( value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte( (int) value);
+	}
+
+	private static long readVarLong( DataInputStream in) throws IOException {
+		long value = 0;
+		for( int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) ( b & 0x7F) << shift;
+			if( ( b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException( "variable length integer is too long");
+	}
+
+	private static long zigzag( long value) {
+		return ( value << 1) ^ ( value >> 63);
+	}
+
+	private static long unzigzag( long value) {
+		return ( value >>> 1) ^ -( value & 1);
+	}
+}
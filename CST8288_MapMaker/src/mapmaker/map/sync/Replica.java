@@ -0,0 +1,181 @@
+package mapmaker.map.sync;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.paint.Color;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeRecord;
+
+/**
+ * <p>
+ * state of a session as a CRDT, a map from shape ID to last writer wins registers.
+ * points, style and ends of each shape are separate registers, each keeps the value of the op with the highest stamp.
+ * an erase is a tombstone which wins over every other op, so an edit racing an erase does not bring the shape back.</br>
+ * {@link Replica#merge(Op)} is commutative and idempotent, so every site which merged the same ops holds the same
+ * state whatever order they arrived in.</br>
+ * not thread safe, a {@link SyncServer} merges under its lock and a {@link SyncClient} on the FX thread.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class Replica {
+
+	/**
+	 * <p>
+	 * registers of one shape.</br>
+	 * </p>
+	 */
+	private static class Entry {
+		private boolean created, erased, path;
+		private long createStamp, eraseStamp, pointsStamp, styleStamp, endsStamp;
+		private int sides;
+		private double[] points = new double[0];
+		private Color fill = Color.TRANSPARENT, stroke = Color.TRANSPARENT;
+		private double strokeWidth;
+		private int first = ShapeRecord.NONE, second = ShapeRecord.NONE;
+	}
+
+	private final Map< Integer, Entry> entries = new HashMap<>();
+	private int maxID = ShapeRecord.NONE;
+
+	/**
+	 * <p>
+	 * keep what op changes if it is newer than what is known.</br>
+	 * </p>
+	 * @param op - op of any site
+	 * @return true if state changed
+	 */
+	boolean merge( Op op) {
+		Entry entry = entries.computeIfAbsent( op.getID(), id -> new Entry());
+		maxID = Math.max( maxID, op.getID());
+		long stamp = op.getStamp();
+		switch( op.getKind()) {
+			case CREATE:
+				boolean changed = !entry.created;
+				if( changed) {
+					entry.created = true;
+					entry.createStamp = stamp;
+					entry.path = op.getRecord().isPath();
+				}
+				changed |= setPoints( entry, stamp, op.getPoints(), op.getRecord().getSides());
+				changed |= setStyle( entry, stamp, op.getFill(), op.getStroke(), op.getStrokeWidth());
+				changed |= setEnds( entry, stamp, op.getFirst(), op.getSecond());
+				return changed && !entry.erased;
+			case POINTS:
+				return setPoints( entry, stamp, op.getPoints(), op.getPoints().length / 2) && !entry.erased;
+			case STYLE:
+				return setStyle( entry, stamp, op.getFill(), op.getStroke(), op.getStrokeWidth()) && !entry.erased;
+			case ENDS:
+				return setEnds( entry, stamp, op.getFirst(), op.getSecond()) && !entry.erased;
+			case ERASE:
+				if( entry.erased && entry.eraseStamp <= stamp)
+					return false;
+				boolean was = !entry.erased;
+				entry.erased = true;
+				entry.eraseStamp = stamp;
+				return was;
+			default:
+				throw new IllegalArgumentException( "unknown op " + op.getKind());
+		}
+	}
+
+	private boolean setPoints( Entry entry, long stamp, double[] points, int sides) {
+		if( stamp <= entry.pointsStamp)
+			return false;
+		entry.pointsStamp = stamp;
+		entry.points = points;
+		entry.sides = sides;
+		return true;
+	}
+
+	private boolean setStyle( Entry entry, long stamp, Color fill, Color stroke, double strokeWidth) {
+		if( stamp <= entry.styleStamp)
+			return false;
+		entry.styleStamp = stamp;
+		entry.fill = fill;
+		entry.stroke = stroke;
+		entry.strokeWidth = strokeWidth;
+		return true;
+	}
+
+	private boolean setEnds( Entry entry, long stamp, int first, int second) {
+		if( stamp <= entry.endsStamp)
+			return false;
+		entry.endsStamp = stamp;
+		entry.first = first;
+		entry.second = second;
+		return true;
+	}
+
+	/**
+	 * @param id - ID of shape
+	 * @return true if any op of this shape was merged
+	 */
+	boolean contains( int id) {
+		return entries.containsKey( id);
+	}
+
+	/**
+	 * @param id - ID of shape
+	 * @return true if shape was erased
+	 */
+	boolean isErased( int id) {
+		Entry entry = entries.get( id);
+		return entry != null && entry.erased;
+	}
+
+	/**
+	 * @param id - ID of shape
+	 * @return current shape or null if it was never created or is erased
+	 */
+	ShapeRecord record( int id) {
+		Entry entry = entries.get( id);
+		if( entry == null || !entry.created || entry.erased)
+			return null;
+		return new ShapeRecord( id, entry.path ? PolyShape.PATH_TYPE : PolyShape.ROOM_TYPE, entry.sides, entry.fill, entry.stroke,
+				entry.strokeWidth, entry.points, entry.first, entry.second);
+	}
+
+	/**
+	 * @return largest ID of any op merged or {@link ShapeRecord#NONE}
+	 */
+	int maxID() {
+		return maxID;
+	}
+
+	/**
+	 * <p>
+	 * ops which bring an empty replica to this state. a created shape is sent with its current values,
+	 * registers changed after its creation are sent again with their own stamps so they keep winning
+	 * over ops older than them.</br>
+	 * </p>
+	 * @return ops of every shape
+	 */
+	List< Op> state() {
+		List< Op> ops = new ArrayList<>( entries.size());
+		entries.forEach( ( id, e) -> {
+			if( e.created) {
+				ops.add( Op.create( e.createStamp, new ShapeRecord( id, e.path ? PolyShape.PATH_TYPE : PolyShape.ROOM_TYPE, e.sides,
+						e.fill, e.stroke, e.strokeWidth, e.points, e.first, e.second)));
+				if( e.pointsStamp > e.createStamp)
+					ops.add( Op.points( e.pointsStamp, id, e.points));
+				if( e.styleStamp > e.createStamp)
+					ops.add( Op.style( e.styleStamp, id, e.fill, e.stroke, e.strokeWidth));
+				if( e.endsStamp > e.createStamp)
+					ops.add( Op.ends( e.endsStamp, id, e.first, e.second));
+			} else {
+				if( e.pointsStamp > 0)
+					ops.add( Op.points( e.pointsStamp, id, e.points));
+				if( e.styleStamp > 0)
+					ops.add( Op.style( e.styleStamp, id, e.fill, e.stroke, e.strokeWidth));
+				if( e.endsStamp > 0)
+					ops.add( Op.ends( e.endsStamp, id, e.first, e.second));
+			}
+			if( e.erased)
+				ops.add( Op.erase( e.eraseStamp, id));
+		});
+		return ops;
+	}
+}
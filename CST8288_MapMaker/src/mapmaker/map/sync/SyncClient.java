@@ -0,0 +1,555 @@
+package mapmaker.map.sync;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.shape.Circle;
+import mapmaker.map.MapArea;
+import mapmaker.map.layers.Layer;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.ShapeRecord;
+import mapmaker.map.shapes.ShapeRegistry;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * one site of a session, it keeps a map in sync with a {@link SyncServer} on localhost.</br>
+ * local edits only mark a shape dirty like in {@link mapmaker.map.query.ShapeIndex}. once per pulse every dirty shape
+ * becomes one op per changed part, stamped with the Lamport clock of this site, merged into the local {@link Replica}
+ * and sent in one frame. dragging a room for a second costs one small op per pulse, not one per vertex and event.</br>
+ * ops of other sites are read on a background thread and applied through {@link MapArea#getEditQueue()},
+ * one frame per command, without being sent back.</br>
+ * when joining, the highest ID of the map is sent first so the block of IDs of this site is above every ID it already uses.
+ * new IDs are taken only from blocks given by the server, see {@link ShapeRegistry#useBlocks(Object, int, int, Runnable)},
+ * new blocks are taken on the reader thread so an allocator waiting for one on the FX thread is not stuck behind it.
+ * shapes the session already has take the state of the session and other shapes of the map are added to it,
+ * a shape of the map whose ID is a shape of the other type in the session, a path for a room or a room for a path,
+ * is given a new ID instead.
+ * frames of a session left before are dropped, so leaving and joining again at once does not mix two sessions.
+ * shapes of hidden layers are kept in sync when their layer is shown again, layers never loaded are not part of the session.</br>
+ * all methods must be called on the FX thread.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class SyncClient implements ShapeListener {
+
+	/**
+	 * <p>
+	 * parts of a shape changed since last flush.</br>
+	 * </p>
+	 */
+	private static final int POINTS = 1, STYLE = 2, ENDS = 4;
+
+	/**
+	 * <p>
+	 * listeners of one shape and what changed since last flush.</br>
+	 * </p>
+	 */
+	private static class Tracked {
+		private final PolyShape shape;
+		private boolean published, dirty;
+		private int changes;
+		private ListChangeListener< Double> points;
+		private InvalidationListener style, ends;
+
+		private Tracked( PolyShape shape, boolean published) {
+			this.shape = shape;
+			this.published = published;
+		}
+	}
+
+	private final MapArea map;
+	private final Replica replica = new Replica();
+	private final Map< PolyShape, Tracked> tracked = new IdentityHashMap<>();
+	private final List< Tracked> dirty = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * erases waiting for next flush, stamped when they happened.</br>
+	 * </p>
+	 */
+	private final List< Op> erased = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * IDs of shapes of hidden layers, ops of other sites about them are merged and applied when their layer is shown.</br>
+	 * </p>
+	 */
+	private final Set< Integer> hidden = new HashSet<>();
+
+	/**
+	 * <p>
+	 * a shape still being drawn has no control points and is published once they are added to the map.</br>
+	 * </p>
+	 */
+	private final ListChangeListener< Node> controlPointsAdded = c -> schedule();
+
+	private final ReadOnlyBooleanWrapper connected = new ReadOnlyBooleanWrapper( this, "connected");
+	private SyncLink link;
+	private int site = -1;
+	private long clock, sent, received;
+	private boolean applying, scheduled;
+
+	/**
+	 * @param map - map to keep in sync
+	 */
+	public SyncClient( MapArea map) {
+		this.map = map;
+	}
+
+	/**
+	 * <p>
+	 * join the session of the server on given port of localhost. the map starts following it once
+	 * the server welcomes this site.</br>
+	 * </p>
+	 * @param port - port of {@link SyncServer}
+	 * @throws IOException if server cannot be reached
+	 */
+	public void connect( int port) throws IOException {
+		if( link != null)
+			throw new IllegalStateException( "already in a session");
+		Socket socket = new Socket( InetAddress.getLoopbackAddress(), port);
+		socket.setTcpNoDelay( true);
+		//frames are applied only while their link is the one of this session
+		SyncLink[] session = new SyncLink[1];
+		session[0] = new SyncLink( socket, frame -> {
+					if( frame.type == OpCodec.BLOCK) {
+						ShapeRegistry.addBlock( session[0], frame.idBase);
+						return;
+					}
+					map.getEditQueue().submit( m -> {
+						if( link == session[0])
+							receive( frame);
+					});
+				}, error -> {
+					ShapeRegistry.endBlocks( session[0]);
+					map.getEditQueue().submit( m -> {
+						if( link == session[0])
+							disconnected( error);
+					});
+				});
+		link = session[0];
+		//includes IDs of layers which are not loaded
+		link.hello( ShapeRegistry.lastID());
+		link.start( "sync client");
+		connected.set( true);
+	}
+
+	/**
+	 * <p>
+	 * leave the session, the map keeps its shapes.</br>
+	 * </p>
+	 */
+	public void close() {
+		if( link != null)
+			link.close();
+		detach();
+	}
+
+	/**
+	 * @return true while in a session
+	 */
+	public ReadOnlyBooleanProperty connectedProperty() {
+		return connected.getReadOnlyProperty();
+	}
+
+	public boolean isConnected() {
+		return connected.get();
+	}
+
+	/**
+	 * @return site, ops sent and ops received, for the user
+	 */
+	public String status() {
+		if( !isConnected())
+			return "Not in a session.";
+		return String.format( "Site %d, %,d ops sent, %,d ops received, %,d shapes in session.", site, sent, received, tracked.size());
+	}
+
+	private void disconnected( IOException error) {
+		if( error != null)
+			error.printStackTrace();
+		detach();
+	}
+
+	/**
+	 * <p>
+	 * stop following the map and forget the session.</br>
+	 * </p>
+	 */
+	private void detach() {
+		if( site >= 0) {
+			map.getRegistry().removeListener( this);
+			map.getChildren().removeListener( controlPointsAdded);
+		}
+		if( link != null)
+			ShapeRegistry.endBlocks( link);
+		new ArrayList<>( tracked.keySet()).forEach( this::untrack);
+		dirty.clear();
+		erased.clear();
+		hidden.clear();
+		link = null;
+		site = -1;
+		connected.set( false);
+	}
+
+	/**
+	 * <p>
+	 * handle a frame of the server on the FX thread.</br>
+	 * </p>
+	 */
+	private void receive( OpCodec.Frame frame) {
+		if( link == null)
+			return;
+		received += frame.ops.size();
+		if( frame.type == OpCodec.OPS) {
+			apply( frame.ops);
+			return;
+		}
+		site = frame.site;
+		SyncLink session = link;
+		ShapeRegistry.useBlocks( session, frame.idBase, SyncServer.ID_BLOCK, session::askBlock);
+		//shapes of hidden layers are not in the registry, their IDs are needed so they are not created again
+		for( Layer layer : map.getLayers()) {
+			if( !layer.isVisible()) {
+				for( Node n : layer.getDetached())
+					if( n instanceof PolyShape)
+						hidden.add( ( (PolyShape) n).getID());
+				layer.getDehydrated().forEach( r -> hidden.add( r.getID()));
+			}
+		}
+		reassign( frame.ops);
+		apply( frame.ops);
+		map.getRegistry().addListener( this);
+		map.getChildren().addListener( controlPointsAdded);
+		map.getRegistry().forEach( s -> {
+			Tracked entry = track( s, replica.contains( s.getID()));
+			if( !entry.published)
+				markDirty( entry, 0);
+		});
+	}
+
+	/**
+	 * <p>
+	 * give a new ID to every shape of the map which is a path where the session has a room of the same ID or the other way around,
+	 * so it is not overwritten by a shape it has nothing to do with. the shape is replaced by a copy with the new ID in its layer,
+	 * paths connected to a replaced room are replaced as well and connected to the copy.</br>
+	 * </p>
+	 * @param ops - state of the session
+	 */
+	private void reassign( List< Op> ops) {
+		Map< PolyShape, Integer> ids = new IdentityHashMap<>();
+		for( Op op : ops) {
+			PolyShape shape = op.getKind() == Op.Kind.CREATE ? map.getRegistry().get( op.getID()) : null;
+			if( shape != null && ( shape instanceof Path) != op.getRecord().isPath())
+				ids.put( shape, ShapeRegistry.nextID());
+		}
+		if( ids.isEmpty())
+			return;
+		//paths of a replaced room are erased with it, they keep their own ID unless it collides too
+		List< PolyShape> replaced = new ArrayList<>( ids.keySet());
+		map.getRegistry().forEach( s -> {
+			if( s instanceof Path && !ids.containsKey( s) && ( ids.containsKey( ( (Path) s).getFirst()) || ids.containsKey( ( (Path) s).getSecond())))
+				replaced.add( s);
+		});
+		List< Node> added = new ArrayList<>();
+		List< ShapeRecord> paths = new ArrayList<>();
+		for( PolyShape shape : replaced) {
+			ShapeRecord record = ShapeRecord.of( shape);
+			if( shape instanceof Path) {
+				Path path = (Path) shape;
+				record = record.with( ids.getOrDefault( shape, record.getID()), ids.getOrDefault( path.getFirst(), record.getFirst()),
+						ids.getOrDefault( path.getSecond(), record.getSecond()));
+				paths.add( record);
+			} else
+				record = record.with( ids.get( shape), record.getFirst(), record.getSecond());
+			PolyShape copy = record.isPath() ? new Path( record) : new PolyShape( record);
+			Layer layer = Layer.of( shape);
+			if( layer != null) {
+				layer.claim( copy);
+				Arrays.stream( copy.getControlPoints()).forEach( layer::claim);
+			}
+			added.add( copy);
+			added.addAll( Arrays.asList( copy.getControlPoints()));
+		}
+		map.eraseShapes( replaced);
+		map.getChildren().addAll( added);
+		for( ShapeRecord record : paths)
+			connect( (Path) map.getRegistry().get( record.getID()), record);
+	}
+
+	/**
+	 * <p>
+	 * merge ops of other sites and change the map where they won.</br>
+	 * </p>
+	 */
+	private void apply( List< Op> ops) {
+		Set< Integer> changed = new LinkedHashSet<>();
+		for( Op op : ops) {
+			clock = Math.max( clock, Op.clockOf( op.getStamp()));
+			if( replica.merge( op))
+				changed.add( op.getID());
+		}
+		applying = true;
+		try {
+			List< PolyShape> erase = new ArrayList<>();
+			List< Node> added = new ArrayList<>();
+			List< ShapeRecord> paths = new ArrayList<>();
+			for( int id : changed) {
+				if( hidden.contains( id))
+					continue;
+				PolyShape shape = map.getRegistry().get( id);
+				ShapeRecord record = replica.record( id);
+				if( record == null) {
+					if( shape != null && replica.isErased( id))
+						erase.add( shape);
+				} else if( shape == null) {
+					shape = record.isPath() ? new Path( record) : new PolyShape( record);
+					added.add( shape);
+					added.addAll( Arrays.asList( shape.getControlPoints()));
+					if( record.isPath())
+						paths.add( record);
+				} else
+					update( shape, record);
+			}
+			if( !erase.isEmpty())
+				map.eraseShapes( erase);
+			map.getChildren().addAll( added);
+			for( ShapeRecord record : paths)
+				connect( (Path) map.getRegistry().get( record.getID()), record);
+		} finally {
+			applying = false;
+		}
+	}
+
+	/**
+	 * <p>
+	 * bring a shape to its state in the session.</br>
+	 * </p>
+	 */
+	private void refresh( PolyShape shape) {
+		ShapeRecord record = replica.record( shape.getID());
+		applying = true;
+		try {
+			if( record != null)
+				update( shape, record);
+			else if( replica.isErased( shape.getID()))
+				map.eraseShapes( Collections.singletonList( shape));
+		} finally {
+			applying = false;
+		}
+	}
+
+	/**
+	 * <p>
+	 * change a shape of the map to given state, only parts which differ are touched.</br>
+	 * </p>
+	 */
+	private void update( PolyShape shape, ShapeRecord record) {
+		double[] points = record.getPoints();
+		Node[] controls = shape.getControlPoints();
+		if( !Arrays.equals( points, ShapeRecord.of( shape).getPoints())) {
+			if( controls != null && controls.length * 2 == points.length) {
+				//control points write their position into the shape
+				for( int i = 0; i < controls.length; i++) {
+					( (Circle) controls[i]).setCenterX( points[i * 2]);
+					( (Circle) controls[i]).setCenterY( points[i * 2 + 1]);
+				}
+			} else {
+				shape.setVertices( points);
+				shape.registerControlPoints();
+				Layer layer = Layer.of( shape);
+				if( layer != null)
+					Arrays.stream( shape.getControlPoints()).forEach( layer::claim);
+				if( controls != null)
+					map.getChildren().removeAll( controls);
+				map.getChildren().addAll( shape.getControlPoints());
+			}
+		}
+		if( !record.getFill().equals( shape.getFill()))
+			shape.setFill( record.getFill());
+		if( !record.getStroke().equals( shape.getStroke()))
+			shape.setStroke( record.getStroke());
+		if( record.getStrokeWidth() != shape.getStrokeWidth())
+			shape.setStrokeWidth( record.getStrokeWidth());
+		if( shape instanceof Path)
+			connect( (Path) shape, record);
+	}
+
+	/**
+	 * <p>
+	 * connect ends of a path to rooms of record if they differ.</br>
+	 * </p>
+	 */
+	private void connect( Path path, ShapeRecord record) {
+		if( path != null)
+			path.reconnect( map.getRegistry().get( record.getFirst()), map.getRegistry().get( record.getSecond()));
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		if( applying) {
+			track( shape, true);
+			return;
+		}
+		int id = shape.getID();
+		hidden.remove( id);
+		Tracked entry = track( shape, replica.contains( id));
+		if( !entry.published)
+			markDirty( entry, 0);
+		else {
+			//layer was shown again, catch up with ops merged while it was hidden
+			map.getEditQueue().submit( m -> {
+				if( tracked.get( shape) == entry)
+					refresh( shape);
+			});
+		}
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		Tracked entry = tracked.get( shape);
+		if( entry == null)
+			return;
+		untrack( shape);
+		if( applying)
+			return;
+		Layer layer = Layer.of( shape);
+		if( layer != null && !layer.isVisible()) {
+			hidden.add( shape.getID());
+			return;
+		}
+		if( entry.published) {
+			erased.add( Op.erase( nextStamp(), shape.getID()));
+			schedule();
+		}
+	}
+
+	private Tracked track( PolyShape shape, boolean published) {
+		Tracked entry = new Tracked( shape, published);
+		entry.points = c -> markDirty( entry, POINTS);
+		entry.style = o -> markDirty( entry, STYLE);
+		entry.ends = o -> markDirty( entry, ENDS);
+		shape.getPoints().addListener( entry.points);
+		shape.fillProperty().addListener( entry.style);
+		shape.strokeProperty().addListener( entry.style);
+		shape.strokeWidthProperty().addListener( entry.style);
+		if( shape instanceof Path) {
+			( (Path) shape).firstProperty().addListener( entry.ends);
+			( (Path) shape).secondProperty().addListener( entry.ends);
+		}
+		tracked.put( shape, entry);
+		return entry;
+	}
+
+	private void untrack( PolyShape shape) {
+		Tracked entry = tracked.remove( shape);
+		shape.getPoints().removeListener( entry.points);
+		shape.fillProperty().removeListener( entry.style);
+		shape.strokeProperty().removeListener( entry.style);
+		shape.strokeWidthProperty().removeListener( entry.style);
+		if( shape instanceof Path) {
+			( (Path) shape).firstProperty().removeListener( entry.ends);
+			( (Path) shape).secondProperty().removeListener( entry.ends);
+		}
+		//entry may still be in dirty list, it is skipped there since it is no longer tracked
+	}
+
+	/**
+	 * <p>
+	 * remember what changed in a shape, changes made while applying ops of other sites are not sent back.</br>
+	 * </p>
+	 */
+	private void markDirty( Tracked entry, int changes) {
+		if( applying)
+			return;
+		entry.changes |= changes;
+		if( !entry.dirty) {
+			entry.dirty = true;
+			dirty.add( entry);
+		}
+		schedule();
+	}
+
+	/**
+	 * <p>
+	 * flush once at the end of this pulse however many edits are made.</br>
+	 * </p>
+	 */
+	private void schedule() {
+		if( scheduled || site < 0 || ( dirty.isEmpty() && erased.isEmpty()))
+			return;
+		scheduled = true;
+		Platform.runLater( this::flush);
+	}
+
+	private long nextStamp() {
+		return Op.stamp( ++clock, site);
+	}
+
+	/**
+	 * <p>
+	 * turn every dirty shape into ops, merge them and send them in one frame.
+	 * shapes still being drawn wait for their control points.</br>
+	 * </p>
+	 */
+	private void flush() {
+		scheduled = false;
+		if( link == null)
+			return;
+		List< Op> ops = new ArrayList<>( erased.size() + dirty.size());
+		ops.addAll( erased);
+		erased.clear();
+		List< Tracked> drawing = new ArrayList<>();
+		for( Tracked entry : dirty) {
+			if( tracked.get( entry.shape) != entry)
+				continue;
+			if( entry.shape.getControlPoints() == null) {
+				drawing.add( entry);
+				continue;
+			}
+			ShapeRecord record = ShapeRecord.of( entry.shape);
+			if( !entry.published) {
+				ops.add( Op.create( nextStamp(), record));
+				entry.published = true;
+			} else {
+				if( ( entry.changes & POINTS) != 0)
+					ops.add( Op.points( nextStamp(), record.getID(), record.getPoints()));
+				if( ( entry.changes & STYLE) != 0)
+					ops.add( Op.style( nextStamp(), record.getID(), record.getFill(), record.getStroke(), record.getStrokeWidth()));
+				if( ( entry.changes & ENDS) != 0)
+					ops.add( Op.ends( nextStamp(), record.getID(), record.getFirst(), record.getSecond()));
+			}
+			entry.changes = 0;
+			entry.dirty = false;
+		}
+		dirty.clear();
+		dirty.addAll( drawing);
+		ops.forEach( replica::merge);
+		sent += ops.size();
+		link.send( ops);
+	}
+}
@@ -0,0 +1,169 @@
+package mapmaker.map.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * one open connection between a {@link SyncClient} and a {@link SyncServer}.
+ * frames are sent in order by a writer thread, so a site never blocks on the socket,
+ * and read by a reader thread which passes each one to a handler.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+class SyncLink {
+
+	/**
+	 * <p>
+	 * frame waiting to be written, a frame without ops closes the link once everything before it is written.</br>
+	 * </p>
+	 */
+	private static final OpCodec.Frame CLOSE = new OpCodec.Frame( 0, 0, 0, null);
+
+	private final Socket socket;
+	private final BlockingQueue< OpCodec.Frame> outgoing = new LinkedBlockingQueue<>();
+	private final Consumer< OpCodec.Frame> handler;
+	private final Consumer< IOException> closed;
+	private volatile boolean open = true;
+
+	/**
+	 * @param socket - connected socket
+	 * @param handler - called on the reader thread with each frame received
+	 * @param closed - called once when link is closed, with the error which closed it or null
+	 */
+	SyncLink( Socket socket, Consumer< OpCodec.Frame> handler, Consumer< IOException> closed) {
+		this.socket = socket;
+		this.handler = handler;
+		this.closed = closed;
+	}
+
+	/**
+	 * <p>
+	 * start reader and writer threads.</br>
+	 * </p>
+	 * @param name - name of threads
+	 */
+	void start( String name) {
+		Thread writer = new Thread( this::write, name + " writer");
+		Thread reader = new Thread( this::read, name + " reader");
+		writer.setDaemon( true);
+		reader.setDaemon( true);
+		writer.start();
+		reader.start();
+	}
+
+	/**
+	 * <p>
+	 * queue ops to be sent, safe to be called from any thread. nothing is sent for an empty list.</br>
+	 * </p>
+	 * @param ops - ops to send in one frame
+	 */
+	void send( List< Op> ops) {
+		if( !ops.isEmpty())
+			outgoing.add( new OpCodec.Frame( OpCodec.OPS, 0, 0, ops));
+	}
+
+	/**
+	 * <p>
+	 * queue the first frame a client sends, with the highest ID it already uses.</br>
+	 * </p>
+	 */
+	void hello( int maxID) {
+		outgoing.add( new OpCodec.Frame( OpCodec.HELLO, 0, Math.max( 0, maxID), Collections.emptyList()));
+	}
+
+	/**
+	 * <p>
+	 * queue a request of a client for a new block of IDs.</br>
+	 * </p>
+	 */
+	void askBlock() {
+		outgoing.add( new OpCodec.Frame( OpCodec.BLOCK, 0, 0, Collections.emptyList()));
+	}
+
+	/**
+	 * <p>
+	 * queue a new block of IDs a server gives to a client.</br>
+	 * </p>
+	 */
+	void giveBlock( int idBase) {
+		outgoing.add( new OpCodec.Frame( OpCodec.BLOCK, 0, idBase, Collections.emptyList()));
+	}
+
+	/**
+	 * <p>
+	 * queue the first frame a server sends to a new client.</br>
+	 * </p>
+	 */
+	void welcome( int site, int idBase, List< Op> ops) {
+		outgoing.add( new OpCodec.Frame( OpCodec.WELCOME, site, idBase, ops));
+	}
+
+	/**
+	 * <p>
+	 * close link after frames already queued are written.</br>
+	 * </p>
+	 */
+	void close() {
+		outgoing.add( CLOSE);
+	}
+
+	boolean isOpen() {
+		return open;
+	}
+
+	private void write() {
+		OpCodec codec = new OpCodec();
+		try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream(), 1 << 16))) {
+			for( OpCodec.Frame frame = outgoing.take(); frame != CLOSE; frame = outgoing.take())
+				codec.write( out, frame.type, frame.site, frame.idBase, frame.ops);
+			shutdown( null);
+		} catch( IOException e) {
+			shutdown( e);
+		} catch( InterruptedException e) {
+			Thread.currentThread().interrupt();
+			shutdown( null);
+		}
+	}
+
+	private void read() {
+		OpCodec codec = new OpCodec();
+		try {
+			DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream(), 1 << 16));
+			while( open)
+				handler.accept( codec.read( in));
+		} catch( IOException e) {
+			//other end closing its socket is a normal end
+			shutdown( open && !( e instanceof EOFException) ? e : null);
+		}
+	}
+
+	/**
+	 * <p>
+	 * close socket and tell handler once, both threads end since their socket is closed.</br>
+	 * </p>
+	 */
+	private synchronized void shutdown( IOException error) {
+		if( !open)
+			return;
+		open = false;
+		try {
+			socket.close();
+		} catch( IOException e) {
+			e.printStackTrace();
+		}
+		//wake the writer if the reader found the link closed
+		outgoing.add( CLOSE);
+		closed.accept( error);
+	}
+}
@@ -0,0 +1,207 @@
+package mapmaker.map.sync;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * relay of a session on localhost. it holds the merged {@link Replica} of the session, sends it to each site which joins
+ * and passes every op which changed it on to all other sites. ops which changed nothing, like late ops which lost
+ * to a newer one, are not passed on.</br>
+ * each site gets its own number for its stamps and its own block of {@link SyncServer#ID_BLOCK} IDs,
+ * so shapes made at the same time on two sites never share an ID. a site which used half of its block
+ * asks for another one, blocks are never given twice.</br>
+ * it can run inside the application, see {@link mapmaker.MapMaker}, or on its own with {@link SyncServer#main(String[])}.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class SyncServer {
+
+	/**
+	 * <p>
+	 * port used when none is given.</br>
+	 * </p>
+	 */
+	public static final int DEFAULT_PORT = 47470;
+
+	/**
+	 * <p>
+	 * number of IDs given to each site which joins.</br>
+	 * </p>
+	 */
+	static final int ID_BLOCK = 1 << 20;
+
+	private final ServerSocket server;
+	private final Replica replica = new Replica();
+	private final List< SyncLink> links = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * sites connected which have not said hello yet, they get no ops until they are welcomed.</br>
+	 * </p>
+	 */
+	private final List< SyncLink> joining = new ArrayList<>();
+	private int nextSite = 1;
+	private long nextBase;
+
+	/**
+	 * <p>
+	 * listen on given port of the loopback address only, no other machine can join.</br>
+	 * </p>
+	 * @param port - port to listen on, 0 for any free port
+	 * @throws IOException if port cannot be used
+	 */
+	public SyncServer( int port) throws IOException {
+		server = new ServerSocket( port, 50, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * @return port this server listens on
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * <p>
+	 * start accepting sites on a background thread.</br>
+	 * </p>
+	 */
+	public void start() {
+		Thread thread = new Thread( this::accept, "sync server");
+		thread.setDaemon( true);
+		thread.start();
+	}
+
+	/**
+	 * <p>
+	 * stop accepting sites and close every connection.</br>
+	 * </p>
+	 */
+	public synchronized void close() {
+		try {
+			server.close();
+		} catch( IOException e) {
+			e.printStackTrace();
+		}
+		links.forEach( SyncLink::close);
+		links.clear();
+		joining.forEach( SyncLink::close);
+		joining.clear();
+	}
+
+	/**
+	 * @return number of sites connected
+	 */
+	public synchronized int getSites() {
+		return links.size();
+	}
+
+	private void accept() {
+		try {
+			while( !server.isClosed()) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay( true);
+				join( socket);
+			}
+		} catch( IOException e) {
+			if( !server.isClosed())
+				e.printStackTrace();
+		}
+	}
+
+	/**
+	 * <p>
+	 * start reading a new site, it is welcomed once it says hello.</br>
+	 * </p>
+	 */
+	private synchronized void join( Socket socket) throws IOException {
+		SyncLink[] link = new SyncLink[1];
+		link[0] = new SyncLink( socket, frame -> received( link[0], frame), error -> left( link[0], error));
+		joining.add( link[0]);
+		link[0].start( "sync site");
+	}
+
+	/**
+	 * <p>
+	 * welcome a site which said hello with its number, its block of IDs and the whole state of the session.</br>
+	 * </p>
+	 * @param maxID - highest ID the site already uses
+	 */
+	private void welcome( SyncLink link, int maxID) {
+		joining.remove( link);
+		int base = nextBlock( maxID);
+		if( nextSite >= 1 << Op.SITE_BITS || base < 0) {
+			link.close();
+			return;
+		}
+		link.welcome( nextSite++, base, replica.state());
+		links.add( link);
+	}
+
+	/**
+	 * <p>
+	 * take the next free block of IDs. it starts past every ID seen so far, including IDs of shapes a joining site brings with it.</br>
+	 * </p>
+	 * @param maxID - highest ID the site already uses
+	 * @return first ID of block or -1 if there are no IDs left
+	 */
+	private int nextBlock( int maxID) {
+		long base = Math.max( nextBase, ( Math.max( replica.maxID(), maxID) + ID_BLOCK) / ID_BLOCK * (long) ID_BLOCK);
+		if( base + ID_BLOCK > Integer.MAX_VALUE)
+			return -1;
+		nextBase = base + ID_BLOCK;
+		return (int) base;
+	}
+
+	/**
+	 * <p>
+	 * welcome a site saying hello, give a new block of IDs to a site asking for one,
+	 * or merge ops of a site and pass those which changed the session to all other sites.
+	 * a site which asks when no IDs are left gets nothing and cannot make shapes once its block is used up.</br>
+	 * </p>
+	 */
+	private synchronized void received( SyncLink from, OpCodec.Frame frame) {
+		if( frame.type == OpCodec.HELLO && joining.contains( from))
+			welcome( from, frame.idBase);
+		if( frame.type == OpCodec.BLOCK && links.contains( from)) {
+			int base = nextBlock( 0);
+			if( base >= 0)
+				from.giveBlock( base);
+		}
+		if( frame.type != OpCodec.OPS || !links.contains( from))
+			return;
+		List< Op> changed = new ArrayList<>( frame.ops.size());
+		for( Op op : frame.ops)
+			if( replica.merge( op))
+				changed.add( op);
+		for( SyncLink link : links)
+			if( link != from)
+				link.send( changed);
+	}
+
+	private synchronized void left( SyncLink link, IOException error) {
+		links.remove( link);
+		joining.remove( link);
+		if( error != null)
+			error.printStackTrace();
+	}
+
+	/**
+	 * <p>
+	 * run a server without the application, for example to test sites against it.</br>
+	 * </p>
+	 * @param args - port, {@link SyncServer#DEFAULT_PORT} if missing
+	 * @throws IOException if port cannot be used
+	 */
+	public static void main( String[] args) throws IOException, InterruptedException {
+		SyncServer server = new SyncServer( args.length > 0 ? Integer.parseInt( args[0]) : DEFAULT_PORT);
+		server.start();
+		System.out.println( "sync server listening on localhost:" + server.getPort());
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,299 @@
+package mapmaker.map.tools;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Point2D;
+import mapmaker.map.geometry.SpatialHash;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.controls.ControlPoint;
+
+/**
+ * <p>
+ * this class snaps mouse positions to existing geometry or to a grid.</br>
+ * every vertex and edge of every {@link PolyShape} is kept in a {@link SpatialHash} so finding
+ * the closest one only looks at the cells around the mouse, not at every shape.
+ * the hash is updated as shapes are added, removed or their points change.</br>
+ * what is snapped to is decided by {@link ToolState#isSnapToShapes()} and {@link ToolState#isSnapToGrid()}.
+ * vertices are preferred over edges and edges over grid.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class Snapper implements ShapeListener {
+
+	/**
+	 * <p>
+	 * maximum distance in pixels a position is moved by snapping to a vertex or edge.</br>
+	 * </p>
+	 */
+	public static final double SNAP_RADIUS = 10;
+
+	/**
+	 * <p>
+	 * distance between grid lines.</br>
+	 * </p>
+	 */
+	public static final double GRID_SIZE = 20;
+
+	/**
+	 * <p>
+	 * one vertex or one edge of a shape. edge i goes from vertex i to vertex i + 1.</br>
+	 * </p>
+	 */
+	private static class Feature {
+		private final PolyShape shape;
+		private final int index;
+		private final boolean edge;
+
+		private Feature( PolyShape shape, int index, boolean edge) {
+			this.shape = shape;
+			this.index = index;
+			this.edge = edge;
+		}
+	}
+
+	/**
+	 * <p>
+	 * features of one shape and the listener that keeps them up to date.</br>
+	 * </p>
+	 */
+	private static class Entry {
+		private Feature[] vertices = new Feature[0];
+		private Feature[] edges = new Feature[0];
+		private ListChangeListener< Double> listener;
+	}
+
+	/**
+	 * <p>
+	 * all vertices and edges, cell size is twice the snap radius so a query visits at most 4 cells.</br>
+	 * </p>
+	 */
+	private final SpatialHash< Feature> hash = new SpatialHash<>( SNAP_RADIUS * 2);
+
+	/**
+	 * <p>
+	 * features of each tracked shape.</br>
+	 * </p>
+	 */
+	private final Map< PolyShape, Entry> entries = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * best candidate of the current {@link Snapper#snap(double, double, PolyShape, double, double)} call.</br>
+	 * fields are used instead of allocations since snap is called on every mouse drag.
+	 * </p>
+	 */
+	private double bestX, bestY, bestDistance;
+	private boolean bestIsVertex;
+
+	/**
+	 * overridden function from {@link ShapeListener}, start tracking all vertices and edges of shape.
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		Entry entry = new Entry();
+		entry.listener = c -> pointsChanged( shape, c);
+		entries.put( shape, entry);
+		shape.getPoints().addListener( entry.listener);
+		rebuild( shape, entry);
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}, stop tracking shape.
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		Entry entry = entries.remove( shape);
+		if( entry == null)
+			return;
+		shape.getPoints().removeListener( entry.listener);
+		removeAll( entry);
+	}
+
+	/**
+	 * <p>
+	 * snap a position ignoring one shape, used while that shape is being drawn.</br>
+	 * </p>
+	 * @param x - x of position
+	 * @param y - y of position
+	 * @param ignore - {@link PolyShape} to ignore or null
+	 * @return snapped position or the same position if nothing is close
+	 */
+	public Point2D snap( double x, double y, PolyShape ignore) {
+		return snap( x, y, ignore, Double.NaN, Double.NaN);
+	}
+
+	/**
+	 * <p>
+	 * snap the new position of a {@link ControlPoint} being dragged.
+	 * the vertex under the point and the 2 edges touching it are ignored so it does not snap to itself.</br>
+	 * </p>
+	 * @param point - {@link ControlPoint} being dragged
+	 * @param x - x of new position
+	 * @param y - y of new position
+	 * @return snapped position or the same position if nothing is close
+	 */
+	public Point2D snap( ControlPoint point, double x, double y) {
+		return snap( x, y, null, point.getCenterX(), point.getCenterY());
+	}
+
+	/**
+	 * <p>
+	 * find closest vertex or edge within {@link Snapper#SNAP_RADIUS}, or closest grid point.</br>
+	 * </p>
+	 * @param x - x of position
+	 * @param y - y of position
+	 * @param ignore - {@link PolyShape} to ignore or null
+	 * @param ignoreX - x of vertex to ignore with its edges, NaN for none
+	 * @param ignoreY - y of vertex to ignore with its edges, NaN for none
+	 * @return snapped position
+	 */
+	private Point2D snap( double x, double y, PolyShape ignore, double ignoreX, double ignoreY) {
+		ToolState state = ToolState.state();
+		if( state.isSnapToShapes()) {
+			bestDistance = SNAP_RADIUS;
+			bestIsVertex = false;
+			bestX = bestY = Double.NaN;
+			hash.query( x, y, SNAP_RADIUS, f -> {
+				if( f.shape != ignore)
+					test( f, x, y, ignoreX, ignoreY);
+			});
+			if( !Double.isNaN( bestX))
+				return new Point2D( bestX, bestY);
+		}
+		if( state.isSnapToGrid())
+			return new Point2D( Math.round( x / GRID_SIZE) * GRID_SIZE, Math.round( y / GRID_SIZE) * GRID_SIZE);
+		return new Point2D( x, y);
+	}
+
+	/**
+	 * <p>
+	 * measure distance from position to one feature and keep it if it is the best so far.</br>
+	 * any vertex within radius beats any edge.</br>
+	 * </p>
+	 */
+	private void test( Feature f, double x, double y, double ignoreX, double ignoreY) {
+		List< Double> points = f.shape.getPoints();
+		int n = points.size() / 2;
+		if( f.index >= n)
+			return;
+		double ax = points.get( f.index * 2), ay = points.get( f.index * 2 + 1);
+		if( !f.edge) {
+			if( ax == ignoreX && ay == ignoreY)
+				return;
+			double d = Math.hypot( x - ax, y - ay);
+			if( d <= SNAP_RADIUS && ( !bestIsVertex || d < bestDistance)) {
+				keep( ax, ay, d, true);
+			}
+			return;
+		}
+		if( bestIsVertex)
+			return;
+		int next = ( f.index + 1) % n;
+		double bx = points.get( next * 2), by = points.get( next * 2 + 1);
+		if( ( ax == ignoreX && ay == ignoreY) || ( bx == ignoreX && by == ignoreY))
+			return;
+		//project position on edge and clamp to its ends
+		double dx = bx - ax, dy = by - ay;
+		double length = dx * dx + dy * dy;
+		double t = length == 0 ? 0 : Math.max( 0, Math.min( 1, ( ( x - ax) * dx + ( y - ay) * dy) / length));
+		double px = ax + t * dx, py = ay + t * dy;
+		double d = Math.hypot( x - px, y - py);
+		if( d < bestDistance)
+			keep( px, py, d, false);
+	}
+
+	/**
+	 * <p>
+	 * store the best candidate.</br>
+	 * </p>
+	 */
+	private void keep( double x, double y, double distance, boolean vertex) {
+		bestX = x;
+		bestY = y;
+		bestDistance = distance;
+		bestIsVertex = vertex;
+	}
+
+	/**
+	 * <p>
+	 * update the hash when points of a shape change.
+	 * when single coordinates are replaced, as {@link ControlPoint} listeners do, only the moved vertex and its
+	 * 2 edges are updated. any other change, like {@link PolyShape#reDraw(double, double, double, double, boolean)},
+	 * rebuilds all features of the shape.</br>
+	 * </p>
+	 */
+	private void pointsChanged( PolyShape shape, ListChangeListener.Change< ? extends Double> c) {
+		Entry entry = entries.get( shape);
+		while( c.next()) {
+			if( c.wasReplaced() && c.getAddedSize() == c.getRemovedSize() && entry.vertices.length * 2 == shape.getPoints().size()) {
+				for( int i = c.getFrom(); i < c.getTo(); i++)
+					update( shape, entry, i / 2);
+			} else {
+				rebuild( shape, entry);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * re-hash one vertex and both edges touching it.</br>
+	 * </p>
+	 */
+	private void update( PolyShape shape, Entry entry, int vertex) {
+		int n = entry.vertices.length;
+		List< Double> points = shape.getPoints();
+		hash.put( entry.vertices[vertex], points.get( vertex * 2), points.get( vertex * 2 + 1));
+		putEdge( points, entry.edges, ( vertex - 1 + n) % n);
+		putEdge( points, entry.edges, vertex);
+	}
+
+	/**
+	 * <p>
+	 * remove all features of a shape and create them again from its current points.</br>
+	 * </p>
+	 */
+	private void rebuild( PolyShape shape, Entry entry) {
+		removeAll( entry);
+		List< Double> points = shape.getPoints();
+		int n = points.size() / 2;
+		entry.vertices = new Feature[n];
+		entry.edges = new Feature[n < 2 ? 0 : n];
+		for( int i = 0; i < n; i++) {
+			entry.vertices[i] = new Feature( shape, i, false);
+			hash.put( entry.vertices[i], points.get( i * 2), points.get( i * 2 + 1));
+		}
+		for( int i = 0; i < entry.edges.length; i++) {
+			entry.edges[i] = new Feature( shape, i, true);
+			putEdge( points, entry.edges, i);
+		}
+	}
+
+	/**
+	 * <p>
+	 * hash edge i from vertex i to vertex i + 1.</br>
+	 * </p>
+	 */
+	private void putEdge( List< Double> points, Feature[] edges, int i) {
+		if( edges.length == 0)
+			return;
+		int next = ( i + 1) % edges.length;
+		hash.put( edges[i], points.get( i * 2), points.get( i * 2 + 1), points.get( next * 2), points.get( next * 2 + 1));
+	}
+
+	/**
+	 * <p>
+	 * remove every feature of one shape from hash.</br>
+	 * </p>
+	 */
+	private void removeAll( Entry entry) {
+		for( Feature f : entry.vertices)
+			hash.remove( f);
+		for( Feature f : entry.edges)
+			hash.remove( f);
+	}
+}
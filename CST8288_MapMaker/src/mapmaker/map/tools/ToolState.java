@@ -1,86 +1,159 @@
-package mapmaker.map.tools;
-
-/**
- * <p>
- * this is a singleton class meant as single location to hold all active {@link Tools} information.</br>
- * </p>
- * @author Shahriar (Shawn) Emami
- * @version Oct 8, 2018
- */
-public class ToolState {
-	
-	/**
-	 * <p>
-	 * static final variable of singleton with eager initialization.</br>
-	 * </p>
-	 */
-	private static final ToolState STATE = new ToolState();
-	
-	/**
-	 * <p>
-	 * {@link Tools} variable and its default initialization.</br>
-	 * </p>
-	 */
-	private Tools tool = Tools.Room;
-	
-	/**
-	 * <p>
-	 * options variable.</br>
-	 * </p>
-	 */
-	private int option;
-	
-	
-	/**
-	 * <p>
-	 * private default constructor to prevent creation of this object.</br>
-	 * </p>
-	 */
-	private ToolState() {}
-	
-	/**
-	 * <p>
-	 * return current singleton of this {@link ToolStateSkeleton}. this method does not lazy initialize.</br>
-	 * </p>
-	 * @return singleton value of {@link ToolStateSkeleton}
-	 */
-	public static ToolState state() { return STATE;}
-	
-	/**
-	 * <p>
-	 * set the correct {@link Tools} and reset options to zero.</br>
-	 * </p>
-	 * @param tool - {@link Tools} object
-	 */
-	public void setTool(Tools tool) {
-		this.tool = tool;
-		option = 0;
-	}
-	
-	/**
-	 * <p>
-	 * current active {@link Tools}.</br>
-	 * </p>
-	 * @return active {@link Tools}
-	 */
-	public Tools getTool() { return tool;}
-	
-	/**
-	 * <p>
-	 * set the option for the current active {@link Tools}.</br>
-	 * </p>
-	 * @param option - integer value representing the option for current active {@link Tools}
-	 */
-	public void setOption(int option) { this.option = option;}
-	
-	/**
-	 * <p>
-	 * integer value representing the option for current active {@link Tools}</br>
-	 * </p>
-	 * @return integer value representing the option for current active {@link Tools}
-	 */
-	public int getOption()  { return option;}
-	
-	
-
+package mapmaker.map.tools;
+
+/**
+ * <p>
+ * this is a singleton class meant as single location to hold all active {@link Tools} information.</br>
+ * it can be read from any thread. the active tool and its option are kept together in one immutable object
+ * so a reader never sees the option of one tool with another tool, snapping options are volatile.</br>
+ * </p>
+ * @author Shahriar (Shawn) Emami
+ * @version Oct 8, 2018
+ */
+public class ToolState {
+	
+	/**
+	 * <p>
+	 * static final variable of singleton with eager initialization.</br>
+	 * </p>
+	 */
+	private static final ToolState STATE = new ToolState();
+	
+	/**
+	 * <p>
+	 * a {@link Tools} and its option, replaced as a whole on every change.
+	 * a reader which needs both keeps one instance from {@link ToolState#getActive()}.</br>
+	 * </p>
+	 */
+	public static final class Active {
+		private final Tools tool;
+		private final int option;
+
+		private Active(Tools tool, int option) {
+			this.tool = tool;
+			this.option = option;
+		}
+
+		/**
+		 * @return {@link Tools} of this snapshot
+		 */
+		public Tools getTool() { return tool;}
+
+		/**
+		 * @return option of {@link Active#getTool()} in this snapshot
+		 */
+		public int getOption() { return option;}
+	}
+	
+	/**
+	 * <p>
+	 * active {@link Tools} with its option and its default initialization.</br>
+	 * </p>
+	 */
+	private volatile Active active = new Active(Tools.Room, 0);
+	
+	/**
+	 * <p>
+	 * snapping options used by {@link Snapper}.</br>
+	 * </p>
+	 */
+	private volatile boolean snapToShapes = true;
+	private volatile boolean snapToGrid;
+	
+	
+	/**
+	 * <p>
+	 * private default constructor to prevent creation of this object.</br>
+	 * </p>
+	 */
+	private ToolState() {}
+	
+	/**
+	 * <p>
+	 * return current singleton of this {@link ToolStateSkeleton}. this method does not lazy initialize.</br>
+	 * </p>
+	 * @return singleton value of {@link ToolStateSkeleton}
+	 */
+	public static ToolState state() { return STATE;}
+	
+	/**
+	 * <p>
+	 * set the correct {@link Tools} and reset options to zero.</br>
+	 * </p>
+	 * @param tool - {@link Tools} object
+	 */
+	public void setTool(Tools tool) {
+		setTool(tool, 0);
+	}
+	
+	/**
+	 * <p>
+	 * set the correct {@link Tools} and its option in one step.</br>
+	 * </p>
+	 * @param tool - {@link Tools} object
+	 * @param option - integer value representing the option for given {@link Tools}
+	 */
+	public synchronized void setTool(Tools tool, int option) {
+		active = new Active(tool, option);
+	}
+	
+	/**
+	 * <p>
+	 * current active {@link Tools} and its option as one snapshot, which later changes do not touch.</br>
+	 * </p>
+	 * @return active {@link Active}
+	 */
+	public Active getActive() { return active;}
+	
+	/**
+	 * <p>
+	 * current active {@link Tools}.</br>
+	 * </p>
+	 * @return active {@link Tools}
+	 */
+	public Tools getTool() { return active.tool;}
+	
+	/**
+	 * <p>
+	 * set the option for the current active {@link Tools}.</br>
+	 * </p>
+	 * @param option - integer value representing the option for current active {@link Tools}
+	 */
+	public synchronized void setOption(int option) { active = new Active(active.tool, option);}
+	
+	/**
+	 * <p>
+	 * integer value representing the option for current active {@link Tools}</br>
+	 * </p>
+	 * @return integer value representing the option for current active {@link Tools}
+	 */
+	public int getOption()  { return active.option;}
+	
+	/**
+	 * <p>
+	 * if true new points snap to nearby vertices and edges of existing shapes.</br>
+	 * </p>
+	 * @param snap - true to snap to shapes
+	 */
+	public void setSnapToShapes(boolean snap) { snapToShapes = snap;}
+	
+	/**
+	 * @return true if new points snap to nearby vertices and edges of existing shapes
+	 */
+	public boolean isSnapToShapes() { return snapToShapes;}
+	
+	/**
+	 * <p>
+	 * if true new points which are not snapped to a shape snap to the closest grid point.</br>
+	 * </p>
+	 * @param snap - true to snap to grid
+	 */
+	public void setSnapToGrid(boolean snap) { snapToGrid = snap;}
+	
+	/**
+	 * @return true if new points snap to the grid
+	 */
+	public boolean isSnapToGrid() { return snapToGrid;}
+	
+	
+
 }
\ No newline at end of file
@@ -1,9 +1,9 @@
-package mapmaker.map.tools;
-/**
- * <p>
- * the name tools currently available in this application
- * </p>
- * @author Shahriar (Shawn) Emami
- * @version Oct 8, 2018
- */
+package mapmaker.map.tools;
+/**
+ * <p>
+ * the name tools currently available in this application
+ * </p>
+ * @author Shahriar (Shawn) Emami
+ * @version Oct 8, 2018
+ */
 public enum Tools {Select,Move,Room,Path,Erase,Door,Color}
\ No newline at end of file
@@ -0,0 +1,124 @@
+package mapmaker.map.tools;
+
+import java.util.Arrays;
+
+import mapmaker.map.geometry.Simplifier;
+
+/**
+ * <p>
+ * this class records the pointer while a freeform room is drawn and simplifies it as it goes.</br>
+ * this class is meant to be used in 3 phases.
+ * <ol>
+ * 	<li>create a new Trace in {@link MouseEvent#MOUSE_PRESSED} stage with the starting position.</li>
+ * 	<li>during the {@link MouseEvent#MOUSE_DRAGGED} stage call {@link Trace#add(double, double)}
+ * 		and draw {@link Trace#preview()}.</li>
+ * 	<li>finally in {@link MouseEvent#MOUSE_RELEASED} stage call {@link Trace#finish()} to get the vertices of the room.</li>
+ * </ol>
+ * while dragging, a vertex is placed only when the pointer leaves the corridor of {@link Trace#TOLERANCE}
+ * around the line from the last vertex, so the preview has few points no matter how long the trace is.
+ * on release the whole trace is simplified again with Douglas-Peucker which gives better corners.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class Trace {
+
+	/**
+	 * <p>
+	 * largest distance in pixels between the trace and the simplified outline.</br>
+	 * </p>
+	 */
+	public static final double TOLERANCE = 2;
+
+	/**
+	 * <p>
+	 * pointer moves shorter than this many pixels are ignored.</br>
+	 * </p>
+	 */
+	private static final double MIN_STEP = 1;
+
+	/**
+	 * <p>
+	 * every recorded point of the trace, 2 values per point, only first rawSize values are used.</br>
+	 * </p>
+	 */
+	private double[] raw = new double[64];
+	private int rawSize;
+
+	/**
+	 * <p>
+	 * vertices placed while dragging, 2 values per point, only first size values are used.</br>
+	 * </p>
+	 */
+	private double[] vertices = new double[16];
+	private int size;
+
+	/**
+	 * <p>
+	 * index in raw of the last placed vertex, only points after it are checked on each move.</br>
+	 * </p>
+	 */
+	private int anchor;
+
+	/**
+	 * @param x - starting x position
+	 * @param y - starting y position
+	 */
+	public Trace( double x, double y) {
+		raw[rawSize++] = x;
+		raw[rawSize++] = y;
+		vertices[size++] = x;
+		vertices[size++] = y;
+	}
+
+	/**
+	 * <p>
+	 * record a new pointer position.</br>
+	 * </p>
+	 * @param x - current x position
+	 * @param y - current y position
+	 * @return true if the point was recorded
+	 */
+	public boolean add( double x, double y) {
+		if( Math.hypot( x - raw[rawSize - 2], y - raw[rawSize - 1]) < MIN_STEP)
+			return false;
+		double ax = raw[anchor], ay = raw[anchor + 1];
+		for( int i = anchor + 2; i < rawSize; i += 2) {
+			if( Simplifier.distanceToSegment( raw[i], raw[i + 1], ax, ay, x, y) > TOLERANCE) {
+				//previous point is the last one the straight line could still cover
+				anchor = rawSize - 2;
+				if( size + 2 > vertices.length)
+					vertices = Arrays.copyOf( vertices, vertices.length * 2);
+				vertices[size++] = raw[anchor];
+				vertices[size++] = raw[anchor + 1];
+				break;
+			}
+		}
+		if( rawSize + 2 > raw.length)
+			raw = Arrays.copyOf( raw, raw.length * 2);
+		raw[rawSize++] = x;
+		raw[rawSize++] = y;
+		return true;
+	}
+
+	/**
+	 * @return vertices placed so far followed by current pointer position
+	 */
+	public Double[] preview() {
+		Double[] points = new Double[size + 2];
+		for( int i = 0; i < size; i++)
+			points[i] = vertices[i];
+		points[size] = raw[rawSize - 2];
+		points[size + 1] = raw[rawSize - 1];
+		return points;
+	}
+
+	/**
+	 * <p>
+	 * simplify the whole trace as a closed outline.</br>
+	 * </p>
+	 * @return flat array of vertices, may have less than 3 points if the trace was too short
+	 */
+	public double[] finish() {
+		return Simplifier.simplifyClosed( raw, rawSize, TOLERANCE);
+	}
+}
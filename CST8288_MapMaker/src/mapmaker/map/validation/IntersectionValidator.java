@@ -0,0 +1,139 @@
+package mapmaker.map.validation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import javafx.collections.ListChangeListener;
+import mapmaker.map.geometry.Collisions;
+import mapmaker.map.geometry.Polygons;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * this class finds rooms whose outline crosses itself, usually after a {@link mapmaker.map.shapes.controls.ControlPoint}
+ * was dragged over another edge. {@link Path}'s are ignored as they only have one edge.</br>
+ * every room whose points change is remembered and {@link IntersectionValidator#recheck()} tests only those,
+ * it is meant to be called once at the end of each edit, for example on mouse release.
+ * rooms loaded from a file are not tested on their own, {@link IntersectionValidator#scan(Collection)}
+ * tests the whole map in parallel on a background thread.</br>
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class IntersectionValidator implements ShapeListener {
+
+	/**
+	 * <p>
+	 * rooms currently crossing themselves.</br>
+	 * </p>
+	 */
+	private final Set< PolyShape> invalid = Collections.newSetFromMap( new IdentityHashMap<>());
+
+	/**
+	 * <p>
+	 * rooms whose points changed since last {@link IntersectionValidator#recheck()}.</br>
+	 * </p>
+	 */
+	private final Set< PolyShape> touched = Collections.newSetFromMap( new IdentityHashMap<>());
+
+	/**
+	 * <p>
+	 * listener added to points of every room.</br>
+	 * </p>
+	 */
+	private final Map< PolyShape, ListChangeListener< Double>> listeners = new IdentityHashMap<>();
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		if( shape instanceof Path)
+			return;
+		ListChangeListener< Double> listener = c -> touched.add( shape);
+		listeners.put( shape, listener);
+		shape.getPoints().addListener( listener);
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		ListChangeListener< Double> listener = listeners.remove( shape);
+		if( listener == null)
+			return;
+		shape.getPoints().removeListener( listener);
+		touched.remove( shape);
+		invalid.remove( shape);
+	}
+
+	/**
+	 * <p>
+	 * test every room changed since last call.</br>
+	 * </p>
+	 * @return true if set of invalid rooms changed
+	 */
+	public boolean recheck() {
+		boolean changed = false;
+		for( PolyShape shape : touched) {
+			boolean crosses = Polygons.selfIntersects( Polygons.toArray( shape.getPoints()), Collisions.EPSILON);
+			changed |= crosses ? invalid.add( shape) : invalid.remove( shape);
+		}
+		touched.clear();
+		return changed;
+	}
+
+	/**
+	 * <p>
+	 * copy vertices of given shapes and return the full scan as a {@link Callable}.
+	 * copying must be done on the FX thread, the returned {@link Callable} can run on any thread.
+	 * its result must be passed back to {@link IntersectionValidator#apply(Collection, Collection)} on the FX thread.</br>
+	 * </p>
+	 * @param shapes - shapes to check, {@link Path}'s are skipped
+	 * @return {@link Callable} returning every room which crosses itself
+	 */
+	public Callable< List< PolyShape>> scan( Collection< PolyShape> shapes) {
+		Map< PolyShape, double[]> copies = new IdentityHashMap<>();
+		for( PolyShape s : shapes)
+			if( !( s instanceof Path))
+				copies.put( s, Polygons.toArray( s.getPoints()));
+		return () -> copies.entrySet().parallelStream()
+				.filter( e -> Polygons.selfIntersects( e.getValue(), Collisions.EPSILON))
+				.map( Map.Entry::getKey)
+				.collect( Collectors.toList());
+	}
+
+	/**
+	 * <p>
+	 * replace state of scanned rooms with result of a full scan.</br>
+	 * </p>
+	 * @param scanned - shapes given to {@link IntersectionValidator#scan(Collection)}
+	 * @param crossing - result of {@link IntersectionValidator#scan(Collection)}
+	 * @return rooms which cross themselves
+	 */
+	public Set< PolyShape> apply( Collection< PolyShape> scanned, Collection< PolyShape> crossing) {
+		//removeAll would call contains on the list for every invalid room
+		for( PolyShape shape : scanned)
+			invalid.remove( shape);
+		//shape may have been removed while a background scan was running
+		for( PolyShape shape : crossing)
+			if( listeners.containsKey( shape))
+				invalid.add( shape);
+		return getInvalid();
+	}
+
+	/**
+	 * @return rooms which cross themselves
+	 */
+	public Set< PolyShape> getInvalid() {
+		return Collections.unmodifiableSet( invalid);
+	}
+}
@@ -0,0 +1,339 @@
+package mapmaker.map.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import javafx.collections.ListChangeListener;
+import mapmaker.map.geometry.Collisions;
+import mapmaker.map.geometry.Polygons;
+import mapmaker.map.geometry.SpatialHash;
+import mapmaker.map.shapes.PolyShape;
+import mapmaker.map.shapes.ShapeListener;
+import mapmaker.map.shapes.controls.Path;
+
+/**
+ * <p>
+ * this class finds rooms which overlap each other. {@link Path}'s are ignored as they are meant to cross rooms.</br>
+ * it can be used in 2 ways.
+ * <ol>
+ * 	<li>{@link OverlapValidator#scan(Collection)} copies vertices of all rooms then returns a {@link Callable}
+ * 		which can run on a background thread. rooms are sorted by left edge of their bounds and each room is only
+ * 		compared with rooms whose x range overlaps its own (sweep and prune), exact tests are done in parallel.</li>
+ * 	<li>in live mode every room whose points change is remembered and {@link OverlapValidator#recheck()}
+ * 		compares only those rooms with rooms near them, found in a {@link SpatialHash} of bounds, for example after a translate.
+ * 		when most rooms changed, like after an auto layout, {@link OverlapValidator#needsScan()} is true
+ * 		and a full scan on a background thread is cheaper.</li>
+ * </ol>
+ * both ways update the same set of overlapping pairs returned by {@link OverlapValidator#getOffenders()}.
+ * </p>
+ * @author Adriano Dramisino
+ */
+public class OverlapValidator implements ShapeListener {
+
+	/**
+	 * <p>
+	 * width and height of cells of {@link OverlapValidator#index}, in map coordinates.</br>
+	 * </p>
+	 */
+	private static final double INDEX_CELL = 128;
+
+	/**
+	 * <p>
+	 * rooms whose bounds would cover more index cells than this are kept in {@link OverlapValidator#large} instead.</br>
+	 * </p>
+	 */
+	private static final int MAX_CELLS = 64;
+
+	/**
+	 * <p>
+	 * vertices of one room copied so they can be read from other threads.</br>
+	 * </p>
+	 */
+	private static class Item {
+		private final PolyShape shape;
+		private final double[] points, bounds;
+		private final boolean convex;
+
+		private Item( PolyShape shape) {
+			this.shape = shape;
+			points = Polygons.toArray( shape.getPoints());
+			bounds = points.length == 0 ? new double[] { 0, 0, 0, 0 } : Polygons.bounds( points);
+			convex = Polygons.isConvex( points);
+		}
+
+		private boolean overlaps( Item o) {
+			return points.length >= 6 && o.points.length >= 6
+					&& bounds[0] < o.bounds[2] && o.bounds[0] < bounds[2] && bounds[1] < o.bounds[3] && o.bounds[1] < bounds[3]
+					&& Collisions.overlap( points, convex, o.points, o.convex);
+		}
+	}
+
+	/**
+	 * <p>
+	 * every room and the rooms it currently overlaps.</br>
+	 * </p>
+	 */
+	private final Map< PolyShape, Set< PolyShape>> overlaps = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * rooms whose points changed since last {@link OverlapValidator#recheck()}, only filled in live mode.</br>
+	 * </p>
+	 */
+	private final Set< PolyShape> touched = Collections.newSetFromMap( new IdentityHashMap<>());
+
+	/**
+	 * <p>
+	 * copied vertices and bounds of rooms for {@link OverlapValidator#recheck()}, dropped when points of a room change.</br>
+	 * </p>
+	 */
+	private final Map< PolyShape, Item> cache = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * listener added to points of every room.</br>
+	 * </p>
+	 */
+	private final Map< PolyShape, ListChangeListener< Double>> listeners = new IdentityHashMap<>();
+
+	/**
+	 * <p>
+	 * bounds of rooms for {@link OverlapValidator#recheck()}, very large rooms are compared with every touched room.
+	 * rooms added or changed since the index was last brought up to date are in {@link OverlapValidator#stale},
+	 * in live mode or not, so the index is right whenever live mode is turned on.</br>
+	 * </p>
+	 */
+	private final SpatialHash< PolyShape> index = new SpatialHash<>( INDEX_CELL);
+	private final Set< PolyShape> large = Collections.newSetFromMap( new IdentityHashMap<>());
+	private final Set< PolyShape> stale = Collections.newSetFromMap( new IdentityHashMap<>());
+
+	/**
+	 * <p>
+	 * if true changed rooms are remembered for {@link OverlapValidator#recheck()}.</br>
+	 * </p>
+	 */
+	private boolean live;
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeAdded( PolyShape shape) {
+		if( shape instanceof Path)
+			return;
+		overlaps.put( shape, Collections.newSetFromMap( new IdentityHashMap<>()));
+		ListChangeListener< Double> listener = c -> {
+			cache.remove( shape);
+			stale.add( shape);
+			if( live)
+				touched.add( shape);
+		};
+		listeners.put( shape, listener);
+		shape.getPoints().addListener( listener);
+		stale.add( shape);
+		if( live)
+			touched.add( shape);
+	}
+
+	/**
+	 * overridden function from {@link ShapeListener}
+	 */
+	@Override
+	public void shapeRemoved( PolyShape shape) {
+		ListChangeListener< Double> listener = listeners.remove( shape);
+		if( listener == null)
+			return;
+		shape.getPoints().removeListener( listener);
+		touched.remove( shape);
+		cache.remove( shape);
+		stale.remove( shape);
+		if( !large.remove( shape))
+			index.remove( shape);
+		for( PolyShape other : overlaps.remove( shape))
+			overlaps.get( other).remove( shape);
+	}
+
+	/**
+	 * <p>
+	 * turn live mode on or off. turning it on rechecks nothing by itself, run a full scan first.</br>
+	 * </p>
+	 * @param live - true to remember changed rooms
+	 */
+	public void setLive( boolean live) {
+		this.live = live;
+		if( !live)
+			touched.clear();
+	}
+
+	/**
+	 * @return true if live mode is on
+	 */
+	public boolean isLive() {
+		return live;
+	}
+
+	/**
+	 * <p>
+	 * copy vertices of given shapes and return the full scan as a {@link Callable}.
+	 * copying must be done on the FX thread, the returned {@link Callable} can run on any thread.
+	 * its result must be passed back to {@link OverlapValidator#apply(List)} on the FX thread.
+	 * rooms touched so far are covered by the scan, rooms touched while it runs are left for the next recheck.</br>
+	 * </p>
+	 * @param shapes - shapes to check, {@link Path}'s are skipped
+	 * @return {@link Callable} returning every overlapping pair
+	 */
+	public Callable< List< PolyShape[]>> scan( Collection< PolyShape> shapes) {
+		touched.clear();
+		List< Item> items = new ArrayList<>( shapes.size());
+		for( PolyShape s : shapes)
+			if( !( s instanceof Path) && s.getPoints().size() >= 6)
+				items.add( new Item( s));
+		return () -> sweepAndPrune( items);
+	}
+
+	/**
+	 * <p>
+	 * replace all known overlaps with result of a full scan.</br>
+	 * </p>
+	 * @param pairs - result of {@link OverlapValidator#scan(Collection)}
+	 * @return rooms which overlap at least one other room
+	 */
+	public Set< PolyShape> apply( List< PolyShape[]> pairs) {
+		overlaps.values().forEach( Set::clear);
+		for( PolyShape[] pair : pairs)
+			addPair( pair[0], pair[1]);
+		return getOffenders();
+	}
+
+	/**
+	 * <p>
+	 * true if more than half of the rooms changed since the last check, then comparing each of them with
+	 * the rooms near it costs more than a full {@link OverlapValidator#scan(Collection)} on a background thread.</br>
+	 * </p>
+	 * @return true if a scan should be run instead of {@link OverlapValidator#recheck()}
+	 */
+	public boolean needsScan() {
+		return touched.size() > 1 && touched.size() * 2 > overlaps.size();
+	}
+
+	/**
+	 * <p>
+	 * compare every room changed since last call with the rooms whose bounds it overlaps and update overlaps.</br>
+	 * </p>
+	 * @return rooms which overlap at least one other room
+	 */
+	public Set< PolyShape> recheck() {
+		refreshIndex();
+		for( PolyShape shape : touched) {
+			Set< PolyShape> old = overlaps.get( shape);
+			for( PolyShape other : old)
+				overlaps.get( other).remove( shape);
+			old.clear();
+			//only rooms changed since last check are copied again, others come from cache
+			Item item = itemOf( shape);
+			double[] b = item.bounds;
+			//a room in many cells is met once per cell
+			Set< PolyShape> seen = Collections.newSetFromMap( new IdentityHashMap<>());
+			index.queryBox( b[0], b[1], b[2], b[3], other -> {
+				if( other != shape && seen.add( other) && item.overlaps( itemOf( other)))
+					addPair( shape, other);
+			});
+			for( PolyShape other : large)
+				if( other != shape && item.overlaps( itemOf( other)))
+					addPair( shape, other);
+		}
+		touched.clear();
+		return getOffenders();
+	}
+
+	/**
+	 * <p>
+	 * store new bounds of every stale room in the index.</br>
+	 * </p>
+	 */
+	private void refreshIndex() {
+		for( PolyShape shape : stale) {
+			if( !large.remove( shape))
+				index.remove( shape);
+			double[] b = itemOf( shape).bounds;
+			if( index.cellsOf( b[0], b[1], b[2], b[3]) > MAX_CELLS)
+				large.add( shape);
+			else
+				index.putBox( shape, b[0], b[1], b[2], b[3]);
+		}
+		stale.clear();
+	}
+
+	/**
+	 * <p>
+	 * copied vertices of a room from cache, created if missing.</br>
+	 * </p>
+	 */
+	private Item itemOf( PolyShape shape) {
+		Item item = cache.get( shape);
+		if( item == null) {
+			item = new Item( shape);
+			cache.put( shape, item);
+		}
+		return item;
+	}
+
+	/**
+	 * @return rooms which overlap at least one other room
+	 */
+	public Set< PolyShape> getOffenders() {
+		Set< PolyShape> offenders = Collections.newSetFromMap( new IdentityHashMap<>());
+		overlaps.forEach( ( s, set) -> {
+			if( !set.isEmpty())
+				offenders.add( s);
+		});
+		return offenders;
+	}
+
+	/**
+	 * <p>
+	 * remember that 2 rooms overlap.</br>
+	 * </p>
+	 */
+	private void addPair( PolyShape a, PolyShape b) {
+		Set< PolyShape> setA = overlaps.get( a), setB = overlaps.get( b);
+		//shape may have been removed while a background scan was running
+		if( setA == null || setB == null)
+			return;
+		setA.add( b);
+		setB.add( a);
+	}
+
+	/**
+	 * <p>
+	 * sort items by left edge, then for every item walk forward only while the next item starts before this one ends.
+	 * each item's walk is independent so they run in parallel.</br>
+	 * </p>
+	 * @param items - copied rooms
+	 * @return every overlapping pair
+	 */
+	private static List< PolyShape[]> sweepAndPrune( List< Item> items) {
+		items.sort( Comparator.comparingDouble( i -> i.bounds[0]));
+		ConcurrentLinkedQueue< PolyShape[]> pairs = new ConcurrentLinkedQueue<>();
+		IntStream.range( 0, items.size()).parallel().forEach( i -> {
+			Item a = items.get( i);
+			for( int j = i + 1; j < items.size(); j++) {
+				Item b = items.get( j);
+				if( b.bounds[0] >= a.bounds[2])
+					break;
+				if( a.overlaps( b))
+					pairs.add( new PolyShape[] { a.shape, b.shape });
+			}
+		});
+		return new ArrayList<>( pairs);
+	}
+}